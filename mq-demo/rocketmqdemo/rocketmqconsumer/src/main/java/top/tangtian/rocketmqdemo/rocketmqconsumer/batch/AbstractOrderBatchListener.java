@@ -0,0 +1,156 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.batch;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.apache.rocketmq.spring.core.RocketMQPushConsumerLifecycleListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotationUtils;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.converter.OrderMessageDecoder;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.Deduplicate;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.MessageDeduplicator;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量消费订单消息的监听器基类
+ * 启动前把容器注册的单条消息监听器换成批量监听器，一次回调最多 consumer.batch.max-size 条消息
+ *
+ * 部分失败语义: onMessages 抛出 BatchConsumeException(processedCount) 时，前 processedCount 条确认消费，
+ * 其余消息退回 broker 重试；抛出其他异常时整批重试。通过 ackIndex 实现，只适用于集群消费模式
+ * 子类标注 @Deduplicate 时，成功消费过的消息重复投递会被直接确认
+ *
+ * @author tangtian
+ * @date 2026-10-19 21:15
+ */
+@Slf4j
+public abstract class AbstractOrderBatchListener implements RocketMQListener<MessageExt>, RocketMQPushConsumerLifecycleListener {
+
+	@Resource
+	private OrderMessageDecoder orderMessageDecoder;
+
+	@Resource
+	private MessageDeduplicator messageDeduplicator;
+
+	/**
+	 * 子类上的 @Deduplicate，为空时不去重
+	 */
+	private Deduplicate deduplicate;
+
+	/**
+	 * 一次回调的最大消息数，对应 consumeMessageBatchMaxSize
+	 */
+	@Value("${consumer.batch.max-size:32}")
+	private int batchMaxSize;
+
+	/**
+	 * 一次从 broker 拉取的最大消息数，对应 pullBatchSize，不小于 batchMaxSize 才能凑满一批
+	 */
+	@Value("${consumer.batch.pull-size:32}")
+	private int pullBatchSize;
+
+	/**
+	 * 处理一批消息，顺序与 broker 投递顺序一致
+	 */
+	protected abstract void onMessages(List<OrderMessage> messages);
+
+	@Override
+	public void prepareStart(DefaultMQPushConsumer consumer) {
+		deduplicate = AnnotationUtils.findAnnotation(getClass(), Deduplicate.class);
+		consumer.setConsumeMessageBatchMaxSize(batchMaxSize);
+		consumer.setPullBatchSize(Math.max(pullBatchSize, batchMaxSize));
+		consumer.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
+			int acked = consumeBatch(consumer.getConsumerGroup(), msgs);
+			if (acked == 0) {
+				return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+			}
+			// ackIndex 之后的消息由客户端退回 broker 重试
+			context.setAckIndex(acked - 1);
+			return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+		});
+		log.info("批量消费已开启: group={}, batchMaxSize={}, pullBatchSize={}",
+				consumer.getConsumerGroup(), consumer.getConsumeMessageBatchMaxSize(), consumer.getPullBatchSize());
+	}
+
+	/**
+	 * 不经过批量监听器时(例如单独调用)按一条消息的批次处理
+	 */
+	@Override
+	public void onMessage(MessageExt messageExt) {
+		onMessages(Collections.singletonList(orderMessageDecoder.decode(messageExt)));
+	}
+
+	/**
+	 * 返回确认消费的消息数(从批次开头算起)
+	 * 开启去重时，已消费过的消息不交给 onMessages，但仍计入确认范围
+	 */
+	private int consumeBatch(String consumerGroup, List<MessageExt> msgs) {
+		List<OrderMessage> messages = new ArrayList<>(msgs.size());
+		List<Integer> positions = new ArrayList<>(msgs.size());
+		List<String> dedupKeys = new ArrayList<>(msgs.size());
+		// 第一条本次不能处理的消息位置，它和之后的消息等待重试
+		int limit = msgs.size();
+
+		for (int i = 0; i < msgs.size(); i++) {
+			MessageExt msg = msgs.get(i);
+			OrderMessage message;
+			try {
+				message = orderMessageDecoder.decode(msg);
+			} catch (Exception e) {
+				log.error("订单消息解析失败: msgId={}", msg.getMsgId(), e);
+				limit = i;
+				break;
+			}
+			if (deduplicate != null) {
+				String key = messageDeduplicator.keyOf(consumerGroup, msg, deduplicate.key());
+				MessageDeduplicator.State state = messageDeduplicator.tryBegin(key);
+				if (state == MessageDeduplicator.State.DUPLICATE) {
+					log.info("跳过重复消息: msgId={}, orderId={}", msg.getMsgId(), message.getOrderId());
+					continue;
+				}
+				if (state == MessageDeduplicator.State.IN_FLIGHT) {
+					limit = i;
+					break;
+				}
+				dedupKeys.add(key);
+			}
+			messages.add(message);
+			positions.add(i);
+		}
+		if (messages.isEmpty()) {
+			return limit;
+		}
+
+		int processed;
+		int acked;
+		try {
+			onMessages(messages);
+			processed = messages.size();
+			acked = limit;
+		} catch (BatchConsumeException e) {
+			processed = Math.min(e.getProcessedCount(), messages.size());
+			acked = processed < positions.size() ? positions.get(processed) : limit;
+			log.warn("批量消费部分失败: 确认 {} 条, 重试 {} 条", acked, msgs.size() - acked, e.getCause());
+		} catch (Exception e) {
+			processed = 0;
+			acked = positions.get(0);
+			log.error("批量消费失败，整批重试: size={}", msgs.size(), e);
+		}
+
+		for (int i = 0; i < dedupKeys.size(); i++) {
+			if (i < processed) {
+				messageDeduplicator.commit(dedupKeys.get(i));
+			} else {
+				messageDeduplicator.abort(dedupKeys.get(i));
+			}
+		}
+		return acked;
+	}
+}
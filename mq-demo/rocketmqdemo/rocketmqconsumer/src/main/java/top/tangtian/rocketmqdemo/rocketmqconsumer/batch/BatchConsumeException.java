@@ -0,0 +1,20 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.batch;
+
+import lombok.Getter;
+
+/**
+ * 批量消费部分失败，前 processedCount 条已经处理成功，只重试剩余的消息
+ *
+ * @author tangtian
+ * @date 2026-10-19 21:10
+ */
+@Getter
+public class BatchConsumeException extends RuntimeException {
+
+	private final int processedCount;
+
+	public BatchConsumeException(int processedCount, Throwable cause) {
+		super("批量消费部分失败，已处理 " + processedCount + " 条", cause);
+		this.processedCount = processedCount;
+	}
+}
@@ -0,0 +1,36 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.controller;
+
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.lag.ConsumerLagMonitor;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.lag.GroupLagSummary;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.lag.QueueLagSnapshot;
+
+import java.util.List;
+
+/**
+ * 队列积压查询，数据为最近一次采集的结果
+ *
+ * @author tangtian
+ * @date 2026-10-20 18:50
+ */
+@RestController
+@RequestMapping("/api/lag")
+public class ConsumerLagController {
+
+	@Resource
+	private ConsumerLagMonitor consumerLagMonitor;
+
+	@GetMapping
+	public List<GroupLagSummary> summaries() {
+		return consumerLagMonitor.summaries();
+	}
+
+	@GetMapping("/{group}")
+	public List<QueueLagSnapshot> queues(@PathVariable String group) {
+		return consumerLagMonitor.queues(group);
+	}
+}
@@ -0,0 +1,78 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.converter;
+
+import org.springframework.util.MimeType;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * OrderMessage 的紧凑二进制编码，字段顺序固定，不写字段名
+ * <pre>
+ * version(1) | presence(1) | orderId(varint长度 + UTF-8) | userId(varint长度 + UTF-8) | amount(8, 分) | timestamp(8)
+ * </pre>
+ * presence 的每一位表示对应字段是否非空，为空的字段不占空间
+ * 格式以生产端的 OrderMessageBinaryCodec 为准，消费端只解码：
+ * 改格式时先在生产端升级 VERSION，再同步这里的 decode，旧版本的消息会被拒绝而不是被错误解析
+ *
+ * @author tangtian
+ * @date 2026-10-19 20:10
+ */
+public final class OrderMessageBinaryCodec {
+
+	public static final MimeType CONTENT_TYPE = MimeType.valueOf("application/x-order-binary");
+
+	private static final byte VERSION = 1;
+
+	// 与生产端的常量逐一对应
+	private static final int ORDER_ID = 1;
+	private static final int USER_ID = 1 << 1;
+	private static final int AMOUNT = 1 << 2;
+	private static final int TIMESTAMP = 1 << 3;
+
+	private OrderMessageBinaryCodec() {
+	}
+
+	public static OrderMessage decode(byte[] buf) {
+		if (buf.length < 2 || buf[0] != VERSION) {
+			throw new IllegalArgumentException("不支持的 OrderMessage 编码版本");
+		}
+		int presence = buf[1];
+		int[] pos = {2};
+		OrderMessage message = new OrderMessage();
+		if ((presence & ORDER_ID) != 0) {
+			message.setOrderId(readString(buf, pos));
+		}
+		if ((presence & USER_ID) != 0) {
+			message.setUserId(readString(buf, pos));
+		}
+		if ((presence & AMOUNT) != 0) {
+			message.setAmount(readLong(buf, pos) / 100.0);
+		}
+		if ((presence & TIMESTAMP) != 0) {
+			message.setTimestamp(readLong(buf, pos));
+		}
+		return message;
+	}
+
+	private static String readString(byte[] buf, int[] pos) {
+		int len = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buf[pos[0]++];
+			len |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		String value = new String(buf, pos[0], len, StandardCharsets.UTF_8);
+		pos[0] += len;
+		return value;
+	}
+
+	private static long readLong(byte[] buf, int[] pos) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (buf[pos[0]++] & 0xFF);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,40 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 根据消息属性中的 content-type 选择解码方式
+ * 监听器容器会先把消息体按字符集转成字符串再交给转换器，二进制格式在这一步就被破坏了，
+ * 所以订单相关的监听器直接接收 MessageExt，由这里解码
+ *
+ * @author tangtian
+ * @date 2026-10-19 20:45
+ */
+@Component
+public class OrderMessageDecoder {
+
+	@Resource
+	private ObjectMapper objectMapper;
+
+	public OrderMessage decode(MessageExt messageExt) {
+		String contentType = messageExt.getUserProperty(MessageHeaders.CONTENT_TYPE);
+		if (contentType != null && OrderMessageBinaryCodec.CONTENT_TYPE.equalsTypeAndSubtype(MimeType.valueOf(contentType))) {
+			return OrderMessageBinaryCodec.decode(messageExt.getBody());
+		}
+		// 未声明或声明为 json 的消息，兼容旧版本生产者
+		try {
+			return objectMapper.readValue(messageExt.getBody(), OrderMessage.class);
+		} catch (IOException e) {
+			throw new UncheckedIOException("解析订单消息失败: msgId=" + messageExt.getMsgId(), e);
+		}
+	}
+}
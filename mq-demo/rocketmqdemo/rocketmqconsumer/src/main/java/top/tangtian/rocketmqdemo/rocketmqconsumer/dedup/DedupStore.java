@@ -0,0 +1,21 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.dedup;
+
+/**
+ * 去重记录的持久化存储，可选
+ * 本地缓存只在单个实例内有效，重启或重平衡到其他实例后会失效；需要跨实例去重时提供一个实现(例如 Redis SETNX、数据库唯一键)注册为 Bean
+ *
+ * @author tangtian
+ * @date 2026-10-19 23:22
+ */
+public interface DedupStore {
+
+	/**
+	 * 是否已经消费过
+	 */
+	boolean isConsumed(String key);
+
+	/**
+	 * 记录为已消费
+	 */
+	void markConsumed(String key, long ttlMillis);
+}
@@ -0,0 +1,35 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.dedup;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在监听器类上开启消费去重，已经成功消费过的消息再次投递时直接确认，不再进入业务处理
+ *
+ * @author tangtian
+ * @date 2026-10-19 23:20
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Deduplicate {
+
+	/**
+	 * 去重 key 的来源
+	 */
+	KeySource key() default KeySource.MSG_ID;
+
+	enum KeySource {
+		/**
+		 * 消息 ID，能去掉重试、重平衡导致的重复投递
+		 */
+		MSG_ID,
+		/**
+		 * 消息 KEYS(业务 key，例如订单号)，同时能去掉生产端重复发送；没有 KEYS 时退回消息 ID
+		 */
+		KEYS
+	}
+}
@@ -0,0 +1,153 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.dedup;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 消费去重
+ * 处理前 tryBegin 占位(处理中)，成功后 commit 标记为已消费，失败时 abort 释放占位让重试的消息能再次处理
+ * 本地缓存未命中时再查询可选的持久化存储
+ * <p>
+ * 处理中占位单独放在 processing 中，不参与 LRU 淘汰：占位被挤出缓存后，同一条消息的重投会被当作首次处理而重复消费；
+ * processing 的大小只取决于同时在处理的消息数，超时未释放的占位(处理中途线程异常退出)在下次抢占或清扫时移除
+ *
+ * @author tangtian
+ * @date 2026-10-19 23:30
+ */
+@Slf4j
+@Component
+public class MessageDeduplicator {
+
+	public enum State {
+		/**
+		 * 首次处理，已占位
+		 */
+		ACQUIRED,
+		/**
+		 * 已经成功消费过
+		 */
+		DUPLICATE,
+		/**
+		 * 另一个线程正在处理同一条消息，稍后重试
+		 */
+		IN_FLIGHT
+	}
+
+	private static final Boolean CONSUMED = Boolean.TRUE;
+
+	/**
+	 * 超过这个数量时，抢占占位前先清扫已超时的占位
+	 */
+	private static final int PROCESSING_SWEEP_THRESHOLD = 10_000;
+
+	private final ShardedLruCache<Boolean> cache;
+
+	/**
+	 * 处理中的占位，value 为占位过期时间
+	 */
+	private final Map<String, Long> processing = new ConcurrentHashMap<>();
+	private final DedupStore store;
+
+	@Value("${consumer.dedup.ttl-ms:86400000}")
+	private long ttlMillis;
+
+	/**
+	 * 处理中占位的有效期，进程在处理中途退出时，占位过期后消息可以被重新处理
+	 */
+	@Value("${consumer.dedup.processing-timeout-ms:60000}")
+	private long processingTimeoutMillis;
+
+	public MessageDeduplicator(@Value("${consumer.dedup.capacity:1000000}") int capacity,
+							   @Value("${consumer.dedup.segments:64}") int segments,
+							   ObjectProvider<DedupStore> storeProvider,
+							   ObjectProvider<MeterRegistry> meterRegistryProvider) {
+		this.cache = new ShardedLruCache<>(capacity, segments);
+		this.store = storeProvider.getIfAvailable();
+		meterRegistryProvider.ifAvailable(this::bindMetrics);
+		log.info("消费去重已启用: capacity={}, segments={}, store={}",
+				capacity, segments, store == null ? "无" : store.getClass().getSimpleName());
+	}
+
+	public String keyOf(String consumerGroup, MessageExt msg, Deduplicate.KeySource source) {
+		String key = source == Deduplicate.KeySource.KEYS && msg.getKeys() != null && !msg.getKeys().isEmpty()
+				? msg.getKeys() : msg.getMsgId();
+		// 不同消费者组各自消费一份，key 按组隔离
+		return consumerGroup + ":" + key;
+	}
+
+	public State tryBegin(String key) {
+		if (CONSUMED.equals(cache.get(key))) {
+			return State.DUPLICATE;
+		}
+		long now = System.currentTimeMillis();
+		Long expireAt = processing.get(key);
+		if (expireAt != null && expireAt > now) {
+			return State.IN_FLIGHT;
+		}
+		if (store != null && store.isConsumed(key)) {
+			cache.put(key, CONSUMED, ttlMillis);
+			return State.DUPLICATE;
+		}
+		if (!acquire(key, now)) {
+			return State.IN_FLIGHT;
+		}
+		// 另一个线程可能在第一次检查之后刚提交完并释放了占位
+		if (CONSUMED.equals(cache.get(key))) {
+			processing.remove(key);
+			return State.DUPLICATE;
+		}
+		return State.ACQUIRED;
+	}
+
+	public void commit(String key) {
+		// 先标记已消费再释放占位，抢到占位的线程再检查一次缓存就能看到
+		cache.put(key, CONSUMED, ttlMillis);
+		if (store != null) {
+			store.markConsumed(key, ttlMillis);
+		}
+		processing.remove(key);
+	}
+
+	public void abort(String key) {
+		processing.remove(key);
+	}
+
+	private boolean acquire(String key, long now) {
+		if (processing.size() > PROCESSING_SWEEP_THRESHOLD) {
+			processing.values().removeIf(expireAt -> expireAt <= now);
+		}
+		Long expireAt = now + processingTimeoutMillis;
+		Long previous = processing.putIfAbsent(key, expireAt);
+		if (previous == null) {
+			return true;
+		}
+		// 已超时的占位可以被接管
+		return previous <= now && processing.replace(key, previous, expireAt);
+	}
+
+	private void bindMetrics(MeterRegistry registry) {
+		Gauge.builder("rocketmq.consumer.dedup.hit.ratio", cache, ShardedLruCache::hitRatio)
+				.description("去重缓存命中率").register(registry);
+		Gauge.builder("rocketmq.consumer.dedup.size", cache, ShardedLruCache::size)
+				.description("去重缓存条目数").register(registry);
+		Gauge.builder("rocketmq.consumer.dedup.processing", processing, Map::size)
+				.description("处理中的占位数").register(registry);
+		Gauge.builder("rocketmq.consumer.dedup.memory", cache, ShardedLruCache::estimatedBytes)
+				.description("去重缓存估算内存占用").baseUnit("bytes").register(registry);
+		FunctionCounter.builder("rocketmq.consumer.dedup.hits", cache, ShardedLruCache::hitCount)
+				.register(registry);
+		FunctionCounter.builder("rocketmq.consumer.dedup.misses", cache, ShardedLruCache::missCount)
+				.register(registry);
+		FunctionCounter.builder("rocketmq.consumer.dedup.evictions", cache, ShardedLruCache::evictionCount)
+				.register(registry);
+	}
+}
@@ -0,0 +1,173 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.dedup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按容量和过期时间淘汰的并发缓存
+ * 按 key 哈希分成多段，每段一个按访问顺序排列的 LinkedHashMap 和一把锁，段内 LRU 淘汰，读取时检查过期
+ * 分段只是为了降低锁竞争，淘汰策略仍是普通 LRU，没有 SLRU 的试用/保护分区，也没有 W-TinyLFU 的频率准入；
+ * 一次性扫过的大量新 key 会把热点 key 挤出去
+ * 内存占用按条目估算，用于监控
+ *
+ * @author tangtian
+ * @date 2026-10-19 23:10
+ */
+public class ShardedLruCache<V> {
+
+	/**
+	 * 每个条目除 key 字符外的固定开销估算: String 对象 + LinkedHashMap.Entry + 值对象
+	 */
+	private static final long ENTRY_OVERHEAD_BYTES = 40 + 48 + 32;
+
+	private final Segment<V>[] segments;
+	private final int segmentMask;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final AtomicLong estimatedBytes = new AtomicLong();
+
+	@SuppressWarnings("unchecked")
+	public ShardedLruCache(int capacity, int segmentCount) {
+		int count = Integer.highestOneBit(Math.max(1, segmentCount - 1) << 1);
+		this.segments = new Segment[count];
+		this.segmentMask = count - 1;
+		int perSegment = Math.max(1, capacity / count);
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment<>(this, perSegment);
+		}
+	}
+
+	/**
+	 * 读取未过期的值，同时计入命中率
+	 */
+	public V get(String key) {
+		V value = segmentOf(key).get(key, System.currentTimeMillis());
+		if (value != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return value;
+	}
+
+	public void put(String key, V value, long ttlMillis) {
+		segmentOf(key).put(key, value, System.currentTimeMillis() + ttlMillis);
+	}
+
+	/**
+	 * key 不存在或已过期时才写入，返回是否写入
+	 */
+	public boolean putIfAbsent(String key, V value, long ttlMillis) {
+		return segmentOf(key).putIfAbsent(key, value, System.currentTimeMillis() + ttlMillis);
+	}
+
+	public void remove(String key) {
+		segmentOf(key).remove(key);
+	}
+
+	public long size() {
+		long size = 0;
+		for (Segment<V> segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	public long missCount() {
+		return misses.sum();
+	}
+
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	public double hitRatio() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	public long estimatedBytes() {
+		return estimatedBytes.get();
+	}
+
+	private Segment<V> segmentOf(String key) {
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return segments[h & segmentMask];
+	}
+
+	private static long bytesOf(String key) {
+		return ENTRY_OVERHEAD_BYTES + 2L * key.length();
+	}
+
+	private record Entry<V>(V value, long expireAt) {
+	}
+
+	private static final class Segment<V> {
+
+		private final AtomicLong estimatedBytes;
+		private final LinkedHashMap<String, Entry<V>> map;
+
+		Segment(ShardedLruCache<V> owner, int capacity) {
+			this.estimatedBytes = owner.estimatedBytes;
+			LongAdder evictions = owner.evictions;
+			this.map = new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+					if (size() > capacity) {
+						evictions.increment();
+						estimatedBytes.addAndGet(-bytesOf(eldest.getKey()));
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		synchronized V get(String key, long now) {
+			Entry<V> entry = map.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expireAt() <= now) {
+				map.remove(key);
+				estimatedBytes.addAndGet(-bytesOf(key));
+				return null;
+			}
+			return entry.value();
+		}
+
+		synchronized void put(String key, V value, long expireAt) {
+			if (map.put(key, new Entry<>(value, expireAt)) == null) {
+				estimatedBytes.addAndGet(bytesOf(key));
+			}
+		}
+
+		synchronized boolean putIfAbsent(String key, V value, long expireAt) {
+			Entry<V> entry = map.get(key);
+			if (entry != null && entry.expireAt() > System.currentTimeMillis()) {
+				return false;
+			}
+			put(key, value, expireAt);
+			return true;
+		}
+
+		synchronized void remove(String key) {
+			if (map.remove(key) != null) {
+				estimatedBytes.addAndGet(-bytesOf(key));
+			}
+		}
+
+		synchronized int size() {
+			return map.size();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.handler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.batch.BatchConsumeException;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.multiplex.OrderTagHandler;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.store.OrderStore;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 普通订单处理，处理 order-topic 的全部消息，由 OrderTopicMultiplexListener 分发
+ * 整批写入 OrderStore，批内有一条非法订单时整批失败，降级为逐条写入，
+ * 逐条写到非法订单时抛 BatchConsumeException，之前的消息确认，从非法订单开始重试(超过重试次数进死信队列)
+ *
+ * @author tangtian
+ * @date 2026-01-02 17:10
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderMessageHandler implements OrderTagHandler {
+
+	private final OrderStore orderStore;
+
+	@Override
+	public String topic() {
+		return "order-topic";
+	}
+
+	@Override
+	public Set<String> tags() {
+		return Set.of("*");
+	}
+
+	@Override
+	public int threads() {
+		return 2;
+	}
+
+	@Override
+	public void handle(List<OrderMessage> messages) {
+		log.info("接收到订单消息: {} 条", messages.size());
+
+		try {
+			// 一批消息一次批量写库
+			processOrders(messages);
+		} catch (Exception e) {
+			log.warn("批量处理订单失败，改为逐条处理: size={}", messages.size(), e);
+			for (int i = 0; i < messages.size(); i++) {
+				try {
+					processOrder(messages.get(i));
+				} catch (Exception ex) {
+					// 前 i 条已处理，剩余的退回重试
+					throw new BatchConsumeException(i, ex);
+				}
+			}
+		}
+	}
+
+	private void processOrders(List<OrderMessage> messages) {
+		orderStore.saveAll(messages);
+		log.info("批量处理订单: {}", messages.stream().map(OrderMessage::getOrderId).toList());
+	}
+
+	private void processOrder(OrderMessage message) {
+		orderStore.save(message);
+		log.info("处理订单: orderId={}, userId={}, amount={}",
+				message.getOrderId(), message.getUserId(), message.getAmount());
+	}
+
+}
\ No newline at end of file
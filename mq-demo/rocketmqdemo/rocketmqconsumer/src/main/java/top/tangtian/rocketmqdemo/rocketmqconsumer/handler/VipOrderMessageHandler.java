@@ -0,0 +1,46 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.Deduplicate;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.multiplex.OrderTagHandler;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * VIP 订单处理，原来单独一个消费者组订阅 VIP || URGENT，现在由 OrderTopicMultiplexListener 按标签分发
+ *
+ * @author tangtian
+ * @date 2026-01-02 17:14
+ */
+@Slf4j
+@Component
+public class VipOrderMessageHandler implements OrderTagHandler {
+
+	@Override
+	public String topic() {
+		return "order-topic";
+	}
+
+	@Override
+	public Set<String> tags() {
+		// 只处理VIP或URGENT标签的消息
+		return Set.of("VIP", "URGENT");
+	}
+
+	@Override
+	public Deduplicate.KeySource dedupKey() {
+		// 沿用原 vip-order-consumer-group 的去重方式：按消息 ID，生产端重复发送的 VIP 订单仍会各处理一次
+		return Deduplicate.KeySource.MSG_ID;
+	}
+
+	@Override
+	public void handle(List<OrderMessage> messages) {
+		for (OrderMessage message : messages) {
+			log.info("VIP订单消费者接收到消息: {}", message.getOrderId());
+		}
+		// VIP订单特殊处理
+	}
+}
@@ -0,0 +1,67 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.lag;
+
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.spring.support.DefaultRocketMQListenerContainer;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录本实例每个消费者组分配到的队列
+ * 推模式消费者没有查询当前分配的公开接口，这里在容器创建消费者之后、启动之前包装它的分配策略，
+ * 每次重平衡按分配结果更新：本次参与分配的队列中，分到的加入，没分到的移除
+ * <p>
+ * 分配结果与实际持有的队列只在重平衡的短暂窗口内不同（顺序消费加锁失败、拉取任务尚未建立），
+ * 只用于积压监控选择位点的读取方式
+ *
+ * @author tangtian
+ * @date 2026-10-21 16:10
+ */
+@Component
+public class AssignedQueueTracker implements BeanPostProcessor {
+
+	/**
+	 * key: consumerGroup
+	 */
+	private final Map<String, Set<MessageQueue>> assigned = new ConcurrentHashMap<>();
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DefaultRocketMQListenerContainer container && container.getConsumer() != null) {
+			DefaultMQPushConsumer consumer = container.getConsumer();
+			consumer.setAllocateMessageQueueStrategy(
+					track(consumer.getConsumerGroup(), consumer.getAllocateMessageQueueStrategy()));
+		}
+		return bean;
+	}
+
+	public boolean isAssigned(String consumerGroup, MessageQueue mq) {
+		return assigned.getOrDefault(consumerGroup, Set.of()).contains(mq);
+	}
+
+	private AllocateMessageQueueStrategy track(String consumerGroup, AllocateMessageQueueStrategy delegate) {
+		Set<MessageQueue> queues = assigned.computeIfAbsent(consumerGroup, key -> ConcurrentHashMap.newKeySet());
+		return new AllocateMessageQueueStrategy() {
+			@Override
+			public List<MessageQueue> allocate(String group, String currentCID,
+											   List<MessageQueue> mqAll, List<String> cidAll) {
+				List<MessageQueue> allocated = delegate.allocate(group, currentCID, mqAll, cidAll);
+				Set<MessageQueue> kept = Set.copyOf(allocated);
+				queues.removeIf(mq -> mqAll.contains(mq) && !kept.contains(mq));
+				queues.addAll(kept);
+				return allocated;
+			}
+
+			@Override
+			public String getName() {
+				return delegate.getName();
+			}
+		};
+	}
+}
@@ -0,0 +1,271 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.lag;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.spring.support.DefaultRocketMQListenerContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 队列积压监控
+ * 定期采集本应用每个消费者容器订阅的 topic 下所有队列的 broker 最大位点和消费者组位点，
+ * 计算积压和消费/生产速度，以 Micrometer 指标和 /api/lag 接口对外提供
+ * <p>
+ * 本实例持有的队列（由 AssignedQueueTracker 记录）读内存中的位点（比 broker 上的新，最多差一个持久化周期），
+ * 其他队列读 broker 上的已提交位点；对本实例持有的队列不能 READ_FROM_STORE，
+ * 它会用 broker 上较旧的值覆盖内存中的位点，下次持久化时位点回退导致重复消费
+ *
+ * @author tangtian
+ * @date 2026-10-20 18:30
+ */
+@Slf4j
+@Component
+public class ConsumerLagMonitor {
+
+	@Autowired
+	private ObjectProvider<DefaultRocketMQListenerContainer> containers;
+
+	@Autowired
+	private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+	@Autowired
+	private AssignedQueueTracker assignedQueueTracker;
+
+	@Value("${consumer.lag.interval-ms:10000}")
+	private long intervalMillis;
+
+	private MeterRegistry meterRegistry;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * key: group|topic|broker|queueId
+	 */
+	private final Map<String, QueueLagSnapshot> queues = new ConcurrentHashMap<>();
+
+	/**
+	 * key: group|topic
+	 */
+	private final Map<String, GroupLagSummary> groups = new ConcurrentHashMap<>();
+
+	private final Map<String, List<Meter>> meters = new HashMap<>();
+
+	@PostConstruct
+	public void start() {
+		meterRegistry = meterRegistryProvider.getIfAvailable();
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "consumer-lag-monitor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// 首次延迟一个周期，等消费者容器启动完成
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				refresh();
+			} catch (Exception e) {
+				// 异常不能抛出，否则定时任务会被取消
+				log.error("积压采集异常", e);
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		log.info("积压监控已启用: interval={}ms", intervalMillis);
+	}
+
+	@PreDestroy
+	public void stop() {
+		scheduler.shutdownNow();
+	}
+
+	public List<GroupLagSummary> summaries() {
+		return groups.values().stream()
+				.sorted(Comparator.comparing(GroupLagSummary::consumerGroup).thenComparing(GroupLagSummary::topic))
+				.toList();
+	}
+
+	public List<QueueLagSnapshot> queues(String consumerGroup) {
+		return queues.values().stream()
+				.filter(snapshot -> snapshot.consumerGroup().equals(consumerGroup))
+				.sorted(Comparator.comparing(QueueLagSnapshot::topic)
+						.thenComparing(QueueLagSnapshot::brokerName)
+						.thenComparingInt(QueueLagSnapshot::queueId))
+				.toList();
+	}
+
+	void refresh() {
+		long now = System.currentTimeMillis();
+		Set<String> seen = ConcurrentHashMap.newKeySet();
+		containers.orderedStream().forEach(container -> {
+			DefaultMQPushConsumer consumer = container.getConsumer();
+			if (consumer == null || !container.isRunning()) {
+				return;
+			}
+			String group = consumer.getConsumerGroup();
+			String topic = container.getTopic();
+			try {
+				collect(consumer, group, topic, now, seen);
+			} catch (Exception e) {
+				// 采集失败时保留上一次的值
+				log.warn("积压采集失败: group={}, topic={}, error={}", group, topic, e.getMessage());
+				queues.keySet().stream().filter(key -> key.startsWith(group + "|" + topic + "|")).forEach(seen::add);
+				seen.add(groupKey(group, topic));
+			}
+		});
+
+		// topic 缩容或消费者容器停止后，去掉对应的队列和指标
+		queues.keySet().removeIf(key -> !seen.contains(key));
+		groups.keySet().removeIf(key -> !seen.contains(key));
+		synchronized (meters) {
+			meters.entrySet().removeIf(entry -> {
+				if (seen.contains(entry.getKey())) {
+					return false;
+				}
+				entry.getValue().forEach(meterRegistry::remove);
+				return true;
+			});
+		}
+	}
+
+	private void collect(DefaultMQPushConsumer consumer, String group, String topic, long now, Set<String> seen)
+			throws Exception {
+		OffsetStore offsetStore = consumer.getOffsetStore();
+		String clientId = consumer.buildMQClientId();
+
+		List<QueueLagSnapshot> snapshots = new ArrayList<>();
+		for (MessageQueue mq : consumer.fetchSubscribeMessageQueues(topic)) {
+			long brokerOffset = consumer.maxOffset(mq);
+			boolean local = assignedQueueTracker.isAssigned(group, mq);
+			long consumerOffset = local ? offsetStore.readOffset(mq, ReadOffsetType.READ_FROM_MEMORY) : -1;
+			if (consumerOffset < 0) {
+				consumerOffset = offsetStore.readOffset(mq, ReadOffsetType.READ_FROM_STORE);
+			}
+			long lag = consumerOffset < 0 ? 0 : Math.max(0, brokerOffset - consumerOffset);
+
+			String key = queueKey(group, mq);
+			QueueLagSnapshot previous = queues.get(key);
+			double consumeTps = 0;
+			double produceTps = 0;
+			if (previous != null && now > previous.timestamp()) {
+				double seconds = (now - previous.timestamp()) / 1000.0;
+				if (consumerOffset >= 0 && previous.consumerOffset() >= 0) {
+					consumeTps = Math.max(0, consumerOffset - previous.consumerOffset()) / seconds;
+				}
+				produceTps = Math.max(0, brokerOffset - previous.brokerOffset()) / seconds;
+			}
+			QueueLagSnapshot snapshot = new QueueLagSnapshot(group, topic, mq.getBrokerName(), mq.getQueueId(),
+					brokerOffset, consumerOffset, lag, consumeTps, produceTps, local ? clientId : null, now);
+			queues.put(key, snapshot);
+			snapshots.add(snapshot);
+			seen.add(key);
+			bindQueueMetrics(key, snapshot);
+		}
+
+		long totalLag = 0;
+		long maxQueueLag = 0;
+		double consumeTps = 0;
+		double produceTps = 0;
+		int localQueues = 0;
+		for (QueueLagSnapshot snapshot : snapshots) {
+			totalLag += snapshot.lag();
+			maxQueueLag = Math.max(maxQueueLag, snapshot.lag());
+			consumeTps += snapshot.consumeTps();
+			produceTps += snapshot.produceTps();
+			if (snapshot.owner() != null) {
+				localQueues++;
+			}
+		}
+		Double drainSeconds = null;
+		if (totalLag == 0) {
+			drainSeconds = 0.0;
+		} else if (consumeTps > produceTps) {
+			drainSeconds = totalLag / (consumeTps - produceTps);
+		}
+		String key = groupKey(group, topic);
+		groups.put(key, new GroupLagSummary(group, topic, snapshots.size(), localQueues, totalLag, maxQueueLag,
+				consumeTps, produceTps, drainSeconds, now));
+		seen.add(key);
+		bindGroupMetrics(key, group, topic);
+	}
+
+	private void bindQueueMetrics(String key, QueueLagSnapshot snapshot) {
+		if (meterRegistry == null) {
+			return;
+		}
+		synchronized (meters) {
+			if (meters.containsKey(key)) {
+				return;
+			}
+			Tags tags = Tags.of("group", snapshot.consumerGroup(), "topic", snapshot.topic(),
+					"broker", snapshot.brokerName(), "queue", String.valueOf(snapshot.queueId()));
+			meters.put(key, List.of(
+					queueGauge("rocketmq.consumer.queue.lag", "队列积压条数", key, tags, QueueLagSnapshot::lag),
+					queueGauge("rocketmq.consumer.queue.consume.tps", "队列消费速度", key, tags, QueueLagSnapshot::consumeTps),
+					queueGauge("rocketmq.consumer.queue.produce.tps", "队列生产速度", key, tags, QueueLagSnapshot::produceTps)));
+		}
+	}
+
+	private void bindGroupMetrics(String key, String group, String topic) {
+		if (meterRegistry == null) {
+			return;
+		}
+		synchronized (meters) {
+			if (meters.containsKey(key)) {
+				return;
+			}
+			Tags tags = Tags.of("group", group, "topic", topic);
+			meters.put(key, List.of(
+					groupGauge("rocketmq.consumer.group.lag", "消费者组总积压条数", key, tags, GroupLagSummary::totalLag),
+					groupGauge("rocketmq.consumer.group.max.queue.lag", "积压最多的队列的积压条数", key, tags,
+							GroupLagSummary::maxQueueLag),
+					groupGauge("rocketmq.consumer.group.consume.tps", "消费者组消费速度", key, tags,
+							GroupLagSummary::consumeTps),
+					groupGauge("rocketmq.consumer.group.produce.tps", "topic 生产速度", key, tags,
+							GroupLagSummary::produceTps)));
+		}
+	}
+
+	private Meter queueGauge(String name, String description, String key, Tags tags,
+							 ToDoubleFunction<QueueLagSnapshot> value) {
+		return Gauge.builder(name, queues, map -> {
+			QueueLagSnapshot snapshot = map.get(key);
+			return snapshot == null ? Double.NaN : value.applyAsDouble(snapshot);
+		}).description(description).tags(tags).register(meterRegistry);
+	}
+
+	private Meter groupGauge(String name, String description, String key, Tags tags,
+							 ToDoubleFunction<GroupLagSummary> value) {
+		return Gauge.builder(name, groups, map -> {
+			GroupLagSummary summary = map.get(key);
+			return summary == null ? Double.NaN : value.applyAsDouble(summary);
+		}).description(description).tags(tags).register(meterRegistry);
+	}
+
+	private static String queueKey(String group, MessageQueue mq) {
+		return group + "|" + mq.getTopic() + "|" + mq.getBrokerName() + "|" + mq.getQueueId();
+	}
+
+	private static String groupKey(String group, String topic) {
+		return group + "|" + topic;
+	}
+}
@@ -0,0 +1,22 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.lag;
+
+/**
+ * 消费者组在某个 topic 上的积压汇总，供扩缩容判断
+ *
+ * @param localQueueCount 本实例持有的队列数
+ * @param maxQueueLag     积压最多的单个队列的积压，队列间差距大时加实例也不一定有用
+ * @param drainSeconds    按当前消费和生产速度清空积压需要的秒数，积压在增长时为 null
+ * @author tangtian
+ * @date 2026-10-20 18:20
+ */
+public record GroupLagSummary(String consumerGroup,
+							  String topic,
+							  int queueCount,
+							  int localQueueCount,
+							  long totalLag,
+							  long maxQueueLag,
+							  double consumeTps,
+							  double produceTps,
+							  Double drainSeconds,
+							  long timestamp) {
+}
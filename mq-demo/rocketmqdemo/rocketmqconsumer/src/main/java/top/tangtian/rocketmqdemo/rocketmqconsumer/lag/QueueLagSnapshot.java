@@ -0,0 +1,26 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.lag;
+
+/**
+ * 单个队列某一时刻的积压
+ *
+ * @param brokerOffset   broker 上的最大位点（下一条消息的位点）
+ * @param consumerOffset 消费者组已提交的位点，从未提交过为 -1
+ * @param lag            积压条数
+ * @param consumeTps     两次采集之间消费位点的推进速度（条/秒），第一次采集为 0
+ * @param produceTps     两次采集之间 broker 位点的推进速度（条/秒），第一次采集为 0
+ * @param owner          本实例持有该队列时为本实例的 clientId，否则为 null
+ * @author tangtian
+ * @date 2026-10-20 18:20
+ */
+public record QueueLagSnapshot(String consumerGroup,
+							   String topic,
+							   String brokerName,
+							   int queueId,
+							   long brokerOffset,
+							   long consumerOffset,
+							   long lag,
+							   double consumeTps,
+							   double produceTps,
+							   String owner,
+							   long timestamp) {
+}
@@ -2,35 +2,43 @@ package top.tangtian.rocketmqdemo.rocketmqconsumer.listener;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
-import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.batch.AbstractOrderBatchListener;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.Deduplicate;
 import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
 
+import java.util.List;
+
 /**
  * @author tangtian
  * @date 2026-01-02 17:17
  */
 @Slf4j
 @Component
+@Deduplicate
 @RocketMQMessageListener(
 		topic = "delay-topic",
 		consumerGroup = "delay-consumer-group"
 )
-public class DelayMessageListener implements RocketMQListener<OrderMessage> {
+public class DelayMessageListener extends AbstractOrderBatchListener {
 
+	/**
+	 * 生产端同一个 tick 到期的超时提醒会合并成批量消息，这里整批检查
+	 */
 	@Override
-	public void onMessage(OrderMessage message) {
-		log.info("收到延迟消息: orderId={}, 发送时间={}, 接收时间={}",
-				message.getOrderId(),
-				message.getTimestamp(),
-				System.currentTimeMillis());
+	protected void onMessages(List<OrderMessage> messages) {
+		long now = System.currentTimeMillis();
+		for (OrderMessage message : messages) {
+			log.info("收到延迟消息: orderId={}, 发送时间={}, 接收时间={}",
+					message.getOrderId(), message.getTimestamp(), now);
+		}
 
 		// 检查订单状态，如果未支付则取消订单
-		checkAndCancelOrder(message.getOrderId());
+		checkAndCancelOrders(messages.stream().map(OrderMessage::getOrderId).toList());
 	}
 
-	private void checkAndCancelOrder(String orderId) {
-		log.info("检查订单状态并处理超时订单: {}", orderId);
-		// 实际业务逻辑
+	private void checkAndCancelOrders(List<String> orderIds) {
+		log.info("检查订单状态并处理超时订单: {}", orderIds);
+		// 实际业务逻辑，一次查询这一批订单的状态
 	}
 }
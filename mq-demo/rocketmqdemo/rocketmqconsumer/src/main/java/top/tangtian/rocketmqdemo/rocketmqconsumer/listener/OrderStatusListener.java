@@ -1,11 +1,33 @@
 package top.tangtian.rocketmqdemo.rocketmqconsumer.listener;
 
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.spring.annotation.ConsumeMode;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.apache.rocketmq.spring.core.RocketMQPushConsumerLifecycleListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.converter.OrderMessageDecoder;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.Deduplicate;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.MessageDeduplicator;
 import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.ordered.KeyOrderedDispatcher;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author tangtian
@@ -13,23 +35,165 @@ import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
  */
 @Slf4j
 @Component
+// 同一订单的多条状态消息 KEYS 相同(都是订单号)，必须按消息 ID 去重，否则后续状态会被当成重复跳过
+@Deduplicate(key = Deduplicate.KeySource.MSG_ID)
 @RocketMQMessageListener(
 		topic = "order-status-topic",
 		consumerGroup = "order-status-consumer-group",
 		consumeMode = ConsumeMode.ORDERLY  // 关键：顺序消费模式
 )
-public class OrderStatusListener implements RocketMQListener<OrderMessage> {
+public class OrderStatusListener implements RocketMQListener<MessageExt>, RocketMQPushConsumerLifecycleListener {
+
+	@Resource
+	private OrderMessageDecoder orderMessageDecoder;
+
+	@Resource
+	private MessageDeduplicator messageDeduplicator;
+
+	private String consumerGroup;
+
+	/**
+	 * 类上的 @Deduplicate，为空时不去重
+	 */
+	private Deduplicate deduplicate;
+
+	/**
+	 * 队列内按 orderId 分道的并行度
+	 */
+	@Value("${consumer.ordered.lanes:8}")
+	private int laneCount;
+
+	/**
+	 * 顺序消费一次取出的消息数，越大同一队列内可并行的订单越多
+	 */
+	@Value("${consumer.ordered.batch-size:64}")
+	private int batchSize;
+
+	private KeyOrderedDispatcher dispatcher;
+
+	/**
+	 * 失败重投前已经处理完成的 offset，重投时跳过，整批完成或队列被分配给其他实例后清除
+	 * 每个队列最多一批(batchSize)个 offset，条目数不超过本实例持有的队列数
+	 */
+	private final Map<MessageQueue, Set<Long>> completedBeforeRetry = new ConcurrentHashMap<>();
 
 	@Override
-	public void onMessage(OrderMessage message) {
-		log.info("顺序消费订单状态消息: orderId={}, timestamp={}",
-				message.getOrderId(), message.getTimestamp());
+	public void prepareStart(DefaultMQPushConsumer consumer) {
+		consumerGroup = consumer.getConsumerGroup();
+		deduplicate = AnnotationUtils.findAnnotation(getClass(), Deduplicate.class);
+		dispatcher = new KeyOrderedDispatcher(laneCount, "order-status-lane-");
+		consumer.setConsumeMessageBatchMaxSize(batchSize);
+		consumer.setPullBatchSize(Math.max(consumer.getPullBatchSize(), batchSize));
+		consumer.setAllocateMessageQueueStrategy(pruneOnRebalance(consumer.getAllocateMessageQueueStrategy()));
+		// 队列锁仍由顺序消费服务持有，这里只把同一批消息按订单分道并行处理
+		consumer.registerMessageListener((MessageListenerOrderly) (msgs, context) -> {
+			MessageQueue mq = context.getMessageQueue();
+			Set<Long> skip = completedBeforeRetry.getOrDefault(mq, Set.of());
+
+			Map<Long, OrderMessage> decoded = new HashMap<>(msgs.size() * 2);
+			for (MessageExt msg : msgs) {
+				try {
+					decoded.put(msg.getQueueOffset(), orderMessageDecoder.decode(msg));
+				} catch (Exception e) {
+					log.error("订单状态消息解析失败: msgId={}", msg.getMsgId(), e);
+				}
+			}
+
+			Set<Long> completed = dispatcher.dispatch(msgs,
+					msg -> {
+						OrderMessage message = decoded.get(msg.getQueueOffset());
+						return message != null ? message.getOrderId() : msg.getMsgId();
+					},
+					skip,
+					msg -> handle(msg, decoded.get(msg.getQueueOffset())));
+
+			if (completed.size() == msgs.size()) {
+				completedBeforeRetry.remove(mq);
+				return ConsumeOrderlyStatus.SUCCESS;
+			}
+
+			// 只把位点推进到最小的未完成位置，已完成的记录下来，重投时不再重复处理
+			long offset = KeyOrderedDispatcher.committableOffset(msgs, completed);
+			OffsetStore offsetStore = consumer.getDefaultMQPushConsumerImpl().getOffsetStore();
+			offsetStore.updateOffset(mq, offset, true);
+			completedBeforeRetry.put(mq, completed);
+			log.warn("订单状态消息部分失败: queue={}, 完成 {}/{}, 位点推进到 {}",
+					mq.getQueueId(), completed.size(), msgs.size(), offset);
+			return ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+		});
+		log.info("订单状态消息按订单分道消费: lanes={}, batchSize={}", laneCount, batchSize);
+	}
+
+	/**
+	 * 包装分配策略：每次重平衡后丢弃不再分配给本实例的队列的重投记录
+	 * 队列迁走后本实例不会再收到它的重投，记录留着只会越积越多；新的持有者从已提交位点开始消费
+	 */
+	private AllocateMessageQueueStrategy pruneOnRebalance(AllocateMessageQueueStrategy delegate) {
+		return new AllocateMessageQueueStrategy() {
+			@Override
+			public List<MessageQueue> allocate(String group, String currentCID,
+											   List<MessageQueue> mqAll, List<String> cidAll) {
+				List<MessageQueue> allocated = delegate.allocate(group, currentCID, mqAll, cidAll);
+				Set<MessageQueue> kept = Set.copyOf(allocated);
+				completedBeforeRetry.keySet().removeIf(mq -> mqAll.contains(mq) && !kept.contains(mq));
+				return allocated;
+			}
+
+			@Override
+			public String getName() {
+				return delegate.getName();
+			}
+		};
+	}
+
+	@Override
+	public void onMessage(MessageExt messageExt) {
+		handle(messageExt, orderMessageDecoder.decode(messageExt));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (dispatcher != null) {
+			dispatcher.shutdown(3000);
+		}
+	}
+
+	private void handle(MessageExt messageExt, OrderMessage message) {
+		if (message == null) {
+			throw new IllegalArgumentException("无法解析的订单状态消息: " + messageExt.getMsgId());
+		}
+		if (deduplicate == null) {
+			process(messageExt, message);
+			return;
+		}
+		String dedupKey = messageDeduplicator.keyOf(consumerGroup, messageExt, deduplicate.key());
+		MessageDeduplicator.State state = messageDeduplicator.tryBegin(dedupKey);
+		if (state == MessageDeduplicator.State.DUPLICATE) {
+			log.info("跳过重复的订单状态消息: msgId={}, orderId={}", messageExt.getMsgId(), message.getOrderId());
+			return;
+		}
+		if (state == MessageDeduplicator.State.IN_FLIGHT) {
+			throw new IllegalStateException("订单状态消息正在处理中: " + messageExt.getMsgId());
+		}
+
+		try {
+			process(messageExt, message);
+			messageDeduplicator.commit(dedupKey);
+		} catch (RuntimeException e) {
+			messageDeduplicator.abort(dedupKey);
+			throw e;
+		}
+	}
+
+	private void process(MessageExt messageExt, OrderMessage message) {
+		log.info("顺序消费订单状态消息: orderId={}, status={}, timestamp={}",
+				message.getOrderId(), messageExt.getUserProperty("orderStatus"), message.getTimestamp());
 
 		// 模拟处理耗时
 		try {
 			Thread.sleep(100);
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			Thread.currentThread().interrupt();
 		}
 	}
-}
\ No newline at end of file
+}
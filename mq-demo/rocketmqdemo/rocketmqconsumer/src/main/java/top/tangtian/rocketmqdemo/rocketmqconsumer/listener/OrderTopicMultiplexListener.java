@@ -0,0 +1,40 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
+import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.Deduplicate;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.multiplex.AbstractTagMultiplexListener;
+
+/**
+ * order-topic 只拉取一次，按标签分发给 OrderMessageHandler、VipOrderMessageHandler
+ * 沿用 order-consumer-group 的消费位点，vip-order-consumer-group 不再使用
+ * <p>
+ * 去重 key 与合并前一致：OrderMessageHandler 按 KEYS(原 order-consumer-group 的配置)，
+ * VipOrderMessageHandler 按消息 ID(原 vip-order-consumer-group 的配置)。
+ * key 的前缀变为 "组名/处理器名"，切换前写入 DedupStore 的记录不再命中
+ * <p>
+ * 切换步骤：VIP 消息此后从 order-consumer-group 的位点开始处理，两个组位点之间的消息需要先处理完
+ * <pre>
+ * 1. 发布前确认 vip-order-consumer-group 没有积压(mqadmin consumerProgress -g vip-order-consumer-group)，
+ *    且各队列位点不落后于 order-consumer-group；有积压就等旧的 VIP 消费者消费完再停
+ * 2. 来不及排空时，把 order-consumer-group 的位点重置到 vip-order-consumer-group 停止的时间
+ *    (mqadmin resetOffsetByTime)，两组位点之间的普通订单会再处理一次，OrderStore 按 orderId 覆盖写，结果不变
+ * 3. 新版本运行正常后删除旧组(mqadmin deleteSubGroup -g vip-order-consumer-group)
+ * </pre>
+ *
+ * @author tangtian
+ * @date 2026-10-20 09:50
+ */
+@Slf4j
+@Component
+@Deduplicate(key = Deduplicate.KeySource.KEYS)
+@RocketMQMessageListener(
+		topic = "order-topic",
+		consumerGroup = "order-consumer-group",
+		// 实际订阅由处理器的标签合并得到
+		selectorExpression = "*",
+		consumeThreadMax = 2
+)
+public class OrderTopicMultiplexListener extends AbstractTagMultiplexListener {
+}
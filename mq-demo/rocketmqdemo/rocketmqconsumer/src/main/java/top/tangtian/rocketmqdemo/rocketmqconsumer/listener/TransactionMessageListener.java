@@ -2,28 +2,39 @@ package top.tangtian.rocketmqdemo.rocketmqconsumer.listener;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
-import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.batch.AbstractOrderBatchListener;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.batch.BatchConsumeException;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.Deduplicate;
 import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
 
+import java.util.List;
+
 /**
  * @author tangtian
  * @date 2026-01-02 17:23
  */
 @Slf4j
 @Component
+@Deduplicate(key = Deduplicate.KeySource.KEYS)
 @RocketMQMessageListener(
 		topic = "transaction-topic",
 		consumerGroup = "transaction-consumer-group"
 )
-public class TransactionMessageListener implements RocketMQListener<OrderMessage> {
+public class TransactionMessageListener extends AbstractOrderBatchListener {
 
 	@Override
-	public void onMessage(OrderMessage message) {
-		log.info("接收到事务消息: orderId={}", message.getOrderId());
+	protected void onMessages(List<OrderMessage> messages) {
+		log.info("接收到事务消息: {} 条", messages.size());
 
-		// 执行下游业务逻辑
-		processTransactionMessage(message);
+		// 执行下游业务逻辑，逐条处理，失败时只重试未处理的部分
+		for (int i = 0; i < messages.size(); i++) {
+			try {
+				processTransactionMessage(messages.get(i));
+			} catch (Exception e) {
+				throw new BatchConsumeException(i, e);
+			}
+		}
 	}
 
 	private void processTransactionMessage(OrderMessage message) {
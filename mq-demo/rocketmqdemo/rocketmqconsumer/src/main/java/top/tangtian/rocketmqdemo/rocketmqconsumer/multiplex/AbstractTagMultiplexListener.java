@@ -0,0 +1,259 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.multiplex;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
+import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.apache.rocketmq.spring.core.RocketMQPushConsumerLifecycleListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.Environment;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.batch.BatchConsumeException;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.converter.OrderMessageDecoder;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.Deduplicate;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.MessageDeduplicator;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按标签多路复用的监听器基类
+ * 一个 topic 只用一个消费者组拉取、解码一次，再按标签通过分发表交给各个 OrderTagHandler，
+ * 取代每个标签一个消费者组、同一条消息被拉取和解码多次的做法
+ *
+ * 订阅表达式由注册的处理器的标签合并得到，会覆盖注解上的 selectorExpression
+ * 一批消息按处理器拆成子批次，在各自的线程池中并行处理，全部完成后按最靠前的失败位置确认(ackIndex)
+ * 子类标注 @Deduplicate 时按处理器分别去重，部分失败重投时已经成功的处理器不会重复处理，
+ * 处理器可以通过 OrderTagHandler#dedupKey 覆盖去重 key 的来源
+ *
+ * @author tangtian
+ * @date 2026-10-20 09:30
+ */
+@Slf4j
+public abstract class AbstractTagMultiplexListener implements RocketMQListener<MessageExt>, RocketMQPushConsumerLifecycleListener {
+
+	@Resource
+	private OrderMessageDecoder orderMessageDecoder;
+
+	@Resource
+	private MessageDeduplicator messageDeduplicator;
+
+	@Resource
+	private Environment environment;
+
+	@Autowired
+	private ObjectProvider<OrderTagHandler> orderTagHandlers;
+
+	@Value("${consumer.batch.max-size:32}")
+	private int batchMaxSize;
+
+	@Value("${consumer.batch.pull-size:32}")
+	private int pullBatchSize;
+
+	private Deduplicate deduplicate;
+
+	private TagDispatchTable<Route> dispatchTable;
+
+	private final List<Route> routes = new ArrayList<>();
+
+	@Override
+	public void prepareStart(DefaultMQPushConsumer consumer) {
+		RocketMQMessageListener annotation = AnnotationUtils.findAnnotation(getClass(), RocketMQMessageListener.class);
+		String topic = environment.resolvePlaceholders(annotation.topic());
+		deduplicate = AnnotationUtils.findAnnotation(getClass(), Deduplicate.class);
+
+		orderTagHandlers.orderedStream()
+				.filter(handler -> topic.equals(handler.topic()))
+				.forEach(handler -> routes.add(new Route(handler, consumer.getConsumerGroup())));
+		dispatchTable = TagDispatchTable.build(routes, route -> route.handler.tags());
+
+		try {
+			consumer.subscribe(topic, dispatchTable.subscription());
+		} catch (MQClientException e) {
+			throw new IllegalStateException("订阅失败: topic=" + topic, e);
+		}
+		consumer.setConsumeMessageBatchMaxSize(batchMaxSize);
+		consumer.setPullBatchSize(Math.max(pullBatchSize, batchMaxSize));
+		consumer.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
+			int acked = consumeBatch(msgs);
+			if (acked == 0) {
+				return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+			}
+			context.setAckIndex(acked - 1);
+			return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+		});
+		log.info("多路复用消费已开启: topic={}, group={}, subscription={}, handlers={}", topic,
+				consumer.getConsumerGroup(), dispatchTable.subscription(),
+				routes.stream().map(route -> route.handler.name() + route.handler.tags()).toList());
+	}
+
+	@Override
+	public void onMessage(MessageExt messageExt) {
+		if (consumeBatch(Collections.singletonList(messageExt)) == 0) {
+			throw new IllegalStateException("消息处理失败: " + messageExt.getMsgId());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		for (Route route : routes) {
+			route.executor.shutdown();
+		}
+		for (Route route : routes) {
+			route.executor.awaitTermination(3, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * 返回确认消费的消息数(从批次开头算起)，没有处理器的标签直接确认
+	 */
+	private int consumeBatch(List<MessageExt> msgs) {
+		Map<Route, SubBatch> subBatches = new LinkedHashMap<>();
+		int limit = msgs.size();
+
+		for (int i = 0; i < msgs.size(); i++) {
+			MessageExt msg = msgs.get(i);
+			OrderMessage message;
+			try {
+				message = orderMessageDecoder.decode(msg);
+			} catch (Exception e) {
+				log.error("订单消息解析失败: msgId={}", msg.getMsgId(), e);
+				limit = i;
+				break;
+			}
+
+			// 先对这条消息的所有处理器占位，有一个正在处理中就整条消息留到下次
+			List<Route> targets = new ArrayList<>(2);
+			List<String> keys = new ArrayList<>(2);
+			for (Route route : dispatchTable.routes(msg.getTags())) {
+				String key = null;
+				if (deduplicate != null) {
+					key = messageDeduplicator.keyOf(route.dedupGroup, msg, route.dedupKey);
+					MessageDeduplicator.State state = messageDeduplicator.tryBegin(key);
+					if (state == MessageDeduplicator.State.DUPLICATE) {
+						continue;
+					}
+					if (state == MessageDeduplicator.State.IN_FLIGHT) {
+						keys.forEach(messageDeduplicator::abort);
+						limit = i;
+						break;
+					}
+				}
+				targets.add(route);
+				keys.add(key);
+			}
+			if (limit != msgs.size()) {
+				break;
+			}
+			for (int j = 0; j < targets.size(); j++) {
+				subBatches.computeIfAbsent(targets.get(j), SubBatch::new).add(message, i, keys.get(j));
+			}
+		}
+		if (subBatches.isEmpty()) {
+			return limit;
+		}
+
+		int fullAck = limit;
+		List<CompletableFuture<Integer>> futures = new ArrayList<>(subBatches.size());
+		for (SubBatch subBatch : subBatches.values()) {
+			futures.add(CompletableFuture.supplyAsync(() -> subBatch.run(fullAck), subBatch.route.executor));
+		}
+		int acked = limit;
+		for (CompletableFuture<Integer> future : futures) {
+			acked = Math.min(acked, future.join());
+		}
+		return acked;
+	}
+
+	private final class Route {
+
+		private final OrderTagHandler handler;
+		private final ExecutorService executor;
+		/**
+		 * 去重 key 按处理器隔离
+		 */
+		private final String dedupGroup;
+		private final Deduplicate.KeySource dedupKey;
+
+		private Route(OrderTagHandler handler, String consumerGroup) {
+			this.handler = handler;
+			this.dedupGroup = consumerGroup + "/" + handler.name();
+			this.dedupKey = handler.dedupKey() != null || deduplicate == null ? handler.dedupKey() : deduplicate.key();
+			AtomicInteger index = new AtomicInteger();
+			this.executor = Executors.newFixedThreadPool(handler.threads(), r -> {
+				Thread thread = new Thread(r, "tag-handler-" + handler.name() + "-" + index.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	private final class SubBatch {
+
+		private final Route route;
+		private final List<OrderMessage> messages = new ArrayList<>();
+		private final List<Integer> positions = new ArrayList<>();
+		private final List<String> dedupKeys = new ArrayList<>();
+
+		private SubBatch(Route route) {
+			this.route = route;
+		}
+
+		private void add(OrderMessage message, int position, String dedupKey) {
+			messages.add(message);
+			positions.add(position);
+			dedupKeys.add(dedupKey);
+		}
+
+		/**
+		 * 返回该处理器允许确认的消息数
+		 */
+		private int run(int fullAck) {
+			int processed;
+			int acked;
+			try {
+				route.handler.handle(messages);
+				processed = messages.size();
+				acked = fullAck;
+			} catch (BatchConsumeException e) {
+				processed = Math.min(e.getProcessedCount(), messages.size());
+				acked = processed < positions.size() ? positions.get(processed) : fullAck;
+				log.warn("处理器 {} 部分失败: 完成 {}/{}", route.handler.name(), processed, messages.size(), e.getCause());
+			} catch (Exception e) {
+				processed = 0;
+				acked = positions.get(0);
+				log.error("处理器 {} 处理失败: size={}", route.handler.name(), messages.size(), e);
+			}
+
+			for (int i = 0; i < dedupKeys.size(); i++) {
+				String key = dedupKeys.get(i);
+				if (key == null) {
+					continue;
+				}
+				if (i < processed) {
+					messageDeduplicator.commit(key);
+				} else {
+					messageDeduplicator.abort(key);
+				}
+			}
+			return acked;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.multiplex;
+
+import top.tangtian.rocketmqdemo.rocketmqconsumer.dedup.Deduplicate;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按标签处理订单消息的业务处理器，由同一 topic 的多路复用监听器统一拉取、解码后分发
+ * 每个处理器有自己的线程池，慢处理器不会占用其他处理器的线程
+ *
+ * @author tangtian
+ * @date 2026-10-20 09:10
+ */
+public interface OrderTagHandler {
+
+	/**
+	 * 所属 topic，与多路复用监听器的 topic 一致时才会注册
+	 */
+	String topic();
+
+	/**
+	 * 处理的标签，包含 "*" 时处理该 topic 的全部消息
+	 */
+	Set<String> tags();
+
+	/**
+	 * 处理线程数
+	 */
+	default int threads() {
+		return 1;
+	}
+
+	/**
+	 * 名称，用于线程名和去重 key，同一 topic 下需要唯一
+	 */
+	default String name() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * 去重 key 的来源，为空时使用监听器上 @Deduplicate 的配置；监听器未开启去重时不生效
+	 */
+	default Deduplicate.KeySource dedupKey() {
+		return null;
+	}
+
+	/**
+	 * 处理一批消息，顺序与投递顺序一致
+	 * 抛出 BatchConsumeException(processedCount) 表示只处理了前 processedCount 条
+	 */
+	void handle(List<OrderMessage> messages);
+}
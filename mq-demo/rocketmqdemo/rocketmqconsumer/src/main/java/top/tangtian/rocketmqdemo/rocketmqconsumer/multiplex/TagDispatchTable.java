@@ -0,0 +1,82 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.multiplex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 标签到处理器的分发表，启动时一次性算好，之后只读
+ * 每个已知标签对应的数组已经合并了订阅全部标签("*")的处理器，分发时只做一次 HashMap 查找
+ *
+ * @author tangtian
+ * @date 2026-10-20 09:15
+ */
+public final class TagDispatchTable<H> {
+
+	public static final String ALL_TAGS = "*";
+
+	private final Map<String, List<H>> byTag;
+	private final List<H> wildcard;
+	private final String subscription;
+
+	private TagDispatchTable(Map<String, List<H>> byTag, List<H> wildcard, String subscription) {
+		this.byTag = byTag;
+		this.wildcard = wildcard;
+		this.subscription = subscription;
+	}
+
+	/**
+	 * @param handlers 处理器，分发顺序与这里的顺序一致
+	 * @param tagsFn   取处理器的标签
+	 */
+	public static <H> TagDispatchTable<H> build(Collection<H> handlers, Function<H, Set<String>> tagsFn) {
+		List<H> wildcard = new ArrayList<>();
+		Set<String> tags = new LinkedHashSet<>();
+		for (H handler : handlers) {
+			Set<String> handlerTags = tagsFn.apply(handler);
+			if (handlerTags.contains(ALL_TAGS)) {
+				wildcard.add(handler);
+			} else {
+				tags.addAll(handlerTags);
+			}
+		}
+
+		Map<String, List<H>> byTag = new HashMap<>(tags.size() * 2);
+		for (String tag : tags) {
+			List<H> routes = new ArrayList<>();
+			for (H handler : handlers) {
+				Set<String> handlerTags = tagsFn.apply(handler);
+				if (handlerTags.contains(ALL_TAGS) || handlerTags.contains(tag)) {
+					routes.add(handler);
+				}
+			}
+			byTag.put(tag, List.copyOf(routes));
+		}
+
+		// 有处理器要全部消息时订阅 "*"，否则只订阅用到的标签，其余消息由 broker 过滤掉
+		String subscription = !wildcard.isEmpty() || tags.isEmpty() ? ALL_TAGS : String.join(" || ", tags);
+		return new TagDispatchTable<>(byTag, List.copyOf(wildcard), subscription);
+	}
+
+	/**
+	 * 标签对应的处理器，没有标签或未注册的标签只交给订阅全部标签的处理器
+	 */
+	public List<H> routes(String tag) {
+		if (tag == null) {
+			return wildcard;
+		}
+		return byTag.getOrDefault(tag, wildcard);
+	}
+
+	/**
+	 * 所有处理器标签合并后的订阅表达式
+	 */
+	public String subscription() {
+		return subscription;
+	}
+}
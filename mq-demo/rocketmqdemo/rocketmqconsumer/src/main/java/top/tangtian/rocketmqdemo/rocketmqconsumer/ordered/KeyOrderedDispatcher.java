@@ -0,0 +1,116 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.ordered;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按业务 key 分道的并行分发器
+ * 顺序消费时一个队列只有一个线程，同一队列里不相关的订单也要排队；这里把同一批消息按 key 的哈希分到 N 条通道，
+ * 每条通道是单线程，所以同一个 key 的消息仍然按投递顺序处理，不同 key 之间并行
+ *
+ * 一个 key 的消息失败后，同批次中该 key 后续的消息不再执行，等待整体重投
+ *
+ * @author tangtian
+ * @date 2026-10-19 21:40
+ */
+@Slf4j
+public class KeyOrderedDispatcher {
+
+	private final ExecutorService[] lanes;
+
+	public KeyOrderedDispatcher(int laneCount, String namePrefix) {
+		this.lanes = new ExecutorService[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			String name = namePrefix + i;
+			lanes[i] = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * 分发一批消息并等待全部通道处理完
+	 *
+	 * @param msgs    同一队列的消息，按 queueOffset 递增
+	 * @param keyFn   取分道 key
+	 * @param skip    已经处理过的消息(重投时跳过)
+	 * @param handler 业务处理
+	 * @return 处理完成的 queueOffset 集合，包括跳过的消息
+	 */
+	public Set<Long> dispatch(List<MessageExt> msgs, Function<MessageExt, String> keyFn,
+							  Set<Long> skip, Consumer<MessageExt> handler) {
+		Set<Long> completed = ConcurrentHashMap.newKeySet();
+		Set<String> failedKeys = ConcurrentHashMap.newKeySet();
+		List<CompletableFuture<Void>> futures = new ArrayList<>(msgs.size());
+
+		for (MessageExt msg : msgs) {
+			if (skip.contains(msg.getQueueOffset())) {
+				completed.add(msg.getQueueOffset());
+				continue;
+			}
+			String key = keyFn.apply(msg);
+			futures.add(CompletableFuture.runAsync(() -> {
+				if (failedKeys.contains(key)) {
+					return;
+				}
+				try {
+					handler.accept(msg);
+					completed.add(msg.getQueueOffset());
+				} catch (Exception e) {
+					failedKeys.add(key);
+					log.error("分道处理失败: key={}, offset={}", key, msg.getQueueOffset(), e);
+				}
+			}, lanes[laneOf(key)]));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+		return completed;
+	}
+
+	/**
+	 * 可以提交的消费位点: 第一条未完成消息的 offset，全部完成时为最后一条的下一个位置
+	 */
+	public static long committableOffset(List<MessageExt> msgs, Set<Long> completed) {
+		List<MessageExt> sorted = new ArrayList<>(msgs);
+		sorted.sort(Comparator.comparingLong(MessageExt::getQueueOffset));
+		for (MessageExt msg : sorted) {
+			if (!completed.contains(msg.getQueueOffset())) {
+				return msg.getQueueOffset();
+			}
+		}
+		return sorted.get(sorted.size() - 1).getQueueOffset() + 1;
+	}
+
+	public void shutdown(long timeoutMillis) {
+		for (ExecutorService lane : lanes) {
+			lane.shutdown();
+		}
+		try {
+			for (ExecutorService lane : lanes) {
+				lane.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private int laneOf(String key) {
+		int h = key == null ? 0 : key.hashCode();
+		// 与 HashMap 相同的扰动，避免低位相同的 key 落到同一通道
+		h ^= h >>> 16;
+		return (h & Integer.MAX_VALUE) % lanes.length;
+	}
+}
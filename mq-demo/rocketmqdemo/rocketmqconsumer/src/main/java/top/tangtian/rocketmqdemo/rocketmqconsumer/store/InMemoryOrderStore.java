@@ -0,0 +1,83 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存版订单表，模拟带约束的订单表写入：orderId 非空，金额必须大于 0
+ * saveAll 相当于一条批量 INSERT，任意一行违反约束整批回滚；save 逐行写入，只有违反约束的那一行失败
+ * 按 orderId 覆盖写，重复投递的消息再次写入不会产生多余的记录
+ * <p>
+ * 只保留最近写入的 capacity 条，超出时淘汰最早写入的，堆内存不随消费量增长；
+ * 被淘汰的订单不再可查，不能当作真正的存储使用
+ *
+ * @author tangtian
+ * @date 2026-10-21 10:20
+ */
+@Slf4j
+@Component
+public class InMemoryOrderStore implements OrderStore {
+
+	private final int capacity;
+
+	private final Map<String, OrderMessage> orders;
+
+	private long evicted;
+
+	public InMemoryOrderStore(@Value("${consumer.store.capacity:100000}") int capacity) {
+		this.capacity = capacity;
+		this.orders = new LinkedHashMap<>(16, 0.75f, false) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, OrderMessage> eldest) {
+				if (size() > InMemoryOrderStore.this.capacity) {
+					evicted++;
+					return true;
+				}
+				return false;
+			}
+		};
+		log.info("使用内存订单存储: capacity={}", capacity);
+	}
+
+	@Override
+	public synchronized void saveAll(List<OrderMessage> messages) {
+		// 先整批校验，全部通过才写入，模拟事务内批量写入失败整体回滚
+		for (OrderMessage message : messages) {
+			check(message);
+		}
+		for (OrderMessage message : messages) {
+			orders.put(message.getOrderId(), message);
+		}
+	}
+
+	@Override
+	public synchronized void save(OrderMessage message) {
+		check(message);
+		orders.put(message.getOrderId(), message);
+	}
+
+	@Override
+	public synchronized int size() {
+		return orders.size();
+	}
+
+	public synchronized long evictedCount() {
+		return evicted;
+	}
+
+	private static void check(OrderMessage message) {
+		if (message.getOrderId() == null) {
+			throw new IllegalArgumentException("订单号为空");
+		}
+		if (message.getAmount() == null || message.getAmount() <= 0) {
+			throw new IllegalArgumentException("订单金额非法: orderId=" + message.getOrderId()
+					+ ", amount=" + message.getAmount());
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package top.tangtian.rocketmqdemo.rocketmqconsumer.store;
+
+import top.tangtian.rocketmqdemo.rocketmqconsumer.entity.OrderMessage;
+
+import java.util.List;
+
+/**
+ * 订单写入，约束: orderId 非空，金额必须大于 0，按 orderId 覆盖写(重复投递再次写入结果不变)
+ * 默认使用 InMemoryOrderStore；接入数据库时提供一个实现并标注 @Primary
+ *
+ * @author tangtian
+ * @date 2026-10-21 10:20
+ */
+public interface OrderStore {
+
+	/**
+	 * 整批写入，任意一行违反约束时整批失败，不写入任何一行
+	 */
+	void saveAll(List<OrderMessage> messages);
+
+	/**
+	 * 写入一行，违反约束时抛出 IllegalArgumentException
+	 */
+	void save(OrderMessage message);
+
+	int size();
+}
@@ -0,0 +1,173 @@
+package top.tangtian.rocketmqloadtest;
+
+import org.apache.rocketmq.broker.BrokerController;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.common.TopicConfig;
+import org.apache.rocketmq.common.constant.PermName;
+import org.apache.rocketmq.common.namesrv.NamesrvConfig;
+import org.apache.rocketmq.namesrv.NamesrvController;
+import org.apache.rocketmq.remoting.netty.NettyClientConfig;
+import org.apache.rocketmq.remoting.netty.NettyServerConfig;
+import org.apache.rocketmq.store.config.FlushDiskType;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 19:10
+ *
+ * 进程内的 NameServer + Broker，数据写在本地临时目录，用于离线压测和联调
+ *
+ * 运行: java EmbeddedRocketMQ [NameServer 端口=9876] [topic:队列数 ...]
+ * 例如: java EmbeddedRocketMQ 9876 order_topic:8 test-topic:4
+ * 启动后 rocketmqnativedemo 的各个示例把 127.0.0.1:9876 作为 args[0]，
+ * Spring 应用不传 name-server 时默认也连 127.0.0.1:9876
+ *
+ * 与正式部署的区别：
+ * ├─ 单 master，无从节点，异步刷盘
+ * ├─ CommitLog 文件 64MB、ConsumeQueue 文件 30 万条，减少磁盘占用
+ * ├─ 开启自动创建 topic，未提前创建的 topic 默认 8 个队列
+ * └─ 关闭时删除数据目录
+ *
+ * 代码中使用：
+ * try (EmbeddedRocketMQ mq = EmbeddedRocketMQ.start(0)) {
+ *     mq.createTopic("order_topic", 8);
+ *     producer.setNamesrvAddr(mq.getNamesrvAddr());
+ * }
+ */
+public class EmbeddedRocketMQ implements AutoCloseable {
+
+	private static final String CLUSTER = "embedded-cluster";
+	private static final String BROKER = "embedded-broker";
+
+	private final Path dataDir;
+	private final NamesrvController namesrv;
+	private final BrokerController broker;
+	private final String namesrvAddr;
+
+	private EmbeddedRocketMQ(Path dataDir, NamesrvController namesrv, BrokerController broker, String namesrvAddr) {
+		this.dataDir = dataDir;
+		this.namesrv = namesrv;
+		this.broker = broker;
+		this.namesrvAddr = namesrvAddr;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 9876;
+		EmbeddedRocketMQ mq = start(port);
+		for (int i = 1; i < args.length; i++) {
+			String[] topic = args[i].split(":");
+			mq.createTopic(topic[0], topic.length > 1 ? Integer.parseInt(topic[1]) : 8);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(mq::close));
+		System.out.println("内嵌 RocketMQ 已启动: namesrv=" + mq.getNamesrvAddr() + ", 数据目录=" + mq.dataDir);
+		Thread.currentThread().join();
+	}
+
+	/**
+	 * @param namesrvPort NameServer 端口，0 表示随机选一个空闲端口
+	 */
+	public static EmbeddedRocketMQ start(int namesrvPort) throws Exception {
+		Path dataDir = Files.createTempDirectory("embedded-rocketmq");
+		int port = namesrvPort > 0 ? namesrvPort : freePort();
+		String namesrvAddr = "127.0.0.1:" + port;
+
+		NamesrvConfig namesrvConfig = new NamesrvConfig();
+		namesrvConfig.setKvConfigPath(dataDir.resolve("namesrv").resolve("kvConfig.json").toString());
+		namesrvConfig.setConfigStorePath(dataDir.resolve("namesrv").resolve("namesrv.properties").toString());
+		NettyServerConfig namesrvNetty = new NettyServerConfig();
+		namesrvNetty.setListenPort(port);
+		NamesrvController namesrv = new NamesrvController(namesrvConfig, namesrvNetty);
+		if (!namesrv.initialize()) {
+			throw new IllegalStateException("NameServer 初始化失败");
+		}
+		namesrv.start();
+
+		BrokerConfig brokerConfig = new BrokerConfig();
+		brokerConfig.setBrokerClusterName(CLUSTER);
+		brokerConfig.setBrokerName(BROKER);
+		brokerConfig.setBrokerIP1("127.0.0.1");
+		brokerConfig.setNamesrvAddr(namesrvAddr);
+		brokerConfig.setAutoCreateTopicEnable(true);
+		brokerConfig.setDefaultTopicQueueNums(8);
+
+		NettyServerConfig brokerNetty = new NettyServerConfig();
+		brokerNetty.setListenPort(freePort());
+
+		String storeRoot = dataDir.resolve("store").toString();
+		MessageStoreConfig storeConfig = new MessageStoreConfig();
+		storeConfig.setStorePathRootDir(storeRoot);
+		storeConfig.setStorePathCommitLog(storeRoot + File.separator + "commitlog");
+		storeConfig.setMappedFileSizeCommitLog(64 * 1024 * 1024);
+		storeConfig.setMappedFileSizeConsumeQueue(300_000 * 20);
+		storeConfig.setFlushDiskType(FlushDiskType.ASYNC_FLUSH);
+		storeConfig.setHaListenPort(freePort());
+		// 开发机磁盘占用高时 broker 会拒绝写入，压测时放宽
+		storeConfig.setDiskMaxUsedSpaceRatio(95);
+
+		BrokerController broker = new BrokerController(brokerConfig, brokerNetty, new NettyClientConfig(), storeConfig);
+		if (!broker.initialize()) {
+			namesrv.shutdown();
+			throw new IllegalStateException("Broker 初始化失败");
+		}
+		broker.start();
+
+		EmbeddedRocketMQ mq = new EmbeddedRocketMQ(dataDir, namesrv, broker, namesrvAddr);
+		// broker 会创建一个与 broker 同名的系统 topic，它有路由说明 broker 已注册
+		mq.awaitRoute(BROKER);
+		return mq;
+	}
+
+	/**
+	 * 创建 topic 并立即注册到 NameServer，不等 30 秒一次的心跳
+	 */
+	public void createTopic(String topic, int queueNums) throws InterruptedException {
+		TopicConfig topicConfig = new TopicConfig(topic, queueNums, queueNums, PermName.PERM_READ | PermName.PERM_WRITE);
+		broker.getTopicConfigManager().updateTopicConfig(topicConfig);
+		broker.registerBrokerAll(true, false, true);
+		awaitRoute(topic);
+	}
+
+	public String getNamesrvAddr() {
+		return namesrvAddr;
+	}
+
+	public BrokerController getBroker() {
+		return broker;
+	}
+
+	@Override
+	public void close() {
+		broker.shutdown();
+		namesrv.shutdown();
+		try (Stream<Path> files = Files.walk(dataDir)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		} catch (IOException e) {
+			System.err.println("删除数据目录失败: " + dataDir + ", " + e.getMessage());
+		}
+	}
+
+	private void awaitRoute(String topic) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (namesrv.getRouteInfoManager().pickupTopicRouteData(topic) == null) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("路由注册超时: " + topic);
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			socket.setReuseAddress(true);
+			return socket.getLocalPort();
+		}
+	}
+}
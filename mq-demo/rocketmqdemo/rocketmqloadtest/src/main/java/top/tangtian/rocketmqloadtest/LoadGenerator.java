@@ -0,0 +1,298 @@
+package top.tangtian.rocketmqloadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 19:40
+ *
+ * 压测: 按设定的速率和消息大小发送，同进程内消费，统计吞吐和端到端延迟分布
+ *
+ * 运行: java LoadGenerator [--参数=值 ...]
+ * ├─ --namesrv=        NameServer 地址，不填则启动 EmbeddedRocketMQ
+ * ├─ --topic=load_test_topic   --queues=8（仅内嵌模式下创建 topic 时使用）
+ * ├─ --rate=20000      总发送速率（条/秒），0 表示不限速
+ * ├─ --size=1024       消息体字节数（至少 8 字节）
+ * ├─ --producers=4     生产者实例数，每个实例一个发送线程
+ * ├─ --window=1000     每个生产者最多在途的异步发送数
+ * ├─ --consumers=2     消费者实例数   --consume-threads=20   --batch=1
+ * ├─ --duration=60     发送时长（秒）   --warmup=10   预热期的数据不计入结果
+ * └─ --report=5        中间报告间隔（秒）
+ *
+ * 延迟计算：
+ * ├─ 消息体前 8 字节是"计划发送时间"（System.nanoTime），生产者和消费者在同一个进程里，时钟一致
+ * ├─ 按计划时间而不是实际发送时间计算，发送被背压阻塞时等待时间也算进延迟（避免 coordinated omission）
+ * ├─ 发送延迟: 计划时间 → broker 返回 SendResult
+ * └─ 端到端延迟: 计划时间 → 消费者拿到消息
+ */
+public class LoadGenerator {
+
+	private static final long HIGHEST_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+	private final Map<String, String> options;
+
+	private final Recorder sendLatency = new Recorder(HIGHEST_NANOS, 3);
+	private final Recorder endToEndLatency = new Recorder(HIGHEST_NANOS, 3);
+	private final Histogram sendTotal = new Histogram(HIGHEST_NANOS, 3);
+	private final Histogram endToEndTotal = new Histogram(HIGHEST_NANOS, 3);
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong sendErrors = new AtomicLong();
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong measuredSent = new AtomicLong();
+	private final AtomicLong measuredReceived = new AtomicLong();
+
+	private volatile long measureFrom;
+	private volatile boolean running = true;
+
+	public LoadGenerator(Map<String, String> options) {
+		this.options = options;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("参数格式为 --名称=值: " + arg);
+			}
+			options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+		}
+		new LoadGenerator(options).run();
+	}
+
+	public void run() throws Exception {
+		String topic = option("topic", "load_test_topic");
+		int size = Math.max(8, intOption("size", 1024));
+		int producerCount = intOption("producers", 4);
+		int consumerCount = intOption("consumers", 2);
+		long rate = intOption("rate", 20_000);
+		int duration = intOption("duration", 60);
+		int warmup = intOption("warmup", 10);
+		int reportSeconds = intOption("report", 5);
+
+		EmbeddedRocketMQ embedded = null;
+		String namesrvAddr = option("namesrv", "");
+		if (namesrvAddr.isEmpty()) {
+			embedded = EmbeddedRocketMQ.start(0);
+			embedded.createTopic(topic, intOption("queues", 8));
+			namesrvAddr = embedded.getNamesrvAddr();
+			System.out.println("使用内嵌 RocketMQ: " + namesrvAddr);
+		}
+		System.out.println("topic=" + topic + ", 速率=" + (rate == 0 ? "不限" : rate + " 条/秒") + ", 消息=" + size
+				+ " 字节, 生产者=" + producerCount + ", 消费者=" + consumerCount + ", 时长=" + duration + " 秒, 预热=" + warmup + " 秒");
+
+		List<DefaultMQPushConsumer> consumers = new ArrayList<>();
+		String group = "load_test_group_" + System.currentTimeMillis();
+		for (int i = 0; i < consumerCount; i++) {
+			consumers.add(startConsumer(namesrvAddr, group, topic, i));
+		}
+		// 等消费者完成第一次重平衡，否则开始阶段的消息会计入很大的延迟
+		Thread.sleep(3000);
+
+		long start = System.nanoTime();
+		measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+		long end = start + TimeUnit.SECONDS.toNanos(warmup + duration);
+
+		List<DefaultMQProducer> producers = new ArrayList<>();
+		List<Thread> senders = new ArrayList<>();
+		for (int i = 0; i < producerCount; i++) {
+			DefaultMQProducer producer = new DefaultMQProducer("load_test_producer");
+			producer.setNamesrvAddr(namesrvAddr);
+			// 每个实例独立的连接，否则所有生产者共用一个 MQClientInstance
+			producer.setInstanceName("load-test-producer-" + i);
+			producer.setSendMsgTimeout(10_000);
+			producer.start();
+			producers.add(producer);
+
+			long intervalNanos = rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) * producerCount / rate;
+			Thread sender = new Thread(() -> sendLoop(producer, topic, size, intervalNanos, start, end),
+					"load-test-sender-" + i);
+			sender.start();
+			senders.add(sender);
+		}
+
+		Histogram sendInterval = null;
+		Histogram endToEndInterval = null;
+		long lastSent = 0;
+		long lastReceived = 0;
+		long lastReport = System.nanoTime();
+		printHeader();
+		while (System.nanoTime() < end) {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(reportSeconds));
+			long now = System.nanoTime();
+			sendInterval = sendLatency.getIntervalHistogram(sendInterval);
+			endToEndInterval = endToEndLatency.getIntervalHistogram(endToEndInterval);
+			sendTotal.add(sendInterval);
+			endToEndTotal.add(endToEndInterval);
+			double seconds = (now - lastReport) / 1e9;
+			printRow(now < measureFrom ? "预热" : String.format("%.0fs", (now - measureFrom) / 1e9),
+					(sent.get() - lastSent) / seconds, (received.get() - lastReceived) / seconds,
+					sendInterval, endToEndInterval);
+			lastSent = sent.get();
+			lastReceived = received.get();
+			lastReport = now;
+		}
+
+		for (Thread sender : senders) {
+			sender.join();
+		}
+		// 等在途消息被消费完，最多 30 秒
+		long drainDeadline = System.currentTimeMillis() + 30_000;
+		while (received.get() < sent.get() && System.currentTimeMillis() < drainDeadline) {
+			Thread.sleep(100);
+		}
+		running = false;
+		sendTotal.add(sendLatency.getIntervalHistogram());
+		endToEndTotal.add(endToEndLatency.getIntervalHistogram());
+
+		double measuredSeconds = duration;
+		System.out.println();
+		System.out.println("==== 结果（不含预热）====");
+		System.out.printf("发送: %d 条, %.0f 条/秒, %.1f MB/秒, 失败 %d 条%n", measuredSent.get(),
+				measuredSent.get() / measuredSeconds, measuredSent.get() * (double) size / 1024 / 1024 / measuredSeconds,
+				sendErrors.get());
+		System.out.printf("消费: %d 条, %.0f 条/秒, 未收到 %d 条（全部，含预热期）%n", measuredReceived.get(),
+				measuredReceived.get() / measuredSeconds, Math.max(0, sent.get() - received.get()));
+		printPercentiles("发送延迟", sendTotal);
+		printPercentiles("端到端延迟", endToEndTotal);
+
+		for (DefaultMQProducer producer : producers) {
+			producer.shutdown();
+		}
+		for (DefaultMQPushConsumer consumer : consumers) {
+			consumer.shutdown();
+		}
+		if (embedded != null) {
+			embedded.close();
+		}
+	}
+
+	/**
+	 * 开环发送: 按计划时间表发送，窗口满时阻塞，但计划时间不顺延
+	 */
+	private void sendLoop(DefaultMQProducer producer, String topic, int size, long intervalNanos, long start, long end) {
+		Semaphore window = new Semaphore(intOption("window", 1000));
+		long next = start;
+		while (true) {
+			long intended;
+			if (intervalNanos > 0) {
+				intended = next;
+				next += intervalNanos;
+				long wait = intended - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+			} else {
+				intended = System.nanoTime();
+			}
+			if (intended >= end) {
+				break;
+			}
+			window.acquireUninterruptibly();
+
+			byte[] body = new byte[size];
+			ByteBuffer.wrap(body).putLong(0, intended);
+			Message msg = new Message(topic, body);
+			boolean measured = intended >= measureFrom;
+			try {
+				producer.send(msg, new SendCallback() {
+					@Override
+					public void onSuccess(SendResult sendResult) {
+						window.release();
+						sent.incrementAndGet();
+						if (measured) {
+							measuredSent.incrementAndGet();
+							sendLatency.recordValue(Math.min(System.nanoTime() - intended, HIGHEST_NANOS));
+						}
+					}
+
+					@Override
+					public void onException(Throwable e) {
+						window.release();
+						sendErrors.incrementAndGet();
+					}
+				});
+			} catch (Exception e) {
+				window.release();
+				sendErrors.incrementAndGet();
+			}
+		}
+		// 等本生产者的在途发送全部返回
+		window.acquireUninterruptibly(intOption("window", 1000));
+	}
+
+	private DefaultMQPushConsumer startConsumer(String namesrvAddr, String group, String topic, int index)
+			throws Exception {
+		DefaultMQPushConsumer consumer = new DefaultMQPushConsumer(group);
+		consumer.setNamesrvAddr(namesrvAddr);
+		consumer.setInstanceName("load-test-consumer-" + index);
+		consumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+		consumer.setConsumeThreadMin(intOption("consume-threads", 20));
+		consumer.setConsumeThreadMax(intOption("consume-threads", 20));
+		consumer.setConsumeMessageBatchMaxSize(intOption("batch", 1));
+		consumer.subscribe(topic, "*");
+		consumer.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
+			long now = System.nanoTime();
+			for (MessageExt msg : msgs) {
+				long intended = ByteBuffer.wrap(msg.getBody()).getLong(0);
+				received.incrementAndGet();
+				if (intended >= measureFrom) {
+					measuredReceived.incrementAndGet();
+					endToEndLatency.recordValue(Math.min(Math.max(0, now - intended), HIGHEST_NANOS));
+				}
+			}
+			return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+		});
+		consumer.start();
+		return consumer;
+	}
+
+	private static void printHeader() {
+		System.out.printf("%-8s %10s %10s %10s %10s %10s %10s %10s %10s%n", "时间", "发送/秒", "消费/秒",
+				"发送p50", "发送p99", "端到端p50", "端到端p99", "p999", "max");
+	}
+
+	private static void printRow(String label, double sendRate, double receiveRate, Histogram send, Histogram e2e) {
+		System.out.printf("%-8s %10.0f %10.0f %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f%n", label, sendRate, receiveRate,
+				millis(send, 50), millis(send, 99), millis(e2e, 50), millis(e2e, 99), millis(e2e, 99.9),
+				e2e.getTotalCount() == 0 ? 0 : e2e.getMaxValue() / 1e6);
+	}
+
+	private static void printPercentiles(String name, Histogram histogram) {
+		System.out.printf("%s(ms): p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f, 样本 %d%n", name,
+				millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+				histogram.getTotalCount() == 0 ? 0 : histogram.getMaxValue() / 1e6, histogram.getTotalCount());
+	}
+
+	private static double millis(Histogram histogram, double percentile) {
+		return histogram.getTotalCount() == 0 ? 0 : histogram.getValueAtPercentile(percentile) / 1e6;
+	}
+
+	private String option(String name, String defaultValue) {
+		return options.getOrDefault(name, defaultValue);
+	}
+
+	private int intOption(String name, int defaultValue) {
+		return Integer.parseInt(options.getOrDefault(name, String.valueOf(defaultValue)));
+	}
+}
@@ -7,7 +7,9 @@ import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
 import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.remoting.protocol.heartbeat.MessageModel;
+import top.tangtian.rocketmqnativedemo.body.MessageBodyView;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -15,6 +17,12 @@ import java.util.List;
  * @date 2026-01-03 10:27
  */
 public class NativeConsumer {
+
+	/**
+	 * 每个消费线程复用一个消息体视图，不为每条消息创建 String
+	 */
+	private static final ThreadLocal<MessageBodyView> BODY_VIEW = ThreadLocal.withInitial(MessageBodyView::new);
+
 	public static void main(String[] args) throws Exception {
 		String namesrvAddr = args[0];
 		// ========================================
@@ -85,6 +93,7 @@ public class NativeConsumer {
 		 * BROADCASTING（广播模式）：
 		 *   同一个消费者组内的每个消费者，都会收到所有消息
 		 *   每条消息会被组内的每个消费者都消费一次
+		 *   位点保存在本机文件中，队列多时可换成 offset.MappedOffsetStore
 		 */
 		consumer.setMessageModel(MessageModel.CLUSTERING);  // 集群模式
 		// consumer.setMessageModel(MessageModel.BROADCASTING);  // 广播模式
@@ -102,6 +111,8 @@ public class NativeConsumer {
 		consumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
 
 		// 3. 消费线程数配置
+		// 消费线程池的任务队列是无界的，线程数实际固定为 consumeThreadMin，
+		// 需要随负载伸缩时用 consume.AdaptiveConsumeController 调整线程数和批量
 		consumer.setConsumeThreadMin(1);   // 最小消费线程数
 		consumer.setConsumeThreadMax(20);  // 最大消费线程数
 
@@ -152,9 +163,8 @@ public class NativeConsumer {
 					System.out.println("  队列ID: " + msg.getQueueId());
 					System.out.println("  重试次数: " + msg.getReconsumeTimes());
 
-					// 获取消息体
-					String body = new String(msg.getBody());
-					System.out.println("  消息内容: " + body);
+					// 消息体原样写出，不解码成字符串
+					MessageBodyView.print(System.out, "  消息内容: ", msg.getBody());
 
 					// 处理业务逻辑
 					try {
@@ -195,10 +205,11 @@ public class NativeConsumer {
 	 * 处理消息的业务方法
 	 */
 	private static void processMessage(MessageExt msg) throws Exception {
-		// 模拟业务处理
-		String body = new String(msg.getBody());
+		// 大消息体以只读 ByteBuffer 交给业务处理，不复制
+		ByteBuffer body = BODY_VIEW.get().reset(msg.getBody()).asReadOnlyBuffer();
+		System.out.println("    -> 消息体 " + body.remaining() + " 字节");
 
-		// 根据 Tag 执行不同的业务逻辑
+		// 根据 Tag 执行不同的业务逻辑（Tag 在消息属性里，路由不需要读消息体）
 		if ("VIP".equals(msg.getTags())) {
 			System.out.println("    -> 处理VIP订单逻辑");
 		} else if ("URGENT".equals(msg.getTags())) {
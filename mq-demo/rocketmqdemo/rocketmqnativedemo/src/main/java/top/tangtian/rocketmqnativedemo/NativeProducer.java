@@ -112,7 +112,7 @@ public class NativeProducer {
 		producer.sendOneway(message4);
 		System.out.println("单向发送完成（不等待结果）");
 
-		// 等待异步发送完成
+		// 等待异步发送完成（这里只有一条；大量异步发送用 producer.PipelinedProducer 限制在途数，再 flush 等待）
 		Thread.sleep(1000);
 
 		// ========================================
@@ -0,0 +1,115 @@
+package top.tangtian.rocketmqnativedemo.body;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 17:55
+ *
+ * 对比每条消息的内存分配: new String 后按字符串取字段 vs MessageBodyView 直接读字节
+ *
+ * 运行: java BodyViewBenchmark [消息数=1000000] [附加内容字节数=4096]
+ *
+ * 每条消息做同样的事：
+ * ├─ 取 orderId 判断是否为测试单，取 userId、vip
+ * ├─ 按 vip 路由（VIP / 普通）
+ * └─ 把整个消息体交给处理器（String 路径传字符串，视图路径传只读 ByteBuffer）
+ *
+ * 分配字节数来自 com.sun.management.ThreadMXBean，只统计当前线程
+ */
+public class BodyViewBenchmark {
+
+	private static final byte[] ORDER_ID = MessageBodyView.bytes("orderId");
+	private static final byte[] USER_ID = MessageBodyView.bytes("userId");
+	private static final byte[] VIP = MessageBodyView.bytes("vip");
+	private static final byte[] TEST_PREFIX = MessageBodyView.bytes("TEST_");
+
+	private static long sink;
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int padding = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+		byte[][] bodies = new byte[64][];
+		for (int i = 0; i < bodies.length; i++) {
+			bodies[i] = ("{\"orderId\":\"ORDER_20260103_" + i + "\",\"userId\":" + (10000 + i)
+					+ ",\"amount\":199.00,\"vip\":" + (i % 3 == 0) + ",\"items\":[{\"sku\":\"A-" + i + "\",\"qty\":2}]"
+					+ ",\"remark\":\"" + "备".repeat(padding / 3) + "\"}").getBytes(StandardCharsets.UTF_8);
+		}
+
+		System.out.println("消息数: " + count + ", 消息体约 " + bodies[0].length + " 字节");
+		System.out.printf("%-12s %14s %14s%n", "方式", "字节/条", "纳秒/条");
+		for (int round = 0; round < 3; round++) {
+			// 前两轮预热
+			boolean report = round == 2;
+			measure("STRING", count, bodies, BodyViewBenchmark::viaString, report);
+			measure("BODY_VIEW", count, bodies, new ViewPath()::handle, report);
+		}
+		System.out.println("(校验值 " + sink + ")");
+	}
+
+	private interface Path {
+		void handle(byte[] body);
+	}
+
+	private static void measure(String name, int count, byte[][] bodies, Path path, boolean report) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			path.handle(bodies[i & (bodies.length - 1)]);
+		}
+		long nanos = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+		if (report) {
+			System.out.printf("%-12s %14.1f %14.1f%n", name, (double) allocated / count, (double) nanos / count);
+		}
+	}
+
+	private static void viaString(byte[] body) {
+		String json = new String(body, StandardCharsets.UTF_8);
+		String orderId = stringField(json, "orderId");
+		long userId = Long.parseLong(rawField(json, "userId"));
+		boolean vip = Boolean.parseBoolean(rawField(json, "vip"));
+		if (!orderId.startsWith("TEST_")) {
+			sink += (vip ? 1 : 2) + userId + json.length();
+		}
+	}
+
+	private static String rawField(String json, String field) {
+		int start = json.indexOf("\"" + field + "\":") + field.length() + 3;
+		int end = start;
+		while (end < json.length() && ",}]".indexOf(json.charAt(end)) < 0) {
+			end++;
+		}
+		return json.substring(start, end);
+	}
+
+	private static String stringField(String json, String field) {
+		String raw = rawField(json, field);
+		return raw.substring(1, raw.length() - 1);
+	}
+
+	/**
+	 * 每个消费线程持有一个视图，reset 复用
+	 */
+	private static final class ViewPath {
+
+		private final MessageBodyView view = new MessageBodyView();
+		private final MessageBodyView orderId = new MessageBodyView();
+
+		void handle(byte[] body) {
+			view.reset(body);
+			view.jsonValue(ORDER_ID, orderId);
+			long userId = view.jsonLong(USER_ID, -1);
+			boolean vip = view.jsonBoolean(VIP, false);
+			if (!orderId.startsWith(TEST_PREFIX)) {
+				ByteBuffer readOnly = view.asReadOnlyBuffer();
+				sink += (vip ? 1 : 2) + userId + readOnly.remaining();
+			}
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package top.tangtian.rocketmqnativedemo.body;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 17:30
+ *
+ * 消息体的只读视图，直接在 byte[] 上判断和取值，不创建 String
+ *
+ * new String(msg.getBody()) 的问题：
+ * ├─ 每条消息都要解码并复制一份 char/byte 数组，大消息体尤其明显
+ * ├─ 不指定字符集时用平台默认字符集，和生产者的 UTF-8 不一致就会乱码
+ * └─ 很多时候只是为了打印或者判断路由，根本不需要完整的字符串
+ *
+ * 这里提供：
+ * ├─ 1. startsWith / contentEquals: 按前几个字节判断，路由只读消息体开头
+ * ├─ 2. jsonLong / jsonBoolean / jsonEquals / jsonValue: 在顶层 JSON 对象中按字段名取值，不解析整个对象
+ * ├─ 3. asReadOnlyBuffer: 把消息体交给处理器时不复制，处理器也改不了原数组
+ * └─ 4. print: 原样写出字节，控制台按 UTF-8 显示
+ *
+ * 视图可以 reset 复用（每个消费线程一个），这样每条消息不产生任何对象
+ * Tag、Key 在消息属性里，直接用 msg.getTags() / msg.getKeys()，不要从消息体里找
+ *
+ * JSON 只做够用的扫描：字段名按原始字节比较（不处理转义），字符串值返回引号内的原始字节
+ */
+public final class MessageBodyView {
+
+	private static final long NOT_FOUND = -1;
+
+	private byte[] array = new byte[0];
+	private int offset;
+	private int length;
+
+	public static MessageBodyView of(byte[] body) {
+		return new MessageBodyView().reset(body);
+	}
+
+	/**
+	 * 字段名、前缀等常量先转成字节，用于后续比较
+	 */
+	public static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 打印 label 和消息体，不创建消息体字符串
+	 */
+	public static void print(PrintStream out, String label, byte[] body) {
+		synchronized (out) {
+			out.print(label);
+			if (body != null) {
+				out.write(body, 0, body.length);
+			}
+			out.println();
+		}
+	}
+
+	public MessageBodyView reset(byte[] body) {
+		return reset(body, 0, body == null ? 0 : body.length);
+	}
+
+	public MessageBodyView reset(byte[] body, int offset, int length) {
+		this.array = body == null ? new byte[0] : body;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public byte byteAt(int index) {
+		return array[offset + index];
+	}
+
+	public boolean startsWith(byte[] prefix) {
+		return length >= prefix.length && regionEquals(offset, prefix);
+	}
+
+	public boolean contentEquals(byte[] other) {
+		return length == other.length && regionEquals(offset, other);
+	}
+
+	/**
+	 * 只读、不复制的 ByteBuffer，position 为 0，limit 为消息体长度
+	 */
+	public ByteBuffer asReadOnlyBuffer() {
+		return ByteBuffer.wrap(array, offset, length).slice().asReadOnlyBuffer();
+	}
+
+	public void writeTo(PrintStream out) {
+		out.write(array, offset, length);
+	}
+
+	/**
+	 * 数字字段，也接受 "123" 这种带引号的数字，不存在或不是整数时返回默认值
+	 */
+	public long jsonLong(byte[] field, long defaultValue) {
+		long range = findField(field);
+		if (range == NOT_FOUND) {
+			return defaultValue;
+		}
+		int start = start(range);
+		int end = end(range);
+		if (array[start] == '"') {
+			start++;
+			end--;
+		}
+		boolean negative = start < end && array[start] == '-';
+		if (negative) {
+			start++;
+		}
+		if (start >= end) {
+			return defaultValue;
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			byte b = array[i];
+			if (b < '0' || b > '9') {
+				return defaultValue;
+			}
+			value = value * 10 + (b - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	public boolean jsonBoolean(byte[] field, boolean defaultValue) {
+		long range = findField(field);
+		if (range == NOT_FOUND) {
+			return defaultValue;
+		}
+		byte first = array[start(range)];
+		if (first == 't') {
+			return true;
+		}
+		return first == 'f' ? false : defaultValue;
+	}
+
+	/**
+	 * 字段值是否等于 expected，字符串值比较引号内的字节
+	 */
+	public boolean jsonEquals(byte[] field, byte[] expected) {
+		long range = findField(field);
+		if (range == NOT_FOUND) {
+			return false;
+		}
+		int start = start(range);
+		int end = end(range);
+		if (array[start] == '"') {
+			start++;
+			end--;
+		}
+		return end - start == expected.length && regionEquals(start, expected);
+	}
+
+	/**
+	 * 把 target 指向字段值（字符串去掉引号，对象和数组保留括号），字段不存在时返回 false
+	 */
+	public boolean jsonValue(byte[] field, MessageBodyView target) {
+		long range = findField(field);
+		if (range == NOT_FOUND) {
+			return false;
+		}
+		int start = start(range);
+		int end = end(range);
+		if (array[start] == '"') {
+			start++;
+			end--;
+		}
+		target.reset(array, start, end - start);
+		return true;
+	}
+
+	/**
+	 * 在顶层对象中查找字段，返回值的 [start, end)，打包成一个 long 避免创建对象
+	 */
+	private long findField(byte[] field) {
+		int limit = offset + length;
+		int i = skipWhitespace(offset, limit);
+		if (i >= limit || array[i] != '{') {
+			return NOT_FOUND;
+		}
+		i++;
+		while (true) {
+			i = skipWhitespace(i, limit);
+			if (i >= limit || array[i] != '"') {
+				return NOT_FOUND;
+			}
+			int keyEnd = stringEnd(i, limit);
+			if (keyEnd < 0) {
+				return NOT_FOUND;
+			}
+			boolean matched = keyEnd - i - 1 == field.length && regionEquals(i + 1, field);
+
+			i = skipWhitespace(keyEnd + 1, limit);
+			if (i >= limit || array[i] != ':') {
+				return NOT_FOUND;
+			}
+			int valueStart = skipWhitespace(i + 1, limit);
+			int valueEnd = valueEnd(valueStart, limit);
+			if (valueEnd < 0) {
+				return NOT_FOUND;
+			}
+			if (matched) {
+				return ((long) valueStart << 32) | valueEnd;
+			}
+
+			i = skipWhitespace(valueEnd, limit);
+			if (i >= limit || array[i] != ',') {
+				return NOT_FOUND;
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * 值的结束位置（不含），字符串、对象、数组整体跳过
+	 */
+	private int valueEnd(int start, int limit) {
+		if (start >= limit) {
+			return -1;
+		}
+		byte first = array[start];
+		if (first == '"') {
+			int end = stringEnd(start, limit);
+			return end < 0 ? -1 : end + 1;
+		}
+		if (first == '{' || first == '[') {
+			int depth = 0;
+			for (int i = start; i < limit; i++) {
+				byte b = array[i];
+				if (b == '"') {
+					i = stringEnd(i, limit);
+					if (i < 0) {
+						return -1;
+					}
+				} else if (b == '{' || b == '[') {
+					depth++;
+				} else if (b == '}' || b == ']') {
+					if (--depth == 0) {
+						return i + 1;
+					}
+				}
+			}
+			return -1;
+		}
+		int i = start;
+		while (i < limit) {
+			byte b = array[i];
+			if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+				break;
+			}
+			i++;
+		}
+		return i == start ? -1 : i;
+	}
+
+	/**
+	 * quote 位置是起始引号，返回结束引号的位置
+	 */
+	private int stringEnd(int quote, int limit) {
+		for (int i = quote + 1; i < limit; i++) {
+			byte b = array[i];
+			if (b == '\\') {
+				i++;
+			} else if (b == '"') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int skipWhitespace(int i, int limit) {
+		while (i < limit && isWhitespace(array[i])) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+
+	private boolean regionEquals(int from, byte[] other) {
+		for (int i = 0; i < other.length; i++) {
+			if (array[from + i] != other[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int start(long range) {
+		return (int) (range >>> 32);
+	}
+
+	private static int end(long range) {
+		return (int) range;
+	}
+}
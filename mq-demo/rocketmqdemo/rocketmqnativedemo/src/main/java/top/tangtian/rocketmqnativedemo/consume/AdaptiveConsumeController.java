@@ -0,0 +1,250 @@
+package top.tangtian.rocketmqnativedemo.consume;
+
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.impl.consumer.ProcessQueue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 21:10
+ *
+ * 按本地积压和处理耗时动态调整推模式消费者的消费线程数和每批消息数
+ *
+ * 为什么需要：
+ * ├─ 消费线程池的任务队列是无界的 LinkedBlockingQueue，线程数永远停在 consumeThreadMin，consumeThreadMax 不起作用
+ * └─ consumeMessageBatchMaxSize 固定为 1 时，处理快的消息每条都要付一次调度和回调的开销
+ *
+ * 每个周期（intervalMillis）根据上一个周期的数据调整一次：
+ * ├─ 线程数（Little 定律）: 需要的并发 = 需处理的速率 × 单条耗时
+ * │   ├─ 需处理的速率 = 实际处理速率 + 本地积压的增量 / 周期 + 本地积压 / drainSeconds
+ * │   ├─ 扩容每周期最多翻倍，缩容每周期最多减 1，避免来回震荡
+ * │   └─ 单批耗时超过目标的 2 倍时线程数减半（下游已饱和，加线程只会更慢）
+ * └─ 每批消息数（AIMD）:
+ *     ├─ 单批耗时超过 targetLatencyMillis 时减半
+ *     └─ 积压超过一轮（线程数 × 批量）且按单条耗时估算 batch+1 仍在目标内时加 1
+ *
+ * 本地积压取所有 ProcessQueue 中已拉取未消费的消息数，受 pullThresholdForQueue 限制，
+ * 积压达到上限时拉取会暂停，实际到达速率会被低估，所以速率里加了积压本身的排空项
+ *
+ * 使用（在 consumer.start() 之前）：
+ * AdaptiveConsumeController controller = new AdaptiveConsumeController(consumer, 1, 64);
+ * consumer.registerMessageListener(controller.wrap(listener));
+ * consumer.start();
+ * controller.start();
+ * ...
+ * controller.shutdown();
+ * consumer.shutdown();
+ *
+ * 注意：
+ * ├─ 线程数通过 updateCorePoolSize 调整，它要求小于 consumeThreadMax，所以 consumeThreadMax 设为 maxThreads + 1
+ * ├─ 批量大于 1 时，监听器返回 RECONSUME_LATER 会让整批重投，处理逻辑需要幂等
+ * └─ pullBatchSize 应不小于 maxBatchSize，否则一次拉取凑不满一批
+ */
+public class AdaptiveConsumeController {
+
+	private final DefaultMQPushConsumer consumer;
+	private final int minThreads;
+	private final int maxThreads;
+
+	private long targetLatencyMillis = 200;
+	private int maxBatchSize = 32;
+	private long intervalMillis = 1000;
+	private long drainSeconds = 5;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder busyNanos = new LongAdder();
+
+	private volatile int threads;
+	private volatile int batchSize;
+	private volatile double perMessageMillis;
+	private volatile double batchMillis;
+	private volatile double throughput;
+	private volatile long backlog;
+	private final AtomicLong adjustments = new AtomicLong();
+
+	private ScheduledExecutorService scheduler;
+	private long lastBacklog;
+
+	/**
+	 * @param consumer   未启动的消费者
+	 * @param minThreads 最少消费线程数
+	 * @param maxThreads 最多消费线程数
+	 */
+	public AdaptiveConsumeController(DefaultMQPushConsumer consumer, int minThreads, int maxThreads) {
+		if (minThreads < 1 || maxThreads < minThreads) {
+			throw new IllegalArgumentException("线程数范围不合法: [" + minThreads + ", " + maxThreads + "]");
+		}
+		this.consumer = consumer;
+		this.minThreads = minThreads;
+		this.maxThreads = maxThreads;
+		this.threads = minThreads;
+		this.batchSize = 1;
+		consumer.setConsumeThreadMin(minThreads);
+		consumer.setConsumeThreadMax(maxThreads + 1);
+		consumer.setConsumeMessageBatchMaxSize(1);
+	}
+
+	/**
+	 * 包装业务监听器，统计每次回调的消息数和耗时
+	 */
+	public MessageListenerConcurrently wrap(MessageListenerConcurrently listener) {
+		return (msgs, context) -> {
+			long start = System.nanoTime();
+			try {
+				return listener.consumeMessage(msgs, context);
+			} finally {
+				busyNanos.add(System.nanoTime() - start);
+				calls.increment();
+				messages.add(msgs.size());
+			}
+		};
+	}
+
+	/**
+	 * 在 consumer.start() 之后调用
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "adaptive-consume-controller");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				adjust();
+			} catch (Exception e) {
+				// 异常不能抛出，否则定时任务会被取消
+				System.err.println("消费线程调整失败: " + e.getMessage());
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	void adjust() {
+		double seconds = intervalMillis / 1000.0;
+		long windowCalls = calls.sumThenReset();
+		long windowMessages = messages.sumThenReset();
+		long windowBusyNanos = busyNanos.sumThenReset();
+
+		long currentBacklog = 0;
+		for (ProcessQueue pq : consumer.getDefaultMQPushConsumerImpl().getRebalanceImpl().getProcessQueueTable().values()) {
+			currentBacklog += pq.getMsgCount().get();
+		}
+		long backlogGrowth = currentBacklog - lastBacklog;
+		lastBacklog = currentBacklog;
+		backlog = currentBacklog;
+
+		int newThreads = threads;
+		int newBatch = batchSize;
+		if (windowMessages == 0) {
+			throughput = 0;
+			// 没有消息也没有积压时逐步收缩到最小值
+			if (currentBacklog == 0) {
+				newThreads = Math.max(minThreads, threads - 1);
+				newBatch = 1;
+			}
+		} else {
+			double perMessage = windowBusyNanos / 1e6 / windowMessages;
+			double perBatch = windowBusyNanos / 1e6 / windowCalls;
+			perMessageMillis = perMessage;
+			batchMillis = perBatch;
+			throughput = windowMessages / seconds;
+
+			// 线程数
+			if (perBatch > targetLatencyMillis * 2) {
+				newThreads = Math.max(minThreads, threads / 2);
+			} else {
+				double demand = throughput + Math.max(0, backlogGrowth) / seconds + (double) currentBacklog / drainSeconds;
+				int needed = (int) Math.ceil(demand * perMessage / 1000);
+				if (needed > threads) {
+					newThreads = Math.min(Math.min(maxThreads, needed), threads * 2);
+				} else if (needed < threads) {
+					newThreads = Math.max(minThreads, threads - 1);
+				}
+			}
+
+			// 每批消息数
+			if (perBatch > targetLatencyMillis) {
+				newBatch = Math.max(1, batchSize / 2);
+			} else if (currentBacklog > (long) threads * batchSize && batchSize < maxBatchSize
+					&& perMessage * (batchSize + 1) <= targetLatencyMillis) {
+				newBatch = batchSize + 1;
+			}
+		}
+
+		if (newThreads != threads) {
+			consumer.getDefaultMQPushConsumerImpl().updateCorePoolSize(newThreads);
+			threads = newThreads;
+			adjustments.incrementAndGet();
+		}
+		if (newBatch != batchSize) {
+			// 下一次提交消费任务时生效
+			consumer.setConsumeMessageBatchMaxSize(newBatch);
+			batchSize = newBatch;
+			adjustments.incrementAndGet();
+		}
+	}
+
+	public void setTargetLatencyMillis(long targetLatencyMillis) {
+		this.targetLatencyMillis = targetLatencyMillis;
+	}
+
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+	}
+
+	public void setIntervalMillis(long intervalMillis) {
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * 希望在多少秒内清空本地积压，越小扩容越激进
+	 */
+	public void setDrainSeconds(long drainSeconds) {
+		this.drainSeconds = Math.max(1, drainSeconds);
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public double getPerMessageMillis() {
+		return perMessageMillis;
+	}
+
+	public double getBatchMillis() {
+		return batchMillis;
+	}
+
+	public double getThroughput() {
+		return throughput;
+	}
+
+	public long getBacklog() {
+		return backlog;
+	}
+
+	public long getAdjustments() {
+		return adjustments.get();
+	}
+}
@@ -0,0 +1,105 @@
+package top.tangtian.rocketmqnativedemo.consume;
+
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.message.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 21:40
+ *
+ * 演示 AdaptiveConsumeController 随负载变化调整消费线程数和每批消息数
+ *
+ * 运行: java AdaptiveConsumerDemo <NameServer 地址> [topic=adaptive_consume_topic]
+ *
+ * 模拟一个 I/O 型处理器: 每次回调固定 5ms（一次远程调用）+ 每条消息 1ms，批量越大单条成本越低
+ * 发送速率分三个阶段，每阶段 30 秒：
+ * ├─ 200 条/秒:  1 个线程基本够用
+ * ├─ 3000 条/秒: 积压增长，线程数和批量逐步上升
+ * └─ 100 条/秒:  积压清空后线程数逐步回落，批量回到 1
+ */
+public class AdaptiveConsumerDemo {
+
+	public static void main(String[] args) throws Exception {
+		String namesrvAddr = args[0];
+		String topic = args.length > 1 ? args[1] : "adaptive_consume_topic";
+
+		DefaultMQPushConsumer consumer = new DefaultMQPushConsumer("adaptive_consume_group");
+		consumer.setNamesrvAddr(namesrvAddr);
+		consumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+		consumer.setPullBatchSize(32);
+		consumer.subscribe(topic, "*");
+
+		AdaptiveConsumeController controller = new AdaptiveConsumeController(consumer, 1, 64);
+		controller.setTargetLatencyMillis(50);
+		controller.setMaxBatchSize(32);
+		consumer.registerMessageListener(controller.wrap((MessageListenerConcurrently) (msgs, context) -> {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5 + msgs.size()));
+			return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+		}));
+		consumer.start();
+		controller.start();
+
+		DefaultMQProducer producer = new DefaultMQProducer("adaptive_consume_producer");
+		producer.setNamesrvAddr(namesrvAddr);
+		producer.start();
+
+		Thread reporter = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					Thread.sleep(2000);
+				} catch (InterruptedException e) {
+					return;
+				}
+				System.out.printf("线程数=%d, 每批=%d, 消费=%.0f 条/秒, 单批 %.1f ms, 单条 %.2f ms, 本地积压=%d%n",
+						controller.getThreads(), controller.getBatchSize(), controller.getThroughput(),
+						controller.getBatchMillis(), controller.getPerMessageMillis(), controller.getBacklog());
+			}
+		}, "adaptive-consume-reporter");
+		reporter.setDaemon(true);
+		reporter.start();
+
+		for (int rate : new int[]{200, 3000, 100}) {
+			System.out.println("==== 发送速率 " + rate + " 条/秒 ====");
+			send(producer, topic, rate, 30);
+		}
+		// 等积压消费完
+		Thread.sleep(10_000);
+
+		System.out.println("共调整 " + controller.getAdjustments() + " 次");
+		reporter.interrupt();
+		producer.shutdown();
+		controller.shutdown();
+		consumer.shutdown();
+	}
+
+	private static void send(DefaultMQProducer producer, String topic, int rate, int seconds) throws Exception {
+		long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+		long next = System.nanoTime();
+		long end = next + TimeUnit.SECONDS.toNanos(seconds);
+		while (next < end) {
+			LockSupport.parkNanos(next - System.nanoTime());
+			Message msg = new Message(topic, ("order-" + next).getBytes(StandardCharsets.UTF_8));
+			producer.send(msg, new SendCallback() {
+				@Override
+				public void onSuccess(SendResult sendResult) {
+				}
+
+				@Override
+				public void onException(Throwable e) {
+					System.err.println("发送失败: " + e.getMessage());
+				}
+			});
+			next += interval;
+		}
+	}
+}
@@ -0,0 +1,410 @@
+package top.tangtian.rocketmqnativedemo.offset;
+
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 20:10
+ *
+ * 广播模式的本地位点存储: 位点放在内存映射文件里，每个队列一个固定槽位，原地更新
+ *
+ * 默认的 LocalFileOffsetStore 每次持久化都把所有队列的位点序列化成 JSON 重写整个文件，
+ * 队列有几千个时每 5 秒一次的持久化就是几百 KB 的序列化和写盘；这里更新位点只是一次 putLong
+ *
+ * 文件格式（槽位和页对齐，一个槽位不会跨页）：
+ * ├─ 文件头 256 字节: magic(int) version(int) slotSize(int)
+ * └─ 槽位 256 字节: offset(long) state(int) queueId(int) topic长度(short) brokerName长度(short) topic brokerName
+ *
+ * 持久化：
+ * ├─ updateOffset 直接写映射内存，进程崩溃时操作系统的页缓存仍会写回文件，位点不丢
+ * ├─ 机器掉电才依赖 fsync: 每 flushIntervalMillis 或累计 flushBatchSize 次更新后由刷盘线程 force 一次
+ * └─ 客户端定时调用的 persistAll 也会触发一次刷盘（有未刷的更新时）
+ *
+ * 恢复：
+ * ├─ load 时顺序扫描 state=1 的槽位，几千个队列在毫秒内完成，不需要解析 JSON
+ * └─ 新槽位先写 topic、队列和位点，最后写 state，崩溃在中间时该槽位被忽略，按 ConsumeFromWhere 处理
+ *
+ * 使用（需在 start 之前设置）：
+ * consumer.setMessageModel(MessageModel.BROADCASTING);
+ * MappedOffsetStore store = new MappedOffsetStore(MappedOffsetStore.defaultPath(consumer));
+ * consumer.setOffsetStore(store);
+ * consumer.start();
+ * ...
+ * consumer.shutdown();
+ * store.close();
+ *
+ * 同一个文件只能被一个进程打开（文件锁），同一台机器的多个实例需要不同的 instanceName
+ */
+public class MappedOffsetStore implements OffsetStore {
+
+	private static final int MAGIC = 0x4D4F4653;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 256;
+	private static final int SLOT_SIZE = 256;
+
+	private static final int OFFSET_POS = 0;
+	private static final int STATE_POS = 8;
+	private static final int QUEUE_ID_POS = 12;
+	private static final int TOPIC_LENGTH_POS = 16;
+	private static final int BROKER_LENGTH_POS = 18;
+	private static final int NAME_POS = 20;
+	private static final int MAX_NAME_BYTES = SLOT_SIZE - NAME_POS;
+
+	private final Path file;
+
+	private int initialSlots = 1024;
+	private long flushIntervalMillis = 1000;
+	private int flushBatchSize = 10_000;
+
+	private final Map<MessageQueue, Slot> slots = new ConcurrentHashMap<>();
+	private final AtomicLong dirty = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+
+	private FileChannel channel;
+	private FileLock lock;
+	private volatile MappedByteBuffer buffer;
+	private int capacity;
+	private int used;
+
+	private Thread flusher;
+	private volatile boolean running;
+
+	public MappedOffsetStore(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * 与 LocalFileOffsetStore 相同的目录规则: ${rocketmq.client.localOffsetStoreDir}/客户端ID/消费者组/
+	 * 需要在 consumer.start() 之前调用
+	 */
+	public static Path defaultPath(DefaultMQPushConsumer consumer) {
+		String dir = System.getProperty("rocketmq.client.localOffsetStoreDir",
+				System.getProperty("user.home") + File.separator + ".rocketmq_offsets");
+		return Paths.get(dir, consumer.buildMQClientId(), consumer.getConsumerGroup(), "offsets.mmap");
+	}
+
+	@Override
+	public synchronized void load() throws MQClientException {
+		if (channel != null) {
+			return;
+		}
+		try {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			lock = channel.tryLock();
+			if (lock == null) {
+				channel.close();
+				channel = null;
+				throw new MQClientException("位点文件已被其他进程打开: " + file, null);
+			}
+
+			long size = channel.size();
+			if (size < HEADER_SIZE) {
+				capacity = initialSlots;
+				buffer = map(capacity);
+				buffer.putInt(4, VERSION);
+				buffer.putInt(8, SLOT_SIZE);
+				buffer.putInt(0, MAGIC);
+				buffer.force();
+			} else {
+				capacity = (int) ((size - HEADER_SIZE) / SLOT_SIZE);
+				buffer = map(capacity);
+				if (buffer.getInt(0) != MAGIC || buffer.getInt(8) != SLOT_SIZE) {
+					throw new MQClientException("不是位点文件或版本不兼容: " + file, null);
+				}
+				recover();
+			}
+		} catch (IOException e) {
+			throw new MQClientException("打开位点文件失败: " + file, e);
+		}
+
+		running = true;
+		flusher = new Thread(this::flushLoop, "mapped-offset-flush");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	@Override
+	public void updateOffset(MessageQueue mq, long offset, boolean increaseOnly) {
+		if (mq == null) {
+			return;
+		}
+		Slot slot = slots.get(mq);
+		if (slot == null) {
+			slot = allocate(mq, offset);
+			if (slot.offset == offset) {
+				return;
+			}
+		}
+		// 同一队列的多个消费线程会并发提交，加锁保证写入文件的值和内存一致
+		synchronized (slot) {
+			if (slot.frozen || (increaseOnly && offset <= slot.offset)) {
+				return;
+			}
+			slot.offset = offset;
+			buffer.putLong(slot.position + OFFSET_POS, offset);
+		}
+		markDirty();
+	}
+
+	/**
+	 * 重置位点后冻结，直到 removeOffset（队列被重新分配）之前，消费线程提交的旧位点不再覆盖它
+	 */
+	@Override
+	public void updateAndFreezeOffset(MessageQueue mq, long offset) {
+		if (mq == null) {
+			return;
+		}
+		Slot slot = slots.get(mq);
+		if (slot == null) {
+			slot = allocate(mq, offset);
+		}
+		synchronized (slot) {
+			slot.frozen = true;
+			slot.offset = offset;
+			buffer.putLong(slot.position + OFFSET_POS, offset);
+		}
+		markDirty();
+	}
+
+	@Override
+	public long readOffset(MessageQueue mq, ReadOffsetType type) {
+		if (mq == null) {
+			return -1;
+		}
+		// 内存和文件是同一份数据，不区分 READ_FROM_MEMORY 和 READ_FROM_STORE
+		Slot slot = slots.get(mq);
+		return slot == null ? -1 : slot.offset;
+	}
+
+	@Override
+	public void persistAll(Set<MessageQueue> mqs) {
+		flush();
+	}
+
+	@Override
+	public void persist(MessageQueue mq) {
+		flush();
+	}
+
+	/**
+	 * 广播模式下每个实例都消费全部队列，队列被移除只发生在 topic 缩容或取消订阅时，
+	 * 与 LocalFileOffsetStore 一样保留位点，只解除冻结
+	 */
+	@Override
+	public void removeOffset(MessageQueue mq) {
+		Slot slot = mq == null ? null : slots.get(mq);
+		if (slot != null) {
+			synchronized (slot) {
+				slot.frozen = false;
+			}
+		}
+	}
+
+	@Override
+	public Map<MessageQueue, Long> cloneOffsetTable(String topic) {
+		Map<MessageQueue, Long> result = new HashMap<>();
+		slots.forEach((mq, slot) -> {
+			if (topic == null || topic.isEmpty() || topic.equals(mq.getTopic())) {
+				result.put(mq, slot.offset);
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public void updateConsumeOffsetToBroker(MessageQueue mq, long offset, boolean isOneway) {
+		// 本地存储，不上报 broker
+	}
+
+	/**
+	 * 有未刷盘的更新时 force 一次
+	 */
+	public void flush() {
+		MappedByteBuffer current = buffer;
+		if (current == null || dirty.get() == 0) {
+			return;
+		}
+		dirty.set(0);
+		current.force();
+		flushCount.incrementAndGet();
+	}
+
+	/**
+	 * 在 consumer.shutdown() 之后调用：刷盘并释放文件锁
+	 */
+	public synchronized void close() {
+		if (channel == null) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(flusher);
+		try {
+			flusher.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		dirty.incrementAndGet();
+		flush();
+		try {
+			lock.release();
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("关闭位点文件失败: " + file + ", " + e.getMessage());
+		}
+		channel = null;
+		buffer = null;
+	}
+
+	public void setInitialSlots(int initialSlots) {
+		this.initialSlots = Math.max(1, initialSlots);
+	}
+
+	public void setFlushIntervalMillis(long flushIntervalMillis) {
+		this.flushIntervalMillis = flushIntervalMillis;
+	}
+
+	public void setFlushBatchSize(int flushBatchSize) {
+		this.flushBatchSize = flushBatchSize;
+	}
+
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+
+	public int getSlotCount() {
+		return slots.size();
+	}
+
+	private void markDirty() {
+		if (dirty.incrementAndGet() >= flushBatchSize) {
+			LockSupport.unpark(flusher);
+		}
+	}
+
+	private void flushLoop() {
+		while (running) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+			try {
+				flush();
+			} catch (Exception e) {
+				// 刷盘失败不影响消费，数据仍在页缓存中，下次再刷
+				System.err.println("位点刷盘失败: " + file + ", " + e.getMessage());
+			}
+		}
+	}
+
+	private void recover() {
+		ByteBuffer current = buffer;
+		for (int i = 0; i < capacity; i++) {
+			int position = HEADER_SIZE + i * SLOT_SIZE;
+			if (current.getInt(position + STATE_POS) != 1) {
+				// 槽位按顺序分配，第一个未使用的槽位之后都是空的
+				break;
+			}
+			String topic = readName(current, position + NAME_POS, current.getShort(position + TOPIC_LENGTH_POS));
+			String brokerName = readName(current, position + NAME_POS + current.getShort(position + TOPIC_LENGTH_POS),
+					current.getShort(position + BROKER_LENGTH_POS));
+			MessageQueue mq = new MessageQueue(topic, brokerName, current.getInt(position + QUEUE_ID_POS));
+			Slot slot = new Slot(position);
+			slot.offset = current.getLong(position + OFFSET_POS);
+			slots.put(mq, slot);
+			used = i + 1;
+		}
+	}
+
+	private synchronized Slot allocate(MessageQueue mq, long offset) {
+		Slot slot = slots.get(mq);
+		if (slot != null) {
+			return slot;
+		}
+		if (buffer == null) {
+			throw new IllegalStateException("位点存储未加载或已关闭: " + file);
+		}
+		byte[] topic = mq.getTopic().getBytes(StandardCharsets.UTF_8);
+		byte[] brokerName = mq.getBrokerName().getBytes(StandardCharsets.UTF_8);
+		if (topic.length + brokerName.length > MAX_NAME_BYTES) {
+			throw new IllegalArgumentException("topic 和 brokerName 总长超过 " + MAX_NAME_BYTES + " 字节: " + mq);
+		}
+		if (used == capacity) {
+			grow();
+		}
+
+		MappedByteBuffer current = buffer;
+		int position = HEADER_SIZE + used * SLOT_SIZE;
+		current.putLong(position + OFFSET_POS, offset);
+		current.putInt(position + QUEUE_ID_POS, mq.getQueueId());
+		current.putShort(position + TOPIC_LENGTH_POS, (short) topic.length);
+		current.putShort(position + BROKER_LENGTH_POS, (short) brokerName.length);
+		current.put(position + NAME_POS, topic);
+		current.put(position + NAME_POS + topic.length, brokerName);
+		// state 最后写，前面的内容写完之前崩溃，恢复时忽略这个槽位
+		current.putInt(position + STATE_POS, 1);
+		used++;
+
+		slot = new Slot(position);
+		slot.offset = offset;
+		slots.put(mq, slot);
+		markDirty();
+		return slot;
+	}
+
+	/**
+	 * 扩容时重新映射更大的区域；新旧映射指向同一个文件的同一批页，
+	 * 其他线程仍在用旧映射写位点也不会丢
+	 */
+	private void grow() {
+		try {
+			int newCapacity = capacity * 2;
+			MappedByteBuffer bigger = map(newCapacity);
+			buffer.force();
+			buffer = bigger;
+			capacity = newCapacity;
+		} catch (IOException e) {
+			throw new IllegalStateException("位点文件扩容失败: " + file, e);
+		}
+	}
+
+	private MappedByteBuffer map(int slotCount) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+	}
+
+	private static String readName(ByteBuffer buffer, int position, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(position, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static final class Slot {
+		final int position;
+		volatile long offset;
+		boolean frozen;
+
+		Slot(int position) {
+			this.position = position;
+		}
+	}
+}
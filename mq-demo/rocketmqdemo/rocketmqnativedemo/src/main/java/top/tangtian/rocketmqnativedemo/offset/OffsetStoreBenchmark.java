@@ -0,0 +1,128 @@
+package top.tangtian.rocketmqnativedemo.offset;
+
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 20:40
+ *
+ * 不需要 broker：对比广播模式下两种本地位点存储的持久化开销和恢复时间
+ *
+ * 运行: java OffsetStoreBenchmark [队列数=5000] [每线程更新次数=1000000] [线程数=8]
+ *
+ * ├─ JSON_REWRITE: 模拟 LocalFileOffsetStore 一次 persistAll，序列化全部位点，写临时文件后改名
+ * ├─ MAPPED:       多线程随机更新队列位点（increaseOnly），统计每次更新耗时和刷盘次数
+ * └─ RECOVERY:     关闭后重新 load，统计恢复耗时，并校验恢复出的位点与最后写入的一致
+ */
+public class OffsetStoreBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int queueCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int updatesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+		Path dir = Files.createTempDirectory("offset-store-benchmark");
+		List<MessageQueue> queues = new ArrayList<>();
+		for (int i = 0; i < queueCount; i++) {
+			queues.add(new MessageQueue("cache_invalidation_topic", "broker-" + (i % 4), i / 4));
+		}
+		System.out.println("队列数: " + queueCount + ", 线程数: " + threadCount + ", 每线程更新: " + updatesPerThread);
+
+		// JSON_REWRITE
+		Path jsonFile = dir.resolve("offsets.json");
+		long jsonBytes = 0;
+		long jsonNanos = Long.MAX_VALUE;
+		for (int round = 0; round < 20; round++) {
+			long start = System.nanoTime();
+			jsonBytes = persistAsJson(queues, round, jsonFile);
+			jsonNanos = Math.min(jsonNanos, System.nanoTime() - start);
+		}
+		System.out.printf("%-14s 每次持久化 %.2f ms, 写入 %d KB%n", "JSON_REWRITE", jsonNanos / 1e6, jsonBytes / 1024);
+
+		// MAPPED
+		Path mappedFile = dir.resolve("offsets.mmap");
+		MappedOffsetStore store = new MappedOffsetStore(mappedFile);
+		store.setFlushIntervalMillis(1000);
+		store.setFlushBatchSize(100_000);
+		store.load();
+		AtomicLongArray expected = new AtomicLongArray(queueCount);
+		List<Thread> threads = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int t = 0; t < threadCount; t++) {
+			Thread thread = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < updatesPerThread; i++) {
+					int q = random.nextInt(queueCount);
+					long offset = expected.incrementAndGet(q);
+					store.updateOffset(queues.get(q), offset, true);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long nanos = System.nanoTime() - start;
+		long total = (long) updatesPerThread * threadCount;
+		System.out.printf("%-14s 每次更新 %.1f ns, %.0f 万次/秒, 刷盘 %d 次, 文件 %d KB%n", "MAPPED",
+				(double) nanos * threadCount / total, total / (nanos / 1e9) / 10_000, store.getFlushCount(),
+				Files.size(mappedFile) / 1024);
+		store.close();
+
+		// RECOVERY
+		MappedOffsetStore recovered = new MappedOffsetStore(mappedFile);
+		start = System.nanoTime();
+		recovered.load();
+		nanos = System.nanoTime() - start;
+		int mismatched = 0;
+		for (int i = 0; i < queueCount; i++) {
+			if (recovered.readOffset(queues.get(i), ReadOffsetType.READ_FROM_STORE) != expected.get(i)) {
+				mismatched++;
+			}
+		}
+		System.out.printf("%-14s %d 个队列, 耗时 %.2f ms, 位点不一致 %d 个%n", "RECOVERY",
+				recovered.getSlotCount(), nanos / 1e6, mismatched);
+		recovered.close();
+
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * 与 LocalFileOffsetStore 相同的写法: 全量 JSON，先写 .tmp 再替换正式文件
+	 */
+	private static long persistAsJson(List<MessageQueue> queues, long base, Path file) throws Exception {
+		StringBuilder json = new StringBuilder("{\"offsetTable\":{");
+		for (int i = 0; i < queues.size(); i++) {
+			MessageQueue mq = queues.get(i);
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"brokerName\":\"").append(mq.getBrokerName())
+					.append("\",\"queueId\":").append(mq.getQueueId())
+					.append(",\"topic\":\"").append(mq.getTopic())
+					.append("\"}:").append(base * 1000 + i);
+		}
+		json.append("}}");
+		byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(tmp, bytes);
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		return bytes.length;
+	}
+}
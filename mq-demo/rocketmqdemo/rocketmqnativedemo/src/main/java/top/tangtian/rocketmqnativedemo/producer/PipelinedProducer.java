@@ -0,0 +1,254 @@
+package top.tangtian.rocketmqnativedemo.producer;
+
+import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.remoting.exception.RemotingConnectException;
+import org.apache.rocketmq.remoting.exception.RemotingTimeoutException;
+import org.apache.rocketmq.remoting.exception.RemotingTooMuchRequestException;
+import org.apache.rocketmq.remoting.protocol.ResponseCode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 16:40
+ *
+ * 流水线式异步发送
+ *
+ * NativeProducer 里的异步发送发完就 sleep 等回调，发送量一大会有两个问题：
+ * ├─ 发送速度超过 broker 处理速度时，待回调的消息在内存里越堆越多
+ * └─ 不知道什么时候全部发完，只能估一个等待时间
+ *
+ * 这里的做法：
+ * ├─ 1. 在途窗口: 发送前获取信号量许可，拿不到就阻塞调用方（背压），内存占用上限约为 窗口 × 消息大小
+ * ├─ 2. 每次发送返回 CompletableFuture，最终成功或放弃时完成，许可在完成时才归还（重试期间一直占用）
+ * ├─ 3. 连接失败、超时、broker 繁忙等可重试错误按指数退避（带抖动）重新发送，其他错误直接失败
+ * └─ 4. flush() 只等待调用时还在途的发送，不影响其他线程继续发送
+ *
+ * 注意：
+ * ├─ future 在客户端回调线程中完成，thenXxx 里不要做阻塞操作
+ * ├─ 客户端自身的异步重试（retryTimesWhenSendAsyncFailed）仍然生效，这里的重试是在它之后、隔一段时间再来
+ * └─ 返回 FLUSH_DISK_TIMEOUT 等非 SEND_OK 状态时消息已经存储，不再重试，避免重复
+ */
+public class PipelinedProducer {
+
+	private final DefaultMQProducer producer;
+	private final int maxInFlight;
+	private final Semaphore window;
+
+	private int maxRetries = 3;
+	private long initialBackoffMillis = 100;
+	private long maxBackoffMillis = 5000;
+	private long sendTimeoutMillis = 3000;
+
+	/**
+	 * 在途的发送，flush 时取快照等待
+	 */
+	private final Map<Long, CompletableFuture<SendResult>> pending = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong succeeded = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+
+	private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "pipelined-producer-retry");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @param producer    已启动的生产者，生命周期由调用方管理
+	 * @param maxInFlight 最大在途消息数
+	 */
+	public PipelinedProducer(DefaultMQProducer producer, int maxInFlight) {
+		this.producer = producer;
+		this.maxInFlight = maxInFlight;
+		this.window = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * 异步发送，在途数达到上限时阻塞，直到有发送完成
+	 */
+	public CompletableFuture<SendResult> send(Message msg) throws InterruptedException {
+		window.acquire();
+		return start(msg);
+	}
+
+	/**
+	 * 异步发送，在途数达到上限时最多等待 timeout，超时抛出 TimeoutException
+	 */
+	public CompletableFuture<SendResult> send(Message msg, long timeout, TimeUnit unit)
+			throws InterruptedException, TimeoutException {
+		if (!window.tryAcquire(timeout, unit)) {
+			throw new TimeoutException("在途发送已满: " + maxInFlight);
+		}
+		return start(msg);
+	}
+
+	private CompletableFuture<SendResult> start(Message msg) {
+		long id = sequence.getAndIncrement();
+		CompletableFuture<SendResult> future = new CompletableFuture<>();
+		pending.put(id, future);
+		future.whenComplete((result, error) -> {
+			pending.remove(id);
+			window.release();
+		});
+		attempt(msg, future, 0);
+		return future;
+	}
+
+	private void attempt(Message msg, CompletableFuture<SendResult> future, int attempt) {
+		try {
+			producer.send(msg, new SendCallback() {
+				@Override
+				public void onSuccess(SendResult sendResult) {
+					succeeded.incrementAndGet();
+					future.complete(sendResult);
+				}
+
+				@Override
+				public void onException(Throwable e) {
+					retryOrFail(msg, future, attempt, e);
+				}
+			}, sendTimeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failed.incrementAndGet();
+			future.completeExceptionally(e);
+		} catch (Exception e) {
+			// 路由找不到、客户端异步队列满等情况会直接抛出，不走回调
+			retryOrFail(msg, future, attempt, e);
+		}
+	}
+
+	private void retryOrFail(Message msg, CompletableFuture<SendResult> future, int attempt, Throwable e) {
+		if (attempt >= maxRetries || !isRetriable(e) || retryScheduler.isShutdown()) {
+			failed.incrementAndGet();
+			future.completeExceptionally(e);
+			return;
+		}
+		retried.incrementAndGet();
+		long backoff = Math.min(initialBackoffMillis << attempt, maxBackoffMillis);
+		// 抖动，避免大量失败的消息在同一时刻一起重发
+		long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+		try {
+			retryScheduler.schedule(() -> attempt(msg, future, attempt + 1), delay, TimeUnit.MILLISECONDS);
+		} catch (Exception rejected) {
+			failed.incrementAndGet();
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * 连接失败、网络超时、客户端请求过多、broker 繁忙或暂时不可用时重试
+	 */
+	protected boolean isRetriable(Throwable e) {
+		if (e instanceof RemotingConnectException
+				|| e instanceof RemotingTimeoutException
+				|| e instanceof RemotingTooMuchRequestException) {
+			return true;
+		}
+		if (e instanceof MQBrokerException brokerException) {
+			int code = brokerException.getResponseCode();
+			return code == ResponseCode.SYSTEM_BUSY
+					|| code == ResponseCode.SYSTEM_ERROR
+					|| code == ResponseCode.SERVICE_NOT_AVAILABLE;
+		}
+		return e.getCause() != null && e.getCause() != e && isRetriable(e.getCause());
+	}
+
+	/**
+	 * 等待调用时在途的发送全部完成（成功或最终失败），之后发起的发送不等待
+	 */
+	public void flush() throws InterruptedException {
+		for (CompletableFuture<SendResult> future : snapshot()) {
+			try {
+				future.join();
+			} catch (Exception ignored) {
+				// 失败已经通过 future 返回给调用方
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * 同 flush()，最多等待 timeout，返回是否全部完成
+	 */
+	public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (CompletableFuture<SendResult> future : snapshot()) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			try {
+				future.get(remaining, TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				return false;
+			} catch (Exception ignored) {
+				// 失败已经通过 future 返回给调用方
+			}
+		}
+		return true;
+	}
+
+	private List<CompletableFuture<SendResult>> snapshot() {
+		return new ArrayList<>(pending.values());
+	}
+
+	/**
+	 * 等待在途发送完成后停止重试调度，不关闭 producer
+	 */
+	public void close() throws InterruptedException {
+		flush();
+		retryScheduler.shutdown();
+	}
+
+	public int getInFlight() {
+		return maxInFlight - window.availablePermits();
+	}
+
+	public long getSucceeded() {
+		return succeeded.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getRetried() {
+		return retried.get();
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public void setInitialBackoffMillis(long initialBackoffMillis) {
+		this.initialBackoffMillis = initialBackoffMillis;
+	}
+
+	public void setMaxBackoffMillis(long maxBackoffMillis) {
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	public void setSendTimeoutMillis(long sendTimeoutMillis) {
+		this.sendTimeoutMillis = sendTimeoutMillis;
+	}
+}
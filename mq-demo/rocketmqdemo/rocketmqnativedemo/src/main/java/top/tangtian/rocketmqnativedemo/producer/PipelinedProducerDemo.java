@@ -0,0 +1,61 @@
+package top.tangtian.rocketmqnativedemo.producer;
+
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.common.message.Message;
+
+import java.util.Arrays;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 17:05
+ *
+ * 演示：单个生产者实例用在途窗口压满 broker，同时内存占用有上限
+ *
+ * 运行: java PipelinedProducerDemo <namesrvAddr> [消息数=200000] [在途窗口=2048] [消息大小=1024]
+ *
+ * 与 NativeProducer 对比：
+ * ├─ NativeProducer: 同步发送一条等一次网络往返，异步发送完 sleep 1 秒"等回调"
+ * └─ 这里: 同时最多 2048 条在途，窗口满了发送线程阻塞，最后 flush 等待剩余的发送完成
+ */
+public class PipelinedProducerDemo {
+
+	public static void main(String[] args) throws Exception {
+		String namesrvAddr = args[0];
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+		int window = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+		int size = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+
+		DefaultMQProducer producer = new DefaultMQProducer("pipelined_producer_group");
+		producer.setNamesrvAddr(namesrvAddr);
+		producer.setSendMsgTimeout(3000);
+		producer.setRetryTimesWhenSendAsyncFailed(2);
+		producer.start();
+
+		PipelinedProducer pipeline = new PipelinedProducer(producer, window);
+		byte[] body = new byte[size];
+		Arrays.fill(body, (byte) 'x');
+
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			Message msg = new Message("order_topic", "PIPELINE", "PIPELINE_" + i, body);
+			pipeline.send(msg).whenComplete((result, error) -> {
+				if (error != null) {
+					System.err.println("发送最终失败: key=" + msg.getKeys() + ", error=" + error.getMessage());
+				}
+			});
+			if ((i + 1) % 50_000 == 0) {
+				System.out.println("已提交 " + (i + 1) + " 条, 在途 " + pipeline.getInFlight() + " 条");
+			}
+		}
+		pipeline.flush();
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println("发送完成: 成功 " + pipeline.getSucceeded() + " 条, 失败 " + pipeline.getFailed()
+				+ " 条, 重试 " + pipeline.getRetried() + " 次");
+		System.out.printf("耗时 %.2f 秒, 吞吐 %.0f 条/秒, %.1f MB/秒%n",
+				elapsed / 1e9, count / (elapsed / 1e9), (double) count * size / 1024 / 1024 / (elapsed / 1e9));
+
+		pipeline.close();
+		producer.shutdown();
+	}
+}
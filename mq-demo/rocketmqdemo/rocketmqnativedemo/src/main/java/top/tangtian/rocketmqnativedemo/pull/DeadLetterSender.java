@@ -0,0 +1,86 @@
+package top.tangtian.rocketmqnativedemo.pull;
+
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author tangtian
+ * @date 2026-10-21 11:00
+ *
+ * 拉取消费者的死信投递：重试耗尽的批次先转入死信 topic，成功后才允许提交位点
+ *
+ * DefaultLitePullConsumer 没有 sendMessageBack，这里用一个普通生产者写入 %DLQ%消费者组：
+ * ├─ 与推模式的死信队列同名，控制台和 mqadmin 的死信查询、重发可以直接使用
+ * ├─ 保留原消息的 tags、keys、用户属性，另记录原 topic、队列、位点、消息ID和失败原因
+ * └─ broker 关闭了自动创建 topic 时，需要先创建死信 topic（至少可写）
+ */
+public class DeadLetterSender {
+
+	public static final String PROPERTY_ORIGIN_TOPIC = "DLQ_ORIGIN_TOPIC";
+	public static final String PROPERTY_ORIGIN_QUEUE_ID = "DLQ_ORIGIN_QUEUE_ID";
+	public static final String PROPERTY_ORIGIN_OFFSET = "DLQ_ORIGIN_OFFSET";
+	public static final String PROPERTY_ORIGIN_MSG_ID = "DLQ_ORIGIN_MSG_ID";
+	public static final String PROPERTY_REASON = "DLQ_REASON";
+
+	private final DefaultMQProducer producer;
+	private final String topic;
+
+	public DeadLetterSender(String consumerGroup, String namesrvAddr, String instanceName) {
+		this.topic = MixAll.getDLQTopic(consumerGroup);
+		this.producer = new DefaultMQProducer(consumerGroup + "_dlq_producer");
+		this.producer.setNamesrvAddr(namesrvAddr);
+		this.producer.setInstanceName(instanceName);
+	}
+
+	public void start() throws MQClientException {
+		producer.start();
+	}
+
+	public void shutdown() {
+		producer.shutdown();
+	}
+
+	/**
+	 * 同步发送整批死信，抛出异常或 broker 未确认写入时调用方不能提交位点
+	 */
+	public void send(MessageQueue mq, List<MessageExt> msgs, Throwable cause) throws Exception {
+		String reason = String.valueOf(cause);
+		if (reason.length() > 256) {
+			reason = reason.substring(0, 256);
+		}
+		List<Message> letters = new ArrayList<>(msgs.size());
+		for (MessageExt msg : msgs) {
+			Message letter = new Message(topic, msg.getTags(), msg.getKeys(), msg.getBody());
+			for (Map.Entry<String, String> property : msg.getProperties().entrySet()) {
+				if (!MessageConst.STRING_HASH_SET.contains(property.getKey())) {
+					letter.putUserProperty(property.getKey(), property.getValue());
+				}
+			}
+			letter.putUserProperty(PROPERTY_ORIGIN_TOPIC, mq.getTopic());
+			letter.putUserProperty(PROPERTY_ORIGIN_QUEUE_ID, String.valueOf(mq.getQueueId()));
+			letter.putUserProperty(PROPERTY_ORIGIN_OFFSET, String.valueOf(msg.getQueueOffset()));
+			letter.putUserProperty(PROPERTY_ORIGIN_MSG_ID, msg.getMsgId());
+			letter.putUserProperty(PROPERTY_REASON, reason);
+			letters.add(letter);
+		}
+		SendResult result = producer.send(letters);
+		if (result.getSendStatus() != SendStatus.SEND_OK) {
+			throw new IllegalStateException("死信写入未确认: " + result.getSendStatus());
+		}
+	}
+
+	public String getTopic() {
+		return topic;
+	}
+}
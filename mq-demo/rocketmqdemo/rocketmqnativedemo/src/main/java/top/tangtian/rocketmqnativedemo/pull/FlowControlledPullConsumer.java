@@ -0,0 +1,374 @@
+package top.tangtian.rocketmqnativedemo.pull;
+
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.client.consumer.DefaultLitePullConsumer;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 10:20
+ *
+ * 核心概念：按处理能力拉取（背压）
+ *
+ * DefaultMQPushConsumer 的拉取和消费是脱节的：
+ * ├─ 拉取线程只看 ProcessQueue 里堆了多少消息（默认每个队列 1000 条 / 100MB）
+ * └─ 消费线程处理得慢时，内存里会堆满已拉取但没处理的消息
+ *
+ * 这里用 DefaultLitePullConsumer 自己控制节奏：
+ * ├─ 1. 在途（已拉取未完成）的消息数、字节数达到上限时不再 poll，等处理完释放额度
+ * ├─ 2. 某个队列在途消息过多（下游处理慢）时 pause 该队列，降到一半以下再 resume
+ * ├─ 3. 同一队列的批次串行处理，保证队列内顺序，不同队列在工作线程池中并行
+ * ├─ 4. 关闭自动提交，批次处理完成后才提交位点，位点只会推进到已完成的位置
+ * ├─ 5. 重试 maxRetries 次仍失败的批次先写入死信 topic（DeadLetterSender），写入成功才提交；
+ * │     死信写入失败时持续重试，期间该队列后续批次排队等待，位点不会越过这一批
+ * └─ 6. 队列被重平衡分走时丢弃它的状态和待提交位点，排队和重试中的批次放弃，不再提交
+ *
+ * 内存上限约为: 在途上限 + 客户端预取缓存（pullThreshold* 按在途上限设置）
+ * 与 consumer 的交互（poll/pause/resume/commit）都在 poll 线程中进行，工作线程只更新计数
+ */
+public class FlowControlledPullConsumer {
+
+	/**
+	 * 处理一批消息，同一队列的批次按顺序串行调用，抛出异常表示整批失败
+	 */
+	@FunctionalInterface
+	public interface BatchHandler {
+		void handle(MessageQueue mq, List<MessageExt> msgs) throws Exception;
+	}
+
+	private final DefaultLitePullConsumer consumer;
+	private final BatchHandler handler;
+	private final DeadLetterSender deadLetterSender;
+
+	private int maxInFlightMessages = 1000;
+	private long maxInFlightBytes = 64L * 1024 * 1024;
+	private int maxInFlightMessagesPerQueue = 200;
+	private int workerThreads = 8;
+	private int pullBatchSize = 32;
+	private int maxRetries = 3;
+	private long pollTimeoutMillis = 1000;
+
+	private final Object capacityLock = new Object();
+	private int inFlightMessages;
+	private long inFlightBytes;
+
+	private final Map<MessageQueue, QueueState> queues = new ConcurrentHashMap<>();
+	/**
+	 * 已完成、等待 poll 线程提交的位点
+	 */
+	private final Map<MessageQueue, Long> pendingCommits = new ConcurrentHashMap<>();
+
+	private ExecutorService workers;
+	private Thread pollThread;
+	private volatile boolean running;
+
+	public FlowControlledPullConsumer(String consumerGroup, String namesrvAddr, BatchHandler handler) {
+		this.consumer = new DefaultLitePullConsumer(consumerGroup);
+		this.consumer.setNamesrvAddr(namesrvAddr);
+		this.handler = handler;
+		this.deadLetterSender = new DeadLetterSender(consumerGroup, namesrvAddr, consumerGroup + "_dlq");
+	}
+
+	public void subscribe(String topic, String subExpression) throws MQClientException {
+		consumer.subscribe(topic, subExpression);
+	}
+
+	public void start() throws MQClientException {
+		// 手动提交位点
+		consumer.setAutoCommit(false);
+		consumer.setPullBatchSize(pullBatchSize);
+		consumer.setPollTimeoutMillis(pollTimeoutMillis);
+		// 客户端预取缓存也按在途上限收紧，否则慢消费时缓存本身会堆积
+		consumer.setPullThresholdForAll(maxInFlightMessages);
+		consumer.setPullThresholdForQueue(Math.max(pullBatchSize, maxInFlightMessagesPerQueue));
+		consumer.setPullThresholdSizeForQueue((int) Math.max(1, maxInFlightBytes / (1024 * 1024)));
+		consumer.setAllocateMessageQueueStrategy(trackRevoked(consumer.getAllocateMessageQueueStrategy()));
+		deadLetterSender.start();
+		consumer.start();
+
+		AtomicInteger index = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(workerThreads, r -> new Thread(r, "pull-worker-" + index.getAndIncrement()));
+		running = true;
+		pollThread = new Thread(this::pollLoop, "pull-poller");
+		pollThread.start();
+		System.out.println("流控拉取消费者启动: 在途上限 " + maxInFlightMessages + " 条 / "
+				+ maxInFlightBytes + " 字节, 单队列上限 " + maxInFlightMessagesPerQueue + " 条, 工作线程 " + workerThreads);
+	}
+
+	public void shutdown() throws InterruptedException {
+		running = false;
+		synchronized (capacityLock) {
+			capacityLock.notifyAll();
+		}
+		pollThread.join(pollTimeoutMillis * 2);
+		workers.shutdown();
+		workers.awaitTermination(30, TimeUnit.SECONDS);
+		// 关闭前把已完成的位点同步到 broker
+		commitCompleted(true);
+		consumer.shutdown();
+		deadLetterSender.shutdown();
+		System.out.println("流控拉取消费者已关闭");
+	}
+
+	private void pollLoop() {
+		while (running) {
+			try {
+				commitCompleted(false);
+				adjustPausedQueues();
+				if (!awaitCapacity()) {
+					continue;
+				}
+				List<MessageExt> msgs = consumer.poll(pollTimeoutMillis);
+				if (!msgs.isEmpty()) {
+					dispatch(msgs);
+				}
+			} catch (Exception e) {
+				if (running) {
+					System.err.println("拉取循环异常: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * 在途额度用完时最多等待一个 poll 周期，返回是否可以继续拉取
+	 */
+	private boolean awaitCapacity() throws InterruptedException {
+		synchronized (capacityLock) {
+			if (isFull()) {
+				capacityLock.wait(pollTimeoutMillis);
+			}
+			return running && !isFull();
+		}
+	}
+
+	private boolean isFull() {
+		return inFlightMessages >= maxInFlightMessages || inFlightBytes >= maxInFlightBytes;
+	}
+
+	private void dispatch(List<MessageExt> msgs) {
+		Map<MessageQueue, List<MessageExt>> byQueue = new LinkedHashMap<>();
+		for (MessageExt msg : msgs) {
+			MessageQueue mq = new MessageQueue(msg.getTopic(), msg.getBrokerName(), msg.getQueueId());
+			byQueue.computeIfAbsent(mq, key -> new ArrayList<>()).add(msg);
+		}
+
+		byQueue.forEach((mq, batch) -> {
+			long bytes = 0;
+			for (MessageExt msg : batch) {
+				bytes += msg.getBody() == null ? 0 : msg.getBody().length;
+			}
+			long batchBytes = bytes;
+			synchronized (capacityLock) {
+				inFlightMessages += batch.size();
+				inFlightBytes += batchBytes;
+			}
+			QueueState state = queues.computeIfAbsent(mq, key -> new QueueState());
+			state.inFlight.addAndGet(batch.size());
+			// 接在该队列上一个批次之后执行，保证队列内顺序
+			state.tail = state.tail.thenRunAsync(() -> process(mq, state, batch, batchBytes), workers);
+		});
+	}
+
+	private void process(MessageQueue mq, QueueState state, List<MessageExt> batch, long batchBytes) {
+		try {
+			if (state.blocked || state.revoked) {
+				// 前面有批次没有提交，后面的批次处理了也不能提交，留给重启或新主人从已提交位点重新消费
+				return;
+			}
+			boolean commit = false;
+			for (int attempt = 0; ; attempt++) {
+				try {
+					handler.handle(mq, batch);
+					commit = true;
+					break;
+				} catch (Exception e) {
+					if (!running || state.revoked) {
+						// 关闭中或队列已被分走，不提交，从上次提交的位点重新消费
+						break;
+					}
+					if (attempt >= maxRetries) {
+						commit = sendToDeadLetter(mq, state, batch, e);
+						break;
+					}
+					Thread.sleep(Math.min(100L << attempt, 5000L));
+				}
+			}
+			if (!commit) {
+				state.blocked = true;
+			} else if (!state.revoked) {
+				pendingCommits.merge(mq, batch.get(batch.size() - 1).getQueueOffset() + 1, Math::max);
+			}
+		} catch (InterruptedException e) {
+			state.blocked = true;
+			Thread.currentThread().interrupt();
+		} finally {
+			state.inFlight.addAndGet(-batch.size());
+			synchronized (capacityLock) {
+				inFlightMessages -= batch.size();
+				inFlightBytes -= batchBytes;
+				capacityLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 写入死信 topic 成功返回 true；失败时一直重试，直到成功、关闭或队列被分走（返回 false，不提交）
+	 */
+	private boolean sendToDeadLetter(MessageQueue mq, QueueState state, List<MessageExt> batch, Exception cause)
+			throws InterruptedException {
+		String range = "queue=" + mq.getQueueId() + ", offset=" + batch.get(0).getQueueOffset()
+				+ "~" + batch.get(batch.size() - 1).getQueueOffset();
+		for (int attempt = 0; running && !state.revoked; attempt++) {
+			try {
+				deadLetterSender.send(mq, batch, cause);
+				System.err.println("批次重试 " + maxRetries + " 次仍失败，已转入 " + deadLetterSender.getTopic()
+						+ ": " + range + ", error=" + cause.getMessage());
+				return true;
+			} catch (Exception e) {
+				System.err.println("死信写入失败，暂不提交位点: " + range + ", error=" + e.getMessage());
+				Thread.sleep(Math.min(100L << Math.min(attempt, 6), 5000L));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 包装分配策略：队列被分走时移除它的状态和待提交位点，并标记旧状态，
+	 * 排队中的批次直接跳过，重试中的批次放弃；以后再分配回来时使用新的状态
+	 */
+	private AllocateMessageQueueStrategy trackRevoked(AllocateMessageQueueStrategy delegate) {
+		return new AllocateMessageQueueStrategy() {
+			@Override
+			public List<MessageQueue> allocate(String group, String currentCID,
+											   List<MessageQueue> mqAll, List<String> cidAll) {
+				List<MessageQueue> allocated = delegate.allocate(group, currentCID, mqAll, cidAll);
+				queues.entrySet().removeIf(entry -> {
+					MessageQueue mq = entry.getKey();
+					if (!mqAll.contains(mq) || allocated.contains(mq)) {
+						return false;
+					}
+					entry.getValue().revoked = true;
+					pendingCommits.remove(mq);
+					return true;
+				});
+				return allocated;
+			}
+
+			@Override
+			public String getName() {
+				return delegate.getName();
+			}
+		};
+	}
+
+	private void commitCompleted(boolean persist) {
+		if (pendingCommits.isEmpty()) {
+			return;
+		}
+		Map<MessageQueue, Long> offsets = new HashMap<>();
+		for (MessageQueue mq : pendingCommits.keySet()) {
+			Long offset = pendingCommits.remove(mq);
+			if (offset != null) {
+				offsets.put(mq, offset);
+			}
+		}
+		consumer.commit(offsets, persist);
+	}
+
+	/**
+	 * 单个队列在途消息超过上限时暂停拉取该队列，降到一半以下恢复
+	 */
+	private void adjustPausedQueues() {
+		queues.forEach((mq, state) -> {
+			int inFlight = state.inFlight.get();
+			if (!state.paused && inFlight >= maxInFlightMessagesPerQueue) {
+				consumer.pause(List.of(mq));
+				state.paused = true;
+				System.out.println("下游处理慢，暂停队列: queue=" + mq.getQueueId() + ", 在途=" + inFlight);
+			} else if (state.paused && inFlight <= maxInFlightMessagesPerQueue / 2) {
+				consumer.resume(List.of(mq));
+				state.paused = false;
+				System.out.println("恢复队列: queue=" + mq.getQueueId() + ", 在途=" + inFlight);
+			}
+		});
+	}
+
+	public int getInFlightMessages() {
+		synchronized (capacityLock) {
+			return inFlightMessages;
+		}
+	}
+
+	public long getInFlightBytes() {
+		synchronized (capacityLock) {
+			return inFlightBytes;
+		}
+	}
+
+	public long getPausedQueueCount() {
+		return queues.values().stream().filter(state -> state.paused).count();
+	}
+
+	public void setMaxInFlightMessages(int maxInFlightMessages) {
+		this.maxInFlightMessages = maxInFlightMessages;
+	}
+
+	public void setMaxInFlightBytes(long maxInFlightBytes) {
+		this.maxInFlightBytes = maxInFlightBytes;
+	}
+
+	public void setMaxInFlightMessagesPerQueue(int maxInFlightMessagesPerQueue) {
+		this.maxInFlightMessagesPerQueue = maxInFlightMessagesPerQueue;
+	}
+
+	public void setWorkerThreads(int workerThreads) {
+		this.workerThreads = workerThreads;
+	}
+
+	public void setPullBatchSize(int pullBatchSize) {
+		this.pullBatchSize = pullBatchSize;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public void setPollTimeoutMillis(long pollTimeoutMillis) {
+		this.pollTimeoutMillis = pollTimeoutMillis;
+	}
+
+	private static class QueueState {
+		/**
+		 * 该队列最后一个批次的完成信号，新批次接在它后面
+		 */
+		private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+		private final AtomicInteger inFlight = new AtomicInteger();
+		/**
+		 * 只在 poll 线程中修改
+		 */
+		private volatile boolean paused;
+		/**
+		 * 有批次未提交（关闭中），之后的批次直接跳过
+		 */
+		private volatile boolean blocked;
+		/**
+		 * 队列已被重平衡分走
+		 */
+		private volatile boolean revoked;
+	}
+}
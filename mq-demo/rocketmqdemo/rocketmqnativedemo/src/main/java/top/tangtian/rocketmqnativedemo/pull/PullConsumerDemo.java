@@ -0,0 +1,52 @@
+package top.tangtian.rocketmqnativedemo.pull;
+
+import org.apache.rocketmq.common.message.MessageExt;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 10:50
+ *
+ * 演示：下游处理慢时，流控拉取消费者的内存占用保持在上限以内
+ *
+ * 与 NativeConsumer 对比：
+ * ├─ NativeConsumer: pullBatchSize=32、consumeThreadMax=20，处理慢时每个队列最多堆 1000 条
+ * └─ 这里: 在途最多 200 条，单队列超过 50 条暂停拉取，处理完一批才提交位点
+ */
+public class PullConsumerDemo {
+
+	public static void main(String[] args) throws Exception {
+		String namesrvAddr = args[0];
+
+		FlowControlledPullConsumer consumer = new FlowControlledPullConsumer("order_pull_group", namesrvAddr,
+				(mq, msgs) -> {
+					for (MessageExt msg : msgs) {
+						System.out.println("[队列" + mq.getQueueId() + "] 消费消息: offset=" + msg.getQueueOffset()
+								+ ", key=" + msg.getKeys());
+					}
+					// 模拟慢下游: 每条消息 50ms
+					Thread.sleep(50L * msgs.size());
+				});
+		consumer.setMaxInFlightMessages(200);
+		consumer.setMaxInFlightBytes(4 * 1024 * 1024);
+		consumer.setMaxInFlightMessagesPerQueue(50);
+		consumer.setWorkerThreads(4);
+		consumer.setPullBatchSize(16);
+		consumer.subscribe("order_topic", "*");
+		consumer.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				consumer.shutdown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+
+		// 每 5 秒打印一次在途情况，在途条数不会超过上限
+		while (true) {
+			Thread.sleep(5000);
+			System.out.println("在途消息: " + consumer.getInFlightMessages() + " 条, "
+					+ consumer.getInFlightBytes() + " 字节, 暂停队列: " + consumer.getPausedQueueCount());
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package top.tangtian.rocketmqnativedemo.queue;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 13:20
+ *
+ * 一致性哈希队列选择器（带虚拟节点）
+ *
+ * Math.abs(orderId.hashCode()) % mqs.size() 的问题：
+ * ├─ 1. hashCode 为 Integer.MIN_VALUE 时 Math.abs 仍是负数，取模得到负下标
+ * ├─ 2. 连续的订单号哈希值也连续，队列分布不均
+ * └─ 3. 队列数从 8 变成 9 时，约 8/9 的订单换了队列，扩容期间同一订单的消息会分到两个队列，顺序被打乱
+ *
+ * 这里的做法：
+ * ├─ 1. 每个队列按 broker名#队列ID 在哈希环上放 virtualNodes 个虚拟节点
+ * ├─ 2. 订单号用 Murmur3 64 位哈希，顺时针找到第一个虚拟节点对应的队列
+ * └─ 3. 增删队列只影响落在这些队列上的订单，约 1/队列数 的订单需要换队列
+ *
+ * 环按 topic 缓存。生产者每次发送都会从路由重新构造队列列表（新的 ArrayList 和 MessageQueue 对象），
+ * 不能按实例判断是否变化；这里对列表算一个 64 位指纹（队列数 + 各队列 broker名、队列ID 的哈希），
+ * 指纹不变就直接复用，只有路由内容变化时才重建环并替换缓存
+ */
+public class ConsistentHashQueueSelector implements MessageQueueSelector {
+
+	private final int virtualNodes;
+
+	private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+	public ConsistentHashQueueSelector() {
+		this(256);
+	}
+
+	public ConsistentHashQueueSelector(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+	}
+
+	/**
+	 * @param arg 分区 key（例如订单号），按 String.valueOf 取值
+	 */
+	@Override
+	public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
+		return select(msg.getTopic(), mqs, String.valueOf(arg));
+	}
+
+	public MessageQueue select(String topic, List<MessageQueue> mqs, String key) {
+		return ringOf(topic, mqs).locate(Murmur3.hash64(key));
+	}
+
+	private Ring ringOf(String topic, List<MessageQueue> mqs) {
+		long fingerprint = fingerprint(mqs);
+		Ring ring = rings.get(topic);
+		if (ring != null && ring.fingerprint == fingerprint) {
+			return ring;
+		}
+		ring = build(mqs, fingerprint);
+		rings.put(topic, ring);
+		return ring;
+	}
+
+	/**
+	 * 只读字段和 String 已缓存的 hashCode，不分配对象
+	 */
+	private static long fingerprint(List<MessageQueue> mqs) {
+		long h = mqs.size();
+		for (MessageQueue mq : mqs) {
+			long queue = ((long) mq.getBrokerName().hashCode() << 32) | (mq.getQueueId() & 0xFFFFFFFFL);
+			h = (h ^ queue) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 29;
+		}
+		return h;
+	}
+
+	private Ring build(List<MessageQueue> mqs, long fingerprint) {
+		List<MessageQueue> queues = List.copyOf(mqs);
+		int size = queues.size() * virtualNodes;
+		long[] entries = new long[size];
+		MessageQueue[] nodeOwners = new MessageQueue[size];
+		Integer[] order = new Integer[size];
+		int n = 0;
+		for (MessageQueue mq : queues) {
+			String name = mq.getBrokerName() + "#" + mq.getQueueId() + "#";
+			for (int v = 0; v < virtualNodes; v++) {
+				entries[n] = Murmur3.hash64(name + v);
+				nodeOwners[n] = mq;
+				order[n] = n;
+				n++;
+			}
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(entries[a], entries[b]));
+
+		long[] points = new long[size];
+		MessageQueue[] owners = new MessageQueue[size];
+		for (int i = 0; i < size; i++) {
+			points[i] = entries[order[i]];
+			owners[i] = nodeOwners[order[i]];
+		}
+		return new Ring(fingerprint, points, owners);
+	}
+
+	private record Ring(long fingerprint, long[] points, MessageQueue[] owners) {
+
+		MessageQueue locate(long hash) {
+			if (points.length == 0) {
+				throw new IllegalStateException("没有可用的队列");
+			}
+			int index = Arrays.binarySearch(points, hash);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			// 超过最后一个节点时回到环的起点
+			return owners[index == points.length ? 0 : index];
+		}
+	}
+}
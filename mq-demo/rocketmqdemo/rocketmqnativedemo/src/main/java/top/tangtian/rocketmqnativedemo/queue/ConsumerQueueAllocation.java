@@ -11,6 +11,7 @@ import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
 import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.message.MessageQueue;
+import top.tangtian.rocketmqnativedemo.body.MessageBodyView;
 
 import java.util.List;
 import java.util.Set;
@@ -44,7 +45,7 @@ public class ConsumerQueueAllocation {
 					// ========================================
 					System.out.println("========================================");
 					System.out.println("消费消息：");
-					System.out.println("  消息内容: " + new String(msg.getBody()));
+					MessageBodyView.print(System.out, "  消息内容: ", msg.getBody());
 					System.out.println("  来自Broker: " + msg.getBrokerName());
 					System.out.println("  来自队列ID: " + msg.getQueueId());  // ← 关键！
 					System.out.println("  队列偏移量: " + msg.getQueueOffset());
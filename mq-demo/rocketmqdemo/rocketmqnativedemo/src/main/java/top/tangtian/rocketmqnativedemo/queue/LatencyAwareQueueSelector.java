@@ -0,0 +1,215 @@
+package top.tangtian.rocketmqnativedemo.queue;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 14:10
+ *
+ * 按 broker 延迟选择队列（普通消息，不要求顺序）
+ *
+ * 默认的轮询把消息平均发给每个 broker，某个 broker 在 GC 或刷盘卡顿时，
+ * 仍有 1/broker数 的消息要等它，生产者的尾延迟被最慢的 broker 决定
+ *
+ * 这里的做法：
+ * ├─ 1. 每个 broker 维护延迟的 peak-EWMA：变慢时立即跟上，变快时按时间常数慢慢回落
+ * ├─ 2. 得分 = (EWMA + 失败惩罚) × (在途请求数 + 1)，卡顿中的 broker 响应还没回来，在途数也会让它得分变差
+ * ├─ 3. 随机挑两个队列，选得分低的（power of two choices），不会所有请求都涌向同一个"最快"的 broker
+ * ├─ 4. 失败后隔离一段时间（连续失败时翻倍，有上限），失败惩罚随时间指数衰减
+ * └─ 5. 两个候选正好落在同一个 broker 时照样选中，慢 broker 仍能收到少量探测请求，恢复后得分会降下来
+ *
+ * 使用约定：select 会把该 broker 的在途数加一，发送结束后必须调用 record，见 LatencyAwareSender
+ */
+public class LatencyAwareQueueSelector implements MessageQueueSelector {
+
+	private final Map<String, BrokerStats> stats = new ConcurrentHashMap<>();
+	private final ThreadLocal<String> lastSelected = new ThreadLocal<>();
+	private final LongSupplier nanoClock;
+	private final RandomGenerator random;
+
+	/**
+	 * EWMA 回落的时间常数
+	 */
+	private long decayNanos = TimeUnit.SECONDS.toNanos(2);
+	/**
+	 * 每次失败增加的惩罚（按延迟计）
+	 */
+	private long failurePenaltyNanos = TimeUnit.MILLISECONDS.toNanos(500);
+	/**
+	 * 首次失败的隔离时间，连续失败翻倍
+	 */
+	private long isolationNanos = TimeUnit.MILLISECONDS.toNanos(100);
+	private long maxIsolationNanos = TimeUnit.SECONDS.toNanos(10);
+	/**
+	 * 新 broker 的初始延迟估计
+	 */
+	private long initialLatencyNanos = TimeUnit.MILLISECONDS.toNanos(5);
+
+	public LatencyAwareQueueSelector() {
+		this(System::nanoTime, null);
+	}
+
+	/**
+	 * @param nanoClock 时钟，模拟时传入虚拟时间
+	 * @param random    随机数，为空时使用 ThreadLocalRandom
+	 */
+	public LatencyAwareQueueSelector(LongSupplier nanoClock, RandomGenerator random) {
+		this.nanoClock = nanoClock;
+		this.random = random;
+	}
+
+	@Override
+	public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
+		long now = nanoClock.getAsLong();
+		List<MessageQueue> candidates = healthy(mqs, now);
+		RandomGenerator rnd = random != null ? random : ThreadLocalRandom.current();
+
+		MessageQueue selected;
+		if (candidates.size() == 1) {
+			selected = candidates.get(0);
+		} else {
+			int a = rnd.nextInt(candidates.size());
+			int b = rnd.nextInt(candidates.size() - 1);
+			if (b >= a) {
+				b++;
+			}
+			MessageQueue first = candidates.get(a);
+			MessageQueue second = candidates.get(b);
+			selected = statsOf(first.getBrokerName()).score(now) <= statsOf(second.getBrokerName()).score(now)
+					? first : second;
+		}
+
+		statsOf(selected.getBrokerName()).inFlight.incrementAndGet();
+		lastSelected.set(selected.getBrokerName());
+		return selected;
+	}
+
+	/**
+	 * 取出当前线程最近一次选中的 broker 并清除，没有经过 select 就失败时返回 null
+	 */
+	public String takeLastSelected() {
+		String brokerName = lastSelected.get();
+		lastSelected.remove();
+		return brokerName;
+	}
+
+	/**
+	 * 记录一次发送结果，与 select 一一对应
+	 */
+	public void record(String brokerName, long latencyNanos, boolean success) {
+		if (brokerName == null) {
+			return;
+		}
+		BrokerStats broker = statsOf(brokerName);
+		broker.inFlight.decrementAndGet();
+		long now = nanoClock.getAsLong();
+		synchronized (broker) {
+			broker.observe(latencyNanos, now);
+			if (success) {
+				broker.consecutiveFailures = 0;
+			} else {
+				broker.consecutiveFailures++;
+				broker.penaltyNanos = broker.penalty(now) + failurePenaltyNanos;
+				broker.penaltyTime = now;
+				long isolation = isolationNanos << Math.min(broker.consecutiveFailures - 1, 20);
+				broker.isolatedUntil = now + Math.min(isolation, maxIsolationNanos);
+			}
+		}
+	}
+
+	/**
+	 * 去掉处于隔离期的 broker 的队列，全部隔离时不过滤
+	 */
+	private List<MessageQueue> healthy(List<MessageQueue> mqs, long now) {
+		List<MessageQueue> result = null;
+		for (int i = 0; i < mqs.size(); i++) {
+			MessageQueue mq = mqs.get(i);
+			boolean isolated = statsOf(mq.getBrokerName()).isolatedUntil > now;
+			if (isolated && result == null) {
+				result = new ArrayList<>(mqs.subList(0, i));
+			} else if (!isolated && result != null) {
+				result.add(mq);
+			}
+		}
+		if (result == null) {
+			return mqs;
+		}
+		return result.isEmpty() ? mqs : result;
+	}
+
+	private BrokerStats statsOf(String brokerName) {
+		return stats.computeIfAbsent(brokerName, key -> new BrokerStats(initialLatencyNanos, nanoClock.getAsLong()));
+	}
+
+	public void setDecayNanos(long decayNanos) {
+		this.decayNanos = decayNanos;
+	}
+
+	public void setFailurePenaltyNanos(long failurePenaltyNanos) {
+		this.failurePenaltyNanos = failurePenaltyNanos;
+	}
+
+	public void setIsolationNanos(long isolationNanos) {
+		this.isolationNanos = isolationNanos;
+	}
+
+	public void setMaxIsolationNanos(long maxIsolationNanos) {
+		this.maxIsolationNanos = maxIsolationNanos;
+	}
+
+	public void setInitialLatencyNanos(long initialLatencyNanos) {
+		this.initialLatencyNanos = initialLatencyNanos;
+	}
+
+	private final class BrokerStats {
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private volatile double ewmaNanos;
+		private long lastObserved;
+		private volatile double penaltyNanos;
+		private volatile long penaltyTime;
+		private volatile long isolatedUntil;
+		private int consecutiveFailures;
+
+		private BrokerStats(long initialNanos, long now) {
+			this.ewmaNanos = initialNanos;
+			this.lastObserved = now;
+		}
+
+		/**
+		 * peak-EWMA: 样本高于当前值时直接取样本，否则按距上次样本的时间衰减
+		 */
+		private void observe(long sampleNanos, long now) {
+			if (sampleNanos > ewmaNanos) {
+				ewmaNanos = sampleNanos;
+			} else {
+				double weight = Math.exp(-(double) Math.max(0, now - lastObserved) / decayNanos);
+				ewmaNanos = ewmaNanos * weight + sampleNanos * (1 - weight);
+			}
+			lastObserved = now;
+		}
+
+		private double penalty(long now) {
+			if (penaltyNanos == 0) {
+				return 0;
+			}
+			return penaltyNanos * Math.exp(-(double) Math.max(0, now - penaltyTime) / decayNanos);
+		}
+
+		private double score(long now) {
+			return (ewmaNanos + penalty(now)) * (inFlight.get() + 1);
+		}
+	}
+}
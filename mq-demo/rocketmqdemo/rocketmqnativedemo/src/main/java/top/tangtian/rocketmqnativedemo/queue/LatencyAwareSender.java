@@ -0,0 +1,61 @@
+package top.tangtian.rocketmqnativedemo.queue;
+
+import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.remoting.exception.RemotingException;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 14:30
+ *
+ * 用 LatencyAwareQueueSelector 发送普通消息，并把每次发送的耗时和结果反馈给选择器
+ *
+ * 带 selector 的 send 不会自动换 broker 重试，这里自己重试：
+ * 失败的 broker 已被隔离，下一次选择自然会落到其他 broker
+ */
+public class LatencyAwareSender {
+
+	private final DefaultMQProducer producer;
+	private final LatencyAwareQueueSelector selector;
+	private final int retryTimes;
+	private final long timeoutMillis;
+
+	public LatencyAwareSender(DefaultMQProducer producer, LatencyAwareQueueSelector selector,
+							  int retryTimes, long timeoutMillis) {
+		this.producer = producer;
+		this.selector = selector;
+		this.retryTimes = retryTimes;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public SendResult send(Message msg) throws MQClientException, RemotingException, MQBrokerException, InterruptedException {
+		Exception last = null;
+		for (int attempt = 0; attempt <= retryTimes; attempt++) {
+			long start = System.nanoTime();
+			try {
+				SendResult result = producer.send(msg, selector, null, timeoutMillis);
+				// 刷盘或同步副本超时说明 broker 在卡顿，按失败计入
+				selector.record(selector.takeLastSelected(), System.nanoTime() - start,
+						result.getSendStatus() == SendStatus.SEND_OK);
+				return result;
+			} catch (MQClientException | RemotingException | MQBrokerException e) {
+				String brokerName = selector.takeLastSelected();
+				selector.record(brokerName, System.nanoTime() - start, false);
+				last = e;
+				System.err.println("发送失败，换 broker 重试: broker=" + brokerName
+						+ ", 第 " + (attempt + 1) + " 次, error=" + e.getMessage());
+			}
+		}
+		if (last instanceof MQBrokerException brokerException) {
+			throw brokerException;
+		}
+		if (last instanceof RemotingException remotingException) {
+			throw remotingException;
+		}
+		throw (MQClientException) last;
+	}
+}
@@ -0,0 +1,199 @@
+package top.tangtian.rocketmqnativedemo.queue;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 14:45
+ *
+ * 模拟 broker 延迟，对比轮询、随机与 LatencyAwareQueueSelector 的生产者端到端延迟
+ *
+ * 运行: java LatencySelectorSimulation [模拟秒数=60] [每秒请求数=5000] [随机种子=42]
+ *
+ * 延迟模型（虚拟时间，离散事件）：
+ * ├─ 4 个 broker × 4 个队列，正常延迟为对数正态分布，中位数约 1.5ms
+ * ├─ broker-b: 每 3 秒左右一次 300ms 的 GC 停顿，停顿期间到达的请求等停顿结束才返回
+ * ├─ broker-c: 每 5 秒左右一次 1 秒的刷盘卡顿，延迟 20~80ms，其中 5% 请求 300ms 超时失败
+ * └─ 失败的请求立即换队列重试，端到端延迟包含重试耗时
+ */
+public class LatencySelectorSimulation {
+
+	private static final String[] BROKERS = {"broker-a", "broker-b", "broker-c", "broker-d"};
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long TIMEOUT = 300 * MS;
+
+	public static void main(String[] args) {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		int rate = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+		List<MessageQueue> queues = new ArrayList<>();
+		for (String broker : BROKERS) {
+			for (int i = 0; i < 4; i++) {
+				queues.add(new MessageQueue("order_topic", broker, i));
+			}
+		}
+
+		System.out.println("模拟 " + seconds + " 秒, " + rate + " 请求/秒, 种子 " + seed);
+		System.out.printf("%-14s %9s %9s %9s %9s %9s   %s%n",
+				"策略", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)", "失败次数", "各 broker 占比");
+
+		int[] counter = new int[1];
+		run("ROUND_ROBIN", clock -> (mqs, msg, arg) -> mqs.get(counter[0]++ % mqs.size()),
+				queues, seconds, rate, seed);
+		Random pick = new Random(seed + 1);
+		run("RANDOM", clock -> (mqs, msg, arg) -> mqs.get(pick.nextInt(mqs.size())),
+				queues, seconds, rate, seed);
+		run("LATENCY_P2C", clock -> new LatencyAwareQueueSelector(clock::now, new Random(seed + 2)),
+				queues, seconds, rate, seed);
+	}
+
+	private static void run(String name, Function<Clock, MessageQueueSelector> factory,
+							List<MessageQueue> queues, int seconds, int rate, long seed) {
+		Random random = new Random(seed);
+		BrokerModel model = new BrokerModel(random, seconds);
+		Clock clock = new Clock();
+		MessageQueueSelector selector = factory.apply(clock);
+		LatencyAwareQueueSelector aware = selector instanceof LatencyAwareQueueSelector s ? s : null;
+
+		// 事件: [完成时间, 请求下标, 是否成功, broker 下标, 本次发送开始时间]
+		PriorityQueue<long[]> completions = new PriorityQueue<>((x, y) -> Long.compare(x[0], y[0]));
+		int total = seconds * rate;
+		long[] startTimes = new long[total];
+		long[] latencies = new long[total];
+		Map<String, Integer> brokerShare = new HashMap<>();
+		int failures = 0;
+
+		long next = 0;
+		int issued = 0;
+		int done = 0;
+		while (done < total) {
+			boolean arrival = issued < total && (completions.isEmpty() || next <= completions.peek()[0]);
+			if (arrival) {
+				clock.time = next;
+				startTimes[issued] = next;
+				completions.add(send(selector, queues, model, clock.time, issued, brokerShare));
+				issued++;
+				// 泊松到达
+				next += (long) (-Math.log(1 - random.nextDouble()) * TimeUnit.SECONDS.toNanos(1) / rate);
+				continue;
+			}
+
+			long[] event = completions.poll();
+			clock.time = event[0];
+			int request = (int) event[1];
+			boolean success = event[2] == 1;
+			if (aware != null) {
+				aware.takeLastSelected();
+				aware.record(BROKERS[(int) event[3]], event[0] - event[4], success);
+			}
+			if (success) {
+				latencies[request] = event[0] - startTimes[request];
+				done++;
+			} else {
+				failures++;
+				completions.add(send(selector, queues, model, clock.time, request, brokerShare));
+			}
+		}
+
+		Arrays.sort(latencies);
+		StringBuilder share = new StringBuilder();
+		for (String broker : BROKERS) {
+			share.append(broker.substring(7)).append('=')
+					.append(String.format("%.1f%%", 100.0 * brokerShare.getOrDefault(broker, 0) / total)).append(' ');
+		}
+		System.out.printf("%-14s %9.2f %9.2f %9.2f %9.2f %9d   %s%n", name,
+				percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+				latencies[total - 1] / (double) MS, failures, share);
+	}
+
+	private static long[] send(MessageQueueSelector selector, List<MessageQueue> queues, BrokerModel model,
+							   long now, int request, Map<String, Integer> brokerShare) {
+		MessageQueue mq = selector.select(queues, null, null);
+		int broker = Arrays.asList(BROKERS).indexOf(mq.getBrokerName());
+		brokerShare.merge(mq.getBrokerName(), 1, Integer::sum);
+		long[] outcome = model.latency(broker, now);
+		return new long[]{now + outcome[0], request, outcome[1], broker, now};
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / (double) MS;
+	}
+
+	private static final class Clock {
+		private long time;
+
+		long now() {
+			return time;
+		}
+	}
+
+	/**
+	 * 各 broker 的延迟模型，停顿时间表预先生成，每种策略看到的停顿完全相同
+	 */
+	private static final class BrokerModel {
+
+		private final Random random;
+		private final long[][] gcPauses;
+		private final long[][] diskStalls;
+
+		BrokerModel(Random random, int seconds) {
+			this.random = random;
+			this.gcPauses = windows(random, seconds, 3000, 300);
+			this.diskStalls = windows(random, seconds, 5000, 1000);
+		}
+
+		/**
+		 * @return [延迟, 是否成功]
+		 */
+		long[] latency(int broker, long now) {
+			long base = (long) (1.5 * MS * Math.exp(0.4 * random.nextGaussian()));
+			if (broker == 1) {
+				long[] pause = find(gcPauses, now);
+				if (pause != null) {
+					return new long[]{Math.min(pause[1] - now + base, TIMEOUT), pause[1] - now + base < TIMEOUT ? 1 : 0};
+				}
+			}
+			if (broker == 2 && find(diskStalls, now) != null) {
+				if (random.nextInt(100) < 5) {
+					return new long[]{TIMEOUT, 0};
+				}
+				return new long[]{base + (20 + random.nextInt(60)) * MS, 1};
+			}
+			return new long[]{base, 1};
+		}
+
+		private static long[][] windows(Random random, int seconds, long periodMs, long lengthMs) {
+			List<long[]> windows = new ArrayList<>();
+			long t = periodMs / 2 * MS;
+			while (t < seconds * 1000L * MS) {
+				windows.add(new long[]{t, t + lengthMs * MS});
+				t += (long) (periodMs * (0.7 + 0.6 * random.nextDouble())) * MS;
+			}
+			return windows.toArray(new long[0][]);
+		}
+
+		private static long[] find(long[][] windows, long now) {
+			for (long[] window : windows) {
+				if (window[0] <= now && now < window[1]) {
+					return window;
+				}
+				if (window[0] > now) {
+					break;
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -10,6 +10,7 @@ import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
 import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.message.MessageQueue;
+import top.tangtian.rocketmqnativedemo.body.MessageBodyView;
 
 import java.util.Set;
 
@@ -142,7 +143,7 @@ public class MultiConsumerLoadBalance {
 		consumer1.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
 			for (MessageExt msg : msgs) {
 				System.out.println("[消费者1] 消费消息:");
-				System.out.println("  内容: " + new String(msg.getBody()));
+				MessageBodyView.print(System.out, "  内容: ", msg.getBody());
 				System.out.println("  队列ID: " + msg.getQueueId());
 			}
 			return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
@@ -168,7 +169,7 @@ public class MultiConsumerLoadBalance {
 		consumer2.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
 			for (MessageExt msg : msgs) {
 				System.out.println("[消费者2] 消费消息:");
-				System.out.println("  内容: " + new String(msg.getBody()));
+				MessageBodyView.print(System.out, "  内容: ", msg.getBody());
 				System.out.println("  队列ID: " + msg.getQueueId());
 			}
 			return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
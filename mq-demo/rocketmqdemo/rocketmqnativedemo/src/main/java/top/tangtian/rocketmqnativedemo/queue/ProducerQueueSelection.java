@@ -71,6 +71,9 @@ public class ProducerQueueSelection {
 		// 场景：同一个订单的消息要发送到同一个队列，保证顺序
 		String orderId = "ORDER_12345";
 
+		// 一致性哈希选择器，增减队列时只有少量订单换队列，见 QueueSelectorBenchmark
+		ConsistentHashQueueSelector consistentHashSelector = new ConsistentHashQueueSelector();
+
 		for (int i = 0; i < 3; i++) {
 			String status = "";
 			if (i == 0) status = "已创建";
@@ -91,14 +94,13 @@ public class ProducerQueueSelection {
 								Message msg,             // 当前消息
 								Object arg) {            // 自定义参数（orderId）
 
-							// 根据 orderId 的 hash 值选择队列
+							// 根据 orderId 在哈希环上的位置选择队列，确保同一订单在同一队列
+							// 不用 Math.abs(hashCode) % size: hashCode 为 Integer.MIN_VALUE 时下标为负，
+							// 而且队列数一变几乎所有订单都换队列，扩容期间同一订单的消息会乱序
 							String orderId = (String) arg;
-							int hash = Math.abs(orderId.hashCode());
-							int index = hash % mqs.size();  // 取模，确保同一订单在同一队列
-
-							MessageQueue selectedQueue = mqs.get(index);
+							MessageQueue selectedQueue = consistentHashSelector.select(mqs, msg, orderId);
 							System.out.println("  选择队列: " + selectedQueue.getQueueId() +
-									" (orderId=" + orderId + ", hash=" + hash + ")");
+									" (orderId=" + orderId + ", hash=" + Long.toHexString(Murmur3.hash64(orderId)) + ")");
 
 							return selectedQueue;
 						}
@@ -112,13 +114,13 @@ public class ProducerQueueSelection {
 
 		/*
 		 * 输出示例（hash选择）：
-		 *   选择队列: 2 (orderId=ORDER_12345, hash=1234567890)
+		 *   选择队列: 2 (orderId=ORDER_12345, hash=5f1e0c2a9b3d7e41)
 		 * 发送: ORDER_12345-已创建
 		 *   目标队列: 2
-		 *   选择队列: 2 (orderId=ORDER_12345, hash=1234567890)
+		 *   选择队列: 2 (orderId=ORDER_12345, hash=5f1e0c2a9b3d7e41)
 		 * 发送: ORDER_12345-已支付
 		 *   目标队列: 2
-		 *   选择队列: 2 (orderId=ORDER_12345, hash=1234567890)
+		 *   选择队列: 2 (orderId=ORDER_12345, hash=5f1e0c2a9b3d7e41)
 		 * 发送: ORDER_12345-已发货
 		 *   目标队列: 2
 		 *
@@ -0,0 +1,128 @@
+package top.tangtian.rocketmqnativedemo.queue;
+
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 13:40
+ *
+ * 队列选择算法对比：分布均匀度、扩缩容时的订单重映射比例、单次选择耗时
+ *
+ * 运行: java QueueSelectorBenchmark [订单数=1000000]
+ *
+ * ├─ MODULO:      Math.abs(orderId.hashCode()) % 队列数（ProducerQueueSelection 原来的写法）
+ * ├─ MURMUR3_MOD: Murmur3 哈希后取模，分布均匀但扩缩容时重映射比例不变
+ * └─ RING:        ConsistentHashQueueSelector，256 个虚拟节点
+ *
+ * 重映射比例的理想值: 16→20 个队列为 4/20 = 20%，去掉一个 broker(16→8) 为 50%
+ *
+ * 生产者每次发送传给选择器的都是新构造的队列列表，RING 轮流使用内容相同的多个副本，耗时包含每次判断路由是否变化的开销
+ */
+public class QueueSelectorBenchmark {
+
+	private static final String TOPIC = "order_topic";
+
+	public static void main(String[] args) {
+		int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		List<String> keys = new ArrayList<>(keyCount);
+		for (int i = 0; i < keyCount; i++) {
+			// 连续编号，与实际的订单号生成方式接近
+			keys.add("ORDER_" + (1_000_000 + i));
+		}
+
+		List<MessageQueue> base = queues(new String[]{"broker-a", "broker-b"}, 8);
+		List<MessageQueue> scaleOut = queues(new String[]{"broker-a", "broker-b"}, 10);
+		List<MessageQueue> brokerDown = queues(new String[]{"broker-a"}, 8);
+
+		System.out.println("订单数: " + keyCount + ", 队列: 16 (2 个 broker × 8)");
+		System.out.printf("%-12s %10s %10s %14s %14s %12s%n",
+				"算法", "最大/平均", "变异系数", "扩容16→20", "下线16→8", "耗时(ns/次)");
+
+		run("MODULO", (mqs, key) -> mqs.get(Math.abs(key.hashCode()) % mqs.size()), keys, base, scaleOut, brokerDown);
+		run("MURMUR3_MOD", (mqs, key) -> mqs.get((int) Long.remainderUnsigned(Murmur3.hash64(key), mqs.size())),
+				keys, base, scaleOut, brokerDown);
+		ConsistentHashQueueSelector selector = new ConsistentHashQueueSelector();
+		Map<List<MessageQueue>, List<List<MessageQueue>>> copies = new IdentityHashMap<>();
+		for (List<MessageQueue> route : List.of(base, scaleOut, brokerDown)) {
+			List<List<MessageQueue>> routeCopies = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				routeCopies.add(copyOf(route));
+			}
+			copies.put(route, routeCopies);
+		}
+		int[] sends = new int[1];
+		run("RING", (mqs, key) -> selector.select(TOPIC, copies.get(mqs).get(sends[0]++ & 63), key),
+				keys, base, scaleOut, brokerDown);
+	}
+
+	private static List<MessageQueue> copyOf(List<MessageQueue> route) {
+		List<MessageQueue> copy = new ArrayList<>(route.size());
+		for (MessageQueue mq : route) {
+			copy.add(new MessageQueue(mq.getTopic(), mq.getBrokerName(), mq.getQueueId()));
+		}
+		return copy;
+	}
+
+	private static void run(String name, BiFunction<List<MessageQueue>, String, MessageQueue> select, List<String> keys,
+							List<MessageQueue> base, List<MessageQueue> scaleOut, List<MessageQueue> brokerDown) {
+		// 预热
+		for (int i = 0; i < 200_000; i++) {
+			select.apply(base, keys.get(i % keys.size()));
+		}
+
+		MessageQueue[] before = new MessageQueue[keys.size()];
+		Map<MessageQueue, Integer> counts = new HashMap<>();
+		long start = System.nanoTime();
+		for (int i = 0; i < keys.size(); i++) {
+			before[i] = select.apply(base, keys.get(i));
+		}
+		long nanos = System.nanoTime() - start;
+		for (MessageQueue mq : before) {
+			counts.merge(mq, 1, Integer::sum);
+		}
+
+		double avg = (double) keys.size() / base.size();
+		double max = 0;
+		double variance = 0;
+		for (MessageQueue mq : base) {
+			int count = counts.getOrDefault(mq, 0);
+			max = Math.max(max, count);
+			variance += (count - avg) * (count - avg);
+		}
+		double cv = Math.sqrt(variance / base.size()) / avg;
+
+		System.out.printf("%-12s %10.3f %10.4f %13.1f%% %13.1f%% %12.1f%n",
+				name, max / avg, cv,
+				remapRatio(select, keys, before, scaleOut) * 100,
+				remapRatio(select, keys, before, brokerDown) * 100,
+				(double) nanos / keys.size());
+	}
+
+	private static double remapRatio(BiFunction<List<MessageQueue>, String, MessageQueue> select, List<String> keys,
+									 MessageQueue[] before, List<MessageQueue> after) {
+		int moved = 0;
+		for (int i = 0; i < keys.size(); i++) {
+			if (!select.apply(after, keys.get(i)).equals(before[i])) {
+				moved++;
+			}
+		}
+		return (double) moved / keys.size();
+	}
+
+	private static List<MessageQueue> queues(String[] brokers, int queuesPerBroker) {
+		List<MessageQueue> queues = new ArrayList<>();
+		for (String broker : brokers) {
+			for (int i = 0; i < queuesPerBroker; i++) {
+				queues.add(new MessageQueue(TOPIC, broker, i));
+			}
+		}
+		return queues;
+	}
+}
@@ -0,0 +1,77 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 11:20
+ *
+ * 分配策略共用的工具
+ *
+ * 每个消费者各自调用 allocate，彼此看不到对方的结果，
+ * 所以只要输入（队列列表、消费者列表）相同，算出来的结果必须完全一致；
+ * 这里的排序和哈希都只依赖输入内容，不依赖 List 顺序、JVM 或进程
+ */
+final class AllocationHashing {
+
+	private static final Comparator<MessageQueue> QUEUE_ORDER = Comparator
+			.comparing(MessageQueue::getTopic)
+			.thenComparing(MessageQueue::getBrokerName)
+			.thenComparingInt(MessageQueue::getQueueId);
+
+	private AllocationHashing() {
+	}
+
+	static List<MessageQueue> sortedQueues(List<MessageQueue> mqAll) {
+		List<MessageQueue> sorted = new ArrayList<>(mqAll);
+		sorted.sort(QUEUE_ORDER);
+		return sorted;
+	}
+
+	static List<String> sortedConsumers(List<String> cidAll) {
+		List<String> sorted = new ArrayList<>(cidAll);
+		sorted.sort(Comparator.naturalOrder());
+		return sorted;
+	}
+
+	static long hash(MessageQueue mq) {
+		return hash(mq.getTopic() + "@" + mq.getBrokerName() + "#" + mq.getQueueId());
+	}
+
+	/**
+	 * FNV-1a 64 位
+	 */
+	static long hash(String value) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			h ^= b & 0xff;
+			h *= 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * 最高随机权重(rendezvous)哈希: 每个队列对每个消费者打分，分数只取决于这一对，
+	 * 增删消费者不会改变其他消费者之间的相对顺序
+	 */
+	static long score(long queueHash, long consumerHash) {
+		return mix(queueHash ^ (consumerHash * 0x9e3779b97f4a7c15L));
+	}
+
+	/**
+	 * MurmurHash3 fmix64
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
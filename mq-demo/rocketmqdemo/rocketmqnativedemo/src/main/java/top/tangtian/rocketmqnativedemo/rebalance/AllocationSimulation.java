@@ -0,0 +1,520 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.client.consumer.rebalance.AllocateMessageQueueAveragely;
+import org.apache.rocketmq.client.consumer.rebalance.AllocateMessageQueueAveragelyByCircle;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 12:15
+ *
+ * 分配策略模拟，输出两张表
+ *
+ * 运行: java AllocationSimulation [队列数=128] [事件数=5000] [随机种子=42] [时间线分钟数=120]
+ *
+ * 第一张表：消费者反复加入/退出，每次事件后所有消费者同时重平衡，统计队列移动数和负载不均衡程度
+ * ├─ 移动数: 换了消费者的队列数（换主人意味着 ProcessQueue 丢弃、位点重新加载、可能重复消费）
+ * ├─ 下限: 离开时 = 离开者持有的队列数，加入时 = floor(队列数 / 消费者数)
+ * ├─ 个数不均衡: 最多队列的消费者的队列数 / (按能力分摊的平均值)
+ * ├─ 积压不均衡: 单位能力积压最大的消费者 / 全局平均，1.0 为完全均衡
+ * └─ 不一致: 同一时刻各消费者独立计算后，队列被重复分配或无人消费的次数
+ *
+ * 第一张表中所有消费者在同一时刻用同一份输入计算，只能说明"输入不同会不一致"（LAG_LOCAL_VIEW），
+ * 不能说明重平衡时刻错开时是否一致，LAG_WEIGHTED 一行只用来看移动数和均衡度
+ *
+ * 第二张表：按时间线模拟，每个消费者的重平衡定时器（20 秒）相位随机，成员变化通知和控制消息的送达有随机延迟
+ * （2~50ms，1% 为 0.5~3s），每个消费者持有的分配保持到它的下一次重平衡，统计全部消费者的分配合起来不是一个划分的时间：
+ * ├─ STICKY:         不看积压，不一致只来自成员变化通知的送达时间差，作为基线
+ * ├─ EPOCH_SNAPSHOT: 每个消费者按自己重平衡时的时钟选用上一个周期的快照（之前 LagSnapshotBoard 的做法）
+ * └─ ACKED_SNAPSHOT: LagSnapshotBoard 的两阶段切换，切换后立即重平衡，快照绑定成员列表
+ *
+ * 默认参数（128 队列、种子 42、120 分钟）的结果: STICKY 不一致时间 0.04%，EPOCH_SNAPSHOT 41%（单次最长约 106 秒），
+ * ACKED_SNAPSHOT 0.5%（平均每次约 130ms，来自切换消息的送达时间差），加权分配在 87% 的重平衡中生效，其余退回粘性平均分配
+ *
+ * 模拟中 1/4 的消费者实例名带 #w2（两倍处理能力），积压量按重尾分布随机游走，每个消费者本地看到的积压都在真实值的 ±20% 内随机偏离
+ */
+public class AllocationSimulation {
+
+	private static final String GROUP = "simulation_group";
+	private static final int MIN_CONSUMERS = 2;
+	private static final int MAX_CONSUMERS = 32;
+
+	private static final long REBALANCE_INTERVAL_MILLIS = 20_000;
+	private static final long SNAPSHOT_PERIOD_MILLIS = 30_000;
+	private static final long LAG_DRIFT_MILLIS = 5_000;
+	private static final long MEAN_MEMBERSHIP_CHANGE_MILLIS = 180_000;
+
+	public static void main(String[] args) {
+		int queueCount = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+		int events = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+		int minutes = args.length > 3 ? Integer.parseInt(args[3]) : 120;
+
+		List<MessageQueue> queues = new ArrayList<>(queueCount);
+		for (int i = 0; i < queueCount; i++) {
+			queues.add(new MessageQueue("order_topic", "broker-" + (i % 4), i / 4));
+		}
+
+		System.out.println("队列数: " + queueCount + ", 事件数: " + events + ", 种子: " + seed);
+		System.out.printf("%-16s %10s %10s %10s %12s %12s %10s %12s%n",
+				"策略", "平均移动", "平均下限", "移动/下限", "个数不均衡", "积压不均衡", "不一致", "单次耗时(us)");
+
+		Map<MessageQueue, Long> lag = new HashMap<>();
+		run("AVERAGELY", shared(new AllocateMessageQueueAveragely()), queues, lag, events, seed);
+		run("BY_CIRCLE", shared(new AllocateMessageQueueAveragelyByCircle()), queues, lag, events, seed);
+		run("STICKY", shared(new StickyAllocateStrategy()), queues, lag, events, seed);
+		run("LAG_LOCAL_VIEW", (cid, round, consumers) -> new LagWeightedAllocateStrategy(
+				() -> localView(cid, round, consumers, queues, lag)), queues, lag, events, seed);
+		run("LAG_WEIGHTED", (cid, round, consumers) -> new LagWeightedAllocateStrategy(
+				() -> publishedSnapshot(round, consumers, queues, lag)), queues, lag, events, seed);
+
+		System.out.println();
+		System.out.println("时间线: " + minutes + " 分钟, 重平衡间隔 " + REBALANCE_INTERVAL_MILLIS / 1000
+				+ " 秒(相位随机), 快照周期 " + SNAPSHOT_PERIOD_MILLIS / 1000 + " 秒");
+		System.out.printf("%-16s %12s %10s %12s %12s %14s %10s%n",
+				"策略", "不一致时间", "不一致次数", "平均持续(ms)", "最长(ms)", "错配队列·秒", "加权生效");
+		for (Mode mode : Mode.values()) {
+			new Timeline(mode, queues, seed).run(minutes * 60_000L);
+		}
+	}
+
+	/**
+	 * 为某个消费者在某一轮重平衡中创建分配策略，用来模拟各消费者看到的输入不同
+	 */
+	@FunctionalInterface
+	private interface StrategyFactory {
+		AllocateMessageQueueStrategy create(String cid, int round, List<String> consumers);
+	}
+
+	private static StrategyFactory shared(AllocateMessageQueueStrategy strategy) {
+		return (cid, round, consumers) -> strategy;
+	}
+
+	private static void run(String name, StrategyFactory strategies, List<MessageQueue> queues,
+							Map<MessageQueue, Long> lag, int events, long seed) {
+		// 每个策略使用同样的随机序列，事件和积压完全相同
+		Random random = new Random(seed);
+		lag.clear();
+		for (MessageQueue mq : queues) {
+			lag.put(mq, heavyTail(random));
+		}
+
+		List<String> consumers = new ArrayList<>();
+		int nextId = 0;
+		for (int i = 0; i < 8; i++) {
+			consumers.add(clientId(nextId++));
+		}
+		Map<MessageQueue, String> owners = assign(strategies, -1, queues, consumers, new int[1]);
+
+		long moves = 0;
+		long lowerBound = 0;
+		double countImbalance = 0;
+		double lagImbalance = 0;
+		int[] inconsistent = new int[1];
+		long nanos = 0;
+
+		for (int event = 0; event < events; event++) {
+			boolean join = consumers.size() <= MIN_CONSUMERS
+					|| (consumers.size() < MAX_CONSUMERS && random.nextBoolean());
+			if (join) {
+				consumers.add(clientId(nextId++));
+			} else {
+				String leaving = consumers.remove(random.nextInt(consumers.size()));
+				lowerBound += owners.values().stream().filter(leaving::equals).count();
+			}
+			if (join) {
+				lowerBound += queues.size() / consumers.size();
+			}
+			driftLag(random, queues, lag);
+
+			long start = System.nanoTime();
+			Map<MessageQueue, String> next = assign(strategies, event, queues, consumers, inconsistent);
+			nanos += System.nanoTime() - start;
+
+			for (MessageQueue mq : queues) {
+				if (!next.get(mq).equals(owners.get(mq))) {
+					moves++;
+				}
+			}
+			countImbalance += imbalance(next, consumers, mq -> 1.0);
+			lagImbalance += imbalance(next, consumers, mq -> 1.0 + lag.get(mq));
+			owners = next;
+		}
+
+		System.out.printf("%-16s %10.2f %10.2f %10.2f %12.3f %12.3f %10d %12.1f%n",
+				name, (double) moves / events, (double) lowerBound / events,
+				lowerBound == 0 ? 0 : (double) moves / lowerBound,
+				countImbalance / events, lagImbalance / events, inconsistent[0],
+				nanos / 1000.0 / events);
+	}
+
+	/**
+	 * 每个消费者各自调用 allocate，合并成全局分配结果，同时检查一致性
+	 */
+	private static Map<MessageQueue, String> assign(StrategyFactory strategies, int round, List<MessageQueue> queues,
+													List<String> consumers, int[] inconsistent) {
+		Map<MessageQueue, String> owners = new HashMap<>(queues.size() * 2);
+		for (String cid : consumers) {
+			AllocateMessageQueueStrategy strategy = strategies.create(cid, round, consumers);
+			for (MessageQueue mq : strategy.allocate(GROUP, cid, queues, consumers)) {
+				if (owners.put(mq, cid) != null) {
+					inconsistent[0]++;
+				}
+			}
+		}
+		for (MessageQueue mq : queues) {
+			if (!owners.containsKey(mq)) {
+				inconsistent[0]++;
+				owners.put(mq, "");
+			}
+		}
+		return owners;
+	}
+
+	/**
+	 * 单位能力负载最大的消费者 / 全局单位能力负载
+	 */
+	private static double imbalance(Map<MessageQueue, String> owners, List<String> consumers,
+									ToDoubleFunction<MessageQueue> weightFn) {
+		Map<String, Double> load = new HashMap<>();
+		double total = 0;
+		for (Map.Entry<MessageQueue, String> entry : owners.entrySet()) {
+			double weight = weightFn.applyAsDouble(entry.getKey());
+			load.merge(entry.getValue(), weight, Double::sum);
+			total += weight;
+		}
+		double totalCapacity = 0;
+		double max = 0;
+		for (String cid : consumers) {
+			double capacity = LagWeightedAllocateStrategy.capacityFromClientId(cid);
+			totalCapacity += capacity;
+			max = Math.max(max, load.getOrDefault(cid, 0.0) / capacity);
+		}
+		return max / (total / totalCapacity);
+	}
+
+	private static String clientId(int id) {
+		String instance = "consumer_" + id + (id % 4 == 0 ? "#w2" : "");
+		return "10.0." + (id / 250) + "." + (id % 250) + "@" + instance;
+	}
+
+	/**
+	 * 某个消费者本轮看到的积压：真实值 ±20% 的确定性随机偏离
+	 */
+	private static Map<MessageQueue, Long> localLag(String cid, long round, List<MessageQueue> queues,
+													Map<MessageQueue, Long> lag) {
+		Random random = new Random(Objects.hash(cid, round));
+		Map<MessageQueue, Long> view = new HashMap<>(queues.size() * 2);
+		for (MessageQueue mq : queues) {
+			view.put(mq, (long) (lag.get(mq) * (0.8 + random.nextDouble() * 0.4)));
+		}
+		return view;
+	}
+
+	private static LagSnapshot localView(String cid, int round, List<String> consumers, List<MessageQueue> queues,
+										 Map<MessageQueue, Long> lag) {
+		return LagSnapshot.of(round, cid, AllocationHashing.sortedConsumers(consumers), localLag(cid, round, queues, lag));
+	}
+
+	/**
+	 * 发布者（排序后第一个消费者）按它本地看到的积压发布的快照，所有收到的消费者用的是同一份
+	 */
+	private static LagSnapshot publishedSnapshot(int round, List<String> consumers, List<MessageQueue> queues,
+												 Map<MessageQueue, Long> lag) {
+		return localView(AllocationHashing.sortedConsumers(consumers).get(0), round, consumers, queues, lag);
+	}
+
+	/**
+	 * 帕累托分布，少数队列积压远大于其他队列
+	 */
+	private static long heavyTail(Random random) {
+		return (long) (100 / Math.pow(1 - random.nextDouble(), 1 / 1.2)) - 100;
+	}
+
+	private static void driftLag(Random random, List<MessageQueue> queues, Map<MessageQueue, Long> lag) {
+		for (MessageQueue mq : queues) {
+			if (random.nextInt(50) == 0) {
+				lag.put(mq, heavyTail(random));
+			} else {
+				long value = lag.get(mq);
+				lag.put(mq, Math.max(0, (long) (value * (0.9 + random.nextDouble() * 0.2))));
+			}
+		}
+	}
+
+	private enum Mode {
+		STICKY, EPOCH_SNAPSHOT, ACKED_SNAPSHOT
+	}
+
+	/**
+	 * 离散事件模拟，时间单位毫秒
+	 */
+	private static final class Timeline {
+
+		private final Mode mode;
+		private final List<MessageQueue> queues;
+		private final Random membershipRandom;
+		private final Random lagRandom;
+		private final Random delayRandom;
+		private final PriorityQueue<Event> events = new PriorityQueue<>(
+				Comparator.comparingLong(Event::time).thenComparingLong(Event::seq));
+		private final Map<MessageQueue, Long> lag = new HashMap<>();
+		private final List<Member> live = new ArrayList<>();
+		private final List<Member> all = new ArrayList<>();
+
+		private long now;
+		private long seq;
+		private int nextId;
+
+		private boolean inconsistent;
+		private int mismatched;
+		private long inconsistentSince;
+		private long inconsistentMillis;
+		private long mismatchQueueMillis;
+		private long episodes;
+		private long longestEpisode;
+
+		Timeline(Mode mode, List<MessageQueue> queues, long seed) {
+			this.mode = mode;
+			this.queues = queues;
+			this.membershipRandom = new Random(seed);
+			this.lagRandom = new Random(seed + 1);
+			this.delayRandom = new Random(seed + 2);
+		}
+
+		void run(long duration) {
+			for (MessageQueue mq : queues) {
+				lag.put(mq, heavyTail(lagRandom));
+			}
+			for (int i = 0; i < 8; i++) {
+				join();
+			}
+			every(LAG_DRIFT_MILLIS, LAG_DRIFT_MILLIS, () -> driftLag(lagRandom, queues, lag));
+			if (mode == Mode.EPOCH_SNAPSHOT) {
+				every(0, SNAPSHOT_PERIOD_MILLIS, this::publishEpoch);
+			}
+			at(nextMembershipChange(), this::changeMembership);
+
+			while (!events.isEmpty() && events.peek().time() <= duration) {
+				Event event = events.poll();
+				account(event.time());
+				event.action().run();
+				evaluate();
+			}
+			account(duration);
+			if (inconsistent) {
+				longestEpisode = Math.max(longestEpisode, duration - inconsistentSince);
+			}
+
+			long allocations = 0;
+			long fallbacks = 0;
+			for (Member member : all) {
+				allocations += member.allocations;
+				if (member.strategy instanceof LagWeightedAllocateStrategy weighted) {
+					fallbacks += weighted.getFallbackCount();
+				}
+			}
+			System.out.printf("%-16s %11.3f%% %10d %12.1f %12d %14.1f %9s%n",
+					mode, 100.0 * inconsistentMillis / duration, episodes,
+					episodes == 0 ? 0 : (double) inconsistentMillis / episodes, longestEpisode,
+					mismatchQueueMillis / 1000.0,
+					mode == Mode.STICKY ? "-" : String.format("%.1f%%", 100.0 * (allocations - fallbacks) / allocations));
+		}
+
+		private void join() {
+			Member member = new Member(clientId(nextId++));
+			switch (mode) {
+				case STICKY -> member.strategy = new StickyAllocateStrategy();
+				case EPOCH_SNAPSHOT -> member.strategy = new LagWeightedAllocateStrategy(() -> epochSnapshot(member));
+				case ACKED_SNAPSHOT -> {
+					LagSnapshotBoard board = new LagSnapshotBoard(SNAPSHOT_PERIOD_MILLIS, this::broadcast, () -> now);
+					LagWeightedAllocateStrategy strategy = new LagWeightedAllocateStrategy(board::current);
+					member.strategy = strategy;
+					member.board = board;
+					try {
+						board.start(strategy, () -> rebalance(member));
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+					// 每个成员从自己启动时开始按周期检查是否由自己发布
+					every(now + SNAPSHOT_PERIOD_MILLIS, SNAPSHOT_PERIOD_MILLIS,
+							() -> {
+								if (member.alive) {
+									board.publishIfLeader(mq -> member.localLag.getOrDefault(mq, 0L));
+								}
+							});
+				}
+			}
+			live.add(member);
+			all.add(member);
+			rebalance(member);
+			every(now + (long) (membershipRandom.nextDouble() * REBALANCE_INTERVAL_MILLIS), REBALANCE_INTERVAL_MILLIS,
+					() -> rebalance(member));
+			notifyOthers(member);
+		}
+
+		private void changeMembership() {
+			boolean join = live.size() <= MIN_CONSUMERS
+					|| (live.size() < MAX_CONSUMERS && membershipRandom.nextBoolean());
+			if (join) {
+				join();
+			} else {
+				Member leaving = live.remove(membershipRandom.nextInt(live.size()));
+				leaving.alive = false;
+				leaving.owned = Set.of();
+				notifyOthers(leaving);
+			}
+			at(now + nextMembershipChange(), this::changeMembership);
+		}
+
+		/**
+		 * broker 通知消费者列表变化，各消费者收到后立即重平衡
+		 */
+		private void notifyOthers(Member changed) {
+			for (Member member : live) {
+				if (member != changed) {
+					deliver(member, () -> rebalance(member));
+				}
+			}
+		}
+
+		private void rebalance(Member member) {
+			if (!member.alive) {
+				return;
+			}
+			List<String> cidAll = new ArrayList<>(live.size());
+			live.forEach(m -> cidAll.add(m.cid));
+			member.localLag = localLag(member.cid, now / LAG_DRIFT_MILLIS, queues, lag);
+			member.owned = Set.copyOf(member.strategy.allocate(GROUP, member.cid, queues, cidAll));
+			member.allocations++;
+		}
+
+		private void broadcast(String body) {
+			for (Member member : live) {
+				deliver(member, () -> member.board.onMessage(body));
+			}
+		}
+
+		/**
+		 * 之前的做法: 每个周期开始时由排序后第一个消费者发布快照，各消费者按自己的时钟使用上一个周期的快照
+		 */
+		private void publishEpoch() {
+			Member leader = live.stream().min(Comparator.comparing(m -> m.cid)).orElse(null);
+			if (leader == null) {
+				return;
+			}
+			long epoch = now / SNAPSHOT_PERIOD_MILLIS;
+			Map<MessageQueue, Long> published = localLag(leader.cid, epoch, queues, lag);
+			for (Member member : live) {
+				deliver(member, () -> member.epochLags.put(epoch, published));
+			}
+		}
+
+		private LagSnapshot epochSnapshot(Member member) {
+			Map<MessageQueue, Long> lags = member.epochLags.get(now / SNAPSHOT_PERIOD_MILLIS - 1);
+			if (lags == null) {
+				return null;
+			}
+			// 之前的快照不绑定成员列表，这里按本次的消费者列表构造，让成员检查总是通过
+			List<String> cidAll = new ArrayList<>(live.size());
+			live.forEach(m -> cidAll.add(m.cid));
+			return LagSnapshot.of(now / SNAPSHOT_PERIOD_MILLIS - 1, "", AllocationHashing.sortedConsumers(cidAll), lags);
+		}
+
+		private void deliver(Member member, Runnable action) {
+			long delay = delayRandom.nextInt(100) == 0
+					? 500 + delayRandom.nextInt(2500)
+					: 2 + delayRandom.nextInt(49);
+			at(now + delay, () -> {
+				if (member.alive) {
+					action.run();
+				}
+			});
+		}
+
+		private long nextMembershipChange() {
+			return (long) (-Math.log(1 - membershipRandom.nextDouble()) * MEAN_MEMBERSHIP_CHANGE_MILLIS);
+		}
+
+		private void every(long first, long interval, Runnable action) {
+			at(first, new Runnable() {
+				@Override
+				public void run() {
+					action.run();
+					at(now + interval, this);
+				}
+			});
+		}
+
+		private void at(long time, Runnable action) {
+			events.add(new Event(time, seq++, action));
+		}
+
+		private void account(long time) {
+			if (inconsistent) {
+				inconsistentMillis += time - now;
+				mismatchQueueMillis += (long) mismatched * (time - now);
+			}
+			now = time;
+		}
+
+		/**
+		 * 每个队列恰好被一个存活消费者持有时为一致
+		 */
+		private void evaluate() {
+			Map<MessageQueue, Integer> owners = new HashMap<>(queues.size() * 2);
+			for (Member member : live) {
+				for (MessageQueue mq : member.owned) {
+					owners.merge(mq, 1, Integer::sum);
+				}
+			}
+			int wrong = 0;
+			for (MessageQueue mq : queues) {
+				int count = owners.getOrDefault(mq, 0);
+				if (count != 1) {
+					wrong += count == 0 ? 1 : count - 1;
+				}
+			}
+			mismatched = wrong;
+			boolean nowInconsistent = wrong > 0;
+			if (nowInconsistent && !inconsistent) {
+				episodes++;
+				inconsistentSince = now;
+			} else if (!nowInconsistent && inconsistent) {
+				longestEpisode = Math.max(longestEpisode, now - inconsistentSince);
+			}
+			inconsistent = nowInconsistent;
+		}
+	}
+
+	private static final class Member {
+
+		private final String cid;
+		private AllocateMessageQueueStrategy strategy;
+		private LagSnapshotBoard board;
+		private final Map<Long, Map<MessageQueue, Long>> epochLags = new HashMap<>();
+		private Map<MessageQueue, Long> localLag = Map.of();
+		private Set<MessageQueue> owned = Set.of();
+		private boolean alive = true;
+		private long allocations;
+
+		private Member(String cid) {
+			this.cid = cid;
+		}
+	}
+
+	private record Event(long time, long seq, Runnable action) {
+	}
+}
@@ -0,0 +1,589 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.client.consumer.DefaultLitePullConsumer;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.remoting.protocol.heartbeat.MessageModel;
+import top.tangtian.rocketmqnativedemo.pull.DeadLetterSender;
+import top.tangtian.rocketmqnativedemo.pull.FlowControlledPullConsumer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 15:30
+ *
+ * 协作式重平衡消费者
+ *
+ * 默认的推模式重平衡（见 DynamicRebalanceDemo）：
+ * ├─ 每个成员各自计算分配，平均分配下一次成员变化会让大部分队列换主人
+ * ├─ 失去的队列立刻 dropped，正在处理的批次处理完也不会提交位点
+ * └─ 新主人从 broker 上的旧位点开始拉取，这些批次被重复消费
+ *
+ * 这里用 DefaultLitePullConsumer 的 assign 模式自己管理队列，成员之间通过一个控制 topic 广播状态：
+ * ├─ 1. 每个成员定期广播快照: 成员ID、序号、持有的队列、最近释放的队列及其位点
+ * ├─ 2. 所有成员按同样的存活成员列表用 StickyAllocateStrategy 计算目标分配，只有真正移动的队列受影响
+ * ├─ 3. 失去的队列: 先 pause 停止拉取，等在途批次处理完，同步提交位点，再从 assign 集合移除并广播释放
+ * ├─ 4. 得到的队列: 等到其他存活成员都不再持有它才接手，seek 到对方释放时的位点，不重放已处理的消息
+ * └─ 5. 没有变化的队列全程不暂停
+ *
+ * 前一个主人宕机（超过 sessionTimeout 没有快照）时，从 broker 上的已提交位点接手，
+ * 它未提交的在途消息会被重复消费，这种情况无法避免
+ *
+ * 批次处理失败时退避重试，超过 maxRetries 次写入死信 topic（DeadLetterSender）后才算完成；
+ * 重试期间队列被释放或消费者关闭，立即放弃该批次，位点停在它之前，由新主人或重启后重新消费
+ */
+public class CooperativeRebalanceConsumer {
+
+	private static final String SEPARATOR = "\t";
+
+	private final String group;
+	private final String topic;
+	private final String controlTopic;
+	private final String memberId;
+	private final FlowControlledPullConsumer.BatchHandler handler;
+
+	private final String namesrvAddr;
+	private DefaultLitePullConsumer consumer;
+	private final DefaultMQProducer controlProducer;
+	private final DeadLetterSender deadLetterSender;
+	private final DefaultMQPushConsumer controlConsumer;
+	private final AllocateMessageQueueStrategy strategy = new StickyAllocateStrategy();
+
+	private long heartbeatMillis = 1000;
+	private long sessionTimeoutMillis = 6000;
+	private long pollTimeoutMillis = 200;
+	private int workerThreads = 8;
+	private int maxRetries = 3;
+
+	/**
+	 * 超过这么多个 sessionTimeout 没有快照的成员从 members 中删除，
+	 * 大于判定存活（1 倍）和采用其释放位点（2 倍）的窗口，删除不影响分配结果
+	 */
+	private static final int MEMBER_EXPIRY_SESSIONS = 4;
+
+	/**
+	 * 其他成员最新的快照，由控制消费者线程更新
+	 */
+	private final Map<String, MemberState> members = new ConcurrentHashMap<>();
+
+	/**
+	 * 以下字段只在 poll 线程中读写
+	 */
+	private final Set<MessageQueue> owned = new HashSet<>();
+	private final Set<MessageQueue> revoking = new HashSet<>();
+	private final Map<MessageQueue, Long> waitingSince = new HashMap<>();
+	private final Map<MessageQueue, long[]> recentReleases = new LinkedHashMap<>();
+	private List<MessageQueue> topicQueues = List.of();
+	private long topicQueuesRefreshed;
+	private long lastHeartbeat;
+	private long seq;
+
+	private final Map<MessageQueue, QueueState> states = new ConcurrentHashMap<>();
+
+	private final AtomicLong handoffCount = new AtomicLong();
+	private final AtomicLong handoffWaitMillis = new AtomicLong();
+
+	private ExecutorService workers;
+	private Thread pollThread;
+	private volatile boolean running;
+
+	public CooperativeRebalanceConsumer(String group, String topic, String controlTopic, String namesrvAddr,
+										FlowControlledPullConsumer.BatchHandler handler) {
+		this.group = group;
+		this.topic = topic;
+		this.controlTopic = controlTopic;
+		this.handler = handler;
+		this.namesrvAddr = namesrvAddr;
+		this.memberId = UUID.randomUUID().toString();
+		this.consumer = newDataConsumer();
+
+		this.controlProducer = new DefaultMQProducer(group + "_coop_producer");
+		this.controlProducer.setNamesrvAddr(namesrvAddr);
+		this.controlProducer.setInstanceName(memberId);
+		this.deadLetterSender = new DeadLetterSender(group, namesrvAddr, memberId);
+
+		// 广播模式，每个成员都能收到所有成员的快照
+		this.controlConsumer = new DefaultMQPushConsumer(group + "_coop");
+		this.controlConsumer.setNamesrvAddr(namesrvAddr);
+		this.controlConsumer.setInstanceName(memberId);
+		this.controlConsumer.setMessageModel(MessageModel.BROADCASTING);
+		this.controlConsumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+	}
+
+	public void start() throws MQClientException, InterruptedException {
+		controlProducer.start();
+		deadLetterSender.start();
+		controlConsumer.subscribe(controlTopic, "*");
+		controlConsumer.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
+			for (MessageExt msg : msgs) {
+				onControlMessage(new String(msg.getBody(), StandardCharsets.UTF_8));
+			}
+			return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+		});
+		controlConsumer.start();
+		consumer.start();
+
+		AtomicInteger index = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(workerThreads, r -> new Thread(r, "coop-worker-" + index.getAndIncrement()));
+		running = true;
+
+		// 先广播自己，再等两个心跳周期收集其他成员的快照，避免抢占别人正在处理的队列
+		sendState();
+		Thread.sleep(heartbeatMillis * 2);
+
+		pollThread = new Thread(this::pollLoop, "coop-poller");
+		pollThread.start();
+		System.out.println("协作式消费者启动: member=" + memberId + ", topic=" + topic);
+	}
+
+	/**
+	 * 优雅退出: 交出全部队列后再关闭，其他成员从释放的位点接手
+	 */
+	public void shutdown() throws InterruptedException {
+		running = false;
+		pollThread.join();
+		for (MessageQueue mq : new ArrayList<>(owned)) {
+			try {
+				consumer.pause(List.of(mq));
+			} catch (Exception ignored) {
+				// 已经不在 assign 集合中
+			}
+		}
+		workers.shutdown();
+		workers.awaitTermination(30, TimeUnit.SECONDS);
+		Map<MessageQueue, Long> offsets = completedOffsets(owned);
+		if (!offsets.isEmpty()) {
+			consumer.commit(offsets, true);
+		}
+		long now = System.currentTimeMillis();
+		for (MessageQueue mq : owned) {
+			recentReleases.put(mq, new long[]{offsets.getOrDefault(mq, -1L), now});
+		}
+		owned.clear();
+		sendState();
+		consumer.shutdown();
+		controlConsumer.shutdown();
+		controlProducer.shutdown();
+		deadLetterSender.shutdown();
+		System.out.println("协作式消费者已退出: member=" + memberId);
+	}
+
+	private void pollLoop() {
+		while (running) {
+			try {
+				long now = System.currentTimeMillis();
+				boolean changed = rebalance(now);
+				if (changed || now - lastHeartbeat >= heartbeatMillis) {
+					sendState();
+				}
+				commitCompleted();
+				if (owned.isEmpty()) {
+					Thread.sleep(pollTimeoutMillis);
+					continue;
+				}
+				List<MessageExt> msgs = consumer.poll(pollTimeoutMillis);
+				if (!msgs.isEmpty()) {
+					dispatch(msgs);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (Exception e) {
+				if (running) {
+					System.err.println("协作式消费循环异常: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * 计算目标分配并推进交接，返回持有的队列是否有变化
+	 */
+	private boolean rebalance(long now) throws MQClientException {
+		if (topicQueues.isEmpty() || now - topicQueuesRefreshed > 10_000) {
+			topicQueues = new ArrayList<>(consumer.fetchMessageQueues(topic));
+			topicQueuesRefreshed = now;
+		}
+
+		List<String> live = new ArrayList<>();
+		live.add(memberId);
+		for (MemberState member : members.values()) {
+			if (now - member.receivedAt <= sessionTimeoutMillis && !member.left) {
+				live.add(member.memberId);
+			}
+		}
+		Set<MessageQueue> target = new HashSet<>(strategy.allocate(group, memberId, topicQueues, live));
+
+		boolean changed = false;
+		for (MessageQueue mq : owned) {
+			if (revoking.contains(mq)) {
+				continue;
+			}
+			// 成员视图短暂不一致时两边都可能持有同一个队列，成员ID小的保留
+			String other = claimedByOther(mq, now);
+			if (!target.contains(mq) || (other != null && other.compareTo(memberId) < 0)) {
+				consumer.pause(List.of(mq));
+				revoking.add(mq);
+				QueueState state = states.get(mq);
+				if (state != null) {
+					// 排队中的批次不再处理，重试中的批次放弃，释放不必等它们重试完
+					state.revoking = true;
+				}
+			}
+		}
+
+		for (Iterator<MessageQueue> it = revoking.iterator(); it.hasNext(); ) {
+			MessageQueue mq = it.next();
+			QueueState state = states.get(mq);
+			if (state != null && state.inFlight.get() > 0) {
+				continue;
+			}
+			// 在途批次已处理完，先同步提交位点，再移出 assign 集合并广播释放
+			long offset = state == null ? -1 : state.completedOffset;
+			if (offset >= 0) {
+				consumer.commit(Map.of(mq, offset), true);
+			}
+			recentReleases.put(mq, new long[]{offset, now});
+			states.remove(mq);
+			owned.remove(mq);
+			it.remove();
+			changed = true;
+		}
+
+		Map<MessageQueue, Long> seeks = new HashMap<>();
+		for (MessageQueue mq : target) {
+			if (owned.contains(mq)) {
+				continue;
+			}
+			if (claimedByOther(mq, now) != null) {
+				waitingSince.putIfAbsent(mq, now);
+				continue;
+			}
+			Long since = waitingSince.remove(mq);
+			if (since != null) {
+				handoffCount.incrementAndGet();
+				handoffWaitMillis.addAndGet(now - since);
+			}
+			long released = releasedOffset(mq, now);
+			if (released >= 0) {
+				seeks.put(mq, released);
+			}
+			owned.add(mq);
+			recentReleases.remove(mq);
+			changed = true;
+		}
+		waitingSince.keySet().retainAll(target);
+		recentReleases.values().removeIf(release -> now - release[1] > sessionTimeoutMillis * 2);
+		// 每次启动都用新的成员ID，宕机或退出的成员不删除会一直累积，每次 poll 都要遍历
+		members.values().removeIf(member -> now - member.receivedAt > sessionTimeoutMillis * MEMBER_EXPIRY_SESSIONS);
+
+		if (changed) {
+			if (owned.isEmpty()) {
+				// assign 不接受空集合，一个队列都不持有时换一个新的消费者实例，释放掉的队列不会再被本成员持久化位点
+				consumer.shutdown();
+				consumer = newDataConsumer();
+				consumer.start();
+				System.out.println("[" + memberId.substring(0, 8) + "] 不持有任何队列");
+				return true;
+			}
+			consumer.assign(new HashSet<>(owned));
+			for (Map.Entry<MessageQueue, Long> seek : seeks.entrySet()) {
+				consumer.seek(seek.getKey(), seek.getValue());
+			}
+			System.out.println("[" + memberId.substring(0, 8) + "] 持有队列: " + queueIds(owned)
+					+ (revoking.isEmpty() ? "" : ", 释放中: " + queueIds(revoking)));
+		}
+		return changed;
+	}
+
+	private DefaultLitePullConsumer newDataConsumer() {
+		DefaultLitePullConsumer pullConsumer = new DefaultLitePullConsumer(group);
+		pullConsumer.setNamesrvAddr(namesrvAddr);
+		pullConsumer.setInstanceName(memberId);
+		pullConsumer.setAutoCommit(false);
+		return pullConsumer;
+	}
+
+	private void dispatch(List<MessageExt> msgs) {
+		Map<MessageQueue, List<MessageExt>> byQueue = new LinkedHashMap<>();
+		for (MessageExt msg : msgs) {
+			MessageQueue mq = new MessageQueue(msg.getTopic(), msg.getBrokerName(), msg.getQueueId());
+			// 释放中的队列不再处理新消息，它们在提交的位点之后，由新主人消费
+			if (owned.contains(mq) && !revoking.contains(mq)) {
+				byQueue.computeIfAbsent(mq, key -> new ArrayList<>()).add(msg);
+			}
+		}
+		byQueue.forEach((mq, batch) -> {
+			QueueState state = states.computeIfAbsent(mq, key -> new QueueState());
+			state.inFlight.incrementAndGet();
+			state.tail = state.tail.thenRunAsync(() -> process(mq, state, batch), workers);
+		});
+	}
+
+	private void process(MessageQueue mq, QueueState state, List<MessageExt> batch) {
+		try {
+			if (state.blocked || state.revoking) {
+				// 前面的批次没有完成，位点不能越过它，后面的批次留给新主人或重启后处理
+				return;
+			}
+			for (int attempt = 0; ; attempt++) {
+				try {
+					handler.handle(mq, batch);
+					break;
+				} catch (Exception e) {
+					if (!running || state.revoking) {
+						state.blocked = true;
+						return;
+					}
+					if (attempt >= maxRetries) {
+						if (!sendToDeadLetter(mq, state, batch, e)) {
+							state.blocked = true;
+							return;
+						}
+						break;
+					}
+					long backoff = Math.min(100L << attempt, 1000L);
+					System.err.println("批次处理失败，" + backoff + "ms 后重试: queue=" + mq.getQueueId() + ", error=" + e.getMessage());
+					Thread.sleep(backoff);
+				}
+			}
+			state.completedOffset = batch.get(batch.size() - 1).getQueueOffset() + 1;
+		} catch (InterruptedException e) {
+			state.blocked = true;
+			Thread.currentThread().interrupt();
+		} finally {
+			state.inFlight.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 写入死信 topic 成功返回 true；失败时一直重试，直到成功、关闭或队列开始释放（返回 false）
+	 */
+	private boolean sendToDeadLetter(MessageQueue mq, QueueState state, List<MessageExt> batch, Exception cause)
+			throws InterruptedException {
+		String range = "queue=" + mq.getQueueId() + ", offset=" + batch.get(0).getQueueOffset()
+				+ "~" + batch.get(batch.size() - 1).getQueueOffset();
+		while (running && !state.revoking) {
+			try {
+				deadLetterSender.send(mq, batch, cause);
+				System.err.println("批次重试 " + maxRetries + " 次仍失败，已转入 " + deadLetterSender.getTopic()
+						+ ": " + range + ", error=" + cause.getMessage());
+				return true;
+			} catch (Exception e) {
+				System.err.println("死信写入失败，1 秒后重试: " + range + ", error=" + e.getMessage());
+				Thread.sleep(1000);
+			}
+		}
+		return false;
+	}
+
+	private void commitCompleted() {
+		Map<MessageQueue, Long> offsets = new HashMap<>();
+		states.forEach((mq, state) -> {
+			long offset = state.completedOffset;
+			if (offset > state.committedOffset && !revoking.contains(mq)) {
+				offsets.put(mq, offset);
+				state.committedOffset = offset;
+			}
+		});
+		if (!offsets.isEmpty()) {
+			consumer.commit(offsets, false);
+		}
+	}
+
+	private Map<MessageQueue, Long> completedOffsets(Collection<MessageQueue> queues) {
+		Map<MessageQueue, Long> offsets = new HashMap<>();
+		for (MessageQueue mq : queues) {
+			QueueState state = states.get(mq);
+			if (state != null && state.completedOffset >= 0) {
+				offsets.put(mq, state.completedOffset);
+			}
+		}
+		return offsets;
+	}
+
+	/**
+	 * 其他存活成员在最新快照中持有该队列时返回其成员ID
+	 */
+	private String claimedByOther(MessageQueue mq, long now) {
+		String key = queueKey(mq);
+		for (MemberState member : members.values()) {
+			if (!member.left && now - member.receivedAt <= sessionTimeoutMillis && member.owned.contains(key)) {
+				return member.memberId;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 其他成员最近释放该队列时提交的位点，没有时返回 -1
+	 */
+	private long releasedOffset(MessageQueue mq, long now) {
+		String key = queueKey(mq);
+		long offset = -1;
+		long latest = 0;
+		for (MemberState member : members.values()) {
+			long[] release = member.released.get(key);
+			if (release != null && release[1] > latest && now - member.receivedAt <= sessionTimeoutMillis * 2) {
+				offset = release[0];
+				latest = release[1];
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * 快照格式: 成员ID \t 序号 \t 是否退出 \t 持有的队列(逗号分隔) \t 释放的队列(队列=位点@时间，逗号分隔)
+	 */
+	private void sendState() {
+		lastHeartbeat = System.currentTimeMillis();
+		StringBuilder releases = new StringBuilder();
+		recentReleases.forEach((mq, release) -> {
+			if (releases.length() > 0) {
+				releases.append(',');
+			}
+			releases.append(queueKey(mq)).append('=').append(release[0]).append('@').append(release[1]);
+		});
+		List<String> ownedKeys = new ArrayList<>();
+		owned.forEach(mq -> ownedKeys.add(queueKey(mq)));
+		String body = memberId + SEPARATOR + (++seq) + SEPARATOR + (running ? 0 : 1) + SEPARATOR
+				+ String.join(",", ownedKeys) + SEPARATOR + releases;
+		try {
+			controlProducer.sendOneway(new Message(controlTopic, body.getBytes(StandardCharsets.UTF_8)));
+		} catch (Exception e) {
+			System.err.println("广播成员状态失败: " + e.getMessage());
+		}
+	}
+
+	private void onControlMessage(String body) {
+		String[] parts = body.split(SEPARATOR, -1);
+		if (parts.length < 5 || parts[0].equals(memberId)) {
+			return;
+		}
+		long memberSeq = Long.parseLong(parts[1]);
+		members.compute(parts[0], (id, current) -> {
+			// 控制消息可能乱序，只保留序号最大的快照
+			if (current != null && current.seq >= memberSeq) {
+				return current;
+			}
+			MemberState state = new MemberState(id, memberSeq, "1".equals(parts[2]));
+			if (!parts[3].isEmpty()) {
+				state.owned.addAll(List.of(parts[3].split(",")));
+			}
+			if (!parts[4].isEmpty()) {
+				for (String release : parts[4].split(",")) {
+					int eq = release.lastIndexOf('=');
+					int at = release.lastIndexOf('@');
+					state.released.put(release.substring(0, eq), new long[]{
+							Long.parseLong(release.substring(eq + 1, at)), Long.parseLong(release.substring(at + 1))});
+				}
+			}
+			return state;
+		});
+	}
+
+	private static String queueKey(MessageQueue mq) {
+		return mq.getBrokerName() + "#" + mq.getQueueId();
+	}
+
+	private static List<Integer> queueIds(Collection<MessageQueue> queues) {
+		return queues.stream().map(MessageQueue::getQueueId).sorted().toList();
+	}
+
+	/**
+	 * 交接次数: 需要等待其他成员释放后才接手的队列数
+	 */
+	public long getHandoffCount() {
+		return handoffCount.get();
+	}
+
+	/**
+	 * 交接总等待时间，即这些队列无人消费的时长
+	 */
+	public long getHandoffWaitMillis() {
+		return handoffWaitMillis.get();
+	}
+
+	public String getMemberId() {
+		return memberId;
+	}
+
+	public void setHeartbeatMillis(long heartbeatMillis) {
+		this.heartbeatMillis = heartbeatMillis;
+	}
+
+	public void setSessionTimeoutMillis(long sessionTimeoutMillis) {
+		this.sessionTimeoutMillis = sessionTimeoutMillis;
+	}
+
+	public void setPollTimeoutMillis(long pollTimeoutMillis) {
+		this.pollTimeoutMillis = pollTimeoutMillis;
+	}
+
+	public void setWorkerThreads(int workerThreads) {
+		this.workerThreads = workerThreads;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	private static class QueueState {
+		private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+		private final AtomicInteger inFlight = new AtomicInteger();
+		/**
+		 * 已处理完的下一条位点，-1 表示还没有处理过
+		 */
+		private volatile long completedOffset = -1;
+		private long committedOffset = -1;
+		/**
+		 * 队列开始释放，由 poll 线程设置
+		 */
+		private volatile boolean revoking;
+		/**
+		 * 有批次放弃处理，之后的批次直接跳过
+		 */
+		private volatile boolean blocked;
+	}
+
+	private static class MemberState {
+		private final String memberId;
+		private final long seq;
+		private final boolean left;
+		private final long receivedAt = System.currentTimeMillis();
+		private final Set<String> owned = new HashSet<>();
+		private final Map<String, long[]> released = new HashMap<>();
+
+		private MemberState(String memberId, long seq, boolean left) {
+			this.memberId = memberId;
+			this.seq = seq;
+			this.left = left;
+		}
+	}
+}
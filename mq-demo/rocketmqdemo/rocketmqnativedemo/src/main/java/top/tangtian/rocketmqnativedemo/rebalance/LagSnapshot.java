@@ -0,0 +1,118 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author tangtian
+ * @date 2026-10-21 14:00
+ *
+ * 一个版本的队列积压快照，由发布者统一采集后广播，所有消费者拿到的是同一份数据
+ *
+ * 快照绑定采集时发布者看到的消费者列表（members），只有重平衡时 broker 返回的消费者列表与之相同才能使用；
+ * 消费者列表是所有成员在分配时都看得到的信息，成员变化后所有人同样地不再使用这份快照
+ *
+ * 编码格式: 版本 \t 发布者clientId \t 成员clientId,... \t topic@brokerName#queueId=积压,...
+ */
+public final class LagSnapshot {
+
+	private static final String SEPARATOR = "\t";
+
+	private final long version;
+	private final String publisher;
+	private final List<String> members;
+	private final Map<String, Long> lags;
+
+	private LagSnapshot(long version, String publisher, List<String> members, Map<String, Long> lags) {
+		this.version = version;
+		this.publisher = publisher;
+		this.members = members;
+		this.lags = lags;
+	}
+
+	/**
+	 * @param members 排序后的消费者列表（AllocationHashing.sortedConsumers）
+	 */
+	public static LagSnapshot of(long version, String publisher, List<String> members, Map<MessageQueue, Long> lags) {
+		Map<String, Long> keyed = new HashMap<>(lags.size() * 2);
+		lags.forEach((mq, lag) -> keyed.put(keyOf(mq), lag));
+		return new LagSnapshot(version, publisher, List.copyOf(members), keyed);
+	}
+
+	/**
+	 * 快照中该队列的积压，没有时返回 -1
+	 */
+	public long lagOf(MessageQueue mq) {
+		Long lag = lags.get(keyOf(mq));
+		return lag == null ? -1 : lag;
+	}
+
+	/**
+	 * 是否包含全部队列，缺队列时（发布后扩容了队列）不能用于分配
+	 */
+	public boolean covers(Collection<MessageQueue> queues) {
+		for (MessageQueue mq : queues) {
+			if (!lags.containsKey(keyOf(mq))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 是否为这组消费者采集，consumers 必须已排序
+	 */
+	public boolean isFor(List<String> consumers) {
+		return members.equals(consumers);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public String getPublisher() {
+		return publisher;
+	}
+
+	public List<String> getMembers() {
+		return members;
+	}
+
+	public String encode() {
+		StringBuilder body = new StringBuilder().append(version).append(SEPARATOR).append(publisher).append(SEPARATOR)
+				.append(String.join(",", members)).append(SEPARATOR);
+		boolean first = true;
+		for (Map.Entry<String, Long> entry : lags.entrySet()) {
+			if (!first) {
+				body.append(',');
+			}
+			body.append(entry.getKey()).append('=').append(entry.getValue());
+			first = false;
+		}
+		return body.toString();
+	}
+
+	public static LagSnapshot decode(String body) {
+		String[] parts = body.split(SEPARATOR, -1);
+		if (parts.length < 4) {
+			throw new IllegalArgumentException("积压快照格式错误: " + body);
+		}
+		List<String> members = parts[2].isEmpty() ? List.of() : List.of(parts[2].split(","));
+		Map<String, Long> lags = new HashMap<>();
+		if (!parts[3].isEmpty()) {
+			for (String entry : parts[3].split(",")) {
+				int eq = entry.lastIndexOf('=');
+				lags.put(entry.substring(0, eq), Long.parseLong(entry.substring(eq + 1)));
+			}
+		}
+		return new LagSnapshot(Long.parseLong(parts[0]), parts[1], members, lags);
+	}
+
+	private static String keyOf(MessageQueue mq) {
+		return mq.getTopic() + "@" + mq.getBrokerName() + "#" + mq.getQueueId();
+	}
+}
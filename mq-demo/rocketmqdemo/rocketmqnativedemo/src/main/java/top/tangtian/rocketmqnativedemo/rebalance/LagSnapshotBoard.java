@@ -0,0 +1,282 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.remoting.protocol.heartbeat.MessageModel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * @author tangtian
+ * @date 2026-10-21 14:20
+ *
+ * 积压快照的发布和切换，给 LagWeightedAllocateStrategy 提供所有消费者一致的积压数据
+ *
+ * 各消费者的重平衡由各自的定时器（默认 20 秒）触发，不在同一时刻发生，不能按各自的时钟选快照：
+ * 一个消费者在切换前重平衡、另一个在切换后重平衡，两边用的快照不同，直到下一次重平衡前队列重复或无人消费。
+ * 这里把快照的切换做成两阶段，切换后所有成员立即重平衡：
+ * ├─ 1. 发布者（排序后第一个消费者）每个周期采集积压，带上它看到的消费者列表和版本号广播（PROPOSE）
+ * ├─ 2. 列表中的成员收到后回复确认（ACK），此时仍使用原来的快照
+ * ├─ 3. 发布者收齐列表中所有成员的确认后广播切换（ACTIVATE），有成员没确认（宕机、刚加入）就放弃这个版本
+ * ├─ 4. 成员收到切换后使用新快照，并立即触发一次重平衡（onActivate），不等下一个定时周期
+ * └─ 5. 快照只在重平衡时的消费者列表与快照的成员列表相同时使用（LagSnapshot.isFor），成员变化后所有人一起退回粘性平均分配
+ *
+ * 仍然存在的不一致：切换消息到达各成员的时间差（毫秒级）内，先切换的成员已按新快照重平衡；
+ * 成员变化通知到达时间不同时也是如此，与 RocketMQ 自带的重平衡相同。AllocationSimulation 的第二张表按错开的重平衡时刻统计了这部分时间
+ *
+ * 用法:
+ * ├─ LagSnapshotBoard board = new LagSnapshotBoard(group, "lag_snapshot_topic", namesrvAddr, instanceName, 30_000);
+ * ├─ LagWeightedAllocateStrategy strategy = new LagWeightedAllocateStrategy(board::current);
+ * ├─ consumer.setAllocateMessageQueueStrategy(strategy);
+ * ├─ board.start(strategy, () -> consumer.getDefaultMQPushConsumerImpl().getmQClientFactory().rebalanceImmediately());
+ * └─ consumer.start(); board.startPublishing(new QueueLagProvider(consumer, 10_000));
+ */
+public class LagSnapshotBoard {
+
+	private static final String PROPOSE = "PROPOSE";
+	private static final String ACK = "ACK";
+	private static final String ACTIVATE = "ACTIVATE";
+	private static final String SEPARATOR = "\t";
+
+	/**
+	 * 保留最近收到的几个提议，切换消息只会指向最近的版本
+	 */
+	private static final int RETAINED_PROPOSALS = 4;
+
+	private final long periodMillis;
+	private final String controlTopic;
+	private final Consumer<String> transport;
+	private final LongSupplier clock;
+	private final DefaultMQProducer producer;
+	private final DefaultMQPushConsumer consumer;
+	private ScheduledExecutorService publisher;
+
+	private LagWeightedAllocateStrategy strategy;
+	private Runnable onActivate = () -> {
+	};
+
+	/**
+	 * 成员状态: 收到的提议和正在使用的快照
+	 */
+	private final Map<String, LagSnapshot> proposals = new LinkedHashMap<>();
+	private volatile LagSnapshot active;
+
+	/**
+	 * 发布者状态: 等待确认的版本，以及最近一次切换的版本（每个周期重发一次切换，补给漏收的成员）
+	 */
+	private LagSnapshot pending;
+	private final Set<String> acks = new HashSet<>();
+	private LagSnapshot lastActivated;
+
+	public LagSnapshotBoard(String group, String controlTopic, String namesrvAddr, String instanceName, long periodMillis) {
+		this.periodMillis = periodMillis;
+		this.controlTopic = controlTopic;
+		this.clock = System::currentTimeMillis;
+
+		this.producer = new DefaultMQProducer(group + "_lag_producer");
+		this.producer.setNamesrvAddr(namesrvAddr);
+		this.producer.setInstanceName(instanceName);
+		this.transport = body -> {
+			try {
+				producer.send(new Message(controlTopic, body.getBytes(StandardCharsets.UTF_8)));
+			} catch (Exception e) {
+				// 提议或确认丢失时本周期不切换，切换丢失时下个周期重发
+				System.err.println("发送积压快照控制消息失败: " + e.getMessage());
+			}
+		};
+
+		this.consumer = new DefaultMQPushConsumer(group + "_lag");
+		this.consumer.setNamesrvAddr(namesrvAddr);
+		this.consumer.setInstanceName(instanceName);
+		this.consumer.setMessageModel(MessageModel.BROADCASTING);
+		this.consumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+	}
+
+	/**
+	 * 不连接 RocketMQ，控制消息交给 transport 广播，由调用方把收到的消息交给 onMessage，用于模拟
+	 */
+	LagSnapshotBoard(long periodMillis, Consumer<String> transport, LongSupplier clock) {
+		this.periodMillis = periodMillis;
+		this.controlTopic = null;
+		this.transport = transport;
+		this.clock = clock;
+		this.producer = null;
+		this.consumer = null;
+	}
+
+	/**
+	 * @param strategy   本消费者的分配策略，用于取得本消费者的 clientId 和看到的消费者列表
+	 * @param onActivate 切换到新快照后调用，应立即触发本消费者的重平衡
+	 */
+	public void start(LagWeightedAllocateStrategy strategy, Runnable onActivate) throws MQClientException {
+		this.strategy = strategy;
+		this.onActivate = onActivate;
+		if (consumer == null) {
+			return;
+		}
+		producer.start();
+		consumer.subscribe(controlTopic, "*");
+		consumer.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
+			for (MessageExt msg : msgs) {
+				try {
+					onMessage(new String(msg.getBody(), StandardCharsets.UTF_8));
+				} catch (RuntimeException e) {
+					System.err.println("丢弃无法解析的积压快照控制消息: " + e.getMessage());
+				}
+			}
+			return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+		});
+		consumer.start();
+	}
+
+	/**
+	 * 每个周期检查一次，本消费者是发布者时采集积压并发起新版本
+	 *
+	 * @param lagFn 积压来源，例如 QueueLagProvider
+	 */
+	public void startPublishing(ToLongFunction<MessageQueue> lagFn) {
+		publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "lag-snapshot-publisher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		publisher.scheduleWithFixedDelay(() -> {
+			try {
+				publishIfLeader(lagFn);
+			} catch (Exception e) {
+				System.err.println("发布积压快照异常: " + e.getMessage());
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public void shutdown() {
+		if (publisher != null) {
+			publisher.shutdownNow();
+		}
+		if (consumer != null) {
+			consumer.shutdown();
+			producer.shutdown();
+		}
+	}
+
+	/**
+	 * 当前使用的快照，还没有完成过切换时返回 null
+	 */
+	public LagSnapshot current() {
+		return active;
+	}
+
+	void publishIfLeader(ToLongFunction<MessageQueue> lagFn) {
+		List<MessageQueue> queues = strategy.lastQueues();
+		if (!strategy.isPublisher() || queues.isEmpty()) {
+			return;
+		}
+		String self = strategy.lastCID();
+		LagSnapshot previous;
+		synchronized (this) {
+			previous = lastActivated;
+		}
+		if (previous != null && previous.getPublisher().equals(self)) {
+			transport.accept(ACTIVATE + SEPARATOR + previous.getVersion() + SEPARATOR + self);
+		}
+
+		Map<MessageQueue, Long> lags = new HashMap<>(queues.size() * 2);
+		for (MessageQueue mq : queues) {
+			lags.put(mq, lagFn.applyAsLong(mq));
+		}
+		// 版本号用发布时间，且大于正在使用的版本：更换发布者后，新发布者的时钟即使偏慢，成员也会接受它的切换
+		LagSnapshot inUse = active;
+		long floor = Math.max(previous == null ? 0 : previous.getVersion(), inUse == null ? 0 : inUse.getVersion());
+		long version = Math.max(clock.getAsLong(), floor + 1);
+		LagSnapshot snapshot = LagSnapshot.of(version, self, strategy.lastConsumers(), lags);
+		synchronized (this) {
+			// 上一个版本没收齐确认就被新版本取代
+			pending = snapshot;
+			acks.clear();
+		}
+		transport.accept(PROPOSE + SEPARATOR + snapshot.encode());
+	}
+
+	void onMessage(String body) {
+		int tab = body.indexOf(SEPARATOR);
+		String type = body.substring(0, tab);
+		String rest = body.substring(tab + 1);
+		switch (type) {
+			case PROPOSE -> onPropose(LagSnapshot.decode(rest));
+			case ACK -> {
+				String[] parts = rest.split(SEPARATOR, -1);
+				onAck(Long.parseLong(parts[0]), parts[1], parts[2]);
+			}
+			case ACTIVATE -> {
+				String[] parts = rest.split(SEPARATOR, -1);
+				onActivate(Long.parseLong(parts[0]), parts[1]);
+			}
+			default -> throw new IllegalArgumentException("未知的控制消息: " + type);
+		}
+	}
+
+	private void onPropose(LagSnapshot snapshot) {
+		String self = strategy == null ? null : strategy.lastCID();
+		if (self == null || !snapshot.getMembers().contains(self)) {
+			return;
+		}
+		synchronized (this) {
+			proposals.put(keyOf(snapshot.getVersion(), snapshot.getPublisher()), snapshot);
+			while (proposals.size() > RETAINED_PROPOSALS) {
+				proposals.remove(proposals.keySet().iterator().next());
+			}
+		}
+		transport.accept(ACK + SEPARATOR + snapshot.getVersion() + SEPARATOR + snapshot.getPublisher() + SEPARATOR + self);
+	}
+
+	private void onAck(long version, String publisherId, String member) {
+		LagSnapshot ready;
+		synchronized (this) {
+			if (pending == null || pending.getVersion() != version || !pending.getPublisher().equals(publisherId)) {
+				return;
+			}
+			acks.add(member);
+			if (!acks.containsAll(pending.getMembers())) {
+				return;
+			}
+			ready = pending;
+			lastActivated = pending;
+			pending = null;
+		}
+		transport.accept(ACTIVATE + SEPARATOR + ready.getVersion() + SEPARATOR + ready.getPublisher());
+	}
+
+	private void onActivate(long version, String publisherId) {
+		synchronized (this) {
+			LagSnapshot snapshot = proposals.get(keyOf(version, publisherId));
+			if (snapshot == null || (active != null && active.getVersion() >= version)) {
+				return;
+			}
+			active = snapshot;
+		}
+		onActivate.run();
+	}
+
+	private static String keyOf(long version, String publisherId) {
+		return publisherId + "#" + version;
+	}
+}
@@ -0,0 +1,191 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 11:45
+ *
+ * 按积压量和消费者处理能力加权的分配策略
+ *
+ * 平均分配只看队列个数，一个积压 10 万条的队列和一个空队列算作同样的负载；
+ * 这里把每个队列的负载记为 1 + 积压量，按"最长处理时间优先"(LPT) 贪心分配：
+ * ├─ 1. 队列按负载从大到小排序
+ * ├─ 2. 依次分给 (已分配负载 + 该队列负载) / 处理能力 最小的消费者
+ * └─ 3. 负载相同时按粘性哈希分数选择，积压不变时分配结果也尽量不变
+ *
+ * 一致性要求：所有消费者必须用同样的积压数据和能力权重计算，否则会出现队列重复分配或无人消费
+ * ├─ 积压不能各自读取：每个消费者读 broker 的时刻不同，本地持有队列的位点也只有自己知道，
+ * │  哪怕取整也会有人落在边界两侧（见 AllocationSimulation 的 LAG_LOCAL_VIEW）
+ * ├─ 只使用一个发布者统一采集、全员确认后才切换的快照（LagSnapshotBoard），切换后所有成员立即重平衡
+ * ├─ 快照的成员列表与本次的消费者列表不同、缺少某些队列或还没有快照时，退回按能力平均分配（StickyAllocateStrategy），
+ * │  消费者列表是所有成员都看得到的，退回与否各成员一致
+ * └─ 能力权重只能从各方都看得到的信息中得到，默认从 clientId 的实例名后缀解析，见 capacityFromClientId
+ *
+ * 代价是积压变化时队列移动较多（见 AllocationSimulation），快照周期不宜太短
+ */
+public class LagWeightedAllocateStrategy implements AllocateMessageQueueStrategy {
+
+	/**
+	 * 实例名中的能力权重后缀，例如 instanceName = "order_consumer#w4" 表示 4 倍处理能力
+	 */
+	private static final String CAPACITY_SUFFIX = "#w";
+
+	private final Supplier<LagSnapshot> snapshotFn;
+	private final ToDoubleFunction<String> capacityFn;
+	private final AllocateMessageQueueStrategy fallback = new StickyAllocateStrategy();
+
+	/**
+	 * 最近一次分配时看到的消费者和队列，发布者据此判断自己是否负责采集
+	 */
+	private volatile View lastView;
+	private final AtomicLong fallbackCount = new AtomicLong();
+
+	/**
+	 * @param snapshotFn 所有消费者共用的当前积压快照，没有时返回 null
+	 * @param capacityFn 消费者的处理能力权重，必须大于 0，只能依赖 clientId 等各方一致的信息
+	 */
+	public LagWeightedAllocateStrategy(Supplier<LagSnapshot> snapshotFn, ToDoubleFunction<String> capacityFn) {
+		this.snapshotFn = snapshotFn;
+		this.capacityFn = capacityFn;
+	}
+
+	public LagWeightedAllocateStrategy(Supplier<LagSnapshot> snapshotFn) {
+		this(snapshotFn, LagWeightedAllocateStrategy::capacityFromClientId);
+	}
+
+	@Override
+	public List<MessageQueue> allocate(String consumerGroup, String currentCID,
+									   List<MessageQueue> mqAll, List<String> cidAll) {
+		List<MessageQueue> result = new ArrayList<>();
+		if (currentCID == null || mqAll == null || mqAll.isEmpty() || cidAll == null || !cidAll.contains(currentCID)) {
+			return result;
+		}
+
+		List<MessageQueue> queues = AllocationHashing.sortedQueues(mqAll);
+		List<String> consumers = AllocationHashing.sortedConsumers(cidAll);
+		lastView = new View(currentCID, consumers, queues);
+
+		LagSnapshot snapshot = snapshotFn.get();
+		if (snapshot == null || !snapshot.isFor(consumers) || !snapshot.covers(queues)) {
+			fallbackCount.incrementAndGet();
+			return fallback.allocate(consumerGroup, currentCID, queues, consumers);
+		}
+
+		int consumerCount = consumers.size();
+		int current = consumers.indexOf(currentCID);
+		long[] consumerHashes = new long[consumerCount];
+		double[] capacities = new double[consumerCount];
+		for (int i = 0; i < consumerCount; i++) {
+			consumerHashes[i] = AllocationHashing.hash(consumers.get(i));
+			capacities[i] = Math.max(capacityFn.applyAsDouble(consumers.get(i)), 0.01);
+		}
+
+		int queueCount = queues.size();
+		long[] weights = new long[queueCount];
+		long[] queueHashes = new long[queueCount];
+		List<Integer> order = new ArrayList<>(queueCount);
+		for (int q = 0; q < queueCount; q++) {
+			weights[q] = 1 + Math.max(0, snapshot.lagOf(queues.get(q)));
+			queueHashes[q] = AllocationHashing.hash(queues.get(q));
+			order.add(q);
+		}
+		// 负载大的先分，负载相同按队列顺序，保证所有消费者遍历顺序一致
+		order.sort(Comparator.<Integer>comparingLong(q -> weights[q]).reversed().thenComparingInt(q -> q));
+
+		double[] load = new double[consumerCount];
+		for (int q : order) {
+			int owner = -1;
+			double best = 0;
+			long bestScore = 0;
+			for (int i = 0; i < consumerCount; i++) {
+				double cost = (load[i] + weights[q]) / capacities[i];
+				long score = AllocationHashing.score(queueHashes[q], consumerHashes[i]);
+				if (owner < 0 || cost < best || (cost == best && score > bestScore)) {
+					owner = i;
+					best = cost;
+					bestScore = score;
+				}
+			}
+			load[owner] += weights[q];
+			if (owner == current) {
+				result.add(queues.get(q));
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String getName() {
+		return "LAG_WEIGHTED";
+	}
+
+	/**
+	 * 排序后的消费者中第一个负责采集和发布快照，各消费者视图一致时只有一个发布者
+	 */
+	public boolean isPublisher() {
+		View view = lastView;
+		return view != null && !view.consumers().isEmpty() && view.consumers().get(0).equals(view.currentCID());
+	}
+
+	/**
+	 * 最近一次分配时本消费者的 clientId，还没有分配过时返回 null
+	 */
+	public String lastCID() {
+		View view = lastView;
+		return view == null ? null : view.currentCID();
+	}
+
+	/**
+	 * 最近一次分配时看到的消费者列表（已排序），发布的快照绑定这个列表
+	 */
+	public List<String> lastConsumers() {
+		View view = lastView;
+		return view == null ? List.of() : view.consumers();
+	}
+
+	/**
+	 * 最近一次分配时的全部队列，发布者按这些队列采集积压
+	 */
+	public List<MessageQueue> lastQueues() {
+		View view = lastView;
+		return view == null ? List.of() : view.queues();
+	}
+
+	/**
+	 * 没有可用快照（没有、成员列表不同或缺队列）、退回平均分配的次数
+	 */
+	public long getFallbackCount() {
+		return fallbackCount.get();
+	}
+
+	/**
+	 * clientId 格式为 ip@instanceName，实例名以 #w{权重} 结尾时使用该权重，否则为 1
+	 */
+	public static double capacityFromClientId(String clientId) {
+		int index = clientId.lastIndexOf(CAPACITY_SUFFIX);
+		if (index < 0) {
+			return 1;
+		}
+		int end = index + CAPACITY_SUFFIX.length();
+		while (end < clientId.length() && (Character.isDigit(clientId.charAt(end)) || clientId.charAt(end) == '.')) {
+			end++;
+		}
+		try {
+			return Double.parseDouble(clientId.substring(index + CAPACITY_SUFFIX.length(), end));
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
+	private record View(String currentCID, List<String> consumers, List<MessageQueue> queues) {
+	}
+}
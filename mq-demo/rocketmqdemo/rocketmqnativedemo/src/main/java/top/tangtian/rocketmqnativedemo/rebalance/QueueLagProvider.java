@@ -0,0 +1,59 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 12:00
+ *
+ * 队列积压量: broker 最大位点 - 消费者组已提交位点
+ * 只由 LagSnapshotBoard 的发布者调用，采集结果以快照形式广播；
+ * 不能直接交给 LagWeightedAllocateStrategy，各消费者读到的值不同会导致分配不一致
+ *
+ * 重平衡默认每 20 秒一次，每次都要查询所有队列，这里按 refreshMillis 缓存，
+ * 查询失败时沿用上一次的值，从没查到过则按 0 处理
+ *
+ * 本消费者持有的队列读内存中的位点：READ_FROM_STORE 会用 broker 上较旧的值覆盖内存位点，
+ * 下次持久化时位点回退，造成重复消费
+ */
+public class QueueLagProvider implements ToLongFunction<MessageQueue> {
+
+	private final DefaultMQPushConsumer consumer;
+	private final long refreshMillis;
+	private final Map<MessageQueue, long[]> cache = new ConcurrentHashMap<>();
+
+	public QueueLagProvider(DefaultMQPushConsumer consumer, long refreshMillis) {
+		this.consumer = consumer;
+		this.refreshMillis = refreshMillis;
+	}
+
+	@Override
+	public long applyAsLong(MessageQueue mq) {
+		long now = System.currentTimeMillis();
+		// [积压量, 查询时间]
+		long[] entry = cache.get(mq);
+		if (entry != null && now - entry[1] < refreshMillis) {
+			return entry[0];
+		}
+		try {
+			long maxOffset = consumer.maxOffset(mq);
+			boolean owned = consumer.getDefaultMQPushConsumerImpl().getRebalanceImpl()
+					.getProcessQueueTable().containsKey(mq);
+			long committed = owned ? consumer.getOffsetStore().readOffset(mq, ReadOffsetType.READ_FROM_MEMORY) : -1;
+			if (committed < 0) {
+				committed = consumer.getOffsetStore().readOffset(mq, ReadOffsetType.READ_FROM_STORE);
+			}
+			long lag = committed < 0 ? 0 : Math.max(0, maxOffset - committed);
+			cache.put(mq, new long[]{lag, now});
+			return lag;
+		} catch (Exception e) {
+			return entry != null ? entry[0] : 0;
+		}
+	}
+}
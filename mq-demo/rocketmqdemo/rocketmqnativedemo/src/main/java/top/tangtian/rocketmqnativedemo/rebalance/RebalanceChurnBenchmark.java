@@ -0,0 +1,240 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.consumer.rebalance.AllocateMessageQueueAveragely;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 16:10
+ *
+ * 对比默认重平衡与 CooperativeRebalanceConsumer 在成员变化时的停顿和重复消费
+ *
+ * 运行: java RebalanceChurnBenchmark <namesrvAddr> [每阶段秒数=15] [每秒消息数=2000]
+ * 需要本地 broker 开启 autoCreateTopicEnable，或提前创建 rebalance-bench-topic（8 个队列）和 rebalance-bench-control
+ *
+ * 流程（两种模式各跑一遍，消费者组不同，消息用 tag 区分）：
+ * ├─ 2 个消费者启动，等分配稳定后开始匀速发送，消息 key 为序号
+ * ├─ 每个阶段结束时变更成员: +1, +1, -1, -1，共 4 次变化
+ * ├─ 每条消息处理耗时 2ms，批次 16 条，重平衡发生时总有批次在处理中
+ * └─ 停止发送后再等一个阶段，让积压消费完
+ *
+ * 指标说明：
+ * ├─ 重复: 同一序号被处理的次数 - 1，累加
+ * ├─ 丢失: 发送成功但从未被处理的序号数
+ * ├─ 停顿: 队列两次消费间隔超过 1 秒的部分累加（发送期间每个队列每秒都有新消息）
+ * └─ 最长停顿: 单个队列最长的消费间隔
+ */
+public class RebalanceChurnBenchmark {
+
+	private static final String TOPIC = "rebalance-bench-topic";
+	private static final String CONTROL_TOPIC = "rebalance-bench-control";
+	private static final long PROCESS_MILLIS_PER_MESSAGE = 2;
+	private static final long STALL_THRESHOLD_MILLIS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		String namesrvAddr = args[0];
+		int phaseSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+		int rate = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+		DefaultMQProducer producer = new DefaultMQProducer("rebalance_bench_producer");
+		producer.setNamesrvAddr(namesrvAddr);
+		producer.start();
+
+		Result defaults = run("DEFAULT", namesrvAddr, producer, phaseSeconds, rate);
+		Result cooperative = run("COOPERATIVE", namesrvAddr, producer, phaseSeconds, rate);
+		producer.shutdown();
+
+		System.out.println();
+		System.out.printf("%-12s %10s %10s %10s %10s %14s %14s%n",
+				"模式", "发送", "处理", "重复", "丢失", "停顿合计(ms)", "最长停顿(ms)");
+		defaults.print();
+		cooperative.print();
+	}
+
+	private static Result run(String mode, String namesrvAddr, DefaultMQProducer producer,
+							  int phaseSeconds, int rate) throws Exception {
+		System.out.println("==== " + mode + " ====");
+		Recorder recorder = new Recorder(mode);
+		String group = "rebalance_bench_" + mode.toLowerCase() + "_" + System.currentTimeMillis();
+		List<AutoCloseable> members = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			members.add(startMember(mode, group, namesrvAddr, recorder, i));
+		}
+		Thread.sleep(TimeUnit.SECONDS.toMillis(phaseSeconds));
+
+		AtomicLong sent = new AtomicLong();
+		Thread sender = new Thread(() -> send(producer, mode, rate, sent), "bench-sender");
+		sender.start();
+		recorder.startMeasuring();
+
+		int nextId = 2;
+		int[] churn = {+1, +1, -1, -1};
+		for (int delta : churn) {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(phaseSeconds));
+			if (delta > 0) {
+				System.out.println(mode + ": 加入消费者 " + nextId);
+				members.add(startMember(mode, group, namesrvAddr, recorder, nextId++));
+			} else {
+				System.out.println(mode + ": 移除最早的消费者");
+				members.remove(0).close();
+			}
+		}
+		Thread.sleep(TimeUnit.SECONDS.toMillis(phaseSeconds));
+
+		sender.interrupt();
+		sender.join();
+		recorder.stopMeasuring();
+		// 等积压消费完
+		Thread.sleep(TimeUnit.SECONDS.toMillis(phaseSeconds));
+		for (AutoCloseable member : members) {
+			member.close();
+		}
+		return recorder.result(sent.get());
+	}
+
+	private static AutoCloseable startMember(String mode, String group, String namesrvAddr,
+											 Recorder recorder, int id) throws Exception {
+		if ("COOPERATIVE".equals(mode)) {
+			CooperativeRebalanceConsumer consumer = new CooperativeRebalanceConsumer(group, TOPIC, CONTROL_TOPIC,
+					namesrvAddr, (mq, msgs) -> recorder.process(mq, msgs));
+			consumer.start();
+			return () -> {
+				consumer.shutdown();
+				System.out.println("COOPERATIVE: 交接 " + consumer.getHandoffCount() + " 次, 等待合计 "
+						+ consumer.getHandoffWaitMillis() + " ms");
+			};
+		}
+		DefaultMQPushConsumer consumer = new DefaultMQPushConsumer(group);
+		consumer.setNamesrvAddr(namesrvAddr);
+		consumer.setInstanceName("bench-" + id);
+		consumer.setAllocateMessageQueueStrategy(new AllocateMessageQueueAveragely());
+		consumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+		consumer.setConsumeMessageBatchMaxSize(16);
+		consumer.subscribe(TOPIC, mode);
+		consumer.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
+			try {
+				recorder.process(context.getMessageQueue(), msgs);
+				return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+			}
+		});
+		consumer.start();
+		return consumer::shutdown;
+	}
+
+	private static void send(DefaultMQProducer producer, String mode, int rate, AtomicLong sent) {
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		long next = System.nanoTime();
+		long seq = 0;
+		while (!Thread.currentThread().isInterrupted()) {
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			next += intervalNanos;
+			Message msg = new Message(TOPIC, mode, String.valueOf(seq),
+					String.valueOf(seq).getBytes(StandardCharsets.UTF_8));
+			try {
+				producer.send(msg);
+				seq++;
+				sent.set(seq);
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				System.err.println("发送失败: " + e.getMessage());
+			}
+		}
+	}
+
+	private static final class Recorder {
+
+		private final String mode;
+		private final Map<Long, AtomicInteger> counts = new ConcurrentHashMap<>();
+		private final Map<Integer, Long> lastConsumed = new ConcurrentHashMap<>();
+		private final AtomicLong stallMillis = new AtomicLong();
+		private final AtomicLong maxGapMillis = new AtomicLong();
+		private volatile boolean measuring;
+
+		private Recorder(String mode) {
+			this.mode = mode;
+		}
+
+		void process(MessageQueue mq, List<MessageExt> msgs) throws InterruptedException {
+			long now = System.currentTimeMillis();
+			if (measuring) {
+				Long last = lastConsumed.put(mq.getQueueId(), now);
+				if (last != null) {
+					long gap = now - last;
+					maxGapMillis.accumulateAndGet(gap, Math::max);
+					if (gap > STALL_THRESHOLD_MILLIS) {
+						stallMillis.addAndGet(gap - STALL_THRESHOLD_MILLIS);
+					}
+				}
+			}
+			int matched = 0;
+			for (MessageExt msg : msgs) {
+				// 协作式消费者按队列拉取全部 tag，只统计本模式发送的消息
+				if (mode.equals(msg.getTags())) {
+					counts.computeIfAbsent(Long.parseLong(msg.getKeys()), key -> new AtomicInteger()).incrementAndGet();
+					matched++;
+				}
+			}
+			Thread.sleep(PROCESS_MILLIS_PER_MESSAGE * matched);
+		}
+
+		void startMeasuring() {
+			measuring = true;
+		}
+
+		void stopMeasuring() {
+			measuring = false;
+		}
+
+		Result result(long sent) {
+			long processed = 0;
+			long duplicates = 0;
+			long lost = 0;
+			for (long seq = 0; seq < sent; seq++) {
+				AtomicInteger count = counts.get(seq);
+				if (count == null) {
+					lost++;
+				} else {
+					processed += count.get();
+					duplicates += count.get() - 1;
+				}
+			}
+			return new Result(mode, sent, processed, duplicates, lost, stallMillis.get(), maxGapMillis.get());
+		}
+	}
+
+	private record Result(String mode, long sent, long processed, long duplicates, long lost,
+						  long stallMillis, long maxGapMillis) {
+
+		void print() {
+			System.out.printf("%-12s %10d %10d %10d %10d %14d %14d%n",
+					mode, sent, processed, duplicates, lost, stallMillis, maxGapMillis);
+		}
+	}
+}
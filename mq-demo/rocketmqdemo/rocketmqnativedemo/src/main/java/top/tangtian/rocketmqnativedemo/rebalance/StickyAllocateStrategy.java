@@ -0,0 +1,81 @@
+package top.tangtian.rocketmqnativedemo.rebalance;
+
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author tangtian
+ * @date 2026-10-20 11:30
+ *
+ * 粘性分配策略：有界负载的最高随机权重哈希
+ *
+ * 平均分配（AllocateMessageQueueAveragely）按消费者下标切连续区间，
+ * 加入或退出一个消费者后，后面所有消费者的区间都会平移，大部分队列换了主人
+ *
+ * 这里的做法：
+ * ├─ 1. 每个队列按 score(队列, 消费者) 给所有消费者排序，优先分给分数最高的消费者
+ * ├─ 2. 每个消费者最多 ceil(队列数 × 能力权重 / 总权重) 个队列，满了顺延给下一个
+ * └─ 3. 消费者变化时，只有离开者的队列和为了均衡必须让出的队列会移动
+ *
+ * RocketMQ 不会把上一轮的全局分配结果告诉消费者，所以"保持原分配"只能靠确定性的哈希实现，
+ * 所有消费者输入相同就得到同样的结果，不会出现队列重复分配或无人消费
+ */
+public class StickyAllocateStrategy implements AllocateMessageQueueStrategy {
+
+	@Override
+	public List<MessageQueue> allocate(String consumerGroup, String currentCID,
+									   List<MessageQueue> mqAll, List<String> cidAll) {
+		List<MessageQueue> result = new ArrayList<>();
+		if (currentCID == null || mqAll == null || mqAll.isEmpty() || cidAll == null || !cidAll.contains(currentCID)) {
+			return result;
+		}
+
+		List<MessageQueue> queues = AllocationHashing.sortedQueues(mqAll);
+		List<String> consumers = AllocationHashing.sortedConsumers(cidAll);
+		int consumerCount = consumers.size();
+		int current = consumers.indexOf(currentCID);
+		long[] consumerHashes = new long[consumerCount];
+		double[] weights = new double[consumerCount];
+		double totalWeight = 0;
+		for (int i = 0; i < consumerCount; i++) {
+			consumerHashes[i] = AllocationHashing.hash(consumers.get(i));
+			weights[i] = Math.max(LagWeightedAllocateStrategy.capacityFromClientId(consumers.get(i)), 0.01);
+			totalWeight += weights[i];
+		}
+
+		// 各消费者上限向上取整，总和不小于队列数，每个队列都能分出去
+		int[] capacity = new int[consumerCount];
+		for (int i = 0; i < consumerCount; i++) {
+			capacity[i] = (int) Math.ceil(queues.size() * weights[i] / totalWeight);
+		}
+		int[] load = new int[consumerCount];
+		for (MessageQueue mq : queues) {
+			long queueHash = AllocationHashing.hash(mq);
+			int owner = -1;
+			long best = 0;
+			for (int i = 0; i < consumerCount; i++) {
+				if (load[i] >= capacity[i]) {
+					continue;
+				}
+				long score = AllocationHashing.score(queueHash, consumerHashes[i]);
+				if (owner < 0 || score > best) {
+					owner = i;
+					best = score;
+				}
+			}
+			load[owner]++;
+			if (owner == current) {
+				result.add(mq);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String getName() {
+		return "STICKY";
+	}
+}
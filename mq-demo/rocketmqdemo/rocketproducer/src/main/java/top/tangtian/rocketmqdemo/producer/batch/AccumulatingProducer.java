@@ -0,0 +1,247 @@
+package top.tangtian.rocketmqdemo.producer.batch;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageSerializer;
+import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 攒批发送器，类似 Kafka 的 linger.ms / batch.size
+ * 同一 topic:tag 的消息先放入缓冲区，攒够 batch-bytes 或等待超过 linger-ms 后作为一个批量消息发出
+ * 缓冲区总内存由 buffer-memory 限制，占满时调用线程最多阻塞 max-block-ms，超时则直接失败
+ *
+ * @author tangtian
+ * @date 2026-10-19 19:40
+ */
+@Slf4j
+@Component
+public class AccumulatingProducer {
+
+	@Resource
+	private RocketMQTemplate rocketMQTemplate;
+
+	@Resource
+	private OrderMessageSerializer orderMessageSerializer;
+
+	@Value("${producer.accumulator.linger-ms:5}")
+	private long lingerMs;
+
+	@Value("${producer.accumulator.batch-bytes:262144}")
+	private int batchBytes;
+
+	@Value("${producer.accumulator.buffer-memory:33554432}")
+	private int bufferMemory;
+
+	@Value("${producer.accumulator.max-block-ms:1000}")
+	private long maxBlockMs;
+
+	@Value("${producer.accumulator.send-timeout:3000}")
+	private long sendTimeout;
+
+	private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+	private Semaphore memory;
+
+	private ScheduledExecutorService flusher;
+
+	@PostConstruct
+	public void init() {
+		memory = new Semaphore(bufferMemory);
+		flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "rocketmq-accumulator-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long tick = Math.max(1, lingerMs / 4);
+		flusher.scheduleWithFixedDelay(this::flushExpired, tick, tick, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flusher.shutdown();
+		batches.keySet().forEach(this::flush);
+		log.info("攒批发送器已关闭，剩余消息已提交发送");
+	}
+
+	/**
+	 * 加入缓冲区，返回该条消息自己的发送结果
+	 *
+	 * @param topic 主题
+	 * @param tag   标签，可为空
+	 */
+	public CompletableFuture<SendResult> send(String topic, String tag, OrderMessage orderMessage) {
+		CompletableFuture<SendResult> future = new CompletableFuture<>();
+		String destination = tag == null ? topic : topic + ":" + tag;
+
+		Message<byte[]> msg;
+		int size;
+		try {
+			msg = MessageBuilder
+					.withPayload(orderMessageSerializer.encode(orderMessage))
+					.setHeader(RocketMQHeaders.KEYS, orderMessage.getOrderId())
+					.setHeader(MessageHeaders.CONTENT_TYPE, orderMessageSerializer.contentType())
+					.build();
+			size = BatchSplitter.estimateSize(topic, msg);
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		// 超过总内存的消息永远拿不到许可，直接失败
+		if (size > bufferMemory) {
+			future.completeExceptionally(new IllegalArgumentException("消息大小 " + size + " 超过缓冲区上限 " + bufferMemory));
+			return future;
+		}
+		try {
+			if (!memory.tryAcquire(size, maxBlockMs, TimeUnit.MILLISECONDS)) {
+				future.completeExceptionally(new RejectedExecutionException("发送缓冲区已满，等待 " + maxBlockMs + "ms 超时"));
+				return future;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		List<List<Pending>> ready = batches.computeIfAbsent(destination, key -> new Batch())
+				.append(new Pending(msg, size, future), batchBytes);
+		ready.forEach(pendings -> sendBatch(destination, pendings));
+		return future;
+	}
+
+	private void flushExpired() {
+		long now = System.nanoTime();
+		long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+		batches.forEach((destination, batch) -> {
+			List<Pending> ready = batch.drainIfExpired(now, lingerNanos);
+			if (ready != null) {
+				sendBatch(destination, ready);
+			}
+		});
+	}
+
+	private void flush(String destination) {
+		Batch batch = batches.get(destination);
+		List<Pending> ready = batch == null ? null : batch.drainAll();
+		if (ready != null) {
+			sendBatch(destination, ready);
+		}
+	}
+
+	private void sendBatch(String destination, List<Pending> pendings) {
+		List<Message<byte[]>> msgList = new ArrayList<>(pendings.size());
+		int bytes = 0;
+		for (Pending pending : pendings) {
+			msgList.add(pending.msg);
+			bytes += pending.size;
+		}
+		int releaseBytes = bytes;
+		try {
+			rocketMQTemplate.asyncSend(destination, msgList, new SendCallback() {
+				@Override
+				public void onSuccess(SendResult sendResult) {
+					memory.release(releaseBytes);
+					complete(pendings, sendResult);
+				}
+
+				@Override
+				public void onException(Throwable throwable) {
+					memory.release(releaseBytes);
+					log.error("攒批发送失败: destination={}, size={}", destination, pendings.size(), throwable);
+					pendings.forEach(pending -> pending.future.completeExceptionally(throwable));
+				}
+			}, sendTimeout);
+		} catch (Exception e) {
+			memory.release(releaseBytes);
+			log.error("攒批发送失败: destination={}, size={}", destination, pendings.size(), e);
+			pendings.forEach(pending -> pending.future.completeExceptionally(e));
+		}
+	}
+
+	/**
+	 * 把批量发送结果拆成每条消息的结果，批量消息在同一队列中连续存放，offset 依次递增
+	 */
+	private static void complete(List<Pending> pendings, SendResult batchResult) {
+		String[] msgIds = batchResult.getMsgId() == null ? new String[0] : batchResult.getMsgId().split(",");
+		String[] offsetMsgIds = batchResult.getOffsetMsgId() == null ? new String[0] : batchResult.getOffsetMsgId().split(",");
+		for (int i = 0; i < pendings.size(); i++) {
+			SendResult result = new SendResult(batchResult.getSendStatus(),
+					i < msgIds.length ? msgIds[i] : null,
+					i < offsetMsgIds.length ? offsetMsgIds[i] : null,
+					batchResult.getMessageQueue(),
+					batchResult.getQueueOffset() + i);
+			pendings.get(i).future.complete(result);
+		}
+	}
+
+	private record Pending(Message<byte[]> msg, int size, CompletableFuture<SendResult> future) {
+	}
+
+	/**
+	 * 单个 topic:tag 的缓冲区，append 与 drain 都在锁内完成，发送在锁外进行
+	 */
+	private static class Batch {
+
+		private List<Pending> pendings = new ArrayList<>();
+		private int bytes;
+		private long firstAppendNanos;
+
+		/**
+		 * 返回需要立即发送的批次: 放不下新消息时先交出已有的批次，攒满后再交出当前批次
+		 */
+		synchronized List<List<Pending>> append(Pending pending, int batchBytes) {
+			List<List<Pending>> ready = new ArrayList<>(2);
+			if (!pendings.isEmpty() && bytes + pending.size > batchBytes) {
+				ready.add(drain());
+			}
+			if (pendings.isEmpty()) {
+				firstAppendNanos = System.nanoTime();
+			}
+			pendings.add(pending);
+			bytes += pending.size;
+			if (bytes >= batchBytes) {
+				ready.add(drain());
+			}
+			return ready;
+		}
+
+		synchronized List<Pending> drainIfExpired(long now, long lingerNanos) {
+			if (pendings.isEmpty() || now - firstAppendNanos < lingerNanos) {
+				return null;
+			}
+			return drain();
+		}
+
+		synchronized List<Pending> drainAll() {
+			return pendings.isEmpty() ? null : drain();
+		}
+
+		private List<Pending> drain() {
+			List<Pending> ready = pendings;
+			pendings = new ArrayList<>();
+			bytes = 0;
+			return ready;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package top.tangtian.rocketmqdemo.producer.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 拆分批量发送的汇总结果，items 与入参列表一一对应
+ *
+ * @author tangtian
+ * @date 2026-10-19 19:10
+ */
+@Data
+public class BatchSendResult {
+
+	private int total;
+	private int succeeded;
+	private int failed;
+	/**
+	 * 实际发送的子批次数量(网络往返次数)
+	 */
+	private int batchCount;
+	private List<Item> items = new ArrayList<>();
+
+	public enum Status {
+		SUCCESS,
+		FAILED,
+		/**
+		 * 单条消息已超过大小上限，不会发送
+		 */
+		TOO_LARGE
+	}
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Item {
+		private int index;
+		private String orderId;
+		private Status status;
+		private String msgId;
+		private String error;
+	}
+}
@@ -0,0 +1,85 @@
+package top.tangtian.rocketmqdemo.producer.batch;
+
+import org.springframework.messaging.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按编码后大小拆分批量消息
+ * 估算方式与 RocketMQ 官方 ListSplitter 示例一致: topic + body + properties + 日志开销
+ *
+ * @author tangtian
+ * @date 2026-10-19 19:15
+ */
+public final class BatchSplitter {
+
+	/**
+	 * 每条消息在批量包中的固定开销: totalSize/magic/bodyCRC/flag/bodyLen 各 4 字节，propertiesLen 2 字节，再留一些余量
+	 */
+	private static final int LOG_OVERHEAD = 20;
+
+	/**
+	 * 客户端发送时追加的系统属性(UNIQ_KEY、WAIT 等)，按上限预留
+	 */
+	private static final int SYSTEM_PROPERTIES_RESERVED = 64;
+
+	private BatchSplitter() {
+	}
+
+	/**
+	 * 估算已序列化的 Spring 消息，消息头(包括 id、timestamp)都会作为用户属性写入 RocketMQ 消息
+	 */
+	public static int estimateSize(String topic, Message<byte[]> msg) {
+		Map<String, String> properties = new HashMap<>();
+		msg.getHeaders().forEach((key, value) -> properties.put(key, String.valueOf(value)));
+		return estimateSize(topic, msg.getPayload(), properties);
+	}
+
+	/**
+	 * 估算单条消息编码后的大小，properties 按 key=value 加两个分隔符计算
+	 */
+	public static int estimateSize(String topic, byte[] body, Map<String, String> properties) {
+		int size = topic.length() + body.length + LOG_OVERHEAD + SYSTEM_PROPERTIES_RESERVED;
+		if (properties != null) {
+			for (Map.Entry<String, String> entry : properties.entrySet()) {
+				size += entry.getKey().getBytes(StandardCharsets.UTF_8).length
+						+ entry.getValue().getBytes(StandardCharsets.UTF_8).length + 2;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * 顺序贪心拆分: 当前子批次放不下时开启新的子批次，保持原有顺序的前提下子批次数量最少
+	 * 超过上限的单条消息不放入任何子批次，由调用方单独处理
+	 *
+	 * @param sizes    每条消息的估算大小
+	 * @param maxBytes 单个子批次的大小上限
+	 * @return 每个子批次包含的消息下标
+	 */
+	public static List<List<Integer>> split(int[] sizes, int maxBytes) {
+		List<List<Integer>> batches = new ArrayList<>();
+		List<Integer> current = new ArrayList<>();
+		long currentBytes = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			if (sizes[i] > maxBytes) {
+				continue;
+			}
+			if (currentBytes + sizes[i] > maxBytes) {
+				batches.add(current);
+				current = new ArrayList<>();
+				currentBytes = 0;
+			}
+			current.add(i);
+			currentBytes += sizes[i];
+		}
+		if (!current.isEmpty()) {
+			batches.add(current);
+		}
+		return batches;
+	}
+}
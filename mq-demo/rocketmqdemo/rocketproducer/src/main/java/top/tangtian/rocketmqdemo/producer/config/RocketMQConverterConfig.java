@@ -0,0 +1,28 @@
+package top.tangtian.rocketmqdemo.producer.config;
+
+import org.apache.rocketmq.spring.support.RocketMQMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageBinaryConverter;
+import top.tangtian.rocketmqdemo.producer.converter.PreEncodedPayloadConverter;
+
+/**
+ * 在默认转换器链最前面加入 OrderMessage 二进制转换器和预序列化消息体的透传转换器
+ * 自动配置的 RocketMQMessageConverter 是 @ConditionalOnMissingBean，这里定义后 RocketMQTemplate 会使用它
+ *
+ * @author tangtian
+ * @date 2026-10-19 20:25
+ */
+@Configuration
+public class RocketMQConverterConfig {
+
+	@Bean
+	public RocketMQMessageConverter rocketMQMessageConverter() {
+		RocketMQMessageConverter converter = new RocketMQMessageConverter();
+		CompositeMessageConverter composite = (CompositeMessageConverter) converter.getMessageConverter();
+		composite.getConverters().add(0, new PreEncodedPayloadConverter());
+		composite.getConverters().add(1, new OrderMessageBinaryConverter());
+		return converter;
+	}
+}
@@ -0,0 +1,126 @@
+package top.tangtian.rocketmqdemo.producer.converter;
+
+import org.springframework.util.MimeType;
+import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * OrderMessage 的紧凑二进制编码，字段顺序固定，不写字段名
+ * <pre>
+ * version(1) | presence(1) | orderId(varint长度 + UTF-8) | userId(varint长度 + UTF-8) | amount(8, 分) | timestamp(8)
+ * </pre>
+ * presence 的每一位表示对应字段是否非空，为空的字段不占空间
+ * 本类是编码格式的唯一定义，消费端的 OrderMessageBinaryCodec 只保留 decode，改格式时须同步并升级 VERSION
+ *
+ * @author tangtian
+ * @date 2026-10-19 20:10
+ */
+public final class OrderMessageBinaryCodec {
+
+	public static final MimeType CONTENT_TYPE = MimeType.valueOf("application/x-order-binary");
+
+	private static final byte VERSION = 1;
+
+	private static final int ORDER_ID = 1;
+	private static final int USER_ID = 1 << 1;
+	private static final int AMOUNT = 1 << 2;
+	private static final int TIMESTAMP = 1 << 3;
+
+	private OrderMessageBinaryCodec() {
+	}
+
+	public static byte[] encode(OrderMessage message) {
+		byte[] orderId = message.getOrderId() == null ? null : message.getOrderId().getBytes(StandardCharsets.UTF_8);
+		byte[] userId = message.getUserId() == null ? null : message.getUserId().getBytes(StandardCharsets.UTF_8);
+		byte[] buf = new byte[2 + stringSize(orderId) + stringSize(userId) + 16];
+
+		int presence = (orderId != null ? ORDER_ID : 0)
+				| (userId != null ? USER_ID : 0)
+				| (message.getAmount() != null ? AMOUNT : 0)
+				| (message.getTimestamp() != null ? TIMESTAMP : 0);
+		buf[0] = VERSION;
+		buf[1] = (byte) presence;
+		int pos = 2;
+		pos = writeString(buf, pos, orderId);
+		pos = writeString(buf, pos, userId);
+		if (message.getAmount() != null) {
+			// 金额按分存储，避免 double 的二进制表示
+			pos = writeLong(buf, pos, Math.round(message.getAmount() * 100));
+		}
+		if (message.getTimestamp() != null) {
+			pos = writeLong(buf, pos, message.getTimestamp());
+		}
+		return pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+	}
+
+	public static OrderMessage decode(byte[] buf) {
+		if (buf.length < 2 || buf[0] != VERSION) {
+			throw new IllegalArgumentException("不支持的 OrderMessage 编码版本");
+		}
+		int presence = buf[1];
+		int[] pos = {2};
+		OrderMessage message = new OrderMessage();
+		if ((presence & ORDER_ID) != 0) {
+			message.setOrderId(readString(buf, pos));
+		}
+		if ((presence & USER_ID) != 0) {
+			message.setUserId(readString(buf, pos));
+		}
+		if ((presence & AMOUNT) != 0) {
+			message.setAmount(readLong(buf, pos) / 100.0);
+		}
+		if ((presence & TIMESTAMP) != 0) {
+			message.setTimestamp(readLong(buf, pos));
+		}
+		return message;
+	}
+
+	private static int stringSize(byte[] bytes) {
+		return bytes == null ? 0 : 5 + bytes.length;
+	}
+
+	private static int writeString(byte[] buf, int pos, byte[] bytes) {
+		if (bytes == null) {
+			return pos;
+		}
+		int len = bytes.length;
+		while ((len & ~0x7F) != 0) {
+			buf[pos++] = (byte) ((len & 0x7F) | 0x80);
+			len >>>= 7;
+		}
+		buf[pos++] = (byte) len;
+		System.arraycopy(bytes, 0, buf, pos, bytes.length);
+		return pos + bytes.length;
+	}
+
+	private static int writeLong(byte[] buf, int pos, long value) {
+		for (int i = 7; i >= 0; i--) {
+			buf[pos++] = (byte) (value >>> (i * 8));
+		}
+		return pos;
+	}
+
+	private static String readString(byte[] buf, int[] pos) {
+		int len = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buf[pos[0]++];
+			len |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		String value = new String(buf, pos[0], len, StandardCharsets.UTF_8);
+		pos[0] += len;
+		return value;
+	}
+
+	private static long readLong(byte[] buf, int[] pos) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (buf[pos[0]++] & 0xFF);
+		}
+		return value;
+	}
+}
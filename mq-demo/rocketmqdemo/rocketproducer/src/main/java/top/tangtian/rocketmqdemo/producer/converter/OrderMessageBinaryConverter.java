@@ -0,0 +1,37 @@
+package top.tangtian.rocketmqdemo.producer.converter;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
+
+/**
+ * OrderMessage 二进制消息转换器
+ * 严格匹配 content-type，只有消息头显式声明 application/x-order-binary 时才生效，其余情况仍交给 Jackson
+ *
+ * @author tangtian
+ * @date 2026-10-19 20:20
+ */
+public class OrderMessageBinaryConverter extends AbstractMessageConverter {
+
+	public OrderMessageBinaryConverter() {
+		super(OrderMessageBinaryCodec.CONTENT_TYPE);
+		setStrictContentTypeMatch(true);
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return OrderMessage.class.equals(clazz);
+	}
+
+	@Override
+	protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+		Object payload = message.getPayload();
+		return payload instanceof byte[] bytes ? OrderMessageBinaryCodec.decode(bytes) : null;
+	}
+
+	@Override
+	protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+		return OrderMessageBinaryCodec.encode((OrderMessage) payload);
+	}
+}
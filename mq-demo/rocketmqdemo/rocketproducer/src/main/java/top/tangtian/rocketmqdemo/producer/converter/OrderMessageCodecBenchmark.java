@@ -0,0 +1,118 @@
+package top.tangtian.rocketmqdemo.producer.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Jackson 与二进制编码的对比: 消息体大小、编码耗时、解码耗时
+ * 直接运行 main 方法，先预热再计时，结果打印到控制台
+ *
+ * @author tangtian
+ * @date 2026-10-19 20:55
+ */
+public class OrderMessageCodecBenchmark {
+
+	private static final int SAMPLES = 1024;
+	private static final int WARMUP_ROUNDS = 200;
+	private static final int MEASURE_ROUNDS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper();
+		OrderMessage[] messages = new OrderMessage[SAMPLES];
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < SAMPLES; i++) {
+			messages[i] = new OrderMessage("ORD" + (20260000000L + i), "U" + random.nextInt(1_000_000),
+					random.nextInt(1, 1_000_000) / 100.0, System.currentTimeMillis());
+		}
+
+		byte[][] json = new byte[SAMPLES][];
+		byte[][] binary = new byte[SAMPLES][];
+		long jsonBytes = 0;
+		long binaryBytes = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			json[i] = objectMapper.writeValueAsBytes(messages[i]);
+			binary[i] = OrderMessageBinaryCodec.encode(messages[i]);
+			jsonBytes += json[i].length;
+			binaryBytes += binary[i].length;
+		}
+		System.out.printf("平均消息体大小: json=%.1f 字节, binary=%.1f 字节%n",
+				(double) jsonBytes / SAMPLES, (double) binaryBytes / SAMPLES);
+
+		// 结果累加到 sink，防止 JIT 把循环当作死代码消除
+		long sink = 0;
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			sink += jsonRound(objectMapper, messages, json) + binaryRound(messages, binary);
+		}
+
+		long start = System.nanoTime();
+		for (int round = 0; round < MEASURE_ROUNDS; round++) {
+			sink += jsonEncode(objectMapper, messages);
+		}
+		long jsonEncodeNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int round = 0; round < MEASURE_ROUNDS; round++) {
+			sink += jsonDecode(objectMapper, json);
+		}
+		long jsonDecodeNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int round = 0; round < MEASURE_ROUNDS; round++) {
+			sink += binaryEncode(messages);
+		}
+		long binaryEncodeNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int round = 0; round < MEASURE_ROUNDS; round++) {
+			sink += binaryDecode(binary);
+		}
+		long binaryDecodeNanos = System.nanoTime() - start;
+
+		double ops = (double) SAMPLES * MEASURE_ROUNDS;
+		System.out.printf("编码: json=%.1f ns/op, binary=%.1f ns/op%n", jsonEncodeNanos / ops, binaryEncodeNanos / ops);
+		System.out.printf("解码: json=%.1f ns/op, binary=%.1f ns/op%n", jsonDecodeNanos / ops, binaryDecodeNanos / ops);
+		System.out.println("sink=" + sink);
+	}
+
+	private static long jsonRound(ObjectMapper objectMapper, OrderMessage[] messages, byte[][] json) throws Exception {
+		return jsonEncode(objectMapper, messages) + jsonDecode(objectMapper, json);
+	}
+
+	private static long binaryRound(OrderMessage[] messages, byte[][] binary) {
+		return binaryEncode(messages) + binaryDecode(binary);
+	}
+
+	private static long jsonEncode(ObjectMapper objectMapper, OrderMessage[] messages) throws Exception {
+		long total = 0;
+		for (OrderMessage message : messages) {
+			total += objectMapper.writeValueAsBytes(message).length;
+		}
+		return total;
+	}
+
+	private static long jsonDecode(ObjectMapper objectMapper, byte[][] json) throws Exception {
+		long total = 0;
+		for (byte[] bytes : json) {
+			total += objectMapper.readValue(bytes, OrderMessage.class).getTimestamp();
+		}
+		return total;
+	}
+
+	private static long binaryEncode(OrderMessage[] messages) {
+		long total = 0;
+		for (OrderMessage message : messages) {
+			total += OrderMessageBinaryCodec.encode(message).length;
+		}
+		return total;
+	}
+
+	private static long binaryDecode(byte[][] binary) {
+		long total = 0;
+		for (byte[] bytes : binary) {
+			total += OrderMessageBinaryCodec.decode(bytes).getTimestamp();
+		}
+		return total;
+	}
+}
@@ -0,0 +1,53 @@
+package top.tangtian.rocketmqdemo.producer.converter;
+
+import jakarta.annotation.Resource;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
+
+import java.util.Map;
+
+/**
+ * 按配置的 content-type 构造 OrderMessage 消息
+ * content-type 会作为消息属性发送，消费端据此选择解码方式，新旧格式的实例可以混合部署
+ *
+ * @author tangtian
+ * @date 2026-10-19 20:30
+ */
+@Component
+public class OrderMessageSerializer {
+
+	@Resource
+	private RocketMQTemplate rocketMQTemplate;
+
+	@Value("${producer.serialization.content-type:application/json}")
+	private MimeType contentType;
+
+	public MimeType contentType() {
+		return contentType;
+	}
+
+	/**
+	 * 带 content-type 头的消息构造器，由 RocketMQTemplate 负责序列化
+	 */
+	public MessageBuilder<OrderMessage> builder(OrderMessage message) {
+		return MessageBuilder.withPayload(message).setHeader(MessageHeaders.CONTENT_TYPE, contentType);
+	}
+
+	/**
+	 * 提前序列化成消息体，供需要知道消息大小的批量发送使用
+	 */
+	public byte[] encode(OrderMessage message) {
+		Message<?> converted = rocketMQTemplate.getMessageConverter()
+				.toMessage(message, new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, contentType)));
+		if (converted == null || !(converted.getPayload() instanceof byte[] body)) {
+			throw new IllegalStateException("无法序列化消息: " + message.getOrderId());
+		}
+		return body;
+	}
+}
@@ -0,0 +1,38 @@
+package top.tangtian.rocketmqdemo.producer.converter;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+
+import java.util.Collections;
+
+/**
+ * 已经序列化好的 byte[] 消息体原样发送
+ * 默认的 ByteArrayMessageConverter 只接受 application/octet-stream，消息头声明了 json 或二进制格式时
+ * byte[] 会落到 Jackson 被再编码成 base64 字符串，批量发送预先序列化的消息体需要这个转换器兜住
+ *
+ * @author tangtian
+ * @date 2026-10-19 20:35
+ */
+public class PreEncodedPayloadConverter extends AbstractMessageConverter {
+
+	public PreEncodedPayloadConverter() {
+		// 不声明支持的 MimeType，任何 content-type 都接受
+		super(Collections.emptyList());
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return byte[].class.equals(clazz);
+	}
+
+	@Override
+	protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+		return message.getPayload();
+	}
+
+	@Override
+	protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+		return payload;
+	}
+}
@@ -0,0 +1,170 @@
+package top.tangtian.rocketmqdemo.producer.delay;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 延迟任务日志，只追加写，用于进程重启后恢复时间轮
+ * 记录 ADD 与 REMOVE(取消或已投递)，恢复时回放得到仍未到期的任务；记录数远多于存活任务时整体重写压缩
+ * REMOVE 带上到期时间，只删除同一次定时，避免已投递的旧定时把同一订单新加的定时也删掉
+ *
+ * 每次写入都 flush 到操作系统，sync 由调用方按 tick 批量执行，进程崩溃不丢数据，机器掉电最多丢一个 tick
+ *
+ * @author tangtian
+ * @date 2026-10-19 22:10
+ */
+@Slf4j
+public class DelayJournal {
+
+	private static final String FILE_NAME = "delay-journal.log";
+	private static final byte ADD = 1;
+	private static final byte REMOVE = 2;
+
+	/**
+	 * REMOVE 记录中表示不区分到期时间(取消)
+	 */
+	public static final long ANY = -1L;
+
+	private final Path file;
+	private FileOutputStream fileOut;
+	private DataOutputStream out;
+	private long records;
+	private boolean dirty;
+
+	public DelayJournal(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		this.file = dir.resolve(FILE_NAME);
+	}
+
+	/**
+	 * 回放日志，返回未被移除的任务，并以这些任务重写日志
+	 */
+	public synchronized Collection<DelayTask> recover() throws IOException {
+		Map<String, DelayTask> live = new LinkedHashMap<>();
+		if (Files.exists(file)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+				while (true) {
+					byte type;
+					try {
+						type = in.readByte();
+					} catch (EOFException e) {
+						break;
+					}
+					try {
+						String key = in.readUTF();
+						if (type == ADD) {
+							String topic = in.readUTF();
+							long expireAt = in.readLong();
+							byte[] payload = readBytes(in);
+							live.put(key, new DelayTask(key, topic, expireAt, payload));
+						} else {
+							long expireAt = in.readLong();
+							DelayTask task = live.get(key);
+							if (task != null && (expireAt == ANY || task.expireAt() == expireAt)) {
+								live.remove(key);
+							}
+						}
+					} catch (EOFException e) {
+						// 崩溃时写了一半的最后一条记录，丢弃
+						log.warn("延迟任务日志尾部记录不完整，已忽略");
+						break;
+					}
+				}
+			}
+		}
+		rewrite(live.values());
+		log.info("延迟任务日志恢复完成: 待执行任务 {} 个", live.size());
+		return live.values();
+	}
+
+	public synchronized void append(DelayTask task) throws IOException {
+		out.writeByte(ADD);
+		out.writeUTF(task.key());
+		out.writeUTF(task.topic());
+		out.writeLong(task.expireAt());
+		out.writeInt(task.payload().length);
+		out.write(task.payload());
+		out.flush();
+		records++;
+		dirty = true;
+	}
+
+	/**
+	 * @param expireAt 已投递的定时传到期时间，取消传 ANY
+	 */
+	public synchronized void remove(String key, long expireAt) throws IOException {
+		out.writeByte(REMOVE);
+		out.writeUTF(key);
+		out.writeLong(expireAt);
+		out.flush();
+		records++;
+		dirty = true;
+	}
+
+	public synchronized void sync() throws IOException {
+		if (dirty) {
+			fileOut.getFD().sync();
+			dirty = false;
+		}
+	}
+
+	public synchronized long records() {
+		return records;
+	}
+
+	/**
+	 * 用存活任务重写日志: 先写临时文件再原子替换
+	 */
+	public synchronized void rewrite(Collection<DelayTask> live) throws IOException {
+		if (out != null) {
+			out.close();
+		}
+		Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+		try (FileOutputStream tmpOut = new FileOutputStream(tmp.toFile());
+			 DataOutputStream data = new DataOutputStream(new BufferedOutputStream(tmpOut, 64 * 1024))) {
+			for (DelayTask task : live) {
+				data.writeByte(ADD);
+				data.writeUTF(task.key());
+				data.writeUTF(task.topic());
+				data.writeLong(task.expireAt());
+				data.writeInt(task.payload().length);
+				data.write(task.payload());
+			}
+			data.flush();
+			tmpOut.getFD().sync();
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		fileOut = new FileOutputStream(file.toFile(), true);
+		out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+		records = live.size();
+		dirty = false;
+	}
+
+	public synchronized void close() throws IOException {
+		if (out != null) {
+			out.flush();
+			fileOut.getFD().sync();
+			out.close();
+			out = null;
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,369 @@
+package top.tangtian.rocketmqdemo.producer.delay;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageBinaryCodec;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageSerializer;
+import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 任意时长的延迟消息服务，突破 RocketMQ 18 个固定延迟级别的限制
+ * 定时保存在本地分层时间轮中，到期后才投递到真实 topic，同一个 tick 到期的消息按 topic 合并成批量消息发送
+ * 每个订单只保留一个定时，订单支付后可以取消；定时写入本地日志，重启后从日志恢复，重启期间到期的会立即投递
+ *
+ * @author tangtian
+ * @date 2026-10-19 22:20
+ */
+@Slf4j
+@Service
+public class DelayMessageService {
+
+	@Resource
+	private RocketMQTemplate rocketMQTemplate;
+
+	@Resource
+	private OrderMessageSerializer orderMessageSerializer;
+
+	@Value("${producer.delay.tick-ms:100}")
+	private long tickMs;
+
+	@Value("${producer.delay.wheel-size:512}")
+	private int wheelSize;
+
+	@Value("${producer.delay.levels:4}")
+	private int levels;
+
+	@Value("${producer.delay.journal-dir:./data/delay}")
+	private String journalDir;
+
+	@Value("${producer.delay.publish-batch-size:256}")
+	private int publishBatchSize;
+
+	@Value("${producer.delay.retry-delay-ms:1000}")
+	private long retryDelayMs;
+
+	@Value("${producer.delay.send-timeout:3000}")
+	private long sendTimeout;
+
+	private final Map<String, HierarchicalTimingWheel.Node<DelayTask>> timers = new ConcurrentHashMap<>();
+
+	/**
+	 * 已从时间轮取出、还没确认投递成功的任务，日志压缩时要一起保留
+	 */
+	private final Set<DelayTask> inFlight = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 投递期间被取消的任务(取消墓碑)，投递前跳过，投递失败时不再重新定时
+	 * 与 inFlight 的增删都在 timers 对应 key 的锁内完成，和 cancel 互斥
+	 */
+	private final Set<DelayTask> cancelledInFlight = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 定时增删持有读锁，日志压缩持有写锁，保证压缩时的快照与日志一致
+	 */
+	private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+
+	private HierarchicalTimingWheel<DelayTask> wheel;
+	private DelayJournal journal;
+	private long startMs;
+	private Thread ticker;
+	private ExecutorService publisher;
+	private volatile boolean running;
+
+	@PostConstruct
+	public void start() throws IOException {
+		startMs = System.currentTimeMillis();
+		wheel = new HierarchicalTimingWheel<>(wheelSize, levels, 0);
+		journal = new DelayJournal(Paths.get(journalDir));
+		for (DelayTask task : journal.recover()) {
+			timers.put(task.key(), wheel.add(tickOf(task.expireAt()), task));
+		}
+
+		publisher = Executors.newSingleThreadExecutor(r -> new Thread(r, "delay-message-publisher"));
+		running = true;
+		ticker = new Thread(this::runTicker, "delay-message-ticker");
+		ticker.setDaemon(true);
+		ticker.start();
+		log.info("延迟消息服务启动: tick={}ms, wheelSize={}, levels={}, 恢复定时 {} 个",
+				tickMs, wheelSize, levels, timers.size());
+	}
+
+	@PreDestroy
+	public void shutdown() throws IOException, InterruptedException {
+		running = false;
+		ticker.interrupt();
+		ticker.join(tickMs * 10);
+		publisher.shutdown();
+		publisher.awaitTermination(sendTimeout * 2, TimeUnit.MILLISECONDS);
+		journal.close();
+		log.info("延迟消息服务已关闭，未到期定时 {} 个已保存", wheel.size());
+	}
+
+	/**
+	 * 定时投递，同一订单重复调用会替换之前的定时
+	 *
+	 * @param topic 到期后投递的 topic，可以带 tag(topic:tag)
+	 */
+	public void schedule(String topic, OrderMessage message, Duration delay) {
+		DelayTask task = new DelayTask(message.getOrderId(), topic,
+				System.currentTimeMillis() + delay.toMillis(), OrderMessageBinaryCodec.encode(message));
+		schedule(task);
+	}
+
+	/**
+	 * 取消订单的定时，例如订单已支付
+	 * 已到期、正在投递的任务无法撤回，只打上取消标记：还没发出的不再发送，发送失败也不会重新定时
+	 *
+	 * @return 定时尚未移交投递、保证不会投递时返回 true；正在投递的返回 false，消息可能已经发出
+	 */
+	public boolean cancel(String orderId) {
+		journalLock.readLock().lock();
+		try {
+			boolean[] cancelled = {false};
+			timers.compute(orderId, (key, node) -> {
+				boolean marked = false;
+				for (DelayTask task : inFlight) {
+					if (task.key().equals(key)) {
+						marked |= cancelledInFlight.add(task);
+					}
+				}
+				if (node != null) {
+					// 已被时间轮取出但还没移交投递的，推进线程发现 timers 中没有它会直接丢弃，同样不会投递
+					wheel.cancel(node);
+					cancelled[0] = true;
+				}
+				if (node != null || marked) {
+					appendRemove(key, DelayJournal.ANY);
+				}
+				return null;
+			});
+			return cancelled[0];
+		} finally {
+			journalLock.readLock().unlock();
+		}
+	}
+
+	public int pendingCount() {
+		return wheel.size();
+	}
+
+	private void schedule(DelayTask task) {
+		journalLock.readLock().lock();
+		try {
+			// 日志写入与时间轮更新在同一个 key 的锁内完成，保证同一订单的记录顺序
+			timers.compute(task.key(), (key, old) -> {
+				if (old != null) {
+					wheel.cancel(old);
+				}
+				try {
+					journal.append(task);
+				} catch (IOException e) {
+					throw new UncheckedIOException("写入延迟任务日志失败: " + key, e);
+				}
+				return wheel.add(tickOf(task.expireAt()), task);
+			});
+		} finally {
+			journalLock.readLock().unlock();
+		}
+	}
+
+	private void runTicker() {
+		long lastCompactCheck = System.currentTimeMillis();
+		while (running) {
+			try {
+				long nextTickAt = startMs + (wheel.currentTick() + 1) * tickMs;
+				long sleep = nextTickAt - System.currentTimeMillis();
+				if (sleep > 0) {
+					Thread.sleep(sleep);
+				}
+				// 落后时连续推进，把这段时间到期的任务合并成一批
+				List<DelayTask> due = new ArrayList<>();
+				while (startMs + (wheel.currentTick() + 1) * tickMs <= System.currentTimeMillis()) {
+					due.addAll(wheel.advance());
+				}
+				List<DelayTask> live = new ArrayList<>(due.size());
+				for (DelayTask task : due) {
+					// 取出后、移交投递前被取消或替换的任务，timers 中已不是它，直接丢弃
+					timers.computeIfPresent(task.key(), (key, node) -> {
+						if (node.value() != task) {
+							return node;
+						}
+						inFlight.add(task);
+						live.add(task);
+						return null;
+					});
+				}
+				if (!live.isEmpty()) {
+					publisher.execute(() -> publish(live));
+				}
+				journal.sync();
+
+				if (System.currentTimeMillis() - lastCompactCheck > 10_000) {
+					lastCompactCheck = System.currentTimeMillis();
+					compactIfNeeded();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (Exception e) {
+				log.error("延迟消息时间轮推进异常", e);
+			}
+		}
+	}
+
+	/**
+	 * 按 topic 分组，每组按 publish-batch-size 切成批量消息发送
+	 */
+	private void publish(List<DelayTask> due) {
+		Map<String, List<DelayTask>> byTopic = new LinkedHashMap<>();
+		for (DelayTask task : due) {
+			byTopic.computeIfAbsent(task.topic(), topic -> new ArrayList<>()).add(task);
+		}
+		byTopic.forEach((topic, tasks) -> {
+			for (int from = 0; from < tasks.size(); from += publishBatchSize) {
+				List<DelayTask> chunk = tasks.subList(from, Math.min(from + publishBatchSize, tasks.size()));
+				publishChunk(topic, chunk);
+			}
+		});
+	}
+
+	private void publishChunk(String topic, List<DelayTask> tasks) {
+		List<DelayTask> chunk = new ArrayList<>(tasks.size());
+		for (DelayTask task : tasks) {
+			if (!finishIfCancelled(task)) {
+				chunk.add(task);
+			}
+		}
+		if (chunk.isEmpty()) {
+			return;
+		}
+		List<Message<OrderMessage>> messages = new ArrayList<>(chunk.size());
+		for (DelayTask task : chunk) {
+			messages.add(orderMessageSerializer.builder(OrderMessageBinaryCodec.decode(task.payload()))
+					.setHeader(RocketMQHeaders.KEYS, task.key())
+					.build());
+		}
+		try {
+			SendResult result = rocketMQTemplate.syncSend(topic, messages, sendTimeout);
+			journalLock.readLock().lock();
+			try {
+				for (DelayTask task : chunk) {
+					appendRemove(task.key(), task.expireAt());
+					timers.compute(task.key(), (key, node) -> {
+						inFlight.remove(task);
+						cancelledInFlight.remove(task);
+						return node;
+					});
+				}
+			} finally {
+				journalLock.readLock().unlock();
+			}
+			log.info("延迟消息到期投递: topic={}, 条数={}, status={}", topic, chunk.size(), result.getSendStatus());
+		} catch (Exception e) {
+			log.error("延迟消息投递失败，{}ms 后重试: topic={}, 条数={}", retryDelayMs, topic, chunk.size(), e);
+			for (DelayTask task : chunk) {
+				reschedule(task);
+			}
+		}
+	}
+
+	/**
+	 * 投递前检查取消墓碑，已取消的任务结束投递，cancel 已经写过删除日志
+	 */
+	private boolean finishIfCancelled(DelayTask task) {
+		boolean[] cancelled = {false};
+		timers.compute(task.key(), (key, node) -> {
+			if (cancelledInFlight.remove(task)) {
+				inFlight.remove(task);
+				cancelled[0] = true;
+			}
+			return node;
+		});
+		return cancelled[0];
+	}
+
+	/**
+	 * 投递失败后重新定时；投递期间被取消的不再定时，投递期间订单又被重新定时的以新的定时为准
+	 */
+	private void reschedule(DelayTask task) {
+		journalLock.readLock().lock();
+		try {
+			timers.compute(task.key(), (key, node) -> {
+				inFlight.remove(task);
+				if (cancelledInFlight.remove(task) || node != null) {
+					return node;
+				}
+				DelayTask retry = new DelayTask(key, task.topic(), System.currentTimeMillis() + retryDelayMs, task.payload());
+				try {
+					journal.append(retry);
+				} catch (IOException e) {
+					throw new UncheckedIOException("写入延迟任务日志失败: " + key, e);
+				}
+				return wheel.add(tickOf(retry.expireAt()), retry);
+			});
+		} finally {
+			journalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 日志记录数超过存活定时两倍时重写
+	 */
+	private void compactIfNeeded() throws IOException {
+		if (journal.records() <= 2L * (timers.size() + inFlight.size()) + 100_000) {
+			return;
+		}
+		journalLock.writeLock().lock();
+		try {
+			List<DelayTask> live = new ArrayList<>(timers.size() + inFlight.size());
+			// 先写投递中的任务再写时间轮中的任务: 投递中重新定时的订单两者都有，回放按 key 保留最后一条 ADD，
+			// 必须是新的定时；旧定时投递完成后的 REMOVE 带旧的到期时间，不会删掉新定时
+			for (DelayTask task : inFlight) {
+				if (!cancelledInFlight.contains(task)) {
+					live.add(task);
+				}
+			}
+			timers.values().forEach(node -> live.add(node.value()));
+			long before = journal.records();
+			journal.rewrite(live);
+			log.info("延迟任务日志压缩: {} -> {} 条记录", before, live.size());
+		} finally {
+			journalLock.writeLock().unlock();
+		}
+	}
+
+	private void appendRemove(String key, long expireAt) {
+		try {
+			journal.remove(key, expireAt);
+		} catch (IOException e) {
+			throw new UncheckedIOException("写入延迟任务日志失败: " + key, e);
+		}
+	}
+
+	private long tickOf(long expireAt) {
+		return Math.floorDiv(expireAt - startMs + tickMs - 1, tickMs);
+	}
+}
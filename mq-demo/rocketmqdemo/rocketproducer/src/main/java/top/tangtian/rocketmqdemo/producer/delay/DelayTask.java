@@ -0,0 +1,14 @@
+package top.tangtian.rocketmqdemo.producer.delay;
+
+/**
+ * 延迟任务，key 为订单号，同一订单只保留一个定时
+ *
+ * @param key      业务 key
+ * @param topic    到期后投递的 topic，可以带 tag
+ * @param expireAt 到期时间戳(毫秒)
+ * @param payload  OrderMessage 的二进制编码
+ * @author tangtian
+ * @date 2026-10-19 22:05
+ */
+public record DelayTask(String key, String topic, long expireAt, byte[] payload) {
+}
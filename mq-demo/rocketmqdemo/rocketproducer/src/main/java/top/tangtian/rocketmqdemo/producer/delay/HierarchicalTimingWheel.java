@@ -0,0 +1,163 @@
+package top.tangtian.rocketmqdemo.producer.delay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分层时间轮，插入和取消都是 O(1)
+ * 第 l 层每格跨度为 tick * wheelSize^l，到期时间较远的任务放在高层，低层转完一圈时把高层当前格的任务降级重新插入
+ * 所有操作都在同一把锁内完成，由调用方按 tick 推进
+ *
+ * @author tangtian
+ * @date 2026-10-19 22:00
+ */
+public class HierarchicalTimingWheel<T> {
+
+	private final int bits;
+	private final int mask;
+	private final int levels;
+	private final long maxSpan;
+	private final Bucket<T>[][] buckets;
+	private long currentTick;
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	public HierarchicalTimingWheel(int wheelSize, int levels, long startTick) {
+		if (Integer.bitCount(wheelSize) != 1) {
+			throw new IllegalArgumentException("wheelSize 必须是 2 的幂: " + wheelSize);
+		}
+		this.bits = Integer.numberOfTrailingZeros(wheelSize);
+		this.mask = wheelSize - 1;
+		this.levels = levels;
+		this.maxSpan = bits * levels >= 62 ? Long.MAX_VALUE : 1L << (bits * levels);
+		this.buckets = new Bucket[levels][wheelSize];
+		for (int l = 0; l < levels; l++) {
+			for (int s = 0; s < wheelSize; s++) {
+				buckets[l][s] = new Bucket<>();
+			}
+		}
+		this.currentTick = startTick;
+	}
+
+	/**
+	 * 加入任务，到期 tick 不晚于当前 tick 的任务在下一个 tick 到期
+	 */
+	public synchronized Node<T> add(long expireTick, T value) {
+		Node<T> node = new Node<>(Math.max(expireTick, currentTick + 1), value);
+		place(node);
+		size++;
+		return node;
+	}
+
+	/**
+	 * 取消任务，已经到期取出的任务返回 false
+	 */
+	public synchronized boolean cancel(Node<T> node) {
+		if (node.bucket == null) {
+			return false;
+		}
+		node.bucket.remove(node);
+		size--;
+		return true;
+	}
+
+	/**
+	 * 推进一个 tick，返回这个 tick 到期的任务
+	 */
+	public synchronized List<T> advance() {
+		currentTick++;
+		List<T> due = new ArrayList<>();
+		// 从高层到低层，低位全为 0 说明下一层刚好转完一圈，把本层当前格降级
+		for (int l = levels - 1; l >= 1; l--) {
+			if ((currentTick & ((1L << (bits * l)) - 1)) == 0) {
+				cascade(buckets[l][(int) ((currentTick >>> (bits * l)) & mask)], due);
+			}
+		}
+		cascade(buckets[0][(int) (currentTick & mask)], due);
+		return due;
+	}
+
+	public synchronized long currentTick() {
+		return currentTick;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	private void cascade(Bucket<T> bucket, List<T> due) {
+		Node<T> node = bucket.head;
+		bucket.head = null;
+		while (node != null) {
+			Node<T> next = node.next;
+			node.prev = null;
+			node.next = null;
+			node.bucket = null;
+			if (node.expireTick <= currentTick) {
+				due.add(node.value);
+				size--;
+			} else {
+				place(node);
+			}
+			node = next;
+		}
+	}
+
+	private void place(Node<T> node) {
+		// 超出最高层范围的任务先放在最高层，降级时会重新计算位置
+		long tick = node.expireTick - currentTick >= maxSpan ? currentTick + maxSpan - 1 : node.expireTick;
+		long diff = tick - currentTick;
+		int level = 0;
+		while (level < levels - 1 && diff >= (1L << (bits * (level + 1)))) {
+			level++;
+		}
+		buckets[level][(int) ((tick >>> (bits * level)) & mask)].add(node);
+	}
+
+	public static final class Node<T> {
+		private final long expireTick;
+		private final T value;
+		private Node<T> prev;
+		private Node<T> next;
+		private Bucket<T> bucket;
+
+		private Node(long expireTick, T value) {
+			this.expireTick = expireTick;
+			this.value = value;
+		}
+
+		public T value() {
+			return value;
+		}
+	}
+
+	/**
+	 * 双向链表，节点记录所在的格子，取消时直接摘除
+	 */
+	private static final class Bucket<T> {
+		private Node<T> head;
+
+		void add(Node<T> node) {
+			node.bucket = this;
+			node.next = head;
+			if (head != null) {
+				head.prev = node;
+			}
+			head = node;
+		}
+
+		void remove(Node<T> node) {
+			if (node.prev != null) {
+				node.prev.next = node.next;
+			} else {
+				head = node.next;
+			}
+			if (node.next != null) {
+				node.next.prev = node.prev;
+			}
+			node.prev = null;
+			node.next = null;
+			node.bucket = null;
+		}
+	}
+}
@@ -1,13 +1,18 @@
-package top.tangtian.rocketmqdemo.rocketmqconsumer.listener;
+package top.tangtian.rocketmqdemo.producer.listener;
 
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.annotation.RocketMQTransactionListener;
 import org.apache.rocketmq.spring.core.RocketMQLocalTransactionListener;
 import org.apache.rocketmq.spring.core.RocketMQLocalTransactionState;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
+import top.tangtian.rocketmqdemo.producer.transaction.TransactionStateLog;
 
 /**
+ * 事务消息由发送方所在进程执行本地事务并应答回查，所以监听器放在生产者应用中
+ *
  * @author tangtian
  * @date 2026-01-02 17:23
  */
@@ -16,6 +21,14 @@ import org.springframework.stereotype.Component;
 @RocketMQTransactionListener
 public class OrderTransactionListener implements RocketMQLocalTransactionListener {
 
+	/**
+	 * 生产者发送事务消息时设置的消息头
+	 */
+	public static final String ORDER_ID_HEADER = "orderId";
+
+	@Resource
+	private TransactionStateLog transactionStateLog;
+
 	/**
 	 * 执行本地事务
 	 */
@@ -28,6 +41,8 @@ public class OrderTransactionListener implements RocketMQLocalTransactionListene
 			// 执行本地数据库操作
 			boolean success = performLocalTransaction(orderId);
 
+			// 本地事务结束后立即记录状态，如果在这之间进程退出，回查时缓存未命中，会回退到查询业务库
+			transactionStateLog.record(orderId, success ? TransactionStateLog.COMMIT : TransactionStateLog.ROLLBACK);
 			if (success) {
 				log.info("本地事务执行成功: orderId={}", orderId);
 				return RocketMQLocalTransactionState.COMMIT;
@@ -43,14 +58,28 @@ public class OrderTransactionListener implements RocketMQLocalTransactionListene
 
 	/**
 	 * 检查本地事务状态（回查）
+	 * 先查本地事务状态日志的内存索引，未命中时才查询业务库
 	 */
 	@Override
 	public RocketMQLocalTransactionState checkLocalTransaction(Message msg) {
-		String orderId = (String) msg.getHeaders().get("orderId");
-		log.info("回查本地事务状态: orderId={}", orderId);
+		String orderId = orderIdOf(msg);
+		if (orderId == null) {
+			log.warn("回查消息缺少订单号: headers={}", msg.getHeaders());
+			return RocketMQLocalTransactionState.UNKNOWN;
+		}
 
+		Byte state = transactionStateLog.lookup(orderId);
+		if (state != null) {
+			log.debug("回查命中事务状态日志: orderId={}, state={}", orderId, state);
+			return state == TransactionStateLog.COMMIT
+					? RocketMQLocalTransactionState.COMMIT
+					: RocketMQLocalTransactionState.ROLLBACK;
+		}
+
+		log.info("回查本地事务状态: orderId={}", orderId);
 		// 查询本地数据库，检查事务状态
 		boolean isSuccess = checkTransactionStatus(orderId);
+		transactionStateLog.remember(orderId, isSuccess ? TransactionStateLog.COMMIT : TransactionStateLog.ROLLBACK);
 
 		if (isSuccess) {
 			return RocketMQLocalTransactionState.COMMIT;
@@ -59,6 +88,14 @@ public class OrderTransactionListener implements RocketMQLocalTransactionListene
 		}
 	}
 
+	private static String orderIdOf(Message msg) {
+		Object orderId = msg.getHeaders().get(ORDER_ID_HEADER);
+		if (orderId == null) {
+			orderId = msg.getHeaders().get(RocketMQHeaders.PREFIX + RocketMQHeaders.KEYS);
+		}
+		return orderId == null ? null : orderId.toString();
+	}
+
 	private boolean performLocalTransaction(String orderId) {
 		// 模拟本地事务操作
 		// 实际场景中这里会执行数据库操作
@@ -70,4 +107,4 @@ public class OrderTransactionListener implements RocketMQLocalTransactionListene
 		// 实际场景中查询数据库
 		return true;
 	}
-}
\ No newline at end of file
+}
@@ -2,15 +2,25 @@ package top.tangtian.rocketmqdemo.producer.service;
 
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.SendCallback;
 import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import top.tangtian.rocketmqdemo.producer.batch.BatchSendResult;
+import top.tangtian.rocketmqdemo.producer.batch.BatchSplitter;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageSerializer;
 import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 /**
  * @author tangtian
@@ -20,29 +30,132 @@ import java.util.List;
 @Service
 public class BatchMessageProducerService {
 
+	private static final String BATCH_TOPIC = "batch-topic";
+
 	@Resource
 	private RocketMQTemplate rocketMQTemplate;
 
+	@Resource
+	private OrderMessageSerializer orderMessageSerializer;
+
+	/**
+	 * 单个子批次的大小上限，broker 默认 maxMessageSize 为 4MB，这里留出余量
+	 */
+	@Value("${producer.batch.max-bytes:4000000}")
+	private int maxBatchBytes;
+
+	/**
+	 * 同时在途的子批次数量
+	 */
+	@Value("${producer.batch.max-in-flight:4}")
+	private int maxInFlight;
+
+	@Value("${producer.batch.send-timeout:3000}")
+	private long sendTimeout;
+
 	/**
 	 * 批量发送消息
+	 * 按编码后大小拆成尽量少的子批次，子批次异步并发发送，返回每条消息的发送状态
 	 */
-	public void sendBatchMessages(List<OrderMessage> messages) {
-		List<Message> msgList = new ArrayList<>();
+	public BatchSendResult sendBatchMessages(List<OrderMessage> messages) {
+		int total = messages.size();
+		List<Message<byte[]>> msgList = new ArrayList<>(total);
+		int[] sizes = new int[total];
 
-		for (OrderMessage orderMessage : messages) {
-			Message msg = MessageBuilder
-					.withPayload(orderMessage)
+		for (int i = 0; i < total; i++) {
+			OrderMessage orderMessage = messages.get(i);
+			Message<byte[]> msg = MessageBuilder
+					.withPayload(orderMessageSerializer.encode(orderMessage))
+					.setHeader(RocketMQHeaders.KEYS, orderMessage.getOrderId())
+					.setHeader(MessageHeaders.CONTENT_TYPE, orderMessageSerializer.contentType())
 					.build();
 			msgList.add(msg);
+			sizes[i] = BatchSplitter.estimateSize(BATCH_TOPIC, msg);
+		}
+
+		BatchSendResult result = new BatchSendResult();
+		result.setTotal(total);
+		BatchSendResult.Item[] items = new BatchSendResult.Item[total];
+		for (int i = 0; i < total; i++) {
+			if (sizes[i] > maxBatchBytes) {
+				items[i] = new BatchSendResult.Item(i, messages.get(i).getOrderId(), BatchSendResult.Status.TOO_LARGE,
+						null, "消息大小 " + sizes[i] + " 超过上限 " + maxBatchBytes);
+			}
 		}
 
-		// 批量同步发送
-		SendResult sendResult = rocketMQTemplate.syncSend(
-				"batch-topic",
-				msgList,
-				3000
-		);
+		List<List<Integer>> batches = BatchSplitter.split(sizes, maxBatchBytes);
+		result.setBatchCount(batches.size());
 
-		log.info("批量发送{}条消息成功: {}", messages.size(), sendResult.getSendStatus());
+		// 信号量限制在途子批次数量，窗口满时调用线程阻塞等待
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+		for (List<Integer> batch : batches) {
+			List<Message<byte[]>> subList = new ArrayList<>(batch.size());
+			batch.forEach(index -> subList.add(msgList.get(index)));
+			inFlight.acquireUninterruptibly();
+			futures.add(sendSubBatch(subList)
+					.whenComplete((sendResult, e) -> inFlight.release())
+					.handle((sendResult, e) -> {
+						fillItems(items, messages, batch, sendResult, e);
+						return null;
+					}));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+		for (BatchSendResult.Item item : items) {
+			if (item.getStatus() == BatchSendResult.Status.SUCCESS) {
+				result.setSucceeded(result.getSucceeded() + 1);
+			} else {
+				result.setFailed(result.getFailed() + 1);
+			}
+			result.getItems().add(item);
+		}
+
+		log.info("批量发送{}条消息完成: 子批次={}, 成功={}, 失败={}",
+				total, result.getBatchCount(), result.getSucceeded(), result.getFailed());
+		return result;
+	}
+
+	private CompletableFuture<SendResult> sendSubBatch(List<Message<byte[]>> subList) {
+		CompletableFuture<SendResult> future = new CompletableFuture<>();
+		try {
+			rocketMQTemplate.asyncSend(BATCH_TOPIC, subList, new SendCallback() {
+				@Override
+				public void onSuccess(SendResult sendResult) {
+					future.complete(sendResult);
+				}
+
+				@Override
+				public void onException(Throwable throwable) {
+					future.completeExceptionally(throwable);
+				}
+			}, sendTimeout);
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private void fillItems(BatchSendResult.Item[] items, List<OrderMessage> messages, List<Integer> batch,
+						   SendResult sendResult, Throwable e) {
+		// 批量发送的 msgId 是子批次内各消息 ID 用逗号拼接的结果
+		String[] msgIds = sendResult != null && sendResult.getMsgId() != null
+				? sendResult.getMsgId().split(",") : new String[0];
+		for (int i = 0; i < batch.size(); i++) {
+			int index = batch.get(i);
+			String orderId = messages.get(index).getOrderId();
+			if (e != null) {
+				items[index] = new BatchSendResult.Item(index, orderId, BatchSendResult.Status.FAILED, null, e.getMessage());
+			} else if (sendResult.getSendStatus() != SendStatus.SEND_OK) {
+				items[index] = new BatchSendResult.Item(index, orderId, BatchSendResult.Status.FAILED,
+						i < msgIds.length ? msgIds[i] : null, sendResult.getSendStatus().name());
+			} else {
+				items[index] = new BatchSendResult.Item(index, orderId, BatchSendResult.Status.SUCCESS,
+						i < msgIds.length ? msgIds[i] : null, null);
+			}
+		}
+		if (e != null) {
+			log.error("子批次发送失败: size={}", batch.size(), e);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -4,11 +4,15 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageSerializer;
+import top.tangtian.rocketmqdemo.producer.delay.DelayMessageService;
 import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
 
+import java.time.Duration;
+
 /**
  * @author tangtian
  * @date 2026-01-02 17:17
@@ -20,14 +24,25 @@ public class DelayMessageProducerService {
 	@Resource
 	private RocketMQTemplate rocketMQTemplate;
 
+	@Resource
+	private OrderMessageSerializer orderMessageSerializer;
+
+	@Resource
+	private DelayMessageService delayMessageService;
+
+	/**
+	 * 订单超时时间，不受固定延迟级别限制
+	 */
+	@Value("${producer.delay.order-timeout:30m}")
+	private Duration orderTimeout;
+
 	/**
 	 * 发送延迟消息
 	 * RocketMQ支持18个延迟级别：
 	 * 1s 5s 10s 30s 1m 2m 3m 4m 5m 6m 7m 8m 9m 10m 20m 30m 1h 2h
 	 */
 	public void sendDelayMessage(OrderMessage message, int delayLevel) {
-		Message msg = MessageBuilder
-				.withPayload(message)
+		Message msg = orderMessageSerializer.builder(message)
 				.build();
 
 		// delayLevel: 1=1s, 2=5s, 3=10s, 4=30s, 5=1m, 6=2m...
@@ -43,11 +58,26 @@ public class DelayMessageProducerService {
 	}
 
 	/**
-	 * 发送订单超时取消提醒（30分钟后）
+	 * 任意时长的延迟消息，由本地时间轮定时，到期后投递
+	 */
+	public void sendDelayMessage(OrderMessage message, Duration delay) {
+		delayMessageService.schedule("delay-topic", message, delay);
+		log.info("延迟消息已定时: orderId={}, delay={}", message.getOrderId(), delay);
+	}
+
+	/**
+	 * 发送订单超时取消提醒（默认30分钟后）
 	 */
 	public void sendOrderTimeoutReminder(OrderMessage message) {
-		// 延迟级别16 = 30分钟
-		sendDelayMessage(message, 16);
+		sendDelayMessage(message, orderTimeout);
 		log.info("订单超时提醒消息已发送: orderId={}", message.getOrderId());
 	}
+
+	/**
+	 * 订单已支付，取消超时提醒
+	 */
+	public void cancelOrderTimeoutReminder(String orderId) {
+		boolean cancelled = delayMessageService.cancel(orderId);
+		log.info("取消订单超时提醒: orderId={}, cancelled={}", orderId, cancelled);
+	}
 }
\ No newline at end of file
@@ -5,10 +5,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.producer.SendCallback;
 import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import top.tangtian.rocketmqdemo.producer.batch.AccumulatingProducer;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageSerializer;
 import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author tangtian
  * @date 2026-01-02 17:05
@@ -20,15 +24,39 @@ public class MessageProducerService {
 	@Resource
 	private RocketMQTemplate rocketMQTemplate;
 
+	@Resource
+	private OrderMessageSerializer orderMessageSerializer;
+
+	@Resource
+	private AccumulatingProducer accumulatingProducer;
+
+	/**
+	 * 开启后同步/异步发送都经过攒批发送器，多个调用方的消息合并成一次网络请求
+	 */
+	@Value("${producer.accumulator.enabled:false}")
+	private boolean accumulatorEnabled;
+
 	// 1. 同步发送消息
 	public void sendSyncMessage(OrderMessage message) {
-		SendResult sendResult = rocketMQTemplate.syncSend("order-topic", message);
+		SendResult sendResult = accumulatorEnabled
+				? accumulatingProducer.send("order-topic", null, message).join()
+				: rocketMQTemplate.syncSend("order-topic", orderMessageSerializer.builder(message).build());
 		log.info("同步发送消息结果: {}", sendResult.getSendStatus());
 	}
 
 	// 2. 异步发送消息
 	public void sendAsyncMessage(OrderMessage message) {
-		rocketMQTemplate.asyncSend("order-topic", message, new SendCallback() {
+		if (accumulatorEnabled) {
+			sendAccumulated(message, null).whenComplete((sendResult, throwable) -> {
+				if (throwable != null) {
+					log.error("异步发送失败", throwable);
+				} else {
+					log.info("异步发送成功: {}", sendResult.getMsgId());
+				}
+			});
+			return;
+		}
+		rocketMQTemplate.asyncSend("order-topic", orderMessageSerializer.builder(message).build(), new SendCallback() {
 			@Override
 			public void onSuccess(SendResult sendResult) {
 				log.info("异步发送成功: {}", sendResult.getMsgId());
@@ -43,7 +71,7 @@ public class MessageProducerService {
 
 	// 3. 单向发送（不关心结果）
 	public void sendOneWayMessage(OrderMessage message) {
-		rocketMQTemplate.sendOneWay("order-topic", message);
+		rocketMQTemplate.sendOneWay("order-topic", orderMessageSerializer.builder(message).build());
 		log.info("单向发送消息完成");
 	}
 
@@ -51,8 +79,13 @@ public class MessageProducerService {
 	public void sendMessageWithTag(OrderMessage message, String tag) {
 		SendResult sendResult = rocketMQTemplate.syncSend(
 				"order-topic:" + tag,
-				MessageBuilder.withPayload(message).build()
+				orderMessageSerializer.builder(message).build()
 		);
 		log.info("发送带Tag消息: tag={}, result={}", tag, sendResult.getSendStatus());
 	}
+
+	// 5. 攒批发送，返回单条消息的发送结果
+	public CompletableFuture<SendResult> sendAccumulated(OrderMessage message, String tag) {
+		return accumulatingProducer.send("order-topic", tag, message);
+	}
 }
\ No newline at end of file
@@ -5,8 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageSerializer;
 import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
 
 /**
@@ -20,6 +20,12 @@ public class OrderlyMessageProducerService {
 	@Resource
 	private RocketMQTemplate rocketMQTemplate;
 
+	@Resource
+	private OrderMessageSerializer orderMessageSerializer;
+
+	@Resource
+	private DelayMessageProducerService delayMessageProducerService;
+
 	/**
 	 * 发送顺序消息
 	 * 使用orderId作为hashKey，确保同一订单的消息发送到同一队列
@@ -28,8 +34,7 @@ public class OrderlyMessageProducerService {
 		String topic = "order-status-topic";
 		String hashKey = orderMessage.getOrderId(); // 使用订单ID作为hash key
 
-		Message message = MessageBuilder
-				.withPayload(orderMessage)
+		Message message = orderMessageSerializer.builder(orderMessage)
 				.setHeader("orderStatus", orderStatus)
 				.build();
 
@@ -42,6 +47,11 @@ public class OrderlyMessageProducerService {
 
 		log.info("顺序消息发送成功: orderId={}, status={}, msgId={}",
 				orderMessage.getOrderId(), orderStatus, sendResult.getMsgId());
+
+		// 订单已支付，不再需要超时取消
+		if ("PAID".equals(orderStatus)) {
+			delayMessageProducerService.cancelOrderTimeoutReminder(orderMessage.getOrderId());
+		}
 	}
 
 	/**
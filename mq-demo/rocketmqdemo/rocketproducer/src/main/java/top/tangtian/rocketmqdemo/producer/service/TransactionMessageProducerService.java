@@ -4,10 +4,12 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.producer.TransactionSendResult;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import top.tangtian.rocketmqdemo.producer.converter.OrderMessageSerializer;
 import top.tangtian.rocketmqdemo.producer.entity.OrderMessage;
+import top.tangtian.rocketmqdemo.producer.listener.OrderTransactionListener;
 
 /**
  * @author tangtian
@@ -20,12 +22,17 @@ public class TransactionMessageProducerService {
 	@Resource
 	private RocketMQTemplate rocketMQTemplate;
 
+	@Resource
+	private OrderMessageSerializer orderMessageSerializer;
+
 	/**
 	 * 发送事务消息
 	 */
 	public void sendTransactionMessage(OrderMessage message) {
-		Message msg = MessageBuilder
-				.withPayload(message)
+		// 回查时 broker 只带回消息本身，订单号必须放在消息头里
+		Message msg = orderMessageSerializer.builder(message)
+				.setHeader(OrderTransactionListener.ORDER_ID_HEADER, message.getOrderId())
+				.setHeader(RocketMQHeaders.KEYS, message.getOrderId())
 				.build();
 
 		// 发送事务消息，arg是传递给事务监听器的参数
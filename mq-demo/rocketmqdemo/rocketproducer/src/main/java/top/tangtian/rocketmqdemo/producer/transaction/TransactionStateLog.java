@@ -0,0 +1,202 @@
+package top.tangtian.rocketmqdemo.producer.transaction;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 本地事务状态日志，供 broker 事务回查使用
+ * 本地事务提交后立即追加一条记录(订单号 + 提交/回滚)，前面用 LRU 缓存做索引，回查直接在内存中应答，不再逐条查业务库
+ *
+ * 日志按段滚动，只保留最近两段: 回查只发生在消息发送后的有限时间内，更早的记录没有意义
+ * 启动时回放保留的段重建缓存
+ *
+ * 文件和缓存各用一把锁: 写盘和 fsync 只持有 ioLock，回查只持有 cacheLock，不会排在 fsync 后面等待
+ *
+ * @author tangtian
+ * @date 2026-10-19 22:50
+ */
+@Slf4j
+@Component
+public class TransactionStateLog {
+
+	public static final byte COMMIT = 1;
+	public static final byte ROLLBACK = 2;
+
+	private static final String SEGMENT_PREFIX = "tx-state-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final int RETAINED_SEGMENTS = 2;
+
+	@Value("${producer.transaction.log-dir:./data/tx-log}")
+	private String logDir;
+
+	@Value("${producer.transaction.segment-bytes:67108864}")
+	private long segmentBytes;
+
+	@Value("${producer.transaction.cache-capacity:1000000}")
+	private int cacheCapacity;
+
+	/**
+	 * 每条记录都 force 到磁盘；关闭后只写入操作系统缓存，进程崩溃不丢，掉电可能丢最后几条
+	 */
+	@Value("${producer.transaction.fsync:true}")
+	private boolean fsync;
+
+	private final Object ioLock = new Object();
+	private final Object cacheLock = new Object();
+
+	private Map<String, Byte> cache;
+	private Path dir;
+	private FileChannel channel;
+	private long segmentSeq;
+
+	@PostConstruct
+	public void open() throws IOException {
+		cache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Byte> eldest) {
+				return size() > cacheCapacity;
+			}
+		};
+		dir = Paths.get(logDir);
+		Files.createDirectories(dir);
+
+		List<Path> segments = listSegments();
+		long validBytes = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			if (i < segments.size() - RETAINED_SEGMENTS) {
+				Files.delete(segments.get(i));
+			} else {
+				validBytes = replay(segments.get(i));
+			}
+		}
+		segmentSeq = segments.isEmpty() ? 0 : seqOf(segments.get(segments.size() - 1));
+		channel = openSegment(segmentSeq);
+		if (channel.size() > validBytes && !segments.isEmpty()) {
+			// 截掉不完整的尾部记录，后续追加才能正确回放
+			channel.truncate(validBytes);
+		}
+		log.info("事务状态日志已打开: dir={}, 缓存 {} 条", dir, cache.size());
+	}
+
+	@PreDestroy
+	public void close() throws IOException {
+		synchronized (ioLock) {
+			if (channel != null) {
+				channel.force(false);
+				channel.close();
+				channel = null;
+			}
+		}
+	}
+
+	/**
+	 * 本地事务结束后调用，先落日志再进缓存
+	 */
+	public void record(String key, byte state) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + keyBytes.length + 8);
+		buffer.put(state).putShort((short) keyBytes.length).put(keyBytes).putLong(System.currentTimeMillis()).flip();
+		synchronized (ioLock) {
+			if (channel.size() >= segmentBytes) {
+				roll();
+			}
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			if (fsync) {
+				channel.force(false);
+			}
+		}
+		// 落盘之后才可见，回查拿到的状态重启后一定还在
+		remember(key, state);
+	}
+
+	/**
+	 * 只放入缓存，例如回查时从业务库查到的结果
+	 */
+	public void remember(String key, byte state) {
+		synchronized (cacheLock) {
+			cache.put(key, state);
+		}
+	}
+
+	/**
+	 * @return COMMIT / ROLLBACK，缓存中没有时返回 null
+	 */
+	public Byte lookup(String key) {
+		synchronized (cacheLock) {
+			return cache.get(key);
+		}
+	}
+
+	private void roll() throws IOException {
+		channel.force(false);
+		channel.close();
+		segmentSeq++;
+		channel = openSegment(segmentSeq);
+		List<Path> segments = listSegments();
+		for (int i = 0; i < segments.size() - RETAINED_SEGMENTS; i++) {
+			Files.deleteIfExists(segments.get(i));
+		}
+		log.info("事务状态日志滚动到新段: {}", segmentSeq);
+	}
+
+	/**
+	 * 回放一个段，返回完整记录的字节数
+	 */
+	private long replay(Path segment) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+		while (buffer.remaining() >= 3) {
+			int start = buffer.position();
+			byte state = buffer.get();
+			int len = buffer.getShort() & 0xFFFF;
+			if (buffer.remaining() < len + 8) {
+				// 崩溃时写了一半的记录
+				log.warn("事务状态日志尾部记录不完整: segment={}, position={}", segment.getFileName(), start);
+				buffer.position(start);
+				break;
+			}
+			byte[] keyBytes = new byte[len];
+			buffer.get(keyBytes);
+			buffer.getLong();
+			cache.put(new String(keyBytes, StandardCharsets.UTF_8), state);
+		}
+		return buffer.position();
+	}
+
+	private FileChannel openSegment(long seq) throws IOException {
+		return FileChannel.open(dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX)),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private List<Path> listSegments() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files
+					.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+					.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+					.sorted()
+					.toList();
+		}
+	}
+
+	private static long seqOf(Path segment) {
+		String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+}
@@ -0,0 +1,208 @@
+package top.tangtian.elacticjob.bloom;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import top.tangtian.elacticjob.repository.OrderRepository;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 按天构建订单号布隆过滤器
+ * 同一JVM内的分片共享内存实例，跨实例通过共享目录下的文件复用，每天只扫描一次订单表
+ * <p>
+ * 过滤器记录构建时窗口内的订单数(文件名中也带上)，每次获取时重新计数，
+ * 数量变化(当天订单持续写入、补录)说明过滤器已过时，重新构建；
+ * 内存和文件只保留最近 retain-days 天
+ *
+ * @author tangtian
+ * @date 2026-10-19 10:30
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderBloomFilterManager {
+
+	private static final String FILE_PREFIX = "orders-";
+	private static final String FILE_SUFFIX = ".bf";
+
+	private final OrderRepository orderRepository;
+	private final PlatformTransactionManager transactionManager;
+
+	private final Map<LocalDate, CachedFilter> filters = new ConcurrentHashMap<>();
+
+	// 过滤器文件目录，多实例部署时指向共享存储
+	@Value("${reconciliation.bloom-filter.dir:${java.io.tmpdir}/reconciliation-bloom}")
+	private String dir;
+
+	@Value("${reconciliation.bloom-filter.fpp:0.001}")
+	private double fpp;
+
+	// 支付可能对应前几天创建的订单，过滤器需覆盖这段时间，否则会误判为订单缺失
+	@Value("${reconciliation.bloom-filter.lookback-days:1}")
+	private int lookbackDays;
+
+	// 内存和文件保留天数，更早的过滤器在获取新过滤器时清理
+	@Value("${reconciliation.bloom-filter.retain-days:3}")
+	private int retainDays;
+
+	/**
+	 * 获取指定日期的过滤器，不存在或窗口内订单数已变化时加载文件或从订单表构建
+	 */
+	public OrderNoBloomFilter getOrBuild(LocalDate date) {
+		long sourceCount = orderRepository.countByCreatedTimeBetween(coveredFrom(date), date.atTime(LocalTime.MAX));
+		CachedFilter cached = filters.compute(date, (d, old) ->
+				old != null && old.sourceCount() == sourceCount ? old : loadOrBuild(d, sourceCount));
+		purgeExpired(date);
+		return cached.filter();
+	}
+
+	/**
+	 * 过滤器覆盖的最早订单创建时间，更早的订单不在过滤器中
+	 */
+	public LocalDateTime coveredFrom(LocalDate date) {
+		return date.minusDays(lookbackDays).atStartOfDay();
+	}
+
+	/**
+	 * 订单被修改但数量不变(订单数检测不到)时调用，丢弃缓存和文件
+	 */
+	public void evict(LocalDate date) {
+		filters.remove(date);
+		deleteFiles(date, -1);
+	}
+
+	private CachedFilter loadOrBuild(LocalDate date, long sourceCount) {
+		Path path = filePath(date, sourceCount);
+		if (Files.exists(path)) {
+			try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+				OrderNoBloomFilter filter = OrderNoBloomFilter.readFrom(in);
+				log.info("加载布隆过滤器文件: {}, 位数: {}", path, filter.bitSize());
+				return new CachedFilter(filter, sourceCount);
+			} catch (IOException e) {
+				log.warn("布隆过滤器文件损坏，重新构建: {}", path, e);
+			}
+		}
+
+		OrderNoBloomFilter filter = build(date, sourceCount);
+		save(filter, path);
+		// 订单数不同的旧文件已过时
+		deleteFiles(date, sourceCount);
+		return new CachedFilter(filter, sourceCount);
+	}
+
+	private OrderNoBloomFilter build(LocalDate date, long expected) {
+		LocalDateTime startTime = coveredFrom(date);
+		LocalDateTime endTime = date.atTime(LocalTime.MAX);
+		long start = System.currentTimeMillis();
+
+		// 构建期间新写入的订单也会放进过滤器，只是按计数时的数量分配位数
+		OrderNoBloomFilter filter = OrderNoBloomFilter.create(expected, fpp);
+
+		// 流式读取订单号，不加载完整的Order实体
+		readOnlyTransaction().executeWithoutResult(status -> {
+			try (Stream<String> orderNos = orderRepository.streamOrderNosByTimeRange(startTime, endTime)) {
+				orderNos.forEach(filter::put);
+			}
+		});
+
+		log.info("构建布隆过滤器完成 - 日期: {}, 订单数: {}, 位数: {}, 哈希函数: {}, 耗时: {}ms",
+				date, expected, filter.bitSize(), filter.numHashFunctions(),
+				System.currentTimeMillis() - start);
+		return filter;
+	}
+
+	private void save(OrderNoBloomFilter filter, Path path) {
+		try {
+			Files.createDirectories(path.getParent());
+			// 先写临时文件再原子替换，避免其他实例读到半个文件
+			Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+				filter.writeTo(out);
+			}
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// 落盘失败不影响本次对账，只是其他实例需要自行构建
+			log.warn("保存布隆过滤器文件失败: {}", path, e);
+		}
+	}
+
+	private void purgeExpired(LocalDate today) {
+		LocalDate expireBefore = today.minusDays(retainDays);
+		filters.keySet().removeIf(date -> date.isBefore(expireBefore));
+		forEachFile(null, (file, fileDate, count) -> {
+			if (fileDate.isBefore(expireBefore)) {
+				Files.deleteIfExists(file);
+				log.info("清理过期布隆过滤器: {}", file);
+			}
+		});
+	}
+
+	/**
+	 * 删除指定日期的过滤器文件，keepCount 对应的文件保留，-1 表示全部删除
+	 */
+	private void deleteFiles(LocalDate date, long keepCount) {
+		forEachFile(date, (file, fileDate, count) -> {
+			if (count != keepCount) {
+				Files.deleteIfExists(file);
+			}
+		});
+	}
+
+	private void forEachFile(LocalDate date, FileVisitor visitor) {
+		Path directory = Paths.get(dir);
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		String glob = FILE_PREFIX + (date == null ? "*" : date + "-*") + FILE_SUFFIX;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+			for (Path file : files) {
+				// orders-yyyy-MM-dd-订单数.bf
+				String name = file.getFileName().toString();
+				String body = name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length());
+				int split = body.lastIndexOf('-');
+				try {
+					visitor.visit(file, LocalDate.parse(body.substring(0, split)), Long.parseLong(body.substring(split + 1)));
+				} catch (DateTimeParseException | NumberFormatException | StringIndexOutOfBoundsException e) {
+					log.debug("跳过非布隆过滤器文件: {}", file);
+				}
+			}
+		} catch (IOException e) {
+			log.warn("清理布隆过滤器文件失败", e);
+		}
+	}
+
+	private TransactionTemplate readOnlyTransaction() {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setReadOnly(true);
+		return template;
+	}
+
+	private Path filePath(LocalDate date, long sourceCount) {
+		return Paths.get(dir, FILE_PREFIX + date + "-" + sourceCount + FILE_SUFFIX);
+	}
+
+	private record CachedFilter(OrderNoBloomFilter filter, long sourceCount) {
+	}
+
+	private interface FileVisitor {
+		void visit(Path file, LocalDate fileDate, long sourceCount) throws IOException;
+	}
+}
@@ -0,0 +1,104 @@
+package top.tangtian.elacticjob.bloom;
+
+import top.tangtian.elacticjob.util.OrderNoHash;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 订单号布隆过滤器
+ * mightContain 返回 false 时订单一定不存在，返回 true 时订单可能存在(需回查数据库)
+ *
+ * @author tangtian
+ * @date 2026-10-19 10:12
+ */
+public class OrderNoBloomFilter {
+
+	private static final int MAGIC = 0x4F424C46;
+	private static final int VERSION = 1;
+
+	private final long[] bits;
+	private final long bitSize;
+	private final int numHashFunctions;
+
+	private OrderNoBloomFilter(long[] bits, int numHashFunctions) {
+		this.bits = bits;
+		this.bitSize = (long) bits.length * Long.SIZE;
+		this.numHashFunctions = numHashFunctions;
+	}
+
+	/**
+	 * 按预计元素个数和误判率创建过滤器
+	 */
+	public static OrderNoBloomFilter create(long expectedInsertions, double fpp) {
+		if (fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("误判率必须在(0,1)之间: " + fpp);
+		}
+		long n = Math.max(expectedInsertions, 1);
+		// m = -n*ln(p)/(ln2)^2, k = m/n*ln2
+		long numBits = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		int numHashFunctions = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+		int numLongs = (int) Math.min(Integer.MAX_VALUE - 8, (numBits + Long.SIZE - 1) / Long.SIZE);
+		return new OrderNoBloomFilter(new long[numLongs], numHashFunctions);
+	}
+
+	public void put(String orderNo) {
+		long h1 = OrderNoHash.hash64(orderNo, OrderNoHash.SEED_1);
+		long h2 = OrderNoHash.hash64(orderNo, OrderNoHash.SEED_2) | 1L;
+		long combined = h1;
+		for (int i = 0; i < numHashFunctions; i++) {
+			long index = (combined & Long.MAX_VALUE) % bitSize;
+			bits[(int) (index >>> 6)] |= 1L << index;
+			combined += h2;
+		}
+	}
+
+	public boolean mightContain(String orderNo) {
+		long h1 = OrderNoHash.hash64(orderNo, OrderNoHash.SEED_1);
+		long h2 = OrderNoHash.hash64(orderNo, OrderNoHash.SEED_2) | 1L;
+		long combined = h1;
+		for (int i = 0; i < numHashFunctions; i++) {
+			long index = (combined & Long.MAX_VALUE) % bitSize;
+			if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+				return false;
+			}
+			combined += h2;
+		}
+		return true;
+	}
+
+	public long bitSize() {
+		return bitSize;
+	}
+
+	public int numHashFunctions() {
+		return numHashFunctions;
+	}
+
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(numHashFunctions);
+		out.writeInt(bits.length);
+		for (long word : bits) {
+			out.writeLong(word);
+		}
+	}
+
+	public static OrderNoBloomFilter readFrom(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("不是有效的布隆过滤器文件");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("不支持的布隆过滤器版本: " + version);
+		}
+		int numHashFunctions = in.readInt();
+		long[] bits = new long[in.readInt()];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = in.readLong();
+		}
+		return new OrderNoBloomFilter(bits, numHashFunctions);
+	}
+}
@@ -1,24 +1,73 @@
 package top.tangtian.elacticjob.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 
 import javax.sql.DataSource;
 
 /**
+ * 读写分离数据源
+ * 只读事务(@Transactional(readOnly = true))走从库连接池，其余走主库，夜间对账扫描不再占用主库连接
+ * 未开启 spring.datasource.replica.enabled 时不生效，沿用 Spring Boot 自动配置的单数据源
+ * 只读事务只在对账比对和布隆过滤器/订单索引构建中显式开启；仓库方法本身不带只读标记，
+ * 实时任务(如 PaymentReconciliationDataflowJob)的查询仍走主库，不会读到从库延迟的数据
+ *
  * @author tangtian
  * @date 2025-12-17 12:40
  */
-//@Configuration
-//public class DataSourceConfig {
-//
-//	@Bean
-//	@Primary  // <--- 关键：标记这是主数据源，JPA 将默认使用它
-//	@ConfigurationProperties("spring.datasource")
-//	public DataSource dataSource() {
-//		return DataSourceBuilder.create().build();
-//	}
-//}
\ No newline at end of file
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "spring.datasource.replica", name = "enabled", havingValue = "true")
+public class DataSourceConfig {
+
+	/**
+	 * 主库，沿用 spring.datasource.* 和 spring.datasource.hikari.* 配置
+	 */
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.build();
+		dataSource.setPoolName("primary-pool");
+		return dataSource;
+	}
+
+	/**
+	 * 从库，独立的连接池大小，配置见 spring.datasource.replica.*
+	 */
+	@Bean
+	@ConfigurationProperties("spring.datasource.replica")
+	public HikariDataSource replicaDataSource() {
+		HikariDataSource dataSource = DataSourceBuilder.create()
+				.type(HikariDataSource.class)
+				.build();
+		dataSource.setPoolName("replica-pool");
+		dataSource.setReadOnly(true);
+		return dataSource;
+	}
+
+	/**
+	 * 对外暴露的路由数据源
+	 * 事务开始时 JpaTransactionManager 会在连接上设置 readOnly，LazyConnectionDataSourceProxy
+	 * 延迟到真正执行SQL时才取物理连接，并根据 readOnly 标记选择从库或主库
+	 */
+	@Bean
+	@Primary
+	public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+								 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+		LazyConnectionDataSourceProxy routingDataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+		routingDataSource.setReadOnlyDataSource(replicaDataSource);
+		log.info("已启用读写分离数据源: 只读事务 -> replica-pool, 读写事务 -> primary-pool");
+		return routingDataSource;
+	}
+}
@@ -1,9 +1,15 @@
 package top.tangtian.elacticjob.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.elasticjob.tracing.api.TracingConfiguration;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import top.tangtian.elacticjob.tracing.BatchTracingListenerConfiguration;
+import top.tangtian.elacticjob.tracing.BatchTracingSettings;
 
 import javax.sql.DataSource;
 
@@ -11,6 +17,7 @@ import javax.sql.DataSource;
  * @author tangtian
  * @date 2025-12-17 13:00
  */
+@Slf4j
 @Configuration
 public class ElasticJobConfig {
 
@@ -18,9 +25,78 @@ public class ElasticJobConfig {
 	@Resource
 	private DataSource dataSource;
 
+	@Value("${elasticjob.tracing.batch.buffer-capacity:8192}")
+	private int bufferCapacity;
+
+	@Value("${elasticjob.tracing.batch.batch-size:500}")
+	private int batchSize;
+
+	@Value("${elasticjob.tracing.batch.flush-interval-millis:1000}")
+	private long flushIntervalMillis;
+
+	@Value("${elasticjob.tracing.batch.retention-days:7}")
+	private int retentionDays;
+
+	@Value("${elasticjob.tracing.batch.purge-interval-minutes:60}")
+	private long purgeIntervalMinutes;
+
+	@Value("${elasticjob.tracing.batch.purge-batch-size:5000}")
+	private int purgeBatchSize;
+
+	// 追踪专用数据源，不配置时使用主数据源
+	@Value("${elasticjob.tracing.batch.datasource.jdbc-url:}")
+	private String tracingJdbcUrl;
+
+	@Value("${elasticjob.tracing.batch.datasource.username:}")
+	private String tracingUsername;
+
+	@Value("${elasticjob.tracing.batch.datasource.password:}")
+	private String tracingPassword;
+
+	@Value("${elasticjob.tracing.batch.datasource.maximum-pool-size:2}")
+	private int tracingMaximumPoolSize;
+
+	private HikariDataSource tracingDataSource;
+
 	@Bean
 	public TracingConfiguration<DataSource> tracingConfiguration() {
-		// 将主数据源传给 ElasticJob
-		return new TracingConfiguration<>("RDB", dataSource);
+		BatchTracingSettings settings = new BatchTracingSettings();
+		settings.setBufferCapacity(bufferCapacity);
+		settings.setBatchSize(batchSize);
+		settings.setFlushIntervalMillis(flushIntervalMillis);
+		settings.setRetentionDays(retentionDays);
+		settings.setPurgeIntervalMinutes(purgeIntervalMinutes);
+		settings.setPurgeBatchSize(purgeBatchSize);
+		BatchTracingListenerConfiguration.configure(settings);
+
+		// 事件先进缓冲区，由后台线程批量写库，不再每个事件同步插入一次
+		return new TracingConfiguration<>(BatchTracingListenerConfiguration.TYPE, resolveTracingDataSource());
+	}
+
+	@PreDestroy
+	public void shutdownTracing() {
+		BatchTracingListenerConfiguration.shutdown(5000);
+		if (tracingDataSource != null) {
+			tracingDataSource.close();
+		}
+	}
+
+	/**
+	 * 不注册为 Spring Bean，避免影响主数据源的自动配置
+	 * 连接池在第一次取连接时才初始化
+	 */
+	private DataSource resolveTracingDataSource() {
+		if (tracingJdbcUrl.isEmpty()) {
+			return dataSource;
+		}
+		tracingDataSource = new HikariDataSource();
+		tracingDataSource.setPoolName("tracing-pool");
+		tracingDataSource.setJdbcUrl(tracingJdbcUrl);
+		tracingDataSource.setUsername(tracingUsername);
+		tracingDataSource.setPassword(tracingPassword);
+		tracingDataSource.setMaximumPoolSize(tracingMaximumPoolSize);
+		tracingDataSource.setMinimumIdle(1);
+		log.info("事件追踪使用独立数据源: {}", tracingJdbcUrl);
+		return tracingDataSource;
 	}
 }
@@ -0,0 +1,160 @@
+package top.tangtian.elacticjob.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import top.tangtian.elacticjob.repository.OrderRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 日订单索引管理
+ * 每天只从订单表构建一次索引文件，JVM内所有分片和作业共享同一份内存映射
+ *
+ * @author tangtian
+ * @date 2026-10-19 15:10
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DailyOrderIndexManager {
+
+	private static final String FILE_PREFIX = "orders-";
+	private static final String FILE_SUFFIX = ".idx";
+
+	private final OrderRepository orderRepository;
+	private final PlatformTransactionManager transactionManager;
+
+	private final Map<LocalDate, DailyOrderIndex> indexes = new ConcurrentHashMap<>();
+
+	@Value("${reconciliation.order-index.dir:${java.io.tmpdir}/reconciliation-index}")
+	private String dir;
+
+	// 与布隆过滤器保持一致，覆盖前几天创建的订单
+	@Value("${reconciliation.order-index.lookback-days:1}")
+	private int lookbackDays;
+
+	// 索引文件保留天数，过期文件在构建新索引时清理
+	@Value("${reconciliation.order-index.retain-days:3}")
+	private int retainDays;
+
+	/**
+	 * 获取指定日期的索引，不存在时映射已有文件或从订单表构建
+	 */
+	public DailyOrderIndex getOrBuild(LocalDate date) {
+		DailyOrderIndex index = indexes.get(date);
+		if (index != null) {
+			return index;
+		}
+		index = indexes.computeIfAbsent(date, this::openOrBuild);
+		purgeExpired(date);
+		return index;
+	}
+
+	/**
+	 * 订单数据有补录时调用，丢弃映射和文件
+	 * 已持有旧索引的调用方仍可继续读，映射在无引用后由GC释放
+	 */
+	public void evict(LocalDate date) {
+		indexes.remove(date);
+		try {
+			Files.deleteIfExists(filePath(date));
+		} catch (IOException e) {
+			log.warn("删除订单索引文件失败: {}", date, e);
+		}
+	}
+
+	private DailyOrderIndex openOrBuild(LocalDate date) {
+		Path path = filePath(date);
+		try {
+			if (Files.exists(path)) {
+				try {
+					DailyOrderIndex index = DailyOrderIndex.open(path);
+					log.info("映射订单索引文件: {}, 订单数: {}", path, index.size());
+					return index;
+				} catch (IOException e) {
+					log.warn("订单索引文件损坏，重新构建: {}", path, e);
+				}
+			}
+			build(date, path);
+			return DailyOrderIndex.open(path);
+		} catch (IOException e) {
+			throw new UncheckedIOException("构建订单索引失败: " + date, e);
+		}
+	}
+
+	private void build(LocalDate date, Path path) throws IOException {
+		LocalDateTime startTime = date.minusDays(lookbackDays).atStartOfDay();
+		LocalDateTime endTime = date.atTime(LocalTime.MAX);
+		long start = System.currentTimeMillis();
+
+		long expected = orderRepository.countByCreatedTimeBetween(startTime, endTime);
+		try (DailyOrderIndexWriter writer = new DailyOrderIndexWriter(path, date, expected)) {
+			// 流式读取所需列，不创建 Order 实体
+			readOnlyTransaction().executeWithoutResult(status -> {
+				try (Stream<Object[]> rows = orderRepository.streamIndexColumnsByTimeRange(startTime, endTime)) {
+					rows.forEach(row -> {
+						try {
+							writer.add((String) row[0], (BigDecimal) row[1]);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				}
+			});
+			writer.finish();
+
+			log.info("构建订单索引完成 - 日期: {}, 订单数: {}, 文件大小: {}MB, 耗时: {}ms",
+					date, writer.count(), Files.size(path) >> 20, System.currentTimeMillis() - start);
+		}
+	}
+
+	private void purgeExpired(LocalDate today) {
+		LocalDate expireBefore = today.minusDays(retainDays);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(dir),
+				FILE_PREFIX + "*" + FILE_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					LocalDate fileDate = LocalDate.parse(
+							name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+					if (fileDate.isBefore(expireBefore)) {
+						indexes.remove(fileDate);
+						Files.deleteIfExists(file);
+						log.info("清理过期订单索引: {}", file);
+					}
+				} catch (DateTimeParseException e) {
+					log.debug("跳过非索引文件: {}", file);
+				}
+			}
+		} catch (IOException e) {
+			log.warn("清理过期订单索引失败", e);
+		}
+	}
+
+	private TransactionTemplate readOnlyTransaction() {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setReadOnly(true);
+		return template;
+	}
+
+	private Path filePath(LocalDate date) {
+		return Paths.get(dir, FILE_PREFIX + date + FILE_SUFFIX);
+	}
+}
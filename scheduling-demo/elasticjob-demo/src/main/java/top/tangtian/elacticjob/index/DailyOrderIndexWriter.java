@@ -0,0 +1,171 @@
+package top.tangtian.elacticjob.index;
+
+import top.tangtian.elacticjob.util.OrderNoHash;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * 日订单索引文件生成器
+ * 先把订单顺序写入暂存文件并统计各桶数量，再按桶散列写入最终文件并在桶内排序，
+ * 整个过程堆内只保留桶目录，不随订单量增长
+ *
+ * @author tangtian
+ * @date 2026-10-19 14:40
+ */
+public class DailyOrderIndexWriter implements Closeable {
+
+	// 暂存记录: hash(8) amount(8) verifier(4)
+	private static final int RECORD_SIZE = 20;
+	// 平均每桶约16条，桶内二分查找最多4~5次比较
+	private static final int ORDERS_PER_BUCKET = 16;
+	private static final int MIN_DIR_BITS = 4;
+	private static final int MAX_DIR_BITS = 24;
+
+	private final Path target;
+	private final LocalDate date;
+	private final int dirBits;
+	private final int dirShift;
+	private final int[] bucketCounts;
+	private final Path staging;
+	private final DataOutputStream stagingOut;
+	private int count;
+
+	/**
+	 * @param expectedCount 预计订单数，仅用于决定桶数量，不要求精确
+	 */
+	public DailyOrderIndexWriter(Path target, LocalDate date, long expectedCount) throws IOException {
+		this.target = target;
+		this.date = date;
+		this.dirBits = dirBits(expectedCount);
+		this.dirShift = Long.SIZE - dirBits;
+		this.bucketCounts = new int[1 << dirBits];
+		Files.createDirectories(target.getParent());
+		this.staging = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".staging");
+		this.stagingOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(staging), 1 << 16));
+	}
+
+	public void add(String orderNo, BigDecimal amount) throws IOException {
+		long hash = OrderNoHash.hash64(orderNo);
+		stagingOut.writeLong(hash);
+		stagingOut.writeLong(amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+		stagingOut.writeInt(DailyOrderIndex.verifier(orderNo));
+		bucketCounts[(int) (hash >>> dirShift)]++;
+		count++;
+	}
+
+	/**
+	 * 生成最终文件，先写临时文件再原子替换，其他进程不会映射到半个文件
+	 */
+	public void finish() throws IOException {
+		stagingOut.close();
+
+		DailyOrderIndex.Layout layout = new DailyOrderIndex.Layout(count, dirBits);
+		Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, DailyOrderIndex.HEADER_SIZE);
+			MappedByteBuffer directoryBuf = map(channel, layout.directoryOffset, layout.directorySize);
+			MappedByteBuffer hashesBuf = map(channel, layout.hashesOffset, (long) count * Long.BYTES);
+			MappedByteBuffer amountsBuf = map(channel, layout.amountsOffset, (long) count * Long.BYTES);
+			MappedByteBuffer verifiersBuf = map(channel, layout.verifiersOffset, (long) count * Integer.BYTES);
+
+			IntBuffer directory = directoryBuf.asIntBuffer();
+			LongBuffer hashes = hashesBuf.asLongBuffer();
+			LongBuffer amounts = amountsBuf.asLongBuffer();
+			IntBuffer verifiers = verifiersBuf.asIntBuffer();
+
+			// 桶计数转为起始下标，cursor 复用 bucketCounts 作为写入游标
+			int offset = 0;
+			for (int b = 0; b < bucketCounts.length; b++) {
+				directory.put(b, offset);
+				int size = bucketCounts[b];
+				bucketCounts[b] = offset;
+				offset += size;
+			}
+			directory.put(bucketCounts.length, offset);
+
+			try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(Files.newInputStream(staging), 1 << 16))) {
+				for (int i = 0; i < count; i++) {
+					long hash = in.readLong();
+					int pos = bucketCounts[(int) (hash >>> dirShift)]++;
+					hashes.put(pos, hash);
+					amounts.put(pos, in.readLong());
+					verifiers.put(pos, in.readInt());
+				}
+			}
+
+			for (int b = 0; b < bucketCounts.length; b++) {
+				sortBucket(directory.get(b), directory.get(b + 1), hashes, amounts, verifiers);
+			}
+
+			header.putInt(0, DailyOrderIndex.MAGIC);
+			header.putInt(4, DailyOrderIndex.VERSION);
+			header.putLong(8, date.toEpochDay());
+			header.putInt(16, count);
+			header.putInt(20, dirBits);
+
+			for (MappedByteBuffer buffer : new MappedByteBuffer[]{directoryBuf, hashesBuf, amountsBuf,
+					verifiersBuf, header}) {
+				buffer.force();
+			}
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		} finally {
+			Files.deleteIfExists(staging);
+		}
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public int count() {
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		stagingOut.close();
+		Files.deleteIfExists(staging);
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long offset, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+	}
+
+	/**
+	 * 桶内插入排序，桶很小，三列同步交换
+	 */
+	private static void sortBucket(int from, int to, LongBuffer hashes, LongBuffer amounts, IntBuffer verifiers) {
+		for (int i = from + 1; i < to; i++) {
+			long hash = hashes.get(i);
+			long amount = amounts.get(i);
+			int verifier = verifiers.get(i);
+			int j = i - 1;
+			while (j >= from && hashes.get(j) > hash) {
+				hashes.put(j + 1, hashes.get(j));
+				amounts.put(j + 1, amounts.get(j));
+				verifiers.put(j + 1, verifiers.get(j));
+				j--;
+			}
+			hashes.put(j + 1, hash);
+			amounts.put(j + 1, amount);
+			verifiers.put(j + 1, verifier);
+		}
+	}
+
+	private static int dirBits(long expectedCount) {
+		long buckets = Math.max(1, expectedCount / ORDERS_PER_BUCKET);
+		int bits = Long.SIZE - Long.numberOfLeadingZeros(buckets - 1);
+		return Math.max(MIN_DIR_BITS, Math.min(MAX_DIR_BITS, bits));
+	}
+}
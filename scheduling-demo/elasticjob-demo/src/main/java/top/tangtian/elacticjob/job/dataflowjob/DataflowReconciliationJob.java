@@ -4,13 +4,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.elasticjob.api.ShardingContext;
 import org.apache.shardingsphere.elasticjob.dataflow.job.DataflowJob;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 import top.tangtian.elacticjob.entity.ReconciliationDetail;
 import top.tangtian.elacticjob.repository.ReconciliationDetailRepository;
 import top.tangtian.elacticjob.service.ReconciliationService;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * @author tangtian
@@ -24,6 +27,10 @@ public class DataflowReconciliationJob implements DataflowJob<ReconciliationDeta
 	private final ReconciliationDetailRepository detailRepository;
 	private final ReconciliationService reconciliationService;
 
+	// 待处理差异的扫描窗口(天)
+	@Value("${reconciliation.partition.detail-scan-days:30}")
+	private int scanDays;
+
 	// 获取待处理数据
 	@Override
 	public List<ReconciliationDetail> fetchData(ShardingContext context) {
@@ -39,11 +46,10 @@ public class DataflowReconciliationJob implements DataflowJob<ReconciliationDeta
 			ReconciliationDetail.ProcessStatus status =
 					ReconciliationDetail.ProcessStatus.valueOf(statusStr);
 
-			// 每次获取100条待处理数据
-			List<ReconciliationDetail> details = detailRepository.findByProcessStatus(status)
-					.stream()
-					.limit(100)
-					.collect(Collectors.toList());
+			// 每次获取100条待处理数据，只访问最近的分区，在数据库侧分页
+			LocalDateTime createdFrom = LocalDate.now().minusDays(scanDays).atStartOfDay();
+			List<ReconciliationDetail> details = detailRepository
+					.findByProcessStatusAndCreatedTimeGreaterThanEqual(status, createdFrom, PageRequest.of(0, 100));
 
 			log.info("分片 {} 获取到 {} 条 {} 状态的数据",
 					context.getShardingItem(), details.size(), status);
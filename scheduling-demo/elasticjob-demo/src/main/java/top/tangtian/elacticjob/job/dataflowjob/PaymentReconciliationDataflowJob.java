@@ -10,13 +10,17 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.elasticjob.api.ShardingContext;
 import org.apache.shardingsphere.elasticjob.dataflow.job.DataflowJob;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import top.tangtian.elacticjob.entity.Order;
 import top.tangtian.elacticjob.entity.Payment;
+import top.tangtian.elacticjob.index.DailyOrderIndex;
+import top.tangtian.elacticjob.index.DailyOrderIndexManager;
 import top.tangtian.elacticjob.repository.OrderRepository;
 import top.tangtian.elacticjob.repository.PaymentRepository;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,6 +37,11 @@ public class PaymentReconciliationDataflowJob implements DataflowJob<PaymentReco
 
 	private final PaymentRepository paymentRepository;
 	private final OrderRepository orderRepository;
+	private final DailyOrderIndexManager dailyOrderIndexManager;
+
+	// 订单创建到支付的最长间隔，与 ReconciliationService 共用同一配置
+	@Value("${reconciliation.bloom-filter.max-payment-delay-minutes:1440}")
+	private long maxPaymentDelayMinutes;
 
 	@Data
 	public static class PaymentTask {
@@ -59,11 +68,13 @@ public class PaymentReconciliationDataflowJob implements DataflowJob<PaymentReco
 
 			// 获取最近10分钟内的成功支付记录
 			LocalDateTime tenMinutesAgo = LocalDateTime.now().minusMinutes(10);
+			// 支付单创建后一天内必然完成或关闭，只需访问最近两天的分区
 			List<Payment> payments = paymentRepository
 					.findByStatusAndPaidTimeRange(
 							Payment.PaymentStatus.SUCCESS,
 							tenMinutesAgo,
-							LocalDateTime.now())
+							LocalDateTime.now(),
+							tenMinutesAgo.minusDays(1))
 					.stream()
 					.filter(p -> p.getMethod() == method)
 					.limit(100)
@@ -106,13 +117,28 @@ public class PaymentReconciliationDataflowJob implements DataflowJob<PaymentReco
 		int matchedCount = 0;
 		int mismatchCount = 0;
 		int missingCount = 0;
+		int indexHits = 0;
+
+		// 与 ReconciliationService 共享当天的订单索引；索引构建之后才写入的订单不在其中，回查数据库
+		DailyOrderIndex orderIndex = dailyOrderIndexManager.getOrBuild(LocalDate.now());
 
 		for (PaymentTask task : tasks) {
 			Payment payment = task.getPayment();
 
 			try {
+				// 索引中金额一致即判定匹配，不查库
+				if (orderIndex.matches(payment.getOrderNo(), payment.getAmount())) {
+					indexHits++;
+					matchedCount++;
+					continue;
+				}
+
 				// 查找对应的订单
-				Optional<Order> orderOpt = orderRepository.findByOrderNo(payment.getOrderNo());
+				// 带上订单创建时间范围，只访问对应日期的分区
+				Optional<Order> orderOpt = orderRepository.findFirstByOrderNoAndCreatedTimeBetween(
+						payment.getOrderNo(),
+						payment.getCreatedTime().minusMinutes(maxPaymentDelayMinutes),
+						payment.getCreatedTime());
 
 				if (orderOpt.isEmpty()) {
 					log.warn("支付记录 {} 找不到对应订单", payment.getPaymentNo());
@@ -124,7 +150,7 @@ public class PaymentReconciliationDataflowJob implements DataflowJob<PaymentReco
 				Order order = orderOpt.get();
 
 				// 对账金额
-				if (!payment.getAmount().equals(order.getAmount())) {
+				if (payment.getAmount().compareTo(order.getAmount()) != 0) {
 					log.warn("支付记录 {} 金额不匹配: 订单金额={}, 支付金额={}",
 							payment.getPaymentNo(), order.getAmount(), payment.getAmount());
 					mismatchCount++;
@@ -143,8 +169,8 @@ public class PaymentReconciliationDataflowJob implements DataflowJob<PaymentReco
 			}
 		}
 
-		log.info("分片 {} 对账完成: 匹配={}, 金额不符={}, 订单缺失={}",
-				context.getShardingItem(), matchedCount, mismatchCount, missingCount);
+		log.info("分片 {} 对账完成: 匹配={}, 金额不符={}, 订单缺失={}, 订单索引命中={}",
+				context.getShardingItem(), matchedCount, mismatchCount, missingCount, indexHits);
 	}
 
 	private void recordMissingOrder(Payment payment) {
@@ -0,0 +1,40 @@
+package top.tangtian.elacticjob.job.samplejob;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.elasticjob.api.ShardingContext;
+import org.apache.shardingsphere.elasticjob.simple.job.SimpleJob;
+import org.springframework.stereotype.Component;
+import top.tangtian.elacticjob.service.PartitionMaintenanceService;
+
+import java.time.LocalDate;
+
+/**
+ * 分区维护任务，单分片执行
+ *
+ * @author tangtian
+ * @date 2026-10-19 18:30
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionMaintenanceJob implements SimpleJob {
+
+	private final PartitionMaintenanceService partitionMaintenanceService;
+
+	@Override
+	public void execute(ShardingContext context) {
+		log.info("========== 分区维护任务开始 ==========");
+
+		try {
+			PartitionMaintenanceService.MaintenanceResult result = partitionMaintenanceService.maintain(LocalDate.now());
+			log.info("分区维护: 新建 {} 个, 删除 {} 个, 推迟删除 {} 个",
+					result.created(), result.dropped(), result.skipped());
+		} catch (Exception e) {
+			log.error("分区维护任务失败", e);
+			throw new RuntimeException("分区维护任务执行失败", e);
+		}
+
+		log.info("========== 分区维护任务完成 ==========");
+	}
+}
@@ -5,6 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.elasticjob.api.ShardingContext;
 import org.apache.shardingsphere.elasticjob.simple.job.SimpleJob;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import top.tangtian.elacticjob.entity.Payment;
 import top.tangtian.elacticjob.repository.PaymentRepository;
 import top.tangtian.elacticjob.service.ReconciliationService;
@@ -26,6 +28,7 @@ public class PaymentReconciliationByAmountJob implements SimpleJob {
 
 	private final ReconciliationService reconciliationService;
 	private final PaymentRepository paymentRepository;
+	private final PlatformTransactionManager transactionManager;
 
 	@Override
 	public void execute(ShardingContext context) {
@@ -45,12 +48,14 @@ public class PaymentReconciliationByAmountJob implements SimpleJob {
 
 			log.info("处理金额范围: {} - {}, 日期: {}", minAmount, maxAmount, yesterday);
 
-			// 查询该金额范围的支付记录
-			List<Payment> payments = paymentRepository.findByTimeRange(startTime, endTime)
+			// 查询该金额范围的支付记录；前一天的数据已稳定，在只读事务中查询(开启读写分离时走从库)
+			TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+			readOnly.setReadOnly(true);
+			List<Payment> payments = readOnly.execute(status -> paymentRepository.findByTimeRange(startTime, endTime)
 					.stream()
 					.filter(p -> p.getAmount().compareTo(minAmount) >= 0
 							&& p.getAmount().compareTo(maxAmount) < 0)
-					.toList();
+					.toList());
 
 			log.info("分片 {} 查询到 {} 条支付记录", context.getShardingItem(), payments.size());
 
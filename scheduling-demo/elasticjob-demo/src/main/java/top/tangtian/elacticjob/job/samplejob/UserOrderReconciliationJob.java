@@ -5,6 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.elasticjob.api.ShardingContext;
 import org.apache.shardingsphere.elasticjob.simple.job.SimpleJob;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import top.tangtian.elacticjob.entity.Order;
 import top.tangtian.elacticjob.repository.OrderRepository;
 import top.tangtian.elacticjob.service.ReconciliationService;
@@ -25,6 +27,7 @@ public class UserOrderReconciliationJob implements SimpleJob {
 
 	private final ReconciliationService reconciliationService;
 	private final OrderRepository orderRepository;
+	private final PlatformTransactionManager transactionManager;
 
 	@Override
 	public void execute(ShardingContext context) {
@@ -46,11 +49,13 @@ public class UserOrderReconciliationJob implements SimpleJob {
 
 			log.info("处理用户ID范围: {} - {}", minUserId, maxUserId);
 
-			// 查询该用户ID范围的订单
-			List<Order> orders = orderRepository.findByTimeRange(startTime, endTime)
+			// 查询该用户ID范围的订单；前一天的数据已稳定，在只读事务中查询(开启读写分离时走从库)
+			TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+			readOnly.setReadOnly(true);
+			List<Order> orders = readOnly.execute(status -> orderRepository.findByTimeRange(startTime, endTime)
 					.stream()
 					.filter(o -> o.getUserId() >= minUserId && o.getUserId() <= maxUserId)
-					.toList();
+					.toList());
 
 			log.info("分片 {} 查询到 {} 条订单", context.getShardingItem(), orders.size());
 
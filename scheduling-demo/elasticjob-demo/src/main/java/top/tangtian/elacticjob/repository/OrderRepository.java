@@ -1,7 +1,9 @@
 package top.tangtian.elacticjob.repository;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import top.tangtian.elacticjob.entity.Order;
@@ -9,6 +11,10 @@ import top.tangtian.elacticjob.entity.Order;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 /**
  * @author tangtian
@@ -16,7 +22,12 @@ import java.util.Optional;
  */
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
-	Optional<Order> findByOrderNo(String orderNo);
+	/**
+	 * orders 按 created_time 分区，订单号只在 (order_no, created_time) 上唯一
+	 * 必须带创建时间范围，只访问范围内的分区，也不会因跨分区的重复订单号返回多行
+	 */
+	Optional<Order> findFirstByOrderNoAndCreatedTimeBetween(String orderNo, LocalDateTime createdFrom,
+															LocalDateTime createdTo);
 
 	List<Order> findByStatus(Order.OrderStatus status);
 
@@ -28,4 +39,28 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 	List<Order> findByStatusAndTimeRange(@Param("status") Order.OrderStatus status,
 										 @Param("startTime") LocalDateTime startTime,
 										 @Param("endTime") LocalDateTime endTime);
-}
\ No newline at end of file
+
+	long countByCreatedTimeBetween(LocalDateTime startTime, LocalDateTime endTime);
+
+	/**
+	 * 只取订单号的流式查询，用于构建布隆过滤器，需在事务内消费
+	 */
+	@QueryHints({
+			@QueryHint(name = HINT_FETCH_SIZE, value = "5000"),
+			@QueryHint(name = HINT_READ_ONLY, value = "true")
+	})
+	@Query("SELECT o.orderNo FROM Order o WHERE o.createdTime BETWEEN :startTime AND :endTime")
+	Stream<String> streamOrderNosByTimeRange(@Param("startTime") LocalDateTime startTime,
+											 @Param("endTime") LocalDateTime endTime);
+
+	/**
+	 * 只取构建日订单索引所需的列，返回 [orderNo, amount]，需在事务内消费
+	 */
+	@QueryHints({
+			@QueryHint(name = HINT_FETCH_SIZE, value = "5000"),
+			@QueryHint(name = HINT_READ_ONLY, value = "true")
+	})
+	@Query("SELECT o.orderNo, o.amount FROM Order o WHERE o.createdTime BETWEEN :startTime AND :endTime")
+	Stream<Object[]> streamIndexColumnsByTimeRange(@Param("startTime") LocalDateTime startTime,
+												   @Param("endTime") LocalDateTime endTime);
+}
@@ -20,6 +20,9 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
 	Optional<Payment> findByOrderNo(String orderNo);
 
+	// 支付一定晚于订单创建，以订单创建时间作为分区键下界，跳过更早的分区
+	Optional<Payment> findFirstByOrderNoAndCreatedTimeGreaterThanEqual(String orderNo, LocalDateTime createdFrom);
+
 	Optional<Payment> findByThirdPartyNo(String thirdPartyNo);
 
 	@Query("SELECT p FROM Payment p WHERE p.createdTime BETWEEN :startTime AND :endTime")
@@ -30,4 +33,15 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 	List<Payment> findByStatusAndPaidTimeRange(@Param("status") Payment.PaymentStatus status,
 											   @Param("startTime") LocalDateTime startTime,
 											   @Param("endTime") LocalDateTime endTime);
+
+	/**
+	 * 分区按 createdTime 划分，只按 paidTime 过滤会扫描全部分区
+	 * 支付完成时间一定不早于创建时间，补充 createdTime 范围后可以裁剪分区
+	 */
+	@Query("SELECT p FROM Payment p WHERE p.status = :status AND p.paidTime BETWEEN :startTime AND :endTime " +
+			"AND p.createdTime BETWEEN :createdFrom AND :endTime")
+	List<Payment> findByStatusAndPaidTimeRange(@Param("status") Payment.PaymentStatus status,
+											   @Param("startTime") LocalDateTime startTime,
+											   @Param("endTime") LocalDateTime endTime,
+											   @Param("createdFrom") LocalDateTime createdFrom);
 }
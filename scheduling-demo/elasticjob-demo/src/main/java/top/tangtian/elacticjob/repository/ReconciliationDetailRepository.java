@@ -1,9 +1,11 @@
 package top.tangtian.elacticjob.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import top.tangtian.elacticjob.entity.ReconciliationDetail;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -16,6 +18,10 @@ public interface ReconciliationDetailRepository extends JpaRepository<Reconcilia
 
 	List<ReconciliationDetail> findByProcessStatus(ReconciliationDetail.ProcessStatus status);
 
+	// 按月分区，限定创建时间窗口并分页，避免扫描全部历史分区
+	List<ReconciliationDetail> findByProcessStatusAndCreatedTimeGreaterThanEqual(
+			ReconciliationDetail.ProcessStatus status, LocalDateTime createdFrom, Pageable pageable);
+
 	List<ReconciliationDetail> findByRecordIdAndDifferenceType(Long recordId,
 															   ReconciliationDetail.DifferenceType type);
 }
@@ -0,0 +1,177 @@
+package top.tangtian.elacticjob.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * 分区维护: 提前创建未来的分区，分离并删除过期分区
+ * 表结构见 resources/db/partitioned-schema.sql
+ * <p>
+ * DETACH PARTITION 会对父表加 ACCESS EXCLUSIVE 锁，期间父表上的读写全部阻塞；
+ * 父表带默认分区，无法使用 DETACH PARTITION ... CONCURRENTLY(PG14+ 且要求没有默认分区)。
+ * 因此分离和删除放在同一事务中并设置 lock_timeout：拿不到锁(有长查询)时放弃本分区，下次维护再删，
+ * 避免锁请求排队期间把后续所有查询一起挡住
+ *
+ * @author tangtian
+ * @date 2026-10-19 18:10
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PartitionMaintenanceService {
+
+	private static final DateTimeFormatter DAY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+	private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+	private static final String LIST_PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i "
+			+ "JOIN pg_class c ON c.oid = i.inhrelid "
+			+ "JOIN pg_class p ON p.oid = i.inhparent "
+			+ "WHERE p.relname = ?";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final PlatformTransactionManager transactionManager;
+
+	// 提前创建的天数/月数，作业停摆期间也不会有数据落入默认分区
+	@Value("${reconciliation.partition.days-ahead:7}")
+	private int daysAhead;
+
+	@Value("${reconciliation.partition.months-ahead:2}")
+	private int monthsAhead;
+
+	@Value("${reconciliation.partition.order-retention-days:180}")
+	private int orderRetentionDays;
+
+	@Value("${reconciliation.partition.payment-retention-days:180}")
+	private int paymentRetentionDays;
+
+	@Value("${reconciliation.partition.detail-retention-months:12}")
+	private int detailRetentionMonths;
+
+	// 分离分区时等待父表 ACCESS EXCLUSIVE 锁的最长时间
+	@Value("${reconciliation.partition.detach-lock-timeout-ms:3000}")
+	private long detachLockTimeoutMs;
+
+	/**
+	 * 一次维护的结果，skipped 为因拿不到锁而推迟删除的分区数
+	 */
+	public record MaintenanceResult(int created, int dropped, int skipped) {
+	}
+
+	/**
+	 * 维护全部分区表，返回新建、删除和推迟删除的分区数量
+	 */
+	public MaintenanceResult maintain(LocalDate today) {
+		int created = 0;
+		DropCounter counter = new DropCounter();
+
+		for (int i = 0; i <= daysAhead; i++) {
+			LocalDate day = today.plusDays(i);
+			created += createPartition("orders", day.format(DAY_SUFFIX), day, day.plusDays(1));
+			created += createPartition("payments", day.format(DAY_SUFFIX), day, day.plusDays(1));
+		}
+		for (int i = 0; i <= monthsAhead; i++) {
+			LocalDate month = today.withDayOfMonth(1).plusMonths(i);
+			created += createPartition("reconciliation_details", month.format(MONTH_SUFFIX), month, month.plusMonths(1));
+		}
+
+		dropExpiredPartitions("orders", DAY_SUFFIX, today.minusDays(orderRetentionDays), counter);
+		dropExpiredPartitions("payments", DAY_SUFFIX, today.minusDays(paymentRetentionDays), counter);
+		dropExpiredPartitions("reconciliation_details", MONTH_SUFFIX,
+				today.withDayOfMonth(1).minusMonths(detailRetentionMonths), counter);
+
+		log.info("分区维护完成 - 新建分区: {}, 删除分区: {}, 推迟删除: {}", created, counter.dropped, counter.skipped);
+		return new MaintenanceResult(created, counter.dropped, counter.skipped);
+	}
+
+	private int createPartition(String table, String suffix, LocalDate from, LocalDate to) {
+		String partition = table + "_p" + suffix;
+		if (partitionExists(partition)) {
+			return 0;
+		}
+		// 表名均来自常量，日期由程序生成，不存在注入风险
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + table
+				+ " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+		log.info("创建分区: {} [{}, {})", partition, from, to);
+		return 1;
+	}
+
+	/**
+	 * 分区上界不晚于 expireBefore 的分区整体删除，替代按时间 DELETE
+	 */
+	private void dropExpiredPartitions(String table, DateTimeFormatter suffixFormat, LocalDate expireBefore,
+									   DropCounter counter) {
+		String prefix = table + "_p";
+		List<String> partitions = jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, table);
+		for (String partition : partitions) {
+			if (!partition.startsWith(prefix)) {
+				// 默认分区等不按日期命名的分区不处理
+				continue;
+			}
+			LocalDate start;
+			try {
+				start = parseSuffix(partition.substring(prefix.length()), suffixFormat);
+			} catch (DateTimeParseException e) {
+				log.warn("无法识别的分区名: {}", partition);
+				continue;
+			}
+			LocalDate end = suffixFormat == MONTH_SUFFIX ? start.plusMonths(1) : start.plusDays(1);
+			if (end.isAfter(expireBefore)) {
+				continue;
+			}
+			if (detachAndDrop(table, partition)) {
+				counter.dropped++;
+			} else {
+				counter.skipped++;
+			}
+		}
+	}
+
+	/**
+	 * 在同一事务中分离并删除分区，SET LOCAL 只对本事务生效，不会污染连接池中的连接
+	 */
+	private boolean detachAndDrop(String table, String partition) {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		try {
+			template.executeWithoutResult(status -> {
+				jdbcTemplate.execute("SET LOCAL lock_timeout = " + detachLockTimeoutMs);
+				// 先分离再删除，分离后查询立即不再访问该分区
+				jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+				jdbcTemplate.execute("DROP TABLE " + partition);
+			});
+			log.info("删除过期分区: {}", partition);
+			return true;
+		} catch (DataAccessException e) {
+			// 通常是 lock_timeout 超时(父表上有长事务)，事务已回滚，下次维护重试
+			log.warn("分离分区 {} 失败，推迟到下次维护: {}", partition, e.getMessage());
+			return false;
+		}
+	}
+
+	private boolean partitionExists(String partition) {
+		Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+		return Boolean.TRUE.equals(exists);
+	}
+
+	private static class DropCounter {
+		private int dropped;
+		private int skipped;
+	}
+
+	private static LocalDate parseSuffix(String suffix, DateTimeFormatter suffixFormat) {
+		if (suffixFormat == MONTH_SUFFIX) {
+			return LocalDate.parse(suffix + "01", DAY_SUFFIX);
+		}
+		return LocalDate.parse(suffix, suffixFormat);
+	}
+}
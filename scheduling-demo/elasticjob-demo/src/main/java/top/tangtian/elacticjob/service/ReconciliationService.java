@@ -2,12 +2,20 @@ package top.tangtian.elacticjob.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import top.tangtian.elacticjob.bloom.OrderBloomFilterManager;
+import top.tangtian.elacticjob.bloom.OrderNoBloomFilter;
 import top.tangtian.elacticjob.entity.Order;
 import top.tangtian.elacticjob.entity.Payment;
 import top.tangtian.elacticjob.entity.ReconciliationDetail;
 import top.tangtian.elacticjob.entity.ReconciliationRecord;
+import top.tangtian.elacticjob.index.DailyOrderIndex;
+import top.tangtian.elacticjob.index.DailyOrderIndexManager;
 import top.tangtian.elacticjob.repository.OrderRepository;
 import top.tangtian.elacticjob.repository.PaymentRepository;
 import top.tangtian.elacticjob.repository.ReconciliationDetailRepository;
@@ -31,6 +39,14 @@ public class ReconciliationService {
 	private final PaymentRepository paymentRepository;
 	private final ReconciliationRecordRepository recordRepository;
 	private final ReconciliationDetailRepository detailRepository;
+	private final OrderBloomFilterManager orderBloomFilterManager;
+	private final DailyOrderIndexManager dailyOrderIndexManager;
+	private final PlatformTransactionManager transactionManager;
+
+	// 业务约束: 订单创建后超过这个时间未支付会被关闭，支付时间减去它就是订单创建时间的下界
+	// 下界落在布隆过滤器窗口之前时，过滤器未命中不能说明订单缺失，需要回查数据库
+	@Value("${reconciliation.bloom-filter.max-payment-delay-minutes:1440}")
+	private long maxPaymentDelayMinutes;
 
 	// 原有的对账方法...
 	@Transactional
@@ -40,7 +56,8 @@ public class ReconciliationService {
 	}
 
 	// 按金额范围对账
-	@Transactional
+	// 比对过程在只读事务中执行(开启读写分离时走从库)，对账结果在独立的写事务中提交到主库
+	@Transactional(readOnly = true)
 	public void performPaymentReconciliationByAmount(LocalDate date,
 													 BigDecimal minAmount,
 													 BigDecimal maxAmount,
@@ -65,12 +82,38 @@ public class ReconciliationService {
 			BigDecimal totalAmount = BigDecimal.ZERO;
 			BigDecimal matchedAmount = BigDecimal.ZERO;
 			List<ReconciliationDetail> details = new ArrayList<>();
+			// 各分片共享同一天的过滤器
+			OrderNoBloomFilter orderFilter = orderBloomFilterManager.getOrBuild(date);
+			LocalDateTime filterCoveredFrom = orderBloomFilterManager.coveredFrom(date);
+			DailyOrderIndex orderIndex = dailyOrderIndexManager.getOrBuild(date);
+			int skippedLookups = 0;
+			int indexHits = 0;
 
 			for (Payment payment : payments) {
 				totalAmount = totalAmount.add(payment.getAmount());
 
-				Optional<Order> orderOpt = orderRepository.findByOrderNo(payment.getOrderNo());
-				if (orderOpt.isPresent() && orderOpt.get().getAmount().equals(payment.getAmount())) {
+				// 过滤器判定不存在、且订单不可能早于过滤器窗口时，订单一定缺失，无需查库
+				if (!orderFilter.mightContain(payment.getOrderNo())
+						&& !payment.getCreatedTime().minusMinutes(maxPaymentDelayMinutes).isBefore(filterCoveredFrom)) {
+					skippedLookups++;
+					details.add(createOrderMissingDetail(record.getId(), payment));
+					continue;
+				}
+
+				// 先查共享的日订单索引，金额一致即可判定匹配，不一致或未命中再回查数据库
+				if (orderIndex.matches(payment.getOrderNo(), payment.getAmount())) {
+					indexHits++;
+					matchedCount++;
+					matchedAmount = matchedAmount.add(payment.getAmount());
+					continue;
+				}
+
+				// 订单创建时间落在 [支付创建时间 - 最长支付间隔, 支付创建时间]，只访问这一两天的分区
+				Optional<Order> orderOpt = orderRepository.findFirstByOrderNoAndCreatedTimeBetween(payment.getOrderNo(),
+						payment.getCreatedTime().minusMinutes(maxPaymentDelayMinutes), payment.getCreatedTime());
+				if (orderOpt.isEmpty()) {
+					details.add(createOrderMissingDetail(record.getId(), payment));
+				} else if (orderOpt.get().getAmount().compareTo(payment.getAmount()) == 0) {
 					matchedCount++;
 					matchedAmount = matchedAmount.add(payment.getAmount());
 				} else {
@@ -83,6 +126,8 @@ public class ReconciliationService {
 				}
 			}
 
+			log.info("布隆过滤器跳过 {} 次订单查询, 订单索引命中 {} 次", skippedLookups, indexHits);
+
 			record.setTotalCount(payments.size());
 			record.setMatchedCount(matchedCount);
 			record.setUnmatchedCount(payments.size() - matchedCount);
@@ -92,20 +137,22 @@ public class ReconciliationService {
 			record.setStatus(ReconciliationRecord.ReconciliationStatus.SUCCESS);
 			record.setEndTime(LocalDateTime.now());
 
-			recordRepository.save(record);
-			detailRepository.saveAll(details);
+			writeTransaction().executeWithoutResult(status -> {
+				recordRepository.save(record);
+				detailRepository.saveAll(details);
+			});
 
 		} catch (Exception e) {
 			record.setStatus(ReconciliationRecord.ReconciliationStatus.FAILED);
 			record.setErrorMessage(e.getMessage());
 			record.setEndTime(LocalDateTime.now());
-			recordRepository.save(record);
+			writeTransaction().executeWithoutResult(status -> recordRepository.save(record));
 			throw e;
 		}
 	}
 
 	// 按用户ID范围对账
-	@Transactional
+	@Transactional(readOnly = true)
 	public void performUserOrderReconciliation(LocalDate date,
 											   long minUserId,
 											   long maxUserId,
@@ -127,8 +174,9 @@ public class ReconciliationService {
 
 			// 对每个用户的订单进行对账
 			for (Order order : userOrders) {
-				Optional<Payment> paymentOpt = paymentRepository.findByOrderNo(order.getOrderNo());
-				if (paymentOpt.isEmpty() || !paymentOpt.get().getAmount().equals(order.getAmount())) {
+				Optional<Payment> paymentOpt = paymentRepository.findFirstByOrderNoAndCreatedTimeGreaterThanEqual(
+						order.getOrderNo(), order.getCreatedTime());
+				if (paymentOpt.isEmpty() || paymentOpt.get().getAmount().compareTo(order.getAmount()) != 0) {
 					log.warn("用户 {} 的订单 {} 存在差异", userId, order.getOrderNo());
 				}
 			}
@@ -189,6 +237,24 @@ public class ReconciliationService {
 		// 实现支付缺失处理逻辑
 	}
 
+	/**
+	 * 只读事务中写入需要挂起当前事务，另开主库连接
+	 */
+	private TransactionTemplate writeTransaction() {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return template;
+	}
+
+	private ReconciliationDetail createOrderMissingDetail(Long recordId, Payment payment) {
+		return createDetail(recordId, payment.getOrderNo(),
+				ReconciliationDetail.DifferenceType.ORDER_MISSING,
+				null,
+				payment.getAmount(),
+				payment.getAmount(),
+				"订单缺失");
+	}
+
 	private ReconciliationDetail createDetail(Long recordId, String orderNo,
 											  ReconciliationDetail.DifferenceType type,
 											  BigDecimal systemAmount,
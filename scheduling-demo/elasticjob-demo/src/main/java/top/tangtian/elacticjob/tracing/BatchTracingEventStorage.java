@@ -0,0 +1,315 @@
+package top.tangtian.elacticjob.tracing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.elasticjob.tracing.event.JobExecutionEvent;
+import org.apache.shardingsphere.elasticjob.tracing.event.JobStatusTraceEvent;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量事件追踪存储
+ * 作业事件先放入有界缓冲区，由后台线程攒批后用 JDBC batch 写库，并定期清理过期记录
+ * 表结构与 ElasticJob 自带的 RDB 追踪一致，控制台可以直接查询
+ *
+ * @author tangtian
+ * @date 2026-10-19 16:30
+ */
+@Slf4j
+public class BatchTracingEventStorage {
+
+	private static final int MAX_TEXT_LENGTH = 4000;
+
+	private static final String CREATE_EXECUTION_TABLE = "CREATE TABLE IF NOT EXISTS JOB_EXECUTION_LOG ("
+			+ "id VARCHAR(40) NOT NULL, job_name VARCHAR(100) NOT NULL, task_id VARCHAR(255) NOT NULL, "
+			+ "hostname VARCHAR(255) NOT NULL, ip VARCHAR(50) NOT NULL, sharding_item INT NOT NULL, "
+			+ "execution_source VARCHAR(20) NOT NULL, failure_cause VARCHAR(4000) NULL, is_success BOOLEAN NOT NULL, "
+			+ "start_time TIMESTAMP NULL, complete_time TIMESTAMP NULL, PRIMARY KEY (id))";
+
+	private static final String CREATE_STATUS_TABLE = "CREATE TABLE IF NOT EXISTS JOB_STATUS_TRACE_LOG ("
+			+ "id VARCHAR(40) NOT NULL, job_name VARCHAR(100) NOT NULL, original_task_id VARCHAR(255) NOT NULL, "
+			+ "task_id VARCHAR(255) NOT NULL, slave_id VARCHAR(50) NOT NULL, source VARCHAR(50) NOT NULL, "
+			+ "execution_type VARCHAR(20) NOT NULL, sharding_item VARCHAR(100) NOT NULL, state VARCHAR(20) NOT NULL, "
+			+ "message VARCHAR(4000) NULL, creation_time TIMESTAMP NULL, PRIMARY KEY (id))";
+
+	private static final String CREATE_STATUS_INDEX =
+			"CREATE INDEX IF NOT EXISTS TASK_ID_STATE_INDEX ON JOB_STATUS_TRACE_LOG (task_id, state)";
+
+	// 开始和完成事件的id相同；只有带完成时间的事件才覆盖已有记录，防止乱序到达的开始事件回写状态
+	private static final String UPSERT_EXECUTION = "INSERT INTO JOB_EXECUTION_LOG "
+			+ "(id, job_name, task_id, hostname, ip, sharding_item, execution_source, failure_cause, is_success, "
+			+ "start_time, complete_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+			+ "ON CONFLICT (id) DO UPDATE SET is_success = EXCLUDED.is_success, "
+			+ "complete_time = EXCLUDED.complete_time, failure_cause = EXCLUDED.failure_cause "
+			+ "WHERE EXCLUDED.complete_time IS NOT NULL";
+
+	private static final String INSERT_STATUS_TRACE = "INSERT INTO JOB_STATUS_TRACE_LOG "
+			+ "(id, job_name, original_task_id, task_id, slave_id, source, execution_type, sharding_item, state, "
+			+ "message, creation_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+
+	private static final String PURGE_EXECUTION = "DELETE FROM JOB_EXECUTION_LOG WHERE id IN "
+			+ "(SELECT id FROM JOB_EXECUTION_LOG WHERE start_time < ? LIMIT ?)";
+
+	private static final String PURGE_STATUS_TRACE = "DELETE FROM JOB_STATUS_TRACE_LOG WHERE id IN "
+			+ "(SELECT id FROM JOB_STATUS_TRACE_LOG WHERE creation_time < ? LIMIT ?)";
+
+	private final DataSource dataSource;
+	private final BatchTracingSettings settings;
+	private final BlockingQueue<Object> buffer;
+	private final Thread flusher;
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+
+	private volatile boolean running = true;
+	private long nextPurgeTime;
+
+	// 进行中的一轮清理，为 null 表示没有；每个写入周期只删一批，删完两张表才结束本轮
+	private Timestamp purgeBefore;
+	private boolean executionsPurged;
+	private boolean statusTracesPurged;
+	private int purgedExecutions;
+	private int purgedStatusTraces;
+
+	public BatchTracingEventStorage(DataSource dataSource, BatchTracingSettings settings) throws SQLException {
+		this.dataSource = dataSource;
+		this.settings = settings;
+		this.buffer = new ArrayBlockingQueue<>(settings.getBufferCapacity());
+		createTablesIfAbsent();
+		this.flusher = new Thread(this::runFlushLoop, "elasticjob-tracing-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * 作业事件总线线程调用，只做入队，缓冲区满时丢弃
+	 */
+	public void add(Object event) {
+		if (!running || !buffer.offer(event)) {
+			long count = dropped.incrementAndGet();
+			if ((count & 1023) == 1) {
+				log.warn("追踪事件缓冲区已满，累计丢弃 {} 条", count);
+			}
+		}
+	}
+
+	/**
+	 * 停止接收新事件，并等待缓冲区中的事件写完
+	 */
+	public void shutdown(long timeoutMillis) {
+		running = false;
+		flusher.interrupt();
+		try {
+			flusher.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		log.info("追踪事件存储已关闭 - 已写入: {}, 丢弃: {}, 未写入: {}", written.get(), dropped.get(), buffer.size());
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	private void createTablesIfAbsent() throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute(CREATE_EXECUTION_TABLE);
+			statement.execute(CREATE_STATUS_TABLE);
+			statement.execute(CREATE_STATUS_INDEX);
+		}
+	}
+
+	private void runFlushLoop() {
+		List<Object> batch = new ArrayList<>(settings.getBatchSize());
+		nextPurgeTime = System.currentTimeMillis();
+		while (running || !buffer.isEmpty()) {
+			try {
+				fillBatch(batch);
+			} catch (InterruptedException e) {
+				// 关闭时被唤醒，把剩余事件全部取出后退出循环
+				buffer.drainTo(batch);
+			}
+			if (!batch.isEmpty()) {
+				flush(batch);
+				batch.clear();
+			}
+			purgeIfDue();
+		}
+	}
+
+	/**
+	 * 拿到第一条事件后最多再等待 flushInterval 攒满一批
+	 */
+	private void fillBatch(List<Object> batch) throws InterruptedException {
+		Object first = buffer.poll(settings.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+		if (first == null) {
+			return;
+		}
+		batch.add(first);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getFlushIntervalMillis());
+		while (batch.size() < settings.getBatchSize()) {
+			buffer.drainTo(batch, settings.getBatchSize() - batch.size());
+			long remaining = deadline - System.nanoTime();
+			if (batch.size() >= settings.getBatchSize() || remaining <= 0) {
+				break;
+			}
+			Object next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) {
+				break;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void flush(List<Object> batch) {
+		// 同一批内同一次执行的开始和完成事件合并为一行
+		Map<String, JobExecutionEvent> executions = new LinkedHashMap<>();
+		List<JobStatusTraceEvent> statusTraces = new ArrayList<>();
+		for (Object event : batch) {
+			if (event instanceof JobExecutionEvent execution) {
+				executions.merge(execution.getId(), execution,
+						(previous, current) -> null == current.getCompleteTime() ? previous : current);
+			} else if (event instanceof JobStatusTraceEvent statusTrace) {
+				statusTraces.add(statusTrace);
+			}
+		}
+
+		try (Connection connection = dataSource.getConnection()) {
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try {
+				writeExecutions(connection, executions.values());
+				writeStatusTraces(connection, statusTraces);
+				connection.commit();
+				written.addAndGet(batch.size());
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException e) {
+			// 追踪记录不影响作业本身，写失败只记录日志
+			dropped.addAndGet(batch.size());
+			log.warn("批量写入追踪事件失败，丢弃 {} 条", batch.size(), e);
+		}
+	}
+
+	private void writeExecutions(Connection connection, Collection<JobExecutionEvent> events) throws SQLException {
+		if (events.isEmpty()) {
+			return;
+		}
+		try (PreparedStatement ps = connection.prepareStatement(UPSERT_EXECUTION)) {
+			for (JobExecutionEvent event : events) {
+				ps.setString(1, event.getId());
+				ps.setString(2, event.getJobName());
+				ps.setString(3, event.getTaskId());
+				ps.setString(4, event.getHostname());
+				ps.setString(5, event.getIp());
+				ps.setInt(6, event.getShardingItem());
+				ps.setString(7, event.getSource().toString());
+				ps.setString(8, truncate(event.getFailureCause()));
+				ps.setBoolean(9, event.isSuccess());
+				ps.setTimestamp(10, toTimestamp(event.getStartTime()));
+				ps.setTimestamp(11, toTimestamp(event.getCompleteTime()));
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		}
+	}
+
+	private void writeStatusTraces(Connection connection, List<JobStatusTraceEvent> events) throws SQLException {
+		if (events.isEmpty()) {
+			return;
+		}
+		try (PreparedStatement ps = connection.prepareStatement(INSERT_STATUS_TRACE)) {
+			for (JobStatusTraceEvent event : events) {
+				ps.setString(1, event.getId());
+				ps.setString(2, event.getJobName());
+				ps.setString(3, event.getOriginalTaskId());
+				ps.setString(4, event.getTaskId());
+				ps.setString(5, event.getSlaveId());
+				ps.setString(6, event.getSource().toString());
+				ps.setString(7, event.getExecutionType());
+				ps.setString(8, event.getShardingItems());
+				ps.setString(9, event.getState().toString());
+				ps.setString(10, truncate(event.getMessage()));
+				ps.setTimestamp(11, toTimestamp(event.getCreationTime()));
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		}
+	}
+
+	/**
+	 * 在写线程上执行，每次调用每张表最多删除 purgeBatchSize 行，
+	 * 积压很多时分摊到后续的写入周期，写入最多被一条 DELETE 耽误
+	 */
+	private void purgeIfDue() {
+		if (settings.getRetentionDays() <= 0 || !running) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (purgeBefore == null) {
+			if (now < nextPurgeTime) {
+				return;
+			}
+			purgeBefore = new Timestamp(now - TimeUnit.DAYS.toMillis(settings.getRetentionDays()));
+			executionsPurged = false;
+			statusTracesPurged = false;
+			purgedExecutions = 0;
+			purgedStatusTraces = 0;
+		}
+		try (Connection connection = dataSource.getConnection()) {
+			if (!executionsPurged) {
+				int deleted = purgeChunk(connection, PURGE_EXECUTION);
+				purgedExecutions += deleted;
+				executionsPurged = deleted < settings.getPurgeBatchSize();
+			}
+			if (!statusTracesPurged) {
+				int deleted = purgeChunk(connection, PURGE_STATUS_TRACE);
+				purgedStatusTraces += deleted;
+				statusTracesPurged = deleted < settings.getPurgeBatchSize();
+			}
+		} catch (SQLException e) {
+			// 放弃本轮，下个清理周期重新开始
+			log.warn("清理过期追踪记录失败", e);
+			executionsPurged = true;
+			statusTracesPurged = true;
+		}
+		if (executionsPurged && statusTracesPurged) {
+			if (purgedExecutions + purgedStatusTraces > 0) {
+				log.info("清理过期追踪记录 - 执行日志: {}, 状态日志: {}", purgedExecutions, purgedStatusTraces);
+			}
+			purgeBefore = null;
+			nextPurgeTime = now + TimeUnit.MINUTES.toMillis(settings.getPurgeIntervalMinutes());
+		}
+	}
+
+	private int purgeChunk(Connection connection, String sql) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(sql)) {
+			ps.setTimestamp(1, purgeBefore);
+			ps.setInt(2, settings.getPurgeBatchSize());
+			return ps.executeUpdate();
+		}
+	}
+
+	private static Timestamp toTimestamp(Date date) {
+		return null == date ? null : new Timestamp(date.getTime());
+	}
+
+	private static String truncate(String text) {
+		return null != text && text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text;
+	}
+}
@@ -0,0 +1,28 @@
+package top.tangtian.elacticjob.tracing;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.shardingsphere.elasticjob.tracing.event.JobExecutionEvent;
+import org.apache.shardingsphere.elasticjob.tracing.event.JobStatusTraceEvent;
+import org.apache.shardingsphere.elasticjob.tracing.listener.TracingListener;
+
+/**
+ * 批量事件追踪监听器，只负责把事件交给存储的缓冲区
+ *
+ * @author tangtian
+ * @date 2026-10-19 16:45
+ */
+@RequiredArgsConstructor
+public class BatchTracingListener implements TracingListener {
+
+	private final BatchTracingEventStorage storage;
+
+	@Override
+	public void listen(JobExecutionEvent jobExecutionEvent) {
+		storage.add(jobExecutionEvent);
+	}
+
+	@Override
+	public void listen(JobStatusTraceEvent jobStatusTraceEvent) {
+		storage.add(jobStatusTraceEvent);
+	}
+}
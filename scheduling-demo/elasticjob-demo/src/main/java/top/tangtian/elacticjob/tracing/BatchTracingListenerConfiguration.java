@@ -0,0 +1,66 @@
+package top.tangtian.elacticjob.tracing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.elasticjob.tracing.exception.TracingConfigurationException;
+import org.apache.shardingsphere.elasticjob.tracing.listener.TracingListener;
+import org.apache.shardingsphere.elasticjob.tracing.listener.TracingListenerConfiguration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 批量事件追踪监听器配置，通过 SPI 注册，追踪类型为 RDB_BATCH
+ * ElasticJob 为每个作业创建一个监听器，同一数据源的所有作业共用一个存储(缓冲区和写线程)
+ *
+ * @author tangtian
+ * @date 2026-10-19 16:50
+ */
+@Slf4j
+public final class BatchTracingListenerConfiguration implements TracingListenerConfiguration<DataSource> {
+
+	public static final String TYPE = "RDB_BATCH";
+
+	private static final Map<DataSource, BatchTracingEventStorage> STORAGES = new ConcurrentHashMap<>();
+
+	private static volatile BatchTracingSettings settings = new BatchTracingSettings();
+
+	/**
+	 * 在作业启动前由 Spring 配置调用
+	 */
+	public static void configure(BatchTracingSettings batchTracingSettings) {
+		settings = batchTracingSettings;
+	}
+
+	/**
+	 * 应用关闭时调用，把缓冲区中剩余的事件写完
+	 */
+	public static void shutdown(long timeoutMillis) {
+		STORAGES.values().forEach(storage -> storage.shutdown(timeoutMillis));
+		STORAGES.clear();
+	}
+
+	@Override
+	public TracingListener createTracingListener(DataSource storage) throws TracingConfigurationException {
+		try {
+			return new BatchTracingListener(STORAGES.computeIfAbsent(storage, this::createStorage));
+		} catch (IllegalStateException e) {
+			throw new TracingConfigurationException(e);
+		}
+	}
+
+	private BatchTracingEventStorage createStorage(DataSource dataSource) {
+		try {
+			log.info("创建批量事件追踪存储 - 参数: {}", settings);
+			return new BatchTracingEventStorage(dataSource, settings);
+		} catch (SQLException e) {
+			throw new IllegalStateException("初始化追踪表失败", e);
+		}
+	}
+
+	@Override
+	public String getType() {
+		return TYPE;
+	}
+}
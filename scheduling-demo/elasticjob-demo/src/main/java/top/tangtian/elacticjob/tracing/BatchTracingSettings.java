@@ -0,0 +1,31 @@
+package top.tangtian.elacticjob.tracing;
+
+import lombok.Data;
+
+/**
+ * 批量事件追踪参数
+ *
+ * @author tangtian
+ * @date 2026-10-19 16:20
+ */
+@Data
+public class BatchTracingSettings {
+
+	// 环形缓冲区容量，写满后丢弃新事件，不阻塞作业线程
+	private int bufferCapacity = 8192;
+
+	// 单批最多写入的事件数
+	private int batchSize = 500;
+
+	// 攒批最长等待时间
+	private long flushIntervalMillis = 1000;
+
+	// 追踪记录保留天数，<=0 表示不清理
+	private int retentionDays = 7;
+
+	// 过期清理的执行间隔
+	private long purgeIntervalMinutes = 60;
+
+	// 每个写入周期每张表最多删除的行数，避免长事务锁表和长时间占用写线程
+	private int purgeBatchSize = 5000;
+}
@@ -0,0 +1,36 @@
+package top.tangtian.elacticjob.util;
+
+/**
+ * 订单号64位哈希，布隆过滤器和日订单索引共用
+ * 直接按字符计算，避免 getBytes() 产生临时数组
+ *
+ * @author tangtian
+ * @date 2026-10-19 14:05
+ */
+public final class OrderNoHash {
+
+	public static final long SEED_1 = 0x9E3779B97F4A7C15L;
+	public static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+
+	private OrderNoHash() {
+	}
+
+	public static long hash64(String orderNo) {
+		return hash64(orderNo, SEED_1);
+	}
+
+	public static long hash64(String orderNo, long seed) {
+		long h = seed ^ (orderNo.length() * 0xFF51AFD7ED558CCDL);
+		for (int i = 0; i < orderNo.length(); i++) {
+			h ^= orderNo.charAt(i);
+			h *= 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 29;
+		}
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,75 @@
+-- ==================== 分区表结构(PostgreSQL 12+) ====================
+-- orders / payments 按 created_time 按天分区，reconciliation_details 按 created_time 按月分区
+-- 分区由 PartitionMaintenanceJob 每天提前创建，过期分区直接 DETACH + DROP，不再执行大批量 DELETE
+--
+-- 注意:
+-- 1. 分区表的主键/唯一约束必须包含分区键，因此 orders 的订单号唯一约束变为 (order_no, created_time)，
+--    订单号的全局唯一需要由业务生成规则保证
+-- 2. 查询条件带上 created_time 范围才能触发分区裁剪，见各 Repository 中带时间窗口的查询方法
+-- 3. 索引建在父表上，会自动同步到每个分区
+--
+-- 已有非分区表的迁移方式(停写窗口内执行):
+--   ALTER TABLE orders RENAME TO orders_legacy;
+--   执行本脚本创建 orders，再由 PartitionMaintenanceJob 或手工创建历史日期的分区;
+--   INSERT INTO orders SELECT * FROM orders_legacy;
+--   SELECT setval('orders_id_seq', (SELECT max(id) FROM orders));
+--   payments、reconciliation_details 同理
+
+CREATE TABLE IF NOT EXISTS orders (
+    id             BIGSERIAL      NOT NULL,
+    order_no       VARCHAR(64)    NOT NULL,
+    user_id        BIGINT         NOT NULL,
+    amount         NUMERIC(12, 2) NOT NULL,
+    status         VARCHAR(20)    NOT NULL,
+    created_time   TIMESTAMP      NOT NULL,
+    paid_time      TIMESTAMP,
+    delivered_time TIMESTAMP,
+    remark         VARCHAR(500),
+    PRIMARY KEY (id, created_time),
+    UNIQUE (order_no, created_time)
+) PARTITION BY RANGE (created_time);
+
+CREATE INDEX IF NOT EXISTS idx_orders_status ON orders (status, created_time);
+CREATE INDEX IF NOT EXISTS idx_orders_user_id ON orders (user_id, created_time);
+
+CREATE TABLE IF NOT EXISTS orders_default PARTITION OF orders DEFAULT;
+
+CREATE TABLE IF NOT EXISTS payments (
+    id             BIGSERIAL      NOT NULL,
+    payment_no     VARCHAR(64)    NOT NULL,
+    order_no       VARCHAR(64)    NOT NULL,
+    third_party_no VARCHAR(64),
+    amount         NUMERIC(12, 2) NOT NULL,
+    method         VARCHAR(20)    NOT NULL,
+    status         VARCHAR(20)    NOT NULL,
+    created_time   TIMESTAMP      NOT NULL,
+    paid_time      TIMESTAMP,
+    PRIMARY KEY (id, created_time),
+    UNIQUE (payment_no, created_time)
+) PARTITION BY RANGE (created_time);
+
+CREATE INDEX IF NOT EXISTS idx_payments_order_no ON payments (order_no);
+CREATE INDEX IF NOT EXISTS idx_payments_third_party_no ON payments (third_party_no);
+CREATE INDEX IF NOT EXISTS idx_payments_status_paid_time ON payments (status, paid_time);
+
+CREATE TABLE IF NOT EXISTS payments_default PARTITION OF payments DEFAULT;
+
+CREATE TABLE IF NOT EXISTS reconciliation_details (
+    id                 BIGSERIAL      NOT NULL,
+    record_id          BIGINT         NOT NULL,
+    order_no           VARCHAR(64)    NOT NULL,
+    difference_type    VARCHAR(20)    NOT NULL,
+    system_amount      NUMERIC(12, 2),
+    third_party_amount NUMERIC(12, 2),
+    difference_amount  NUMERIC(12, 2),
+    description        VARCHAR(1000),
+    created_time       TIMESTAMP      NOT NULL,
+    process_status     VARCHAR(20),
+    PRIMARY KEY (id, created_time)
+) PARTITION BY RANGE (created_time);
+
+CREATE INDEX IF NOT EXISTS idx_details_record_id ON reconciliation_details (record_id);
+CREATE INDEX IF NOT EXISTS idx_details_order_no ON reconciliation_details (order_no);
+CREATE INDEX IF NOT EXISTS idx_details_process_status ON reconciliation_details (process_status, created_time);
+
+CREATE TABLE IF NOT EXISTS reconciliation_details_default PARTITION OF reconciliation_details DEFAULT;